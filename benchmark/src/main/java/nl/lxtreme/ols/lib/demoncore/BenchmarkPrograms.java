@@ -0,0 +1,162 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+
+
+/**
+ * Provides the trigger programs and streams shared by the benchmarks.
+ */
+final class BenchmarkPrograms
+{
+  // INNER TYPES
+
+  /**
+   * Provides an output stream that discards everything written to it.
+   */
+  static final class NullOutputStream extends OutputStream
+  {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write( final byte[] aBuffer, final int aOffset, final int aLength )
+    {
+      // NO-op
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write( final int aByte )
+    {
+      // NO-op
+    }
+  }
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link BenchmarkPrograms} instance.
+   */
+  private BenchmarkPrograms()
+  {
+    // Not used
+  }
+
+  // METHODS
+
+  /**
+   * Creates a writer that discards all frames it writes.
+   * 
+   * @return a new command writer, never <code>null</code>.
+   */
+  static DemonCoreCommandWriter createNullWriter()
+  {
+    return new DemonCoreCommandWriter( new DataOutputStream( new NullOutputStream() ) );
+  }
+
+  /**
+   * Creates a full program of sixteen sequence states that use every kind of
+   * input term.
+   * 
+   * @return the sequence states, never <code>null</code>.
+   */
+  static TriggerSequenceState[] createProgram()
+  {
+    final TriggerSequenceState[] result = new TriggerSequenceState[16];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      result[i] = createState( i );
+    }
+    result[result.length - 1].setLastState( true );
+    return result;
+  }
+
+  /**
+   * Creates a sequence state in which all sums use every kind of input term.
+   * 
+   * @param aStateNumber
+   *          the state number, 0..15.
+   * @return a new sequence state, never <code>null</code>.
+   */
+  static TriggerSequenceState createState( final int aStateNumber )
+  {
+    final TriggerSequenceState result = new TriggerSequenceState();
+    result.setStateNumber( aStateNumber );
+    result.setElseState( ( aStateNumber + 1 ) & 0x0F );
+    result.setOccurrenceCount( 10 + aStateNumber );
+    result.setRaiseTrigger( aStateNumber == 15 );
+    result.setStartTimer( 1 );
+    result.setClearTimer( 2 );
+
+    for ( TriggerStateTerm stateTerm : TriggerStateTerm.values() )
+    {
+      fillSum( result.getTriggerSum( stateTerm ), aStateNumber );
+    }
+    return result;
+  }
+
+  /**
+   * Fills the given sum with a representative mix of inputs and operations.
+   */
+  private static void fillSum( final TriggerSum aSum, final int aSeed )
+  {
+    final TriggerFinalTerm finalTerm = aSum.getFinalTerm();
+    finalTerm.setOperation( TriggerOperation.AND );
+
+    final TriggerMidTerm midA = finalTerm.getTermA();
+    midA.setOperation( TriggerOperation.OR );
+
+    final TriggerTerm term = ( TriggerTerm )midA.getTermA().getTermA();
+    term.setValue( 0x12345678 ^ aSeed );
+    term.setMask( 0x00FF00FF );
+    term.setEnabled();
+    midA.getTermA().setOperation( TriggerOperation.AND );
+
+    final TriggerRangeDetector range = ( TriggerRangeDetector )midA.getTermB().getTermB();
+    range.setMask( 0x0000FFFF );
+    range.setLowerTarget( 0x100 + aSeed );
+    range.setUpperTarget( 0x8000 );
+    range.setEnabled();
+
+    final TriggerEdgeDetector edge = ( TriggerEdgeDetector )midA.getTermC().getTermB();
+    edge.setRisingEdgeMask( 0x01 << aSeed );
+    edge.setFallingEdgeMask( 0x10000 );
+    edge.setEnabled();
+    midA.getTermC().setOperation( TriggerOperation.XOR );
+
+    final TriggerTimer timer = ( TriggerTimer )midA.getTermD().getTermB();
+    timer.setValue( 0x123456789L + aSeed );
+    timer.setInverted();
+
+    final TriggerMidTerm midB = finalTerm.getTermB();
+    midB.setOperation( TriggerOperation.NAND );
+
+    final TriggerTerm other = ( TriggerTerm )midB.getTermB().getTermA();
+    other.setValue( 0xCAFEBABE );
+    other.setMask( 0xFFFFFFFF );
+    other.setInverted();
+  }
+}
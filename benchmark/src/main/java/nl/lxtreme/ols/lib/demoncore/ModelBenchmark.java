@@ -0,0 +1,156 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+
+/**
+ * Measures copying and traversing the trigger model.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ModelBenchmark
+{
+  // INNER TYPES
+
+  /**
+   * Provides a visitor that only consumes what it visits.
+   */
+  static final class ConsumingVisitor implements ITriggerVisitor
+  {
+    // VARIABLES
+
+    private Blackhole blackhole;
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( final AbstractTriggerTerm aTerm ) throws IOException
+    {
+      this.blackhole.consume( aTerm.getState() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( final TriggerFinalTerm aTerm ) throws IOException
+    {
+      this.blackhole.consume( aTerm.getOperation() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( final TriggerMidTerm aTerm ) throws IOException
+    {
+      this.blackhole.consume( aTerm.getOperation() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( final TriggerPairTerm aTerm ) throws IOException
+    {
+      this.blackhole.consume( aTerm.getOperation() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( final TriggerSequenceState aTriggerSequenceState ) throws IOException
+    {
+      this.blackhole.consume( aTriggerSequenceState.getStateNumber() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( final TriggerSum aSum ) throws IOException
+    {
+      this.blackhole.consume( aSum.getStateNumber() );
+    }
+  }
+
+  // VARIABLES
+
+  private final ConsumingVisitor visitor = new ConsumingVisitor();
+
+  private TriggerSequenceState state;
+  private TriggerSum sum;
+
+  // METHODS
+
+  /**
+   * Sets up the model to copy and traverse.
+   */
+  @Setup
+  public void setUp()
+  {
+    this.state = BenchmarkPrograms.createState( 7 );
+    this.sum = this.state.getTriggerSum( TriggerStateTerm.HIT );
+  }
+
+  /**
+   * Measures {@link TriggerSequenceState#TriggerSequenceState(TriggerSequenceState)}.
+   */
+  @Benchmark
+  public TriggerSequenceState copySequenceState()
+  {
+    return new TriggerSequenceState( this.state );
+  }
+
+  /**
+   * Measures {@link TriggerSum#TriggerSum(TriggerSum)}.
+   */
+  @Benchmark
+  public TriggerSum copyTriggerSum()
+  {
+    return new TriggerSum( this.sum );
+  }
+
+  /**
+   * Measures a visitor traversal of a complete sequence state.
+   */
+  @Benchmark
+  public void traverseSequenceState( final Blackhole aBlackhole ) throws IOException
+  {
+    this.visitor.blackhole = aBlackhole;
+    this.state.accept( this.visitor );
+  }
+}
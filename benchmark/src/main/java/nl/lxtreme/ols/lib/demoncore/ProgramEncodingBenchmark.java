@@ -0,0 +1,96 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Measures the encoding of complete sequence states and programs.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ProgramEncodingBenchmark
+{
+  // VARIABLES
+
+  private DemonCoreCommandWriter writer;
+  private DemonCoreCommandWriter.TriggerSumSequenceWriter sumSequenceWriter;
+
+  private TriggerSequenceState[] program;
+
+  // METHODS
+
+  /**
+   * Sets up the writers and the program to encode.
+   */
+  @Setup
+  public void setUp()
+  {
+    this.writer = BenchmarkPrograms.createNullWriter();
+    this.sumSequenceWriter = this.writer.new TriggerSumSequenceWriter();
+
+    this.program = BenchmarkPrograms.createProgram();
+  }
+
+  /**
+   * Measures {@link DemonCoreCommandWriter#compile(TriggerSequenceState...)}
+   * of a full, sixteen state, program.
+   */
+  @Benchmark
+  public DemonCoreProgram compileProgram()
+  {
+    return DemonCoreCommandWriter.compile( this.program );
+  }
+
+  /**
+   * Measures the sum and sequence LUTs of a full program, as written by the
+   * {@link DemonCoreCommandWriter.TriggerSumSequenceWriter}.
+   */
+  @Benchmark
+  public void writeSumSequences() throws IOException
+  {
+    for ( TriggerSequenceState state : this.program )
+    {
+      state.accept( this.sumSequenceWriter );
+    }
+  }
+
+  /**
+   * Measures writing all LUTs of a full program, one state at a time.
+   */
+  @Benchmark
+  public void writeStates() throws IOException
+  {
+    for ( TriggerSequenceState state : this.program )
+    {
+      this.writer.writeState( state );
+    }
+  }
+}
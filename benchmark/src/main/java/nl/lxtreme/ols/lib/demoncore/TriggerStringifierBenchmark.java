@@ -0,0 +1,80 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.concurrent.*;
+
+import nl.lxtreme.ols.lib.demoncore.ui.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Measures the human-readable representation of trigger sums.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TriggerStringifierBenchmark
+{
+  // VARIABLES
+
+  private final TriggerStringifier stringifier = new TriggerStringifier();
+
+  private TriggerSum sum;
+  private TriggerSum emptySum;
+
+  // METHODS
+
+  /**
+   * Sets up the sums to represent.
+   */
+  @Setup
+  public void setUp()
+  {
+    this.sum = BenchmarkPrograms.createState( 5 ).getTriggerSum( TriggerStateTerm.CAPTURE );
+    this.emptySum = new TriggerSum( TriggerStateTerm.CAPTURE );
+  }
+
+  /**
+   * Measures {@link TriggerStringifier#toString(ITriggerVisitable)} of a sum
+   * without any enabled inputs.
+   */
+  @Benchmark
+  public String toStringEmptySum()
+  {
+    return this.stringifier.toString( this.emptySum );
+  }
+
+  /**
+   * Measures {@link TriggerStringifier#toString(ITriggerVisitable)} of a sum
+   * using every kind of input term.
+   */
+  @Benchmark
+  public String toStringSum()
+  {
+    return this.stringifier.toString( this.sum );
+  }
+}
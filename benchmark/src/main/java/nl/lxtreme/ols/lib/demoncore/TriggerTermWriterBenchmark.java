@@ -0,0 +1,106 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Measures the LUT encoding of the individual input terms.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TriggerTermWriterBenchmark
+{
+  // VARIABLES
+
+  private DemonCoreCommandWriter.TriggerTermWriter termWriter;
+
+  private TriggerTerm term;
+  private TriggerEdgeDetector edge;
+  private TriggerRangeDetector range;
+  private TriggerTimer timer;
+
+  // METHODS
+
+  /**
+   * Sets up the writer and the terms to encode.
+   */
+  @Setup
+  public void setUp()
+  {
+    this.termWriter = BenchmarkPrograms.createNullWriter().new TriggerTermWriter();
+
+    final TriggerMidTerm mid = BenchmarkPrograms.createState( 3 ).getTriggerSum( TriggerStateTerm.HIT ).getFinalTerm()
+        .getTermA();
+    this.term = ( TriggerTerm )mid.getTermA().getTermA();
+    this.range = ( TriggerRangeDetector )mid.getTermB().getTermB();
+    this.edge = ( TriggerEdgeDetector )mid.getTermC().getTermB();
+    this.timer = ( TriggerTimer )mid.getTermD().getTermB();
+  }
+
+  /**
+   * Measures {@link DemonCoreCommandWriter.TriggerTermWriter} for edge
+   * detectors.
+   */
+  @Benchmark
+  public void writeEdge() throws IOException
+  {
+    this.termWriter.visit( this.edge );
+  }
+
+  /**
+   * Measures {@link DemonCoreCommandWriter.TriggerTermWriter} for range
+   * detectors.
+   */
+  @Benchmark
+  public void writeRange() throws IOException
+  {
+    this.termWriter.visit( this.range );
+  }
+
+  /**
+   * Measures {@link DemonCoreCommandWriter.TriggerTermWriter} for bit-value
+   * terms.
+   */
+  @Benchmark
+  public void writeTerm() throws IOException
+  {
+    this.termWriter.visit( this.term );
+  }
+
+  /**
+   * Measures {@link DemonCoreCommandWriter.TriggerTermWriter} for timers.
+   */
+  @Benchmark
+  public void writeTriggerTimer() throws IOException
+  {
+    this.termWriter.visit( this.timer );
+  }
+}
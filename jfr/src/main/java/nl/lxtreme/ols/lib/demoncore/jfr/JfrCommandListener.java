@@ -0,0 +1,185 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore.jfr;
+
+
+import nl.lxtreme.ols.lib.demoncore.*;
+
+
+/**
+ * Provides a {@link IDemonCoreCommandListener} that emits Java Flight Recorder
+ * events for the encode and upload phases of a {@link DemonCoreCommandWriter}.
+ * <p>
+ * Three kinds of events are emitted: one for each phase of encoding a
+ * sequence state, one for each generated LUT, and one for each program
+ * flushed to the device. Together, these allow the arm latency of a trigger
+ * program to be broken down in a recording.
+ * </p>
+ * <p>
+ * This listener keeps track of the events in progress, and should therefore
+ * only be added to writers that are used by a single thread at a time.
+ * </p>
+ */
+public final class JfrCommandListener implements IDemonCoreCommandListener
+{
+  // CONSTANTS
+
+  /** The size of a single select or chain frame, in bytes. */
+  private static final int FRAME_SIZE = 5;
+
+  // VARIABLES
+
+  private int stateNumber = -1;
+  private EncodeEvent encodeEvent;
+  private LutEvent lutEvent;
+  private TransferEvent transferEvent;
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void chainWritten( final int aAddress, final int aValue )
+  {
+    final TransferEvent event = this.transferEvent;
+    if ( event != null )
+    {
+      frameWritten( event );
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void phaseCompleted( final UploadPhase aPhase, final int aStateNumber, final long aDuration )
+  {
+    if ( aPhase == UploadPhase.TRANSFER )
+    {
+      final TransferEvent event = this.transferEvent;
+      this.transferEvent = null;
+      if ( ( event != null ) && event.shouldCommit() )
+      {
+        event.commit();
+      }
+    }
+    else
+    {
+      final EncodeEvent event = this.encodeEvent;
+      this.encodeEvent = null;
+      if ( ( event != null ) && event.shouldCommit() )
+      {
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void phaseStarted( final UploadPhase aPhase, final int aStateNumber )
+  {
+    this.stateNumber = aStateNumber;
+
+    if ( aPhase == UploadPhase.TRANSFER )
+    {
+      final TransferEvent event = new TransferEvent();
+      event.begin();
+      this.transferEvent = event;
+    }
+    else
+    {
+      final EncodeEvent event = new EncodeEvent();
+      event.phase = aPhase.name();
+      event.stateNumber = aStateNumber;
+      event.begin();
+      this.encodeEvent = event;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void selectWritten( final int aAddress )
+  {
+    final TransferEvent event = this.transferEvent;
+    if ( event != null )
+    {
+      event.chainCount++;
+      frameWritten( event );
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void termCompleted( final TriggerTermType aType, final int aByteCount, final long aDuration )
+  {
+    final LutEvent event = this.lutEvent;
+    this.lutEvent = null;
+    if ( event == null )
+    {
+      return;
+    }
+
+    event.end();
+    if ( event.shouldCommit() )
+    {
+      event.termType = aType.name();
+      event.chainAddress = aType.getLutChainAddress();
+      event.stateNumber = this.stateNumber;
+      event.byteCount = aByteCount;
+      event.commit();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void termStarted( final TriggerTermType aType )
+  {
+    final LutEvent event = new LutEvent();
+    event.begin();
+    this.lutEvent = event;
+  }
+
+  /**
+   * Accounts a single frame to the given transfer event.
+   * <p>
+   * The writer reports the frames of a program once it is flushed, so the
+   * first frame marks the end of the transfer itself.
+   * </p>
+   */
+  private void frameWritten( final TransferEvent aEvent )
+  {
+    if ( aEvent.frameCount == 0 )
+    {
+      aEvent.end();
+    }
+    aEvent.frameCount++;
+    aEvent.byteCount += FRAME_SIZE;
+  }
+}
@@ -22,13 +22,21 @@ package nl.lxtreme.ols.lib.demoncore;
 
 
 /**
- * 
+ * Denotes a term that combines other terms using a {@link TriggerOperation}.
+ * <p>
+ * The operation is stored in a {@link PackedTriggerSum}. Terms that are part of
+ * a {@link TriggerSum} are views on the packed sum of that sum, and create the
+ * views on their inputs lazily; terms that are composed of separately created
+ * terms only store their own operation.
+ * </p>
  */
 public abstract class AbstractTriggerOperationTerm implements ITriggerVisitable
 {
   // VARIABLES
 
-  private TriggerOperation operation;
+  final PackedTriggerSum store;
+  final int index;
+  final boolean packed;
 
   // CONSTRUCTORS
 
@@ -37,15 +45,46 @@ public abstract class AbstractTriggerOperationTerm implements ITriggerVisitable
    */
   protected AbstractTriggerOperationTerm()
   {
-    // No-op
+    this.store = PackedTriggerSum.createOperation();
+    this.index = 0;
+    this.packed = false;
   }
 
   /**
-   * Creates a new AbstractTriggerOperationTerm instance.
+   * Creates a new AbstractTriggerOperationTerm instance as an exact copy of the
+   * given operation term. A copy of a view keeps viewing the inputs of (a copy
+   * of) the packed sum it views.
    */
   protected AbstractTriggerOperationTerm( final AbstractTriggerOperationTerm aOperationTerm )
   {
-    this.operation = aOperationTerm.operation;
+    this.packed = aOperationTerm.packed;
+    if ( this.packed )
+    {
+      this.store = new PackedTriggerSum( aOperationTerm.store );
+      this.index = aOperationTerm.index;
+    }
+    else
+    {
+      this.store = PackedTriggerSum.createOperation();
+      this.index = 0;
+      this.store.setOperation( this.index, aOperationTerm.getOperation() );
+    }
+  }
+
+  /**
+   * Creates a new AbstractTriggerOperationTerm instance as view on the given
+   * packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aIndex
+   *          the index of the operation to view.
+   */
+  AbstractTriggerOperationTerm( final PackedTriggerSum aStore, final int aIndex )
+  {
+    this.store = aStore;
+    this.index = aIndex;
+    this.packed = true;
   }
 
   // METHODS
@@ -57,7 +96,7 @@ public abstract class AbstractTriggerOperationTerm implements ITriggerVisitable
    */
   public final TriggerOperation getOperation()
   {
-    return this.operation;
+    return this.store.getOperation( this.index );
   }
 
   /**
@@ -72,7 +111,7 @@ public abstract class AbstractTriggerOperationTerm implements ITriggerVisitable
     {
       throw new IllegalArgumentException( "Operation cannot be null!" );
     }
-    this.operation = aOperation;
+    this.store.setOperation( this.index, aOperation );
   }
 
   /**
@@ -80,7 +119,7 @@ public abstract class AbstractTriggerOperationTerm implements ITriggerVisitable
    */
   protected final int getOffset()
   {
-    return this.operation.getOffset();
+    return getOperation().getOffset();
   }
 
   /**
@@ -88,6 +127,6 @@ public abstract class AbstractTriggerOperationTerm implements ITriggerVisitable
    */
   protected void reset()
   {
-    this.operation = TriggerOperation.OR;
+    this.store.setOperation( this.index, TriggerOperation.OR );
   }
 }
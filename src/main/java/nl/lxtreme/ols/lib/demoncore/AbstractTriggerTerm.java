@@ -27,13 +27,19 @@ import java.io.*;
 /**
  * Denotes a trigger term, which is either a bit-value, a range detector, an
  * edge detector or timer.
+ * <p>
+ * A trigger term is a view on an input of a {@link PackedTriggerSum}; terms
+ * that are not part of a {@link TriggerSum} have a single-input packed sum of
+ * their own.
+ * </p>
  */
 public abstract class AbstractTriggerTerm implements ITriggerVisitable
 {
   // VARIABLES
 
   private final TriggerTermType type;
-  private TriggerInputState state;
+  final PackedTriggerSum store;
+  final int input;
 
   // CONSTRUCTORS
 
@@ -44,7 +50,9 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
   protected AbstractTriggerTerm( final AbstractTriggerTerm aTerm )
   {
     this.type = aTerm.type;
-    this.state = aTerm.state;
+    this.input = 0;
+    this.store = PackedTriggerSum.createInput();
+    this.store.copyInput( aTerm.store, aTerm.input, this.input );
   }
 
   /**
@@ -53,7 +61,23 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
   protected AbstractTriggerTerm( final TriggerTermType aType )
   {
     this.type = aType;
-    reset();
+    this.input = 0;
+    this.store = PackedTriggerSum.createInput();
+  }
+
+  /**
+   * Creates a new TriggerTerm instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aType
+   *          the term type, denoting the input to view.
+   */
+  AbstractTriggerTerm( final PackedTriggerSum aStore, final TriggerTermType aType )
+  {
+    this.type = aType;
+    this.input = PackedTriggerSum.getInputIndex( aType );
+    this.store = aStore;
   }
 
   // METHODS
@@ -143,6 +167,50 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
     }
   }
 
+  /**
+   * Factory method for creating a {@link AbstractTriggerTerm} instance that is
+   * a view on an input of the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aType
+   *          the term type, denoting the input to view.
+   * @return a new {@link AbstractTriggerTerm} instance, never
+   *         <code>null</code>.
+   */
+  static final AbstractTriggerTerm create( final PackedTriggerSum aStore, final TriggerTermType aType )
+  {
+    switch ( aType )
+    {
+      case TERM_A:
+      case TERM_B:
+      case TERM_C:
+      case TERM_D:
+      case TERM_E:
+      case TERM_F:
+      case TERM_G:
+      case TERM_H:
+      case TERM_I:
+      case TERM_J:
+        return new TriggerTerm( aStore, aType );
+
+      case TERM_EDGE1:
+      case TERM_EDGE2:
+        return new TriggerEdgeDetector( aStore, aType );
+
+      case TERM_RANGE1:
+      case TERM_RANGE2:
+        return new TriggerRangeDetector( aStore, aType );
+
+      case TERM_TIMER1:
+      case TERM_TIMER2:
+        return new TriggerTimer( aStore, aType );
+
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -159,7 +227,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final TriggerInputState getState()
   {
-    return this.state;
+    return this.store.getState( this.input );
   }
 
   /**
@@ -178,7 +246,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final boolean isDisabled()
   {
-    return this.state.isDisabled();
+    return getState().isDisabled();
   }
 
   /**
@@ -187,7 +255,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final boolean isEnabled()
   {
-    return this.state.isEnabled();
+    return getState().isEnabled();
   }
 
   /**
@@ -196,7 +264,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final boolean isInverted()
   {
-    return this.state.isInverted();
+    return getState().isInverted();
   }
 
   /**
@@ -204,7 +272,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final void setDisabled()
   {
-    this.state = TriggerInputState.DISABLED;
+    setState( TriggerInputState.DISABLED );
   }
 
   /**
@@ -212,7 +280,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final void setEnabled()
   {
-    this.state = TriggerInputState.ENABLED;
+    setState( TriggerInputState.ENABLED );
   }
 
   /**
@@ -220,7 +288,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final void setInverted()
   {
-    this.state = TriggerInputState.ENABLED_INVERTED;
+    setState( TriggerInputState.ENABLED_INVERTED );
   }
 
   /**
@@ -230,7 +298,7 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   public final void setState( final TriggerInputState aState )
   {
-    this.state = aState;
+    this.store.setState( this.input, aState );
   }
 
   /**
@@ -238,6 +306,6 @@ public abstract class AbstractTriggerTerm implements ITriggerVisitable
    */
   protected void reset()
   {
-    this.state = TriggerInputState.DISABLED;
+    this.store.resetInput( this.input );
   }
 }
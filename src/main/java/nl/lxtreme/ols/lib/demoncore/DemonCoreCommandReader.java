@@ -0,0 +1,317 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+
+/**
+ * Provides an incremental reader for "Demon Core" command streams, as written
+ * by {@link DemonCoreCommandWriter}.
+ * <p>
+ * The select and chain frames are parsed into the resulting contents of each
+ * LUT chain, that is, the chain words written after the <em>last</em> select
+ * of each chain address, just like the device itself would. Input can be fed
+ * in arbitrary pieces: frames that are split across pieces are completed by
+ * the next piece. Apart from growing the chain contents, no memory is
+ * allocated while parsing frames.
+ * </p>
+ * <p>
+ * This reader is not thread-safe.
+ * </p>
+ */
+public final class DemonCoreCommandReader
+{
+  // CONSTANTS
+
+  private static final int FRAME_SIZE = DemonCoreCommandWriter.FRAME_SIZE;
+
+  /** The number of distinct LUT chain addresses. */
+  private static final int CHAIN_ADDRESSES = 256;
+
+  private static final int BUFFER_SIZE = 4096;
+
+  // VARIABLES
+
+  private final byte[] partial;
+  private final int[][] words;
+  /** The number of words per chain, or -1 if a chain is never selected. */
+  private final int[] counts;
+
+  private int partialLength;
+  private int address;
+  private long frameCount;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreCommandReader} instance.
+   */
+  public DemonCoreCommandReader()
+  {
+    this.partial = new byte[FRAME_SIZE];
+    this.words = new int[CHAIN_ADDRESSES][];
+    this.counts = new int[CHAIN_ADDRESSES];
+
+    reset();
+  }
+
+  // METHODS
+
+  /**
+   * Returns the chain words for the given chain address.
+   * 
+   * @param aAddress
+   *          the LUT chain address to return the chain words for.
+   * @return a copy of the chain words, or <code>null</code> if the given chain
+   *         was never selected.
+   */
+  public int[] getChain( final int aAddress )
+  {
+    if ( ( aAddress < 0 ) || ( aAddress >= CHAIN_ADDRESSES ) || ( this.counts[aAddress] < 0 ) )
+    {
+      return null;
+    }
+    return Arrays.copyOf( this.words[aAddress], this.counts[aAddress] );
+  }
+
+  /**
+   * Returns all LUT chain addresses selected so far.
+   * 
+   * @return a sorted set of chain addresses, never <code>null</code>.
+   */
+  public SortedSet<Integer> getChainAddresses()
+  {
+    final SortedSet<Integer> result = new TreeSet<Integer>();
+    for ( int i = 0; i < CHAIN_ADDRESSES; i++ )
+    {
+      if ( this.counts[i] >= 0 )
+      {
+        result.add( Integer.valueOf( i ) );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the contents of all LUT chains selected so far.
+   * 
+   * @return a sorted map of chain address to (copies of the) chain words,
+   *         never <code>null</code>.
+   */
+  public SortedMap<Integer, int[]> getChains()
+  {
+    final SortedMap<Integer, int[]> result = new TreeMap<Integer, int[]>();
+    for ( int i = 0; i < CHAIN_ADDRESSES; i++ )
+    {
+      if ( this.counts[i] >= 0 )
+      {
+        result.put( Integer.valueOf( i ), Arrays.copyOf( this.words[i], this.counts[i] ) );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of complete frames read so far.
+   * 
+   * @return the frame count, >= 0.
+   */
+  public long getFrameCount()
+  {
+    return this.frameCount;
+  }
+
+  /**
+   * Returns whether the input read so far ends halfway a frame.
+   * 
+   * @return <code>true</code> if a frame is incomplete, <code>false</code>
+   *         otherwise.
+   */
+  public boolean hasPartialFrame()
+  {
+    return this.partialLength > 0;
+  }
+
+  /**
+   * Reads all remaining bytes of the given buffer.
+   * 
+   * @param aBuffer
+   *          the buffer to read, cannot be <code>null</code>. Its position is
+   *          advanced to its limit.
+   * @throws IOException
+   *           in case the input contains an invalid command or chain address.
+   */
+  public void read( final ByteBuffer aBuffer ) throws IOException
+  {
+    while ( aBuffer.hasRemaining() )
+    {
+      if ( ( this.partialLength == 0 ) && ( aBuffer.remaining() >= FRAME_SIZE ) )
+      {
+        // Fast path: a complete frame...
+        final int cmd = aBuffer.get() & 0xFF;
+        final int value = ( ( aBuffer.get() & 0xFF ) << 24 ) | ( ( aBuffer.get() & 0xFF ) << 16 )
+            | ( ( aBuffer.get() & 0xFF ) << 8 ) | ( aBuffer.get() & 0xFF );
+        frameRead( cmd, value );
+      }
+      else
+      {
+        this.partial[this.partialLength++] = aBuffer.get();
+        if ( this.partialLength == FRAME_SIZE )
+        {
+          this.partialLength = 0;
+
+          final byte[] p = this.partial;
+          final int value = ( ( p[1] & 0xFF ) << 24 ) | ( ( p[2] & 0xFF ) << 16 ) | ( ( p[3] & 0xFF ) << 8 )
+              | ( p[4] & 0xFF );
+          frameRead( p[0] & 0xFF, value );
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the given bytes.
+   * 
+   * @param aBytes
+   *          the bytes to read, cannot be <code>null</code>;
+   * @param aOffset
+   *          the offset of the first byte to read;
+   * @param aLength
+   *          the number of bytes to read.
+   * @throws IOException
+   *           in case the input contains an invalid command or chain address.
+   */
+  public void read( final byte[] aBytes, final int aOffset, final int aLength ) throws IOException
+  {
+    read( ByteBuffer.wrap( aBytes, aOffset, aLength ) );
+  }
+
+  /**
+   * Reads the given input stream until its end.
+   * 
+   * @param aInputStream
+   *          the input stream to read, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems, or in case the input contains an
+   *           invalid command or chain address.
+   */
+  public void readFrom( final InputStream aInputStream ) throws IOException
+  {
+    final byte[] buffer = new byte[BUFFER_SIZE];
+
+    int read;
+    while ( ( read = aInputStream.read( buffer ) ) >= 0 )
+    {
+      read( buffer, 0, read );
+    }
+  }
+
+  /**
+   * Reads the given channel until its end.
+   * 
+   * @param aChannel
+   *          the channel to read, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems, or in case the input contains an
+   *           invalid command or chain address.
+   */
+  public void readFrom( final ReadableByteChannel aChannel ) throws IOException
+  {
+    final ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+    while ( aChannel.read( buffer ) >= 0 )
+    {
+      buffer.flip();
+      read( buffer );
+      buffer.clear();
+    }
+  }
+
+  /**
+   * Forgets everything read so far, including any incomplete frame.
+   */
+  public void reset()
+  {
+    Arrays.fill( this.counts, -1 );
+    this.partialLength = 0;
+    this.address = -1;
+    this.frameCount = 0L;
+  }
+
+  /**
+   * Creates a program that programs the LUT chains read so far.
+   * 
+   * @return a new program, never <code>null</code>.
+   */
+  public DemonCoreProgram toProgram()
+  {
+    return DemonCoreProgram.encode( getChains() );
+  }
+
+  /**
+   * Processes a single, complete, frame.
+   */
+  private void frameRead( final int aCommand, final int aValue ) throws IOException
+  {
+    if ( aCommand == DemonCoreCommandWriter.CMD_SELECT )
+    {
+      if ( ( aValue < 0 ) || ( aValue >= CHAIN_ADDRESSES ) )
+      {
+        throw new IOException( "Invalid chain address: 0x" + Integer.toHexString( aValue ) + " in frame "
+            + this.frameCount );
+      }
+
+      // Selecting a chain starts writing it anew...
+      this.address = aValue;
+      this.counts[aValue] = 0;
+    }
+    else if ( aCommand == DemonCoreCommandWriter.CMD_CHAIN )
+    {
+      // Chain words without a preceding select are ignored...
+      if ( this.address >= 0 )
+      {
+        int[] chain = this.words[this.address];
+        final int count = this.counts[this.address];
+        if ( chain == null )
+        {
+          chain = this.words[this.address] = new int[16];
+        }
+        else if ( count == chain.length )
+        {
+          chain = this.words[this.address] = Arrays.copyOf( chain, count * 2 );
+        }
+        chain[count] = aValue;
+        this.counts[this.address] = count + 1;
+      }
+    }
+    else
+    {
+      throw new IOException( "Invalid command: 0x" + Integer.toHexString( aCommand ) + " in frame "
+          + this.frameCount );
+    }
+
+    this.frameCount++;
+  }
+}
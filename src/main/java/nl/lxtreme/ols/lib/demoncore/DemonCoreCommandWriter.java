@@ -22,11 +22,23 @@ package nl.lxtreme.ols.lib.demoncore;
 
 
 import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 
 /**
  * Provides an extension to the {@link SumpCommandWriter} that allows the
  * "Demon Core" to be configured as well.
+ * <p>
+ * This writer keeps a shadow copy of the LUT chains it has programmed, which
+ * allows {@link #writeChanges(DemonCoreProgram)} to only send those chains
+ * that actually differ from what the device already has.
+ * </p>
+ * <p>
+ * {@link IDemonCoreCommandListener}s can be added to this writer to learn what
+ * is sent to the device, and how long encoding and sending it took.
+ * </p>
  */
 public class DemonCoreCommandWriter
 {
@@ -52,8 +64,7 @@ public class DemonCoreCommandWriter
     @Override
     public void visit( final TriggerFinalTerm aTerm ) throws IOException
     {
-      writeChain( FINAL_VALUE[aTerm.getOffset()] );
-      writeChain( ( MID_VALUE[aTerm.getTermB().getOffset()] << 16 ) | MID_VALUE[aTerm.getTermA().getOffset()] );
+      // NO-op; written as part of the trigger sum itself...
     }
 
     /**
@@ -62,8 +73,7 @@ public class DemonCoreCommandWriter
     @Override
     public void visit( final TriggerMidTerm aTerm ) throws IOException
     {
-      writeChain( ( PAIR_VALUE[aTerm.getTermD().getOffset()] << 16 ) | PAIR_VALUE[aTerm.getTermC().getOffset()] );
-      writeChain( ( PAIR_VALUE[aTerm.getTermB().getOffset()] << 16 ) | PAIR_VALUE[aTerm.getTermA().getOffset()] );
+      // NO-op; written as part of the trigger sum itself...
     }
 
     /**
@@ -85,8 +95,8 @@ public class DemonCoreCommandWriter
       writeSelect( aTriggerSequenceState.getStateNumber() & TRIGSTATE_STATENUM_MASK );
 
       // Build the actual chain data...
-      int value = ( ( aTriggerSequenceState.getElseState() & TRIGSTATE_STATENUM_MASK ) << TRIGSTATE_ELSE_BITOFS )
-          | ( aTriggerSequenceState.getOccurrenceCount() & TRIGSTATE_OBTAIN_MASK );
+      int value = ( ( aTriggerSequenceState.getElseState() & TRIGSTATE_STATENUM_MASK ) << TRIGSTATE_ELSE_BITOFS );
+      value = setOccurrenceCount( value, aTriggerSequenceState.getOccurrenceCount() );
       if ( aTriggerSequenceState.isLastState() )
       {
         value |= TRIGSTATE_LASTSTATE;
@@ -129,7 +139,13 @@ public class DemonCoreCommandWriter
     @Override
     public void visit( final TriggerSum aSum ) throws IOException
     {
+      // The chain needs to be selected *before* its data is written...
       writeSelect( aSum.getOffset() );
+
+      for ( int word : getSumChain( aSum ) )
+      {
+        writeChain( word );
+      }
     }
   }
 
@@ -144,36 +160,27 @@ public class DemonCoreCommandWriter
     @Override
     public void visit( final AbstractTriggerTerm aTerm ) throws IOException
     {
+      if ( listeners.isEmpty() )
+      {
+        writeLut( aTerm );
+        return;
+      }
+
       final TriggerTermType termType = aTerm.getType();
-      switch ( termType )
+      for ( IDemonCoreCommandListener listener : listeners )
       {
-        case TERM_A:
-        case TERM_B:
-        case TERM_C:
-        case TERM_D:
-        case TERM_E:
-        case TERM_F:
-        case TERM_G:
-        case TERM_H:
-        case TERM_I:
-        case TERM_J:
-          writeTerm( ( TriggerTerm )aTerm );
-          break;
+        listener.termStarted( termType );
+      }
 
-        case TERM_EDGE1:
-        case TERM_EDGE2:
-          writeEdge( ( TriggerEdgeDetector )aTerm );
-          break;
+      final int size = outputStream.size();
+      final long start = System.nanoTime();
 
-        case TERM_RANGE1:
-        case TERM_RANGE2:
-          writeRange( ( TriggerRangeDetector )aTerm );
-          break;
+      writeLut( aTerm );
 
-        case TERM_TIMER1:
-        case TERM_TIMER2:
-          writeTriggerTimer( ( TriggerTimer )aTerm );
-          break;
+      final long duration = System.nanoTime() - start;
+      for ( IDemonCoreCommandListener listener : listeners )
+      {
+        listener.termCompleted( termType, outputStream.size() - size, duration );
       }
     }
 
@@ -222,6 +229,49 @@ public class DemonCoreCommandWriter
       // NO-op
     }
 
+    /**
+     * Writes the LUT of the given input term.
+     * 
+     * @param aTerm
+     *          the input term to write, cannot be <code>null</code>.
+     * @throws IOException
+     *           in case of I/O problems.
+     */
+    private void writeLut( final AbstractTriggerTerm aTerm ) throws IOException
+    {
+      final TriggerTermType termType = aTerm.getType();
+      switch ( termType )
+      {
+        case TERM_A:
+        case TERM_B:
+        case TERM_C:
+        case TERM_D:
+        case TERM_E:
+        case TERM_F:
+        case TERM_G:
+        case TERM_H:
+        case TERM_I:
+        case TERM_J:
+          writeTerm( ( TriggerTerm )aTerm );
+          break;
+
+        case TERM_EDGE1:
+        case TERM_EDGE2:
+          writeEdge( ( TriggerEdgeDetector )aTerm );
+          break;
+
+        case TERM_RANGE1:
+        case TERM_RANGE2:
+          writeRange( ( TriggerRangeDetector )aTerm );
+          break;
+
+        case TERM_TIMER1:
+        case TERM_TIMER2:
+          writeTriggerTimer( ( TriggerTimer )aTerm );
+          break;
+      }
+    }
+
     /**
      * Setup LUT's for Edge Detectors.
      * 
@@ -446,10 +496,10 @@ public class DemonCoreCommandWriter
       final int lutChainAddress = aTimer.getType().getLutChainAddress();
 
       writeSelect( lutChainAddress );
-      writeChain( ( int )( aTimer.getValue() & 0xFFFFFFFF ) );
+      writeChain( getTimerLowWord( aTimer.getValue() ) );
 
       writeSelect( lutChainAddress + 1 );
-      writeChain( ( int )( ( aTimer.getValue() >>> 32 ) & 0x0F ) );
+      writeChain( getTimerHighWord( aTimer.getValue() ) );
     }
   }
 
@@ -479,32 +529,39 @@ public class DemonCoreCommandWriter
   public static final int OP_A = 8;
   public static final int OP_B = 9;
 
-  private static final int TRIGSTATE_STATENUM_MASK = 0xF;
-  private static final int TRIGSTATE_OBTAIN_MASK = 0x000FFFFF;
-  private static final int TRIGSTATE_ELSE_BITOFS = 20;
-  private static final long TRIGSTATE_STOP_TIMER0 = 0x01000000L;
-  private static final long TRIGSTATE_STOP_TIMER1 = 0x02000000L;
-  private static final long TRIGSTATE_CLEAR_TIMER0 = 0x04000000L;
-  private static final long TRIGSTATE_CLEAR_TIMER1 = 0x08000000L;
-  private static final long TRIGSTATE_START_TIMER0 = 0x10000000L;
-  private static final long TRIGSTATE_START_TIMER1 = 0x20000000L;
-  private static final long TRIGSTATE_TRIGGER_FLAG = 0x40000000L;
-  private static final long TRIGSTATE_LASTSTATE = 0x80000000L;
+  static final int TRIGSTATE_STATENUM_MASK = 0xF;
+  static final int TRIGSTATE_OBTAIN_MASK = 0x000FFFFF;
+  static final int TRIGSTATE_ELSE_BITOFS = 20;
+  static final long TRIGSTATE_STOP_TIMER0 = 0x01000000L;
+  static final long TRIGSTATE_STOP_TIMER1 = 0x02000000L;
+  static final long TRIGSTATE_CLEAR_TIMER0 = 0x04000000L;
+  static final long TRIGSTATE_CLEAR_TIMER1 = 0x08000000L;
+  static final long TRIGSTATE_START_TIMER0 = 0x10000000L;
+  static final long TRIGSTATE_START_TIMER1 = 0x20000000L;
+  static final long TRIGSTATE_TRIGGER_FLAG = 0x40000000L;
+  static final long TRIGSTATE_LASTSTATE = 0x80000000L;
 
   // { NOP ANY AND NAND OR NOR XOR NXOR A B }
-  private static final int[] PAIR_VALUE = { 0x0000, 0xFFFF, 0x8000, 0x7FFF, 0xF888, 0x0777, 0x7888, 0x8777, 0x8888,
+  static final int[] PAIR_VALUE = { 0x0000, 0xFFFF, 0x8000, 0x7FFF, 0xF888, 0x0777, 0x7888, 0x8777, 0x8888,
       0xF000 };
-  private static final int[] MID_VALUE = { 0x0000, 0xFFFF, 0x8000, 0x7FFF, 0xFFFE, 0x0001, 0x0116, 0xFEE9, 0xEEEE,
+  static final int[] MID_VALUE = { 0x0000, 0xFFFF, 0x8000, 0x7FFF, 0xFFFE, 0x0001, 0x0116, 0xFEE9, 0xEEEE,
       0xFFF0 };
-  private static final int[] FINAL_VALUE = { 0x0000, 0xFFFF, 0x0008, 0x0007, 0x000E, 0x0001, 0x0006, 0x0009, 0x0002,
+  static final int[] FINAL_VALUE = { 0x0000, 0xFFFF, 0x0008, 0x0007, 0x000E, 0x0001, 0x0006, 0x0009, 0x0002,
       0x0004 };
 
-  private static final int CMD_SELECT = 0x9E;
-  private static final int CMD_CHAIN = 0x9F;
+  static final int CMD_SELECT = 0x9E;
+  static final int CMD_CHAIN = 0x9F;
+
+  /** The size of a single select or chain frame, in bytes. */
+  static final int FRAME_SIZE = 5;
 
   // VARIABLES
 
   private final DataOutputStream outputStream;
+  private final TriggerTermWriter termWriter;
+  private final TriggerSumSequenceWriter sumSequenceWriter;
+  private final Map<Integer, int[]> shadow;
+  private final List<IDemonCoreCommandListener> listeners;
 
   // CONSTRUCTORS
 
@@ -517,10 +574,282 @@ public class DemonCoreCommandWriter
   public DemonCoreCommandWriter( final DataOutputStream aOutputStream )
   {
     this.outputStream = aOutputStream;
+    this.termWriter = new TriggerTermWriter();
+    this.sumSequenceWriter = new TriggerSumSequenceWriter();
+    this.shadow = new HashMap<Integer, int[]>();
+    this.listeners = new CopyOnWriteArrayList<IDemonCoreCommandListener>();
   }
 
   // METHODS
 
+  /**
+   * Compiles the given trigger sequence states into a single, pre-encoded,
+   * program image.
+   * <p>
+   * The resulting program contains exactly the same select/chain frames as
+   * writing the sequence states one by one would, but allows them to be sent
+   * to one or more devices in a single transfer.
+   * </p>
+   * 
+   * @param aStates
+   *          the trigger sequence states to compile, cannot be
+   *          <code>null</code>.
+   * @return the compiled program, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given states were <code>null</code>.
+   */
+  public static DemonCoreProgram compile( final TriggerSequenceState... aStates )
+  {
+    return compile( Collections.<IDemonCoreCommandListener> emptyList(), aStates );
+  }
+
+  /**
+   * Compiles the given trigger sequence states into a single program image,
+   * reporting the time spent in each encoding phase to the given listeners.
+   * 
+   * @param aListeners
+   *          the listeners to report to, cannot be <code>null</code>;
+   * @param aStates
+   *          the trigger sequence states to compile, cannot be
+   *          <code>null</code>.
+   * @return the compiled program, never <code>null</code>.
+   */
+  static DemonCoreProgram compile( final List<IDemonCoreCommandListener> aListeners,
+      final TriggerSequenceState... aStates )
+  {
+    if ( aStates == null )
+    {
+      throw new IllegalArgumentException( "States cannot be null!" );
+    }
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 4096 * aStates.length );
+    final DemonCoreCommandWriter writer = new DemonCoreCommandWriter( new DataOutputStream( buffer ) );
+    writer.listeners.addAll( aListeners );
+
+    try
+    {
+      for ( TriggerSequenceState state : aStates )
+      {
+        writer.writeState( state );
+      }
+      writer.outputStream.flush();
+    }
+    catch ( IOException exception )
+    {
+      // Cannot happen; we're writing to memory...
+      throw new RuntimeException( exception );
+    }
+
+    return new DemonCoreProgram( buffer.toByteArray() );
+  }
+
+  /**
+   * Returns the LUT chain words of the given trigger sum, in the order in
+   * which they are written to the device.
+   * 
+   * @param aSum
+   *          the trigger sum to encode, cannot be <code>null</code>.
+   * @return the six chain words of the sum, never <code>null</code>.
+   */
+  static int[] getSumChain( final TriggerSum aSum )
+  {
+    final TriggerFinalTerm finalTerm = aSum.getFinalTerm();
+    final TriggerMidTerm midA = finalTerm.getTermA();
+    final TriggerMidTerm midB = finalTerm.getTermB();
+
+    return new int[] { getPairWord( midB.getTermD(), midB.getTermC() ), getPairWord( midB.getTermB(), midB.getTermA() ),
+        getPairWord( midA.getTermD(), midA.getTermC() ), getPairWord( midA.getTermB(), midA.getTermA() ),
+        FINAL_VALUE[finalTerm.getOffset()], ( MID_VALUE[midB.getOffset()] << 16 ) | MID_VALUE[midA.getOffset()] };
+  }
+
+  /**
+   * Returns the chain word for the upper 4 bits of a 36-bit timer value.
+   * 
+   * @param aValue
+   *          the timer value to encode.
+   * @return the chain word for the second timer LUT chain.
+   */
+  static int getTimerHighWord( final long aValue )
+  {
+    return ( int )( ( aValue >>> 32 ) & 0x0F );
+  }
+
+  /**
+   * Returns the chain word for the lower 32 bits of a 36-bit timer value.
+   * 
+   * @param aValue
+   *          the timer value to encode.
+   * @return the chain word for the first timer LUT chain.
+   */
+  static int getTimerLowWord( final long aValue )
+  {
+    return ( int )( aValue & 0xFFFFFFFF );
+  }
+
+  /**
+   * Replaces the occurrence count in a given sequence state chain word.
+   * 
+   * @param aStateWord
+   *          the sequence state chain word to modify;
+   * @param aOccurrenceCount
+   *          the new occurrence count, only the lower 20 bits are used.
+   * @return the modified sequence state chain word.
+   */
+  static int setOccurrenceCount( final int aStateWord, final int aOccurrenceCount )
+  {
+    return ( aStateWord & ~TRIGSTATE_OBTAIN_MASK ) | ( aOccurrenceCount & TRIGSTATE_OBTAIN_MASK );
+  }
+
+  /**
+   * Adds a listener that is informed about everything this writer sends.
+   * 
+   * @param aListener
+   *          the listener to add, cannot be <code>null</code>.
+   */
+  public void addListener( final IDemonCoreCommandListener aListener )
+  {
+    if ( aListener == null )
+    {
+      throw new IllegalArgumentException( "Listener cannot be null!" );
+    }
+    this.listeners.add( aListener );
+  }
+
+  /**
+   * Forgets everything this writer knows about the LUT chains of the device,
+   * causing the next {@link #writeChanges(DemonCoreProgram)} to write all
+   * chains. Should be called after the device is reset.
+   */
+  public void invalidateShadow()
+  {
+    this.shadow.clear();
+  }
+
+  /**
+   * Writes the given program in a single transfer to the output stream.
+   * 
+   * @param aProgram
+   *          the compiled program to write, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void write( final DemonCoreProgram aProgram ) throws IOException
+  {
+    if ( aProgram == null )
+    {
+      throw new IllegalArgumentException( "Program cannot be null!" );
+    }
+
+    final boolean notify = !this.listeners.isEmpty();
+    if ( notify )
+    {
+      firePhaseStarted( UploadPhase.TRANSFER, -1 );
+    }
+
+    final long start = System.nanoTime();
+
+    try
+    {
+      aProgram.writeTo( this.outputStream );
+      this.outputStream.flush();
+    }
+    catch ( IOException exception )
+    {
+      // The device may hold any part of the program; no longer trust what
+      // we think it holds...
+      invalidateShadow();
+      throw exception;
+    }
+
+    final long duration = System.nanoTime() - start;
+
+    this.shadow.putAll( aProgram.getChains() );
+
+    if ( notify )
+    {
+      fireFramesWritten( aProgram );
+      firePhaseCompleted( UploadPhase.TRANSFER, -1, duration );
+    }
+  }
+
+  /**
+   * Compiles the given trigger sequence states and writes them in a single
+   * transfer to the output stream.
+   * 
+   * @param aStates
+   *          the trigger sequence states to write, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see #compile(TriggerSequenceState...)
+   */
+  public void write( final TriggerSequenceState... aStates ) throws IOException
+  {
+    write( compile( this.listeners, aStates ) );
+  }
+
+  /**
+   * Writes only those LUT chains of the given program that differ from what
+   * this writer has previously written to the device.
+   * 
+   * @param aProgram
+   *          the compiled program to write, cannot be <code>null</code>.
+   * @return the number of LUT chains actually written, >= 0.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see #invalidateShadow()
+   */
+  public int writeChanges( final DemonCoreProgram aProgram ) throws IOException
+  {
+    if ( aProgram == null )
+    {
+      throw new IllegalArgumentException( "Program cannot be null!" );
+    }
+
+    final SortedMap<Integer, int[]> changes = new TreeMap<Integer, int[]>();
+    for ( Map.Entry<Integer, int[]> entry : aProgram.getChains().entrySet() )
+    {
+      if ( !Arrays.equals( entry.getValue(), this.shadow.get( entry.getKey() ) ) )
+      {
+        changes.put( entry.getKey(), entry.getValue() );
+      }
+    }
+
+    if ( !changes.isEmpty() )
+    {
+      write( DemonCoreProgram.encode( changes ) );
+    }
+
+    return changes.size();
+  }
+
+  /**
+   * Compiles the given trigger sequence states and writes only those LUT
+   * chains that differ from what this writer has previously written to the
+   * device.
+   * 
+   * @param aStates
+   *          the trigger sequence states to write, cannot be <code>null</code>.
+   * @return the number of LUT chains actually written, >= 0.
+   * @throws IOException
+   *           in case of I/O problems.
+   * @see #writeChanges(DemonCoreProgram)
+   */
+  public int writeChanges( final TriggerSequenceState... aStates ) throws IOException
+  {
+    return writeChanges( compile( this.listeners, aStates ) );
+  }
+
+  /**
+   * Removes a listener previously added to this writer.
+   * 
+   * @param aListener
+   *          the listener to remove, can be <code>null</code>.
+   */
+  public void removeListener( final IDemonCoreCommandListener aListener )
+  {
+    this.listeners.remove( aListener );
+  }
+
   /**
    * @param aValue
    * @throws IOException
@@ -541,4 +870,124 @@ public class DemonCoreCommandWriter
     this.outputStream.writeInt( aValue );
   }
 
+  /**
+   * Writes all terms and sums of the given trigger sequence state.
+   * 
+   * @param aState
+   *          the trigger sequence state to write, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  final void writeState( final TriggerSequenceState aState ) throws IOException
+  {
+    if ( this.listeners.isEmpty() )
+    {
+      aState.accept( this.termWriter );
+      aState.accept( this.sumSequenceWriter );
+      return;
+    }
+
+    // Same order as visiting the sequence state, but timed per phase...
+    final int stateNumber = aState.getStateNumber();
+
+    firePhaseStarted( UploadPhase.TERMS, stateNumber );
+    long start = System.nanoTime();
+    aState.accept( this.termWriter );
+    firePhaseCompleted( UploadPhase.TERMS, stateNumber, System.nanoTime() - start );
+
+    firePhaseStarted( UploadPhase.SUMS, stateNumber );
+    start = System.nanoTime();
+    aState.getTriggerSum( TriggerStateTerm.CAPTURE ).accept( this.sumSequenceWriter );
+    aState.getTriggerSum( TriggerStateTerm.HIT ).accept( this.sumSequenceWriter );
+    aState.getTriggerSum( TriggerStateTerm.ELSE ).accept( this.sumSequenceWriter );
+    firePhaseCompleted( UploadPhase.SUMS, stateNumber, System.nanoTime() - start );
+
+    firePhaseStarted( UploadPhase.STATES, stateNumber );
+    start = System.nanoTime();
+    this.sumSequenceWriter.visit( aState );
+    firePhaseCompleted( UploadPhase.STATES, stateNumber, System.nanoTime() - start );
+  }
+
+  /**
+   * Informs all listeners about the frames of the given program.
+   * 
+   * @param aProgram
+   *          the program whose frames are written, cannot be <code>null</code>.
+   */
+  private void fireFramesWritten( final DemonCoreProgram aProgram )
+  {
+    final ByteBuffer frames = aProgram.asByteBuffer();
+
+    int address = -1;
+    while ( frames.remaining() >= FRAME_SIZE )
+    {
+      final int cmd = frames.get() & 0xFF;
+      final int value = frames.getInt();
+
+      for ( IDemonCoreCommandListener listener : this.listeners )
+      {
+        if ( cmd == CMD_SELECT )
+        {
+          listener.selectWritten( value );
+        }
+        else
+        {
+          listener.chainWritten( address, value );
+        }
+      }
+
+      if ( cmd == CMD_SELECT )
+      {
+        address = value;
+      }
+    }
+  }
+
+  /**
+   * Informs all listeners that the given phase is completed.
+   * 
+   * @param aPhase
+   *          the completed phase;
+   * @param aStateNumber
+   *          the number of the sequence state, or -1 if not applicable;
+   * @param aDuration
+   *          the time spent in the phase, in nanoseconds.
+   */
+  private void firePhaseCompleted( final UploadPhase aPhase, final int aStateNumber, final long aDuration )
+  {
+    for ( IDemonCoreCommandListener listener : this.listeners )
+    {
+      listener.phaseCompleted( aPhase, aStateNumber, aDuration );
+    }
+  }
+
+  /**
+   * Informs all listeners that the given phase is started.
+   * 
+   * @param aPhase
+   *          the started phase;
+   * @param aStateNumber
+   *          the number of the sequence state, or -1 if not applicable.
+   */
+  private void firePhaseStarted( final UploadPhase aPhase, final int aStateNumber )
+  {
+    for ( IDemonCoreCommandListener listener : this.listeners )
+    {
+      listener.phaseStarted( aPhase, aStateNumber );
+    }
+  }
+
+  /**
+   * Returns the chain word holding the LUTs of two pair terms.
+   * 
+   * @param aUpper
+   *          the pair term whose LUT goes into the upper half of the word;
+   * @param aLower
+   *          the pair term whose LUT goes into the lower half of the word.
+   * @return the chain word.
+   */
+  private static int getPairWord( final TriggerPairTerm aUpper, final TriggerPairTerm aLower )
+  {
+    return ( PAIR_VALUE[aUpper.getOffset()] << 16 ) | PAIR_VALUE[aLower.getOffset()];
+  }
 }
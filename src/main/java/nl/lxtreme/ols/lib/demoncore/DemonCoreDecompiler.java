@@ -0,0 +1,715 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static nl.lxtreme.ols.lib.demoncore.DemonCoreCommandWriter.*;
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * Provides a decompiler that rebuilds the trigger model from the contents of
+ * the "Demon Core" LUT chains, for example, as obtained from a recorded upload
+ * by a {@link DemonCoreCommandReader}.
+ * <p>
+ * Every chain is decoded by inverting the LUT generators of the
+ * {@link DemonCoreCommandWriter}, after which the result is encoded again and
+ * compared to the original chain words. Chains that do not survive this round
+ * trip, have an unexpected length, or live at an address that is not used by
+ * the writer, cannot be represented by the trigger model and are reported by
+ * {@link #getUnrepresentableChains()}.
+ * </p>
+ * <p>
+ * Note that the LUT chains do not contain everything of the trigger model:
+ * the enabled/inverted state of the inputs of a trigger sum is not encoded,
+ * and neither are the rising/falling edge masks of an edge detector whose "no
+ * edge" mask is set. These are left at their defaults. The "no edge" mask is
+ * programmed into all LUTs of the edge detector, and is decoded as such.
+ * </p>
+ */
+public final class DemonCoreDecompiler
+{
+  // CONSTANTS
+
+  private static final int STATE_COUNT = 16;
+  private static final int SUM_BASE_ADDRESS = 0x40;
+
+  private static final int TERM_CHAIN_LENGTH = 4;
+  private static final int EDGE_CHAIN_LENGTH = 8;
+  private static final int RANGE_CHAIN_LENGTH = 16;
+  private static final int SUM_CHAIN_LENGTH = 6;
+
+  private static final int EDGE_NEITHER = ( ( EDGE_NEITHER1 | EDGE_NEITHER0 ) << 16 ) | EDGE_NEITHER1
+      | EDGE_NEITHER0;
+
+  // VARIABLES
+
+  private final SortedMap<Integer, int[]> chains;
+  private final Map<TriggerTermType, AbstractTriggerTerm> terms;
+  private final Map<Integer, TriggerSum> sums;
+  private final Map<Integer, TriggerSequenceState> states;
+  private final SortedSet<Integer> unrepresentable;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreDecompiler} instance for the LUT chains
+   * programmed by the given program.
+   * 
+   * @param aProgram
+   *          the program to decompile, cannot be <code>null</code>.
+   */
+  public DemonCoreDecompiler( final DemonCoreProgram aProgram )
+  {
+    this( getChains( aProgram ) );
+  }
+
+  /**
+   * Creates a new {@link DemonCoreDecompiler} instance.
+   * 
+   * @param aChains
+   *          the LUT chains to decompile, as map of chain address to chain
+   *          words, cannot be <code>null</code>.
+   */
+  public DemonCoreDecompiler( final Map<Integer, int[]> aChains )
+  {
+    if ( aChains == null )
+    {
+      throw new IllegalArgumentException( "Chains cannot be null!" );
+    }
+
+    this.chains = new TreeMap<Integer, int[]>( aChains );
+    this.terms = new EnumMap<TriggerTermType, AbstractTriggerTerm>( TriggerTermType.class );
+    this.sums = new HashMap<Integer, TriggerSum>();
+    this.states = new HashMap<Integer, TriggerSequenceState>();
+    this.unrepresentable = new TreeSet<Integer>( this.chains.keySet() );
+
+    decompile();
+  }
+
+  // METHODS
+
+  /**
+   * Returns the sequence state with the given state number, including its
+   * trigger sums and the input terms of these sums.
+   * 
+   * @param aStateNumber
+   *          the number of the sequence state to return, 0..15.
+   * @return a new sequence state, or <code>null</code> if the chain of the
+   *         requested state is not present. Sums whose chains are not present
+   *         are left at their defaults.
+   */
+  public TriggerSequenceState getState( final int aStateNumber )
+  {
+    final TriggerSequenceState state = this.states.get( Integer.valueOf( aStateNumber ) );
+    if ( state == null )
+    {
+      return null;
+    }
+
+    final TriggerSequenceState result = new TriggerSequenceState( state );
+    for ( TriggerStateTerm stateTerm : TriggerStateTerm.values() )
+    {
+      final TriggerSum sum = getTriggerSum( aStateNumber, stateTerm );
+      if ( sum != null )
+      {
+        result.setTriggerSum( stateTerm, sum );
+      }
+      else
+      {
+        copyTerms( result.getTriggerSum( stateTerm ) );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns all sequence states whose chains are present.
+   * 
+   * @return a list of new sequence states, ordered by their state number,
+   *         never <code>null</code>.
+   * @see #getState(int)
+   */
+  public List<TriggerSequenceState> getStates()
+  {
+    final List<TriggerSequenceState> result = new ArrayList<TriggerSequenceState>();
+    for ( int i = 0; i < STATE_COUNT; i++ )
+    {
+      final TriggerSequenceState state = getState( i );
+      if ( state != null )
+      {
+        result.add( state );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the input term of the given type.
+   * 
+   * @param aType
+   *          the type of the term to return, cannot be <code>null</code>.
+   * @return a new input term, or <code>null</code> if the chain(s) of the
+   *         requested term are not present or cannot be represented.
+   */
+  public AbstractTriggerTerm getTerm( final TriggerTermType aType )
+  {
+    if ( aType == null )
+    {
+      throw new IllegalArgumentException( "Type cannot be null!" );
+    }
+
+    final AbstractTriggerTerm term = this.terms.get( aType );
+    return ( term == null ) ? null : AbstractTriggerTerm.create( term );
+  }
+
+  /**
+   * Returns the trigger sum of the given sequence state and state term,
+   * including its input terms.
+   * 
+   * @param aStateNumber
+   *          the number of the sequence state, 0..15;
+   * @param aStateTerm
+   *          the state term of the sum to return, cannot be <code>null</code>.
+   * @return a new trigger sum, or <code>null</code> if the chain of the
+   *         requested sum is not present or cannot be represented.
+   */
+  public TriggerSum getTriggerSum( final int aStateNumber, final TriggerStateTerm aStateTerm )
+  {
+    if ( aStateTerm == null )
+    {
+      throw new IllegalArgumentException( "State term cannot be null!" );
+    }
+
+    final int address = SUM_BASE_ADDRESS + ( aStateNumber * 4 ) + aStateTerm.getOffset();
+    final TriggerSum sum = this.sums.get( Integer.valueOf( address ) );
+    if ( sum == null )
+    {
+      return null;
+    }
+
+    final TriggerSum result = new TriggerSum( sum );
+    copyTerms( result );
+    return result;
+  }
+
+  /**
+   * Returns the addresses of all chains that cannot be represented by the
+   * trigger model.
+   * 
+   * @return a sorted set of chain addresses, never <code>null</code>.
+   */
+  public SortedSet<Integer> getUnrepresentableChains()
+  {
+    return Collections.unmodifiableSortedSet( this.unrepresentable );
+  }
+
+  /**
+   * Returns whether all chains can be represented by the trigger model.
+   * 
+   * @return <code>true</code> if no chain is unrepresentable,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isRepresentable()
+  {
+    return this.unrepresentable.isEmpty();
+  }
+
+  /**
+   * Returns the chains of the given program.
+   */
+  private static SortedMap<Integer, int[]> getChains( final DemonCoreProgram aProgram )
+  {
+    if ( aProgram == null )
+    {
+      throw new IllegalArgumentException( "Program cannot be null!" );
+    }
+    return aProgram.getChains();
+  }
+
+  /**
+   * Decodes a single 16-bit LUT of a trigger term, which matches those 4-bit
+   * inputs <tt>i</tt> for which <tt>(i ^ value) & mask == 0</tt>.
+   * 
+   * @return the value in the lower, and the mask in the upper 4 bits, or -1 if
+   *         the LUT does not match any input.
+   */
+  private static int decodeNibble( final int aLut )
+  {
+    if ( aLut == 0 )
+    {
+      return -1;
+    }
+
+    int mask = 0;
+    for ( int bit = 0; bit < 4; bit++ )
+    {
+      for ( int i = 0; i < 16; i++ )
+      {
+        // A bit is masked if flipping it changes the outcome...
+        if ( ( ( aLut >>> i ) & 1 ) != ( ( aLut >>> ( i ^ ( 1 << bit ) ) ) & 1 ) )
+        {
+          mask |= ( 1 << bit );
+          break;
+        }
+      }
+    }
+
+    final int value = Integer.numberOfTrailingZeros( aLut ) & mask;
+    return ( mask << 4 ) | value;
+  }
+
+  /**
+   * Decodes the 16-bit LUT of an edge detector for two inputs.
+   * 
+   * @return the rising edge bits in bits 0..1, the falling edge bits in bits
+   *         2..3.
+   */
+  private static int decodeEdgeLut( final int aLut )
+  {
+    int result = 0;
+    if ( ( aLut & EDGE_RISE0 ) == EDGE_RISE0 )
+    {
+      result |= 0x01;
+    }
+    if ( ( aLut & EDGE_RISE1 ) == EDGE_RISE1 )
+    {
+      result |= 0x02;
+    }
+    if ( ( aLut & EDGE_FALL0 ) == EDGE_FALL0 )
+    {
+      result |= 0x04;
+    }
+    if ( ( aLut & EDGE_FALL1 ) == EDGE_FALL1 )
+    {
+      result |= 0x08;
+    }
+    return result;
+  }
+
+  /**
+   * Decodes a single chain of a range detector.
+   * 
+   * @return the mask and the (compressed) target value, or <code>null</code>
+   *         if the chain contains invalid LUTs.
+   */
+  private static long[] decodeRangeChain( final int[] aChain )
+  {
+    long mask = 0L;
+    long value = 0L;
+    for ( int i = 0; i < 32; i++ )
+    {
+      final int lut = ( ( i & 1 ) == 0 ) ? ( aChain[i >> 1] >>> 16 ) : ( aChain[i >> 1] & 0xFFFF );
+
+      mask <<= 1;
+      if ( lut == RANGE_XOR0 )
+      {
+        mask |= 1L;
+        value <<= 1;
+      }
+      else if ( lut == RANGE_XOR1 )
+      {
+        mask |= 1L;
+        value = ( value << 1 ) | 1L;
+      }
+      else if ( lut != RANGE_NOP )
+      {
+        return null;
+      }
+    }
+    return new long[] { mask, value };
+  }
+
+  /**
+   * Encodes the given model object and returns the resulting chains.
+   * 
+   * @param aVisitable
+   *          the model object to encode;
+   * @param aTerms
+   *          <code>true</code> to encode input terms, <code>false</code> to
+   *          encode sums and sequence states.
+   */
+  private static SortedMap<Integer, int[]> encode( final ITriggerVisitable aVisitable, final boolean aTerms )
+  {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final DemonCoreCommandWriter writer = new DemonCoreCommandWriter( new DataOutputStream( buffer ) );
+
+    try
+    {
+      aVisitable.accept( aTerms ? writer.new TriggerTermWriter() : writer.new TriggerSumSequenceWriter() );
+    }
+    catch ( IOException exception )
+    {
+      // Cannot happen; we're writing to memory...
+      throw new RuntimeException( exception );
+    }
+
+    return new DemonCoreProgram( buffer.toByteArray() ).getChains();
+  }
+
+  /**
+   * Returns the operation whose LUT value in the given table equals the given
+   * value.
+   * 
+   * @return the operation, or <code>null</code> if no operation matches.
+   */
+  private static TriggerOperation findOperation( final int[] aTable, final int aValue )
+  {
+    for ( TriggerOperation operation : TriggerOperation.values() )
+    {
+      if ( aTable[operation.getOffset()] == aValue )
+      {
+        return operation;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the state term with the given offset.
+   * 
+   * @return the state term, or <code>null</code> if no state term matches.
+   */
+  private static TriggerStateTerm findStateTerm( final int aOffset )
+  {
+    for ( TriggerStateTerm stateTerm : TriggerStateTerm.values() )
+    {
+      if ( stateTerm.getOffset() == aOffset )
+      {
+        return stateTerm;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Sets the operations of the pair terms of a mid term from a single chain
+   * word.
+   * 
+   * @return <code>true</code> if both operations are valid, <code>false</code>
+   *         otherwise.
+   */
+  private static boolean setPairOperations( final TriggerPairTerm aLower, final TriggerPairTerm aUpper,
+      final int aWord )
+  {
+    final TriggerOperation lower = findOperation( PAIR_VALUE, aWord & 0xFFFF );
+    final TriggerOperation upper = findOperation( PAIR_VALUE, aWord >>> 16 );
+    if ( ( lower == null ) || ( upper == null ) )
+    {
+      return false;
+    }
+
+    aLower.setOperation( lower );
+    aUpper.setOperation( upper );
+    return true;
+  }
+
+  /**
+   * Copies the parameters of all decompiled input terms into the given sum.
+   */
+  private void copyTerms( final TriggerSum aSum )
+  {
+    for ( AbstractTriggerTerm term : this.terms.values() )
+    {
+      aSum.getStore().copyInput( term.store, term.input, PackedTriggerSum.getInputIndex( term.getType() ) );
+    }
+  }
+
+  /**
+   * Decompiles all chains, keeping track of those that cannot be represented.
+   */
+  private void decompile()
+  {
+    for ( TriggerTermType type : TriggerTermType.values() )
+    {
+      final AbstractTriggerTerm term = decompileTerm( type );
+      if ( term != null )
+      {
+        this.terms.put( type, term );
+      }
+    }
+
+    for ( Map.Entry<Integer, int[]> entry : this.chains.entrySet() )
+    {
+      final int address = entry.getKey().intValue();
+      if ( address < STATE_COUNT )
+      {
+        decompileState( address, entry.getValue() );
+      }
+      else if ( address >= SUM_BASE_ADDRESS )
+      {
+        decompileSum( address, entry.getValue() );
+      }
+    }
+  }
+
+  /**
+   * Decompiles the chain of an edge detector.
+   */
+  private AbstractTriggerTerm decompileEdge( final TriggerTermType aType )
+  {
+    final int[] chain = this.chains.get( Integer.valueOf( aType.getLutChainAddress() ) );
+    if ( ( chain == null ) || ( chain.length != EDGE_CHAIN_LENGTH ) )
+    {
+      return null;
+    }
+
+    final TriggerEdgeDetector result = new TriggerEdgeDetector( aType );
+
+    boolean neither = true;
+    for ( int word : chain )
+    {
+      neither &= ( word == EDGE_NEITHER );
+    }
+
+    if ( neither )
+    {
+      result.setNoEdgeMask( 0xFFFFFFFF );
+      return result;
+    }
+
+    int rising = 0;
+    int falling = 0;
+    for ( int i = 0; i < EDGE_CHAIN_LENGTH; i++ )
+    {
+      // Each word holds two LUTs, the first one covers the upper two inputs...
+      final int upper = decodeEdgeLut( chain[i] >>> 16 );
+      final int lower = decodeEdgeLut( chain[i] & 0xFFFF );
+
+      rising = ( rising << 4 ) | ( ( upper & 0x03 ) << 2 ) | ( lower & 0x03 );
+      falling = ( falling << 4 ) | ( ( upper & 0x0C ) ) | ( ( lower & 0x0C ) >>> 2 );
+    }
+
+    result.setRisingEdgeMask( rising );
+    result.setFallingEdgeMask( falling );
+    return result;
+  }
+
+  /**
+   * Decompiles the two chains of a range detector.
+   */
+  private AbstractTriggerTerm decompileRange( final TriggerTermType aType )
+  {
+    final int[] lowerChain = this.chains.get( Integer.valueOf( aType.getLutChainAddress() ) );
+    final int[] upperChain = this.chains.get( Integer.valueOf( aType.getLutChainAddress() + 1 ) );
+    if ( ( lowerChain == null ) || ( lowerChain.length != RANGE_CHAIN_LENGTH ) || ( upperChain == null )
+        || ( upperChain.length != RANGE_CHAIN_LENGTH ) )
+    {
+      return null;
+    }
+
+    final long[] lower = decodeRangeChain( lowerChain );
+    final long[] upper = decodeRangeChain( upperChain );
+    if ( ( lower == null ) || ( upper == null ) || ( lower[0] != upper[0] ) )
+    {
+      return null;
+    }
+
+    // Only the lower "bitcount" bits of both targets are encoded...
+    final int mask = ( int )lower[0];
+    final long bits = ( 1L << Integer.bitCount( mask ) ) - 1L;
+
+    final TriggerRangeDetector result = new TriggerRangeDetector( aType );
+    result.setMask( mask );
+    result.setLowerTarget( ( int )( ( ~lower[1] & bits ) + 1L ) );
+    result.setUpperTarget( ( int )( ~upper[1] & bits ) );
+    return result;
+  }
+
+  /**
+   * Decompiles the chain of a single sequence state.
+   */
+  private void decompileState( final int aAddress, final int[] aChain )
+  {
+    if ( aChain.length != 1 )
+    {
+      return;
+    }
+
+    final int word = aChain[0];
+
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( aAddress );
+    state.setElseState( ( word >>> TRIGSTATE_ELSE_BITOFS ) & TRIGSTATE_STATENUM_MASK );
+    state.setOccurrenceCount( word & TRIGSTATE_OBTAIN_MASK );
+    state.setLastState( ( word & TRIGSTATE_LASTSTATE ) != 0 );
+    state.setRaiseTrigger( ( word & TRIGSTATE_TRIGGER_FLAG ) != 0 );
+    state.setStartTimer( ( ( word & TRIGSTATE_START_TIMER0 ) != 0 ? 1 : 0 )
+        | ( ( word & TRIGSTATE_START_TIMER1 ) != 0 ? 2 : 0 ) );
+    state.setStopTimer( ( ( word & TRIGSTATE_STOP_TIMER0 ) != 0 ? 1 : 0 )
+        | ( ( word & TRIGSTATE_STOP_TIMER1 ) != 0 ? 2 : 0 ) );
+    state.setClearTimer( ( ( word & TRIGSTATE_CLEAR_TIMER0 ) != 0 ? 1 : 0 )
+        | ( ( word & TRIGSTATE_CLEAR_TIMER1 ) != 0 ? 2 : 0 ) );
+
+    if ( Arrays.equals( aChain, encode( state, false /* aTerms */).get( Integer.valueOf( aAddress ) ) ) )
+    {
+      this.states.put( Integer.valueOf( aAddress ), state );
+      this.unrepresentable.remove( Integer.valueOf( aAddress ) );
+    }
+  }
+
+  /**
+   * Decompiles the chain of a single trigger sum.
+   */
+  private void decompileSum( final int aAddress, final int[] aChain )
+  {
+    final int stateNumber = ( aAddress - SUM_BASE_ADDRESS ) >> 2;
+    final TriggerStateTerm stateTerm = findStateTerm( ( aAddress - SUM_BASE_ADDRESS ) & 3 );
+    if ( ( stateNumber >= STATE_COUNT ) || ( stateTerm == null ) || ( aChain.length != SUM_CHAIN_LENGTH ) )
+    {
+      return;
+    }
+
+    final TriggerSum sum = new TriggerSum( stateTerm );
+    sum.setStateNumber( stateNumber );
+
+    final TriggerFinalTerm finalTerm = sum.getFinalTerm();
+    final TriggerMidTerm midA = finalTerm.getTermA();
+    final TriggerMidTerm midB = finalTerm.getTermB();
+
+    final TriggerOperation finalOp = findOperation( FINAL_VALUE, aChain[4] );
+    final TriggerOperation midAOp = findOperation( MID_VALUE, aChain[5] & 0xFFFF );
+    final TriggerOperation midBOp = findOperation( MID_VALUE, aChain[5] >>> 16 );
+    if ( ( finalOp == null ) || ( midAOp == null ) || ( midBOp == null ) )
+    {
+      return;
+    }
+
+    // Same order as written by the sum writer: mid B first, then mid A...
+    if ( !setPairOperations( midB.getTermC(), midB.getTermD(), aChain[0] )
+        || !setPairOperations( midB.getTermA(), midB.getTermB(), aChain[1] )
+        || !setPairOperations( midA.getTermC(), midA.getTermD(), aChain[2] )
+        || !setPairOperations( midA.getTermA(), midA.getTermB(), aChain[3] ) )
+    {
+      return;
+    }
+
+    finalTerm.setOperation( finalOp );
+    midA.setOperation( midAOp );
+    midB.setOperation( midBOp );
+
+    this.sums.put( Integer.valueOf( aAddress ), sum );
+    this.unrepresentable.remove( Integer.valueOf( aAddress ) );
+  }
+
+  /**
+   * Decompiles the chain(s) of the input term of the given type, and verifies
+   * the result by encoding it again.
+   * 
+   * @return the decompiled term, or <code>null</code> if its chains are not
+   *         present or cannot be represented.
+   */
+  private AbstractTriggerTerm decompileTerm( final TriggerTermType aType )
+  {
+    final AbstractTriggerTerm result;
+    switch ( aType )
+    {
+      case TERM_EDGE1:
+      case TERM_EDGE2:
+        result = decompileEdge( aType );
+        break;
+
+      case TERM_RANGE1:
+      case TERM_RANGE2:
+        result = decompileRange( aType );
+        break;
+
+      case TERM_TIMER1:
+      case TERM_TIMER2:
+        result = decompileTimer( aType );
+        break;
+
+      default:
+        result = decompileTriggerTerm( aType );
+        break;
+    }
+
+    if ( result == null )
+    {
+      return null;
+    }
+
+    final SortedMap<Integer, int[]> encoded = encode( result, true /* aTerms */);
+    for ( Map.Entry<Integer, int[]> entry : encoded.entrySet() )
+    {
+      if ( !Arrays.equals( entry.getValue(), this.chains.get( entry.getKey() ) ) )
+      {
+        return null;
+      }
+    }
+
+    this.unrepresentable.removeAll( encoded.keySet() );
+    return result;
+  }
+
+  /**
+   * Decompiles the two chains of a trigger timer.
+   */
+  private AbstractTriggerTerm decompileTimer( final TriggerTermType aType )
+  {
+    final int[] lowChain = this.chains.get( Integer.valueOf( aType.getLutChainAddress() ) );
+    final int[] highChain = this.chains.get( Integer.valueOf( aType.getLutChainAddress() + 1 ) );
+    if ( ( lowChain == null ) || ( lowChain.length != 1 ) || ( highChain == null ) || ( highChain.length != 1 ) )
+    {
+      return null;
+    }
+
+    final TriggerTimer result = new TriggerTimer( aType );
+    result.setValue( ( ( highChain[0] & 0xFFFFFFFFL ) << 32 ) | ( lowChain[0] & 0xFFFFFFFFL ) );
+    return result;
+  }
+
+  /**
+   * Decompiles the chain of a value/mask trigger term.
+   */
+  private AbstractTriggerTerm decompileTriggerTerm( final TriggerTermType aType )
+  {
+    final int[] chain = this.chains.get( Integer.valueOf( aType.getLutChainAddress() ) );
+    if ( ( chain == null ) || ( chain.length != TERM_CHAIN_LENGTH ) )
+    {
+      return null;
+    }
+
+    int value = 0;
+    int mask = 0;
+    for ( int i = 7; i >= 0; i-- )
+    {
+      // The most significant LUT pair is written first, the upper LUT of each
+      // pair covers the upper nibble...
+      final int word = chain[3 - ( i >> 1 )];
+      final int nibble = decodeNibble( ( ( i & 1 ) == 0 ) ? ( word & 0xFFFF ) : ( word >>> 16 ) );
+      if ( nibble < 0 )
+      {
+        return null;
+      }
+
+      value = ( value << 4 ) | ( nibble & 0x0F );
+      mask = ( mask << 4 ) | ( nibble >>> 4 );
+    }
+
+    final TriggerTerm result = new TriggerTerm( aType );
+    result.setValue( value );
+    result.setMask( mask );
+    return result;
+  }
+}
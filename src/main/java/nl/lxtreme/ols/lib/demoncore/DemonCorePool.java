@@ -0,0 +1,69 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.concurrent.*;
+
+
+/**
+ * Provides the fork-join pool that is shared by the parallel algorithms of
+ * this library, like {@link ParallelTriggerEmulator}, in case they are not
+ * given a pool of their own.
+ * <p>
+ * The pool is created upon first use, with one (daemon) worker per available
+ * processor.
+ * </p>
+ */
+public final class DemonCorePool
+{
+  // INNER TYPES
+
+  /**
+   * Lazily creates the default pool.
+   */
+  private static final class PoolHolder
+  {
+    static final ForkJoinPool POOL = new ForkJoinPool();
+  }
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCorePool} instance.
+   */
+  private DemonCorePool()
+  {
+    // Not used
+  }
+
+  // METHODS
+
+  /**
+   * Returns the shared pool.
+   * 
+   * @return the shared fork-join pool, never <code>null</code>.
+   */
+  public static ForkJoinPool getDefault()
+  {
+    return PoolHolder.POOL;
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+
+/**
+ * Provides an immutable, pre-encoded, image of a complete "Demon Core" trigger
+ * program, consisting of select and chain frames.
+ * <p>
+ * A program is created once by
+ * {@link DemonCoreCommandWriter#compile(TriggerSequenceState...)} and can be
+ * sent as often as needed (to as many devices as needed) without having to
+ * re-run the LUT generators.
+ * </p>
+ * <p>
+ * Next to the raw frames, a program also knows the resulting contents of each
+ * LUT chain it programs, that is, the chain words written after the
+ * <em>last</em> select of each chain address.
+ * </p>
+ */
+public final class DemonCoreProgram
+{
+  // VARIABLES
+
+  private final byte[] image;
+  private final TreeMap<Integer, int[]> chains;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreProgram} instance.
+   * 
+   * @param aImage
+   *          the encoded frames of this program, cannot be <code>null</code>.
+   *          This array is <em>not</em> copied!
+   */
+  DemonCoreProgram( final byte[] aImage )
+  {
+    this.image = aImage;
+    this.chains = decodeChains( aImage );
+  }
+
+  // METHODS
+
+  /**
+   * Creates a program that programs the given LUT chains, in order of their
+   * chain address.
+   * 
+   * @param aChains
+   *          the chain address and their chain words to program, cannot be
+   *          <code>null</code>.
+   * @return a new program, never <code>null</code>.
+   */
+  static DemonCoreProgram encode( final SortedMap<Integer, int[]> aChains )
+  {
+    int frames = 0;
+    for ( int[] words : aChains.values() )
+    {
+      frames += 1 + words.length;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate( frames * DemonCoreCommandWriter.FRAME_SIZE );
+    for ( Map.Entry<Integer, int[]> entry : aChains.entrySet() )
+    {
+      buffer.put( ( byte )DemonCoreCommandWriter.CMD_SELECT ).putInt( entry.getKey().intValue() );
+      for ( int word : entry.getValue() )
+      {
+        buffer.put( ( byte )DemonCoreCommandWriter.CMD_CHAIN ).putInt( word );
+      }
+    }
+
+    return new DemonCoreProgram( buffer.array() );
+  }
+
+  /**
+   * Decodes the given image into the resulting contents of each chain.
+   * 
+   * @param aImage
+   *          the image to decode, cannot be <code>null</code>.
+   * @return a sorted map with the chain words per chain address, never
+   *         <code>null</code>.
+   */
+  private static TreeMap<Integer, int[]> decodeChains( final byte[] aImage )
+  {
+    final TreeMap<Integer, int[]> result = new TreeMap<Integer, int[]>();
+
+    final ByteBuffer buffer = ByteBuffer.wrap( aImage );
+
+    Integer address = null;
+    int[] words = new int[16];
+    int count = 0;
+
+    while ( buffer.remaining() >= DemonCoreCommandWriter.FRAME_SIZE )
+    {
+      final int cmd = buffer.get() & 0xFF;
+      final int value = buffer.getInt();
+
+      if ( cmd == DemonCoreCommandWriter.CMD_SELECT )
+      {
+        if ( address != null )
+        {
+          result.put( address, Arrays.copyOf( words, count ) );
+        }
+        address = Integer.valueOf( value );
+        count = 0;
+      }
+      else if ( address != null )
+      {
+        if ( count == words.length )
+        {
+          words = Arrays.copyOf( words, count * 2 );
+        }
+        words[count++] = value;
+      }
+    }
+
+    if ( address != null )
+    {
+      result.put( address, Arrays.copyOf( words, count ) );
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a read-only view on the encoded frames of this program.
+   * 
+   * @return a read-only byte buffer, positioned at the first frame, never
+   *         <code>null</code>.
+   */
+  public ByteBuffer asByteBuffer()
+  {
+    return ByteBuffer.wrap( this.image ).asReadOnlyBuffer();
+  }
+
+  /**
+   * Creates a patch for this program that only changes the occurrence count
+   * of a single sequence state.
+   * <p>
+   * All other settings of the sequence state (else state, timer control,
+   * trigger flags) are taken from this program.
+   * </p>
+   * 
+   * @param aStateNumber
+   *          the number of the sequence state to patch, 0..15;
+   * @param aOccurrenceCount
+   *          the new occurrence count, only the lower 20 bits are used.
+   * @return a program with the select and chain frame for the sequence state
+   *         only, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case this program does not contain the given sequence state.
+   */
+  public DemonCoreProgram createOccurrenceCountPatch( final int aStateNumber, final int aOccurrenceCount )
+  {
+    final Integer address = Integer.valueOf( aStateNumber );
+    final int[] words = this.chains.get( address );
+    if ( ( aStateNumber < 0 ) || ( aStateNumber > 15 ) || ( words == null ) || ( words.length != 1 ) )
+    {
+      throw new IllegalArgumentException( "Invalid or unknown state number: " + aStateNumber );
+    }
+
+    final SortedMap<Integer, int[]> patch = new TreeMap<Integer, int[]>();
+    patch.put( address, new int[] { DemonCoreCommandWriter.setOccurrenceCount( words[0], aOccurrenceCount ) } );
+    return encode( patch );
+  }
+
+  /**
+   * Creates a patch for this program that only changes the value of a single
+   * trigger timer.
+   * 
+   * @param aTimer
+   *          the timer to patch, should be either
+   *          {@link TriggerTermType#TERM_TIMER1} or
+   *          {@link TriggerTermType#TERM_TIMER2};
+   * @param aValue
+   *          the new 36-bit timer value.
+   * @return a program with the select and chain frames for both timer chains
+   *         only, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given term type does not denote a timer.
+   */
+  public DemonCoreProgram createTimerPatch( final TriggerTermType aTimer, final long aValue )
+  {
+    if ( ( aTimer != TriggerTermType.TERM_TIMER1 ) && ( aTimer != TriggerTermType.TERM_TIMER2 ) )
+    {
+      throw new IllegalArgumentException( "Not a timer: " + aTimer );
+    }
+
+    final int address = aTimer.getLutChainAddress();
+
+    final SortedMap<Integer, int[]> patch = new TreeMap<Integer, int[]>();
+    patch.put( Integer.valueOf( address ), new int[] { DemonCoreCommandWriter.getTimerLowWord( aValue ) } );
+    patch.put( Integer.valueOf( address + 1 ), new int[] { DemonCoreCommandWriter.getTimerHighWord( aValue ) } );
+    return encode( patch );
+  }
+
+  /**
+   * Returns the chain words this program writes for the given chain address.
+   * 
+   * @param aAddress
+   *          the LUT chain address to return the chain words for.
+   * @return a copy of the chain words, or <code>null</code> if this program
+   *         does not program the given chain.
+   */
+  public int[] getChain( final int aAddress )
+  {
+    final int[] words = this.chains.get( Integer.valueOf( aAddress ) );
+    return ( words == null ) ? null : words.clone();
+  }
+
+  /**
+   * Returns all LUT chain addresses programmed by this program.
+   * 
+   * @return a sorted set of chain addresses, never <code>null</code>.
+   */
+  public SortedSet<Integer> getChainAddresses()
+  {
+    return Collections.unmodifiableSortedSet( this.chains.navigableKeySet() );
+  }
+
+  /**
+   * Returns the number of select and chain frames in this program.
+   * 
+   * @return the frame count, >= 0.
+   */
+  public int getFrameCount()
+  {
+    return this.image.length / DemonCoreCommandWriter.FRAME_SIZE;
+  }
+
+  /**
+   * Returns the size of this program.
+   * 
+   * @return the size, in bytes, >= 0.
+   */
+  public int getSize()
+  {
+    return this.image.length;
+  }
+
+  /**
+   * Returns a copy of the encoded frames of this program.
+   * 
+   * @return a new byte array with the encoded frames, never <code>null</code>.
+   */
+  public byte[] toByteArray()
+  {
+    return this.image.clone();
+  }
+
+  /**
+   * Returns the chain contents of this program.
+   * 
+   * @return a map of chain address to chain words, never <code>null</code>.
+   *         Neither the map nor the chain words should be modified!
+   */
+  SortedMap<Integer, int[]> getChains()
+  {
+    return this.chains;
+  }
+
+  /**
+   * Writes this program in a single bulk write to the given output stream.
+   * 
+   * @param aOutputStream
+   *          the output stream to write to, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void writeTo( final OutputStream aOutputStream ) throws IOException
+  {
+    aOutputStream.write( this.image );
+  }
+
+  /**
+   * Writes this program completely to the given channel.
+   * 
+   * @param aChannel
+   *          the channel to write to, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public void writeTo( final WritableByteChannel aChannel ) throws IOException
+  {
+    final ByteBuffer buffer = asByteBuffer();
+    while ( buffer.hasRemaining() )
+    {
+      aChannel.write( buffer );
+    }
+  }
+}
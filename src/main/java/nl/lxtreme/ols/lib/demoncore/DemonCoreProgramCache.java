@@ -0,0 +1,513 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+
+/**
+ * Provides a persistent cache of compiled trigger programs, keyed by a 64-bit
+ * fingerprint of the sequence states they are compiled from.
+ * <p>
+ * Each program is stored in a file of its own in the cache directory, named
+ * after its fingerprint. The cache is bounded in size: when it grows beyond
+ * its maximum, the least recently used programs are removed. The order of use
+ * survives restarts, as it is kept in the modification time of the files.
+ * </p>
+ * <p>
+ * Each file is stamped with {@link #ENCODER_VERSION}, which is derived from
+ * the constants of the {@link DemonCoreCommandWriter}. Files written by an
+ * encoder with different constants are treated as absent and are replaced on
+ * the next store.
+ * </p>
+ * <p>
+ * Note that fingerprints are not verified against the sequence states
+ * themselves: as with any 64-bit hash, two different sets of states could in
+ * theory share a fingerprint.
+ * </p>
+ * <p>
+ * This class is thread-safe, but the cache directory should not be shared by
+ * several instances at once.
+ * </p>
+ */
+public final class DemonCoreProgramCache
+{
+  // CONSTANTS
+
+  /** The extension of the files holding the cached programs. */
+  public static final String FILE_EXTENSION = ".dcp";
+
+  /**
+   * The version of the encoder, changes whenever the LUT values or frame
+   * layout of the {@link DemonCoreCommandWriter} change.
+   */
+  public static final long ENCODER_VERSION;
+
+  /** Bumped when the encoder changes in a way its constants do not reflect. */
+  private static final int ENCODER_REVISION = 1;
+
+  private static final int MAGIC = 0x44435031; // "DCP1"
+  private static final int HEADER_SIZE = 4 + 8 + 8 + 4;
+
+  private static final long SEED = 0x9E3779B97F4A7C15L;
+  private static final long MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+
+  static
+  {
+    long version = SEED;
+    version = mix( version, ENCODER_REVISION );
+    version = mix( version, DemonCoreCommandWriter.CMD_SELECT );
+    version = mix( version, DemonCoreCommandWriter.CMD_CHAIN );
+    version = mix( version, DemonCoreCommandWriter.FRAME_SIZE );
+    version = mix( version, DemonCoreCommandWriter.RANGE_XOR0 );
+    version = mix( version, DemonCoreCommandWriter.RANGE_XOR1 );
+    version = mix( version, DemonCoreCommandWriter.RANGE_NOP );
+    version = mix( version, DemonCoreCommandWriter.EDGE_RISE0 );
+    version = mix( version, DemonCoreCommandWriter.EDGE_RISE1 );
+    version = mix( version, DemonCoreCommandWriter.EDGE_FALL0 );
+    version = mix( version, DemonCoreCommandWriter.EDGE_FALL1 );
+    for ( int[] table : new int[][] { DemonCoreCommandWriter.PAIR_VALUE, DemonCoreCommandWriter.MID_VALUE,
+        DemonCoreCommandWriter.FINAL_VALUE } )
+    {
+      for ( int value : table )
+      {
+        version = mix( version, value );
+      }
+    }
+    for ( TriggerTermType type : TriggerTermType.values() )
+    {
+      version = mix( version, type.getLutChainAddress() );
+    }
+    ENCODER_VERSION = finish( version );
+  }
+
+  // VARIABLES
+
+  private final Path directory;
+  private final long maxSize;
+  /** The size of each cached program, in order of least to most recent use. */
+  private final LinkedHashMap<Long, Long> entries;
+
+  private long size;
+  private long hits;
+  private long misses;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreProgramCache} instance, picking up all
+   * programs already stored in the given directory.
+   * 
+   * @param aDirectory
+   *          the directory to store the programs in, cannot be
+   *          <code>null</code>. Is created if it does not exist;
+   * @param aMaxSize
+   *          the maximum number of bytes to store, > 0.
+   * @throws IOException
+   *           in case the directory could not be created or read.
+   */
+  public DemonCoreProgramCache( final Path aDirectory, final long aMaxSize ) throws IOException
+  {
+    if ( aDirectory == null )
+    {
+      throw new IllegalArgumentException( "Directory cannot be null!" );
+    }
+    if ( aMaxSize <= 0L )
+    {
+      throw new IllegalArgumentException( "Maximum size must be positive!" );
+    }
+
+    this.directory = Files.createDirectories( aDirectory );
+    this.maxSize = aMaxSize;
+    this.entries = new LinkedHashMap<Long, Long>( 16, 0.75f, true /* accessOrder */);
+
+    load();
+  }
+
+  // METHODS
+
+  /**
+   * Calculates a 64-bit fingerprint of the given sequence states.
+   * <p>
+   * The fingerprint covers everything of the sequence states and their sums,
+   * in the given order, and is stable across runs and JVMs.
+   * </p>
+   * 
+   * @param aStates
+   *          the sequence states to fingerprint, cannot be <code>null</code>.
+   * @return the fingerprint.
+   */
+  public static long fingerprint( final TriggerSequenceState... aStates )
+  {
+    if ( aStates == null )
+    {
+      throw new IllegalArgumentException( "States cannot be null!" );
+    }
+
+    long hash = mix( SEED, aStates.length );
+    for ( TriggerSequenceState state : aStates )
+    {
+      hash = mix( hash, state.getStateNumber() );
+      hash = mix( hash, state.getElseState() );
+      hash = mix( hash, state.getOccurrenceCount() );
+      hash = mix( hash, state.getStartTimer() );
+      hash = mix( hash, state.getStopTimer() );
+      hash = mix( hash, state.getClearTimer() );
+      hash = mix( hash, ( state.isLastState() ? 1 : 0 ) | ( state.isRaiseTrigger() ? 2 : 0 ) );
+
+      for ( TriggerStateTerm stateTerm : TriggerStateTerm.values() )
+      {
+        final TriggerSum sum = state.getTriggerSum( stateTerm );
+        hash = mix( hash, sum.getStateNumber() );
+        hash = mix( hash, sum.getStateTerm().ordinal() );
+
+        final PackedTriggerSum store = sum.getStore();
+        for ( int i = 0; i < PackedTriggerSum.OP_COUNT; i++ )
+        {
+          hash = mix( hash, store.getOperation( i ).ordinal() );
+        }
+        for ( int i = 0; i < PackedTriggerSum.INPUTS.length; i++ )
+        {
+          hash = mix( hash, store.getState( i ).ordinal() );
+          for ( int j = 0; j < PackedTriggerSum.PARAMS; j++ )
+          {
+            hash = mix( hash, store.getParameter( i, j ) );
+          }
+        }
+      }
+    }
+    return finish( hash );
+  }
+
+  /**
+   * Finalizes a hash, spreading all bits over the result.
+   */
+  private static long finish( final long aHash )
+  {
+    long result = aHash;
+    result ^= ( result >>> 33 );
+    result *= 0xFF51AFD7ED558CCDL;
+    result ^= ( result >>> 33 );
+    result *= 0xC4CEB9FE1A85EC53L;
+    return result ^ ( result >>> 33 );
+  }
+
+  /**
+   * Mixes a single value into a hash.
+   */
+  private static long mix( final long aHash, final int aValue )
+  {
+    return Long.rotateLeft( aHash ^ ( aValue * MULTIPLIER ), 31 ) * SEED;
+  }
+
+  /**
+   * Removes all programs from this cache.
+   * 
+   * @throws IOException
+   *           in case a file could not be removed.
+   */
+  public synchronized void clear() throws IOException
+  {
+    for ( Long fingerprint : new ArrayList<Long>( this.entries.keySet() ) )
+    {
+      remove( fingerprint );
+    }
+  }
+
+  /**
+   * Returns the cached program with the given fingerprint.
+   * 
+   * @param aFingerprint
+   *          the fingerprint of the program to return.
+   * @return the cached program, or <code>null</code> if it is not cached.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public synchronized DemonCoreProgram get( final long aFingerprint ) throws IOException
+  {
+    final Long key = Long.valueOf( aFingerprint );
+    if ( this.entries.get( key ) == null )
+    {
+      this.misses++;
+      return null;
+    }
+
+    final Path file = getFile( aFingerprint );
+
+    byte[] image;
+    try
+    {
+      image = readImage( file, aFingerprint );
+    }
+    catch ( NoSuchFileException exception )
+    {
+      image = null;
+    }
+
+    if ( image == null )
+    {
+      // Removed or damaged behind our back...
+      remove( key );
+      this.misses++;
+      return null;
+    }
+
+    Files.setLastModifiedTime( file, FileTime.fromMillis( System.currentTimeMillis() ) );
+    this.hits++;
+    return new DemonCoreProgram( image );
+  }
+
+  /**
+   * Returns the number of cached programs.
+   * 
+   * @return the entry count, >= 0.
+   */
+  public synchronized int getEntryCount()
+  {
+    return this.entries.size();
+  }
+
+  /**
+   * Returns the number of lookups that found a cached program.
+   * 
+   * @return the hit count, >= 0.
+   */
+  public synchronized long getHitCount()
+  {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of lookups that did not find a cached program.
+   * 
+   * @return the miss count, >= 0.
+   */
+  public synchronized long getMissCount()
+  {
+    return this.misses;
+  }
+
+  /**
+   * Returns the cached program for the given sequence states, or compiles and
+   * caches it if it is not cached yet.
+   * 
+   * @param aStates
+   *          the sequence states to return the program for, cannot be
+   *          <code>null</code>.
+   * @return the program, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public DemonCoreProgram getOrCompile( final TriggerSequenceState... aStates ) throws IOException
+  {
+    final long fingerprint = fingerprint( aStates );
+
+    DemonCoreProgram result = get( fingerprint );
+    if ( result == null )
+    {
+      result = DemonCoreCommandWriter.compile( aStates );
+      put( fingerprint, result );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of bytes currently stored by this cache.
+   * 
+   * @return the size, in bytes, >= 0.
+   */
+  public synchronized long getSize()
+  {
+    return this.size;
+  }
+
+  /**
+   * Stores the given program under the given fingerprint, removing the least
+   * recently used programs if the cache becomes too large.
+   * 
+   * @param aFingerprint
+   *          the fingerprint to store the program under;
+   * @param aProgram
+   *          the program to store, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public synchronized void put( final long aFingerprint, final DemonCoreProgram aProgram ) throws IOException
+  {
+    if ( aProgram == null )
+    {
+      throw new IllegalArgumentException( "Program cannot be null!" );
+    }
+
+    final Long key = Long.valueOf( aFingerprint );
+    final long fileSize = HEADER_SIZE + aProgram.getSize();
+    if ( fileSize > this.maxSize )
+    {
+      // Would evict everything, and still not fit...
+      return;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate( ( int )fileSize );
+    buffer.putInt( MAGIC ).putLong( ENCODER_VERSION ).putLong( aFingerprint ).putInt( aProgram.getSize() );
+    buffer.put( aProgram.asByteBuffer() );
+
+    // Write to a temporary file first, as not to leave damaged entries...
+    final Path file = getFile( aFingerprint );
+    final Path temp = Files.createTempFile( this.directory, null, ".tmp" );
+    try
+    {
+      Files.write( temp, buffer.array() );
+      Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+    finally
+    {
+      Files.deleteIfExists( temp );
+    }
+
+    final Long oldSize = this.entries.put( key, Long.valueOf( fileSize ) );
+    this.size += fileSize - ( ( oldSize == null ) ? 0L : oldSize.longValue() );
+
+    evict();
+  }
+
+  /**
+   * Removes the least recently used programs until this cache fits its
+   * maximum size.
+   */
+  private void evict() throws IOException
+  {
+    // Note: looking up entries would alter their order, hence the iteration...
+    final Iterator<Map.Entry<Long, Long>> iter = this.entries.entrySet().iterator();
+    while ( ( this.size > this.maxSize ) && iter.hasNext() )
+    {
+      final Map.Entry<Long, Long> entry = iter.next();
+      Files.deleteIfExists( getFile( entry.getKey().longValue() ) );
+      this.size -= entry.getValue().longValue();
+      iter.remove();
+    }
+  }
+
+  /**
+   * Returns the file for the program with the given fingerprint.
+   */
+  private Path getFile( final long aFingerprint )
+  {
+    return this.directory.resolve( String.format( "%016x%s", Long.valueOf( aFingerprint ), FILE_EXTENSION ) );
+  }
+
+  /**
+   * Picks up all valid programs in the cache directory, in order of their
+   * last use, and removes those written by another encoder version.
+   */
+  private void load() throws IOException
+  {
+    final List<Path> files = new ArrayList<Path>();
+    try ( DirectoryStream<Path> stream = Files.newDirectoryStream( this.directory, "*" + FILE_EXTENSION ) )
+    {
+      for ( Path file : stream )
+      {
+        files.add( file );
+      }
+    }
+
+    final Map<Path, FileTime> times = new HashMap<Path, FileTime>();
+    for ( Path file : files )
+    {
+      times.put( file, Files.getLastModifiedTime( file ) );
+    }
+    Collections.sort( files, new Comparator<Path>()
+    {
+      @Override
+      public int compare( final Path aFile1, final Path aFile2 )
+      {
+        return times.get( aFile1 ).compareTo( times.get( aFile2 ) );
+      }
+    } );
+
+    for ( Path file : files )
+    {
+      final String name = file.getFileName().toString();
+      final long fingerprint;
+      try
+      {
+        // Parsed in two halves, as to allow for "negative" fingerprints...
+        fingerprint = ( Long.parseLong( name.substring( 0, 8 ), 16 ) << 32 )
+            | Long.parseLong( name.substring( 8, 16 ), 16 );
+      }
+      catch ( RuntimeException exception )
+      {
+        continue;
+      }
+
+      if ( !file.equals( getFile( fingerprint ) ) || ( readImage( file, fingerprint ) == null ) )
+      {
+        Files.deleteIfExists( file );
+        continue;
+      }
+
+      final long fileSize = Files.size( file );
+      this.entries.put( Long.valueOf( fingerprint ), Long.valueOf( fileSize ) );
+      this.size += fileSize;
+    }
+
+    evict();
+  }
+
+  /**
+   * Reads the program image stored in the given file.
+   * 
+   * @return the image, or <code>null</code> if the file is damaged, or written
+   *         by another encoder version.
+   */
+  private byte[] readImage( final Path aFile, final long aFingerprint ) throws IOException
+  {
+    final ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( aFile ) );
+    if ( ( buffer.remaining() < HEADER_SIZE ) || ( buffer.getInt() != MAGIC )
+        || ( buffer.getLong() != ENCODER_VERSION ) || ( buffer.getLong() != aFingerprint )
+        || ( buffer.getInt() != buffer.remaining() )
+        || ( ( buffer.remaining() % DemonCoreCommandWriter.FRAME_SIZE ) != 0 ) )
+    {
+      return null;
+    }
+
+    final byte[] result = new byte[buffer.remaining()];
+    buffer.get( result );
+    return result;
+  }
+
+  /**
+   * Removes the program with the given fingerprint.
+   */
+  private void remove( final Long aFingerprint ) throws IOException
+  {
+    final Long fileSize = this.entries.remove( aFingerprint );
+    if ( fileSize != null )
+    {
+      this.size -= fileSize.longValue();
+    }
+    Files.deleteIfExists( getFile( aFingerprint.longValue() ) );
+  }
+}
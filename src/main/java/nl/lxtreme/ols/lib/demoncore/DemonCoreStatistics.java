@@ -0,0 +1,274 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.lang.management.*;
+import java.util.concurrent.atomic.*;
+
+import javax.management.*;
+
+
+/**
+ * Provides a {@link IDemonCoreCommandListener} that aggregates what is sent to
+ * the device, and publishes this as JMX MBean.
+ * <p>
+ * All counters are updated atomically, so a single instance can be shared by
+ * several writers and read by the MBean server at any time.
+ * </p>
+ */
+public final class DemonCoreStatistics implements IDemonCoreCommandListener, DemonCoreStatisticsMBean
+{
+  // CONSTANTS
+
+  /** The object name prefix this MBean is registered under. */
+  public static final String OBJECT_NAME_PREFIX = "nl.lxtreme.ols.lib.demoncore:type=DemonCoreStatistics";
+
+  private static final int CHAIN_ADDRESSES = 256;
+
+  // VARIABLES
+
+  private final AtomicLong selectFrames;
+  private final AtomicLong chainFrames;
+  private final AtomicLongArray chainFramesPerAddress;
+  private final AtomicLongArray phaseTimes;
+  private final AtomicLong uploads;
+  private final AtomicLong lastUploadTime;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreStatistics} instance.
+   */
+  public DemonCoreStatistics()
+  {
+    this.selectFrames = new AtomicLong();
+    this.chainFrames = new AtomicLong();
+    this.chainFramesPerAddress = new AtomicLongArray( CHAIN_ADDRESSES );
+    this.phaseTimes = new AtomicLongArray( UploadPhase.values().length );
+    this.uploads = new AtomicLong();
+    this.lastUploadTime = new AtomicLong();
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void chainWritten( final int aAddress, final int aValue )
+  {
+    this.chainFrames.incrementAndGet();
+    if ( ( aAddress >= 0 ) && ( aAddress < CHAIN_ADDRESSES ) )
+    {
+      this.chainFramesPerAddress.incrementAndGet( aAddress );
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getByteCount()
+  {
+    return ( getSelectFrameCount() + getChainFrameCount() ) * DemonCoreCommandWriter.FRAME_SIZE;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getChainFrameCount()
+  {
+    return this.chainFrames.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long[] getChainFrameCounts()
+  {
+    final long[] result = new long[CHAIN_ADDRESSES];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      result[i] = this.chainFramesPerAddress.get( i );
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getLastUploadTime()
+  {
+    return this.lastUploadTime.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getSelectFrameCount()
+  {
+    return this.selectFrames.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStatesTime()
+  {
+    return this.phaseTimes.get( UploadPhase.STATES.ordinal() );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getSumsTime()
+  {
+    return this.phaseTimes.get( UploadPhase.SUMS.ordinal() );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTermsTime()
+  {
+    return this.phaseTimes.get( UploadPhase.TERMS.ordinal() );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTransferTime()
+  {
+    return this.phaseTimes.get( UploadPhase.TRANSFER.ordinal() );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getUploadCount()
+  {
+    return this.uploads.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void phaseCompleted( final UploadPhase aPhase, final int aStateNumber, final long aDuration )
+  {
+    this.phaseTimes.addAndGet( aPhase.ordinal(), aDuration );
+    if ( aPhase == UploadPhase.TRANSFER )
+    {
+      this.uploads.incrementAndGet();
+      this.lastUploadTime.set( System.currentTimeMillis() );
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void phaseStarted( final UploadPhase aPhase, final int aStateNumber )
+  {
+    // NO-op
+  }
+
+  /**
+   * Registers this instance with the platform MBean server.
+   * 
+   * @param aName
+   *          the name to distinguish this instance with, cannot be
+   *          <code>null</code>.
+   * @return the object name this instance is registered under, never
+   *         <code>null</code>.
+   * @throws JMException
+   *           in case the registration failed, for example, because the name
+   *           is already in use.
+   */
+  public ObjectName register( final String aName ) throws JMException
+  {
+    if ( aName == null )
+    {
+      throw new IllegalArgumentException( "Name cannot be null!" );
+    }
+
+    final ObjectName name = new ObjectName( OBJECT_NAME_PREFIX + ",name=" + ObjectName.quote( aName ) );
+    ManagementFactory.getPlatformMBeanServer().registerMBean( this, name );
+    return name;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset()
+  {
+    this.selectFrames.set( 0L );
+    this.chainFrames.set( 0L );
+    for ( int i = 0; i < CHAIN_ADDRESSES; i++ )
+    {
+      this.chainFramesPerAddress.set( i, 0L );
+    }
+    for ( int i = 0; i < this.phaseTimes.length(); i++ )
+    {
+      this.phaseTimes.set( i, 0L );
+    }
+    this.uploads.set( 0L );
+    this.lastUploadTime.set( 0L );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void selectWritten( final int aAddress )
+  {
+    this.selectFrames.incrementAndGet();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void termCompleted( final TriggerTermType aType, final int aByteCount, final long aDuration )
+  {
+    // NO-op; included in the time of the terms phase
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void termStarted( final TriggerTermType aType )
+  {
+    // NO-op
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+/**
+ * Provides the management interface of {@link DemonCoreStatistics}.
+ */
+public interface DemonCoreStatisticsMBean
+{
+  // METHODS
+
+  /**
+   * Returns the total number of bytes sent to the device.
+   * 
+   * @return the byte count, >= 0.
+   */
+  long getByteCount();
+
+  /**
+   * Returns the number of chain frames sent to the device.
+   * 
+   * @return the chain frame count, >= 0.
+   */
+  long getChainFrameCount();
+
+  /**
+   * Returns the number of chain frames sent per LUT chain address.
+   * 
+   * @return an array of 256 chain frame counts, indexed by chain address.
+   */
+  long[] getChainFrameCounts();
+
+  /**
+   * Returns the time at which the last upload was completed.
+   * 
+   * @return the time in milliseconds since the epoch, or 0 if nothing was
+   *         uploaded yet.
+   */
+  long getLastUploadTime();
+
+  /**
+   * Returns the number of select frames sent to the device.
+   * 
+   * @return the select frame count, >= 0.
+   */
+  long getSelectFrameCount();
+
+  /**
+   * Returns the total time spent encoding the LUTs of sequence states.
+   * 
+   * @return the time, in nanoseconds.
+   */
+  long getStatesTime();
+
+  /**
+   * Returns the total time spent encoding the LUTs of trigger sums.
+   * 
+   * @return the time, in nanoseconds.
+   */
+  long getSumsTime();
+
+  /**
+   * Returns the total time spent encoding the LUTs of input terms.
+   * 
+   * @return the time, in nanoseconds.
+   */
+  long getTermsTime();
+
+  /**
+   * Returns the total time spent sending frames to the device.
+   * 
+   * @return the time, in nanoseconds.
+   */
+  long getTransferTime();
+
+  /**
+   * Returns the number of uploads to the device.
+   * 
+   * @return the upload count, >= 0.
+   */
+  long getUploadCount();
+
+  /**
+   * Resets all statistics to zero.
+   */
+  void reset();
+}
@@ -0,0 +1,377 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * Provides a handle to an upload started by a {@link DemonCoreUploader}.
+ * <p>
+ * An upload consists of two tasks connected by a bounded queue: an encoder
+ * that compiles one sequence state at a time, and a transmitter that writes
+ * the encoded frames to the channel. Encoding the next state therefore
+ * overlaps with the transmission of the previous one, while the queue bounds
+ * how far the encoder can run ahead.
+ * </p>
+ * <p>
+ * The result of an upload is the number of bytes written. Cancelling an upload
+ * stops both tasks; note that interrupting a thread that is blocked on an
+ * interruptible channel closes that channel.
+ * </p>
+ */
+public final class DemonCoreUpload implements Future<Long>
+{
+  // INNER TYPES
+
+  /**
+   * Compiles the sequence states one by one and queues their frames.
+   */
+  private final class Encoder implements Callable<Void>
+  {
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Void call() throws InterruptedException
+    {
+      boolean interrupted = false;
+      try
+      {
+        if ( program != null )
+        {
+          enqueue( program );
+        }
+        else
+        {
+          for ( TriggerSequenceState state : states )
+          {
+            enqueue( DemonCoreCommandWriter.compile( state ) );
+          }
+        }
+      }
+      catch ( InterruptedException exception )
+      {
+        // Only interrupted when the transmitter is done...
+        interrupted = true;
+        throw exception;
+      }
+      catch ( Throwable exception )
+      {
+        encodeFailure = exception;
+      }
+      finally
+      {
+        // Whatever happens, never leave the transmitter waiting...
+        if ( !interrupted )
+        {
+          queue.put( END_OF_UPLOAD );
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Queues the frames of the given program for transmission.
+     */
+    private void enqueue( final DemonCoreProgram aProgram ) throws InterruptedException
+    {
+      final ByteBuffer frames = aProgram.asByteBuffer();
+      bytesEncoded.addAndGet( frames.remaining() );
+      queue.put( frames );
+    }
+  }
+
+  /**
+   * Runs the transmitter, and stops the encoder once it is done.
+   */
+  private final class TransmitTask extends FutureTask<Long>
+  {
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link TransmitTask} instance.
+     */
+    TransmitTask()
+    {
+      super( new Transmitter() );
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void done()
+    {
+      // Do not leave the encoder blocked on a queue no one takes from...
+      DemonCoreUpload.this.encoder.cancel( true );
+    }
+
+    /**
+     * Completes this task with the given failure, unless it is already done.
+     */
+    void fail( final Throwable aFailure )
+    {
+      setException( aFailure );
+    }
+  }
+
+  /**
+   * Writes the queued frames to the channel.
+   */
+  private final class Transmitter implements Callable<Long>
+  {
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long call() throws IOException, InterruptedException
+    {
+      final long start = System.nanoTime();
+
+      ByteBuffer frames;
+      while ( ( frames = queue.take() ) != END_OF_UPLOAD )
+      {
+        while ( frames.hasRemaining() )
+        {
+          if ( Thread.interrupted() )
+          {
+            throw new InterruptedException();
+          }
+
+          // Write in chunks, as to keep track of the progress...
+          final ByteBuffer chunk = frames.duplicate();
+          chunk.limit( Math.min( frames.limit(), frames.position() + CHUNK_SIZE ) );
+          while ( chunk.hasRemaining() )
+          {
+            bytesWritten.addAndGet( channel.write( chunk ) );
+          }
+          frames.position( chunk.position() );
+        }
+      }
+
+      try
+      {
+        // The end marker is queued right before the encoder is done; wait
+        // for it, so the encoder is done once the upload is...
+        encoder.get();
+      }
+      catch ( ExecutionException exception )
+      {
+        throw new IOException( "Failed to encode trigger program!", exception.getCause() );
+      }
+
+      final Throwable failure = encodeFailure;
+      if ( failure instanceof Error )
+      {
+        throw ( Error )failure;
+      }
+      else if ( failure != null )
+      {
+        throw new IOException( "Failed to encode trigger program!", failure );
+      }
+
+      transmitTime = System.nanoTime() - start;
+      return Long.valueOf( bytesWritten.get() );
+    }
+  }
+
+  // CONSTANTS
+
+  /** Marks the end of the queued frames. */
+  private static final ByteBuffer END_OF_UPLOAD = ByteBuffer.allocate( 0 );
+
+  /** The number of bytes written at once, a multiple of the frame size. */
+  private static final int CHUNK_SIZE = 64 * DemonCoreCommandWriter.FRAME_SIZE;
+
+  // VARIABLES
+
+  private final WritableByteChannel channel;
+  private final TriggerSequenceState[] states;
+  private final DemonCoreProgram program;
+  private final BlockingQueue<ByteBuffer> queue;
+  private final AtomicLong bytesEncoded;
+  private final AtomicLong bytesWritten;
+  private final FutureTask<Void> encoder;
+  private final TransmitTask transmitter;
+
+  private volatile Throwable encodeFailure;
+  private volatile long transmitTime;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreUpload} instance.
+   * 
+   * @param aChannel
+   *          the channel to write to, cannot be <code>null</code>;
+   * @param aStates
+   *          the (private copies of the) sequence states to encode, or
+   *          <code>null</code> in case a program is given;
+   * @param aProgram
+   *          the already encoded program, or <code>null</code> in case
+   *          sequence states are given;
+   * @param aCapacity
+   *          the maximum number of encoded states awaiting transmission, > 0.
+   */
+  DemonCoreUpload( final WritableByteChannel aChannel, final TriggerSequenceState[] aStates,
+      final DemonCoreProgram aProgram, final int aCapacity )
+  {
+    this.channel = aChannel;
+    this.states = aStates;
+    this.program = aProgram;
+    // One extra slot for the end marker...
+    this.queue = new ArrayBlockingQueue<ByteBuffer>( aCapacity + 1 );
+    this.bytesEncoded = new AtomicLong();
+    this.bytesWritten = new AtomicLong();
+    this.transmitTime = -1L;
+
+    this.encoder = new FutureTask<Void>( new Encoder() );
+    this.transmitter = new TransmitTask();
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean cancel( final boolean aMayInterruptIfRunning )
+  {
+    final boolean result = this.transmitter.cancel( aMayInterruptIfRunning );
+    this.encoder.cancel( true );
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long get() throws InterruptedException, ExecutionException
+  {
+    return this.transmitter.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Long get( final long aTimeout, final TimeUnit aUnit ) throws InterruptedException, ExecutionException,
+      TimeoutException
+  {
+    return this.transmitter.get( aTimeout, aUnit );
+  }
+
+  /**
+   * Returns the number of bytes encoded so far.
+   * 
+   * @return the number of encoded bytes, >= 0.
+   */
+  public long getBytesEncoded()
+  {
+    return this.bytesEncoded.get();
+  }
+
+  /**
+   * Returns the number of bytes written to the channel so far.
+   * 
+   * @return the number of written bytes, >= 0.
+   */
+  public long getBytesWritten()
+  {
+    return this.bytesWritten.get();
+  }
+
+  /**
+   * Returns the time it took to transmit all frames.
+   * 
+   * @return the transmission time, in nanoseconds, or -1 if the upload did
+   *         not complete successfully (yet).
+   */
+  public long getTransmitTime()
+  {
+    return this.transmitTime;
+  }
+
+  /**
+   * Returns whether all sequence states are encoded.
+   * 
+   * @return <code>true</code> if encoding is finished (or cancelled),
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEncodingDone()
+  {
+    return this.encoder.isDone();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isCancelled()
+  {
+    return this.transmitter.isCancelled();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isDone()
+  {
+    return this.transmitter.isDone();
+  }
+
+  /**
+   * Starts the encoder and transmitter of this upload. In case the executor
+   * rejects either of them, this upload fails with a
+   * {@link RejectedExecutionException}.
+   * 
+   * @param aExecutor
+   *          the executor to run both tasks on, should be able to run them
+   *          concurrently.
+   */
+  void start( final Executor aExecutor )
+  {
+    // Start the encoder first, as the transmitter cannot do without it...
+    try
+    {
+      aExecutor.execute( this.encoder );
+      aExecutor.execute( this.transmitter );
+    }
+    catch ( RejectedExecutionException exception )
+    {
+      // Also cancels the encoder, if it was started...
+      this.transmitter.fail( exception );
+    }
+  }
+}
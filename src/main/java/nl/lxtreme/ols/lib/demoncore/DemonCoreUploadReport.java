@@ -0,0 +1,166 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+/**
+ * Provides the outcome of uploading a single program to several devices, as
+ * done by
+ * {@link DemonCoreUploader#uploadAll(java.util.List, long, java.util.concurrent.TimeUnit, DemonCoreProgram)}
+ * .
+ * <p>
+ * All per-device information is indexed in the same order as the channels
+ * given to the uploader.
+ * </p>
+ */
+public final class DemonCoreUploadReport
+{
+  // VARIABLES
+
+  private final long[] bytesWritten;
+  private final long[] transmitTimes;
+  private final Throwable[] failures;
+  private final long totalTime;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreUploadReport} instance.
+   */
+  DemonCoreUploadReport( final long[] aBytesWritten, final long[] aTransmitTimes, final Throwable[] aFailures,
+      final long aTotalTime )
+  {
+    this.bytesWritten = aBytesWritten;
+    this.transmitTimes = aTransmitTimes;
+    this.failures = aFailures;
+    this.totalTime = aTotalTime;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the number of bytes written to the given device.
+   * 
+   * @param aIndex
+   *          the index of the device.
+   * @return the number of bytes written, >= 0.
+   */
+  public long getBytesWritten( final int aIndex )
+  {
+    return this.bytesWritten[aIndex];
+  }
+
+  /**
+   * Returns the number of devices in this report.
+   * 
+   * @return the device count, >= 0.
+   */
+  public int getDeviceCount()
+  {
+    return this.failures.length;
+  }
+
+  /**
+   * Returns why the upload to the given device failed.
+   * 
+   * @param aIndex
+   *          the index of the device.
+   * @return the cause of the failure, a
+   *         {@link java.util.concurrent.TimeoutException} in case the device
+   *         did not complete in time, or <code>null</code> if the upload
+   *         succeeded.
+   */
+  public Throwable getFailure( final int aIndex )
+  {
+    return this.failures[aIndex];
+  }
+
+  /**
+   * Returns the number of devices the upload failed for.
+   * 
+   * @return the failure count, >= 0.
+   */
+  public int getFailureCount()
+  {
+    int result = 0;
+    for ( Throwable failure : this.failures )
+    {
+      if ( failure != null )
+      {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the transmission time of the slowest successful device.
+   * 
+   * @return the transmission time, in nanoseconds, >= 0.
+   */
+  public long getMaxTransmitTime()
+  {
+    long result = 0L;
+    for ( int i = 0; i < this.failures.length; i++ )
+    {
+      if ( this.failures[i] == null )
+      {
+        result = Math.max( result, this.transmitTimes[i] );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the total time of the upload, from compilation until all devices
+   * completed, failed or timed out.
+   * 
+   * @return the total time, in nanoseconds.
+   */
+  public long getTotalTime()
+  {
+    return this.totalTime;
+  }
+
+  /**
+   * Returns the time it took to transmit the program to the given device.
+   * 
+   * @param aIndex
+   *          the index of the device.
+   * @return the transmission time, in nanoseconds, or -1 if the upload to this
+   *         device failed.
+   */
+  public long getTransmitTime( final int aIndex )
+  {
+    return this.transmitTimes[aIndex];
+  }
+
+  /**
+   * Returns whether the upload succeeded for all devices.
+   * 
+   * @return <code>true</code> if no upload failed, <code>false</code>
+   *         otherwise.
+   */
+  public boolean isSuccessful()
+  {
+    return getFailureCount() == 0;
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * Uploads trigger programs asynchronously to a channel.
+ * <p>
+ * Unlike {@link DemonCoreCommandWriter}, which blocks its caller until all
+ * frames are written, this uploader returns immediately with a
+ * {@link DemonCoreUpload} that can be used to follow the progress of, wait
+ * for, or cancel the upload. Each upload uses two tasks of the executor: one
+ * encoding the sequence states and one transmitting them.
+ * </p>
+ * <p>
+ * A single program can also be uploaded to many devices at once. It is
+ * compiled only once and then written to all devices concurrently, so the
+ * total time tracks the slowest device rather than the sum of all devices.
+ * </p>
+ */
+public final class DemonCoreUploader
+{
+  // INNER TYPES
+
+  /**
+   * Lazily creates the default executor, shared by all uploaders.
+   */
+  private static final class ExecutorHolder
+  {
+    static final Executor EXECUTOR = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread( final Runnable aRunnable )
+      {
+        final Thread result = new Thread( aRunnable, "DemonCoreUploader-" + this.count.incrementAndGet() );
+        result.setDaemon( true );
+        return result;
+      }
+    } );
+  }
+
+  // CONSTANTS
+
+  /** The default number of encoded states that may await transmission. */
+  private static final int DEFAULT_CAPACITY = 2;
+
+  // VARIABLES
+
+  private final Executor executor;
+  private final int capacity;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link DemonCoreUploader} instance that runs its uploads on
+   * a default, shared, pool of daemon threads. Idle threads of this pool are
+   * released after a while.
+   */
+  public DemonCoreUploader()
+  {
+    this( ExecutorHolder.EXECUTOR, DEFAULT_CAPACITY );
+  }
+
+  /**
+   * Creates a new {@link DemonCoreUploader} instance.
+   * 
+   * @param aExecutor
+   *          the executor to run the uploads on, cannot be <code>null</code>.
+   *          Should be able to run (at least) two tasks concurrently;
+   * @param aCapacity
+   *          the maximum number of encoded sequence states that may await
+   *          transmission, > 0.
+   * @throws IllegalArgumentException
+   *           in case the executor was <code>null</code> or the capacity was
+   *           not positive.
+   */
+  public DemonCoreUploader( final Executor aExecutor, final int aCapacity )
+  {
+    if ( aExecutor == null )
+    {
+      throw new IllegalArgumentException( "Executor cannot be null!" );
+    }
+    if ( aCapacity <= 0 )
+    {
+      throw new IllegalArgumentException( "Capacity must be positive!" );
+    }
+
+    this.executor = aExecutor;
+    this.capacity = aCapacity;
+  }
+
+  // METHODS
+
+  /**
+   * Starts uploading the given, already compiled, program.
+   * 
+   * @param aChannel
+   *          the channel to write to, cannot be <code>null</code>;
+   * @param aProgram
+   *          the program to upload, cannot be <code>null</code>.
+   * @return the started upload, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   */
+  public DemonCoreUpload upload( final WritableByteChannel aChannel, final DemonCoreProgram aProgram )
+  {
+    if ( aChannel == null )
+    {
+      throw new IllegalArgumentException( "Channel cannot be null!" );
+    }
+    if ( aProgram == null )
+    {
+      throw new IllegalArgumentException( "Program cannot be null!" );
+    }
+
+    final DemonCoreUpload result = new DemonCoreUpload( aChannel, null, aProgram, this.capacity );
+    result.start( this.executor );
+    return result;
+  }
+
+  /**
+   * Starts encoding and uploading the given trigger sequence states.
+   * <p>
+   * The sequence states are copied before this method returns, so they can be
+   * modified freely while the upload is in progress. The frames written are
+   * exactly those of {@link DemonCoreCommandWriter#compile(TriggerSequenceState...)}.
+   * </p>
+   * 
+   * @param aChannel
+   *          the channel to write to, cannot be <code>null</code>;
+   * @param aStates
+   *          the trigger sequence states to upload, cannot be
+   *          <code>null</code>.
+   * @return the started upload, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   */
+  public DemonCoreUpload upload( final WritableByteChannel aChannel, final TriggerSequenceState... aStates )
+  {
+    if ( aChannel == null )
+    {
+      throw new IllegalArgumentException( "Channel cannot be null!" );
+    }
+    if ( aStates == null )
+    {
+      throw new IllegalArgumentException( "States cannot be null!" );
+    }
+
+    final TriggerSequenceState[] states = new TriggerSequenceState[aStates.length];
+    for ( int i = 0; i < states.length; i++ )
+    {
+      states[i] = new TriggerSequenceState( aStates[i] );
+    }
+
+    final DemonCoreUpload result = new DemonCoreUpload( aChannel, states, null, this.capacity );
+    result.start( this.executor );
+    return result;
+  }
+
+  /**
+   * Uploads the given program to all given channels concurrently, and waits
+   * until all uploads are completed, failed or timed out.
+   * <p>
+   * Each device takes two tasks of the executor of this uploader, which
+   * should be able to run all of them concurrently in order for the devices
+   * to be programmed in parallel.
+   * </p>
+   * 
+   * @param aChannels
+   *          the channels of the devices to upload to, cannot be
+   *          <code>null</code>;
+   * @param aTimeout
+   *          the maximum time each device may take, counted from the start of
+   *          all uploads;
+   * @param aUnit
+   *          the unit of the timeout, cannot be <code>null</code>;
+   * @param aProgram
+   *          the program to upload, cannot be <code>null</code>.
+   * @return a report with the outcome per device, never <code>null</code>.
+   *         Uploads that time out are cancelled.
+   * @throws InterruptedException
+   *           in case the calling thread was interrupted while waiting; all
+   *           pending uploads are cancelled in that case.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   */
+  public DemonCoreUploadReport uploadAll( final List<? extends WritableByteChannel> aChannels, final long aTimeout,
+      final TimeUnit aUnit, final DemonCoreProgram aProgram ) throws InterruptedException
+  {
+    if ( aChannels == null )
+    {
+      throw new IllegalArgumentException( "Channels cannot be null!" );
+    }
+    if ( aUnit == null )
+    {
+      throw new IllegalArgumentException( "Unit cannot be null!" );
+    }
+    return uploadAll( aChannels, aUnit.toNanos( aTimeout ), System.nanoTime(), aProgram );
+  }
+
+  /**
+   * Compiles the given trigger sequence states once, and uploads the result to
+   * all given channels concurrently.
+   * 
+   * @param aChannels
+   *          the channels of the devices to upload to, cannot be
+   *          <code>null</code>;
+   * @param aTimeout
+   *          the maximum time each device may take, counted from the start of
+   *          all uploads;
+   * @param aUnit
+   *          the unit of the timeout, cannot be <code>null</code>;
+   * @param aStates
+   *          the trigger sequence states to upload, cannot be
+   *          <code>null</code>.
+   * @return a report with the outcome per device, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the calling thread was interrupted while waiting.
+   * @see #uploadAll(List, long, TimeUnit, DemonCoreProgram)
+   */
+  public DemonCoreUploadReport uploadAll( final List<? extends WritableByteChannel> aChannels, final long aTimeout,
+      final TimeUnit aUnit, final TriggerSequenceState... aStates ) throws InterruptedException
+  {
+    if ( aChannels == null )
+    {
+      throw new IllegalArgumentException( "Channels cannot be null!" );
+    }
+    if ( aUnit == null )
+    {
+      throw new IllegalArgumentException( "Unit cannot be null!" );
+    }
+
+    final long start = System.nanoTime();
+    return uploadAll( aChannels, aUnit.toNanos( aTimeout ), start, DemonCoreCommandWriter.compile( aStates ) );
+  }
+
+  /**
+   * Uploads the given program to all given channels concurrently.
+   */
+  private DemonCoreUploadReport uploadAll( final List<? extends WritableByteChannel> aChannels,
+      final long aTimeout, final long aStart, final DemonCoreProgram aProgram ) throws InterruptedException
+  {
+    final int count = aChannels.size();
+
+    final DemonCoreUpload[] uploads = new DemonCoreUpload[count];
+    for ( int i = 0; i < count; i++ )
+    {
+      uploads[i] = upload( aChannels.get( i ), aProgram );
+    }
+
+    final long[] bytesWritten = new long[count];
+    final long[] transmitTimes = new long[count];
+    final Throwable[] failures = new Throwable[count];
+
+    // All uploads run concurrently, so they share a single deadline...
+    final long deadline = aStart + aTimeout;
+    try
+    {
+      for ( int i = 0; i < count; i++ )
+      {
+        try
+        {
+          uploads[i].get( Math.max( 0L, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS );
+        }
+        catch ( TimeoutException exception )
+        {
+          uploads[i].cancel( true );
+          failures[i] = exception;
+        }
+        catch ( ExecutionException exception )
+        {
+          failures[i] = exception.getCause();
+        }
+        catch ( CancellationException exception )
+        {
+          failures[i] = exception;
+        }
+
+        bytesWritten[i] = uploads[i].getBytesWritten();
+        transmitTimes[i] = ( failures[i] == null ) ? uploads[i].getTransmitTime() : -1L;
+      }
+    }
+    catch ( InterruptedException exception )
+    {
+      for ( DemonCoreUpload upload : uploads )
+      {
+        upload.cancel( true );
+      }
+      throw exception;
+    }
+
+    return new DemonCoreUploadReport( bytesWritten, transmitTimes, failures, System.nanoTime() - aStart );
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+/**
+ * Provides a listener for the frames a {@link DemonCoreCommandWriter} sends,
+ * and the time it spends on doing so.
+ * <p>
+ * Listeners are called on the thread that uses the writer, and should
+ * therefore return quickly.
+ * </p>
+ */
+public interface IDemonCoreCommandListener
+{
+  // METHODS
+
+  /**
+   * Called for each chain frame that is sent to the device.
+   * 
+   * @param aAddress
+   *          the address of the LUT chain that was selected at the time;
+   * @param aValue
+   *          the chain word that was sent.
+   */
+  void chainWritten( int aAddress, int aValue );
+
+  /**
+   * Called when a phase of an upload is completed.
+   * 
+   * @param aPhase
+   *          the completed phase, never <code>null</code>;
+   * @param aStateNumber
+   *          the number of the sequence state being encoded, 0..15, or -1 for
+   *          {@link UploadPhase#TRANSFER};
+   * @param aDuration
+   *          the time spent in this phase, in nanoseconds.
+   */
+  void phaseCompleted( UploadPhase aPhase, int aStateNumber, long aDuration );
+
+  /**
+   * Called when a phase of an upload is started.
+   * 
+   * @param aPhase
+   *          the started phase, never <code>null</code>;
+   * @param aStateNumber
+   *          the number of the sequence state being encoded, 0..15, or -1 for
+   *          {@link UploadPhase#TRANSFER}.
+   */
+  void phaseStarted( UploadPhase aPhase, int aStateNumber );
+
+  /**
+   * Called for each select frame that is sent to the device.
+   * 
+   * @param aAddress
+   *          the address of the LUT chain that is selected.
+   */
+  void selectWritten( int aAddress );
+
+  /**
+   * Called when the LUT of an input term is encoded.
+   * 
+   * @param aType
+   *          the type of the encoded term, never <code>null</code>;
+   * @param aByteCount
+   *          the number of bytes the LUT was encoded in;
+   * @param aDuration
+   *          the time spent encoding the LUT, in nanoseconds.
+   */
+  void termCompleted( TriggerTermType aType, int aByteCount, long aDuration );
+
+  /**
+   * Called when the encoding of the LUT of an input term is started.
+   * 
+   * @param aType
+   *          the type of the term to encode, never <code>null</code>.
+   */
+  void termStarted( TriggerTermType aType );
+}
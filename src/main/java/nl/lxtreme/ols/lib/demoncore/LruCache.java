@@ -0,0 +1,145 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.*;
+
+
+/**
+ * Provides a small, bounded, cache that evicts its least recently used entry
+ * when it is full.
+ * <p>
+ * Values are meant to be computed outside the cache, so that no lock is held
+ * while doing so: look up a value with {@link #get(Object)}, and if it is not
+ * present, compute it and add it with {@link #putIfAbsent(Object, Object)}.
+ * At worst, a value is computed more than once.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * 
+ * @param <K>
+ *          the type of the keys, which should be immutable;
+ * @param <V>
+ *          the type of the values.
+ */
+public final class LruCache<K, V>
+{
+  // VARIABLES
+
+  private final int maxSize;
+  private final Map<K, V> entries;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link LruCache} instance.
+   * 
+   * @param aMaxSize
+   *          the maximum number of entries to cache, > 0.
+   * @throws IllegalArgumentException
+   *           in case the given size was not positive.
+   */
+  public LruCache( final int aMaxSize )
+  {
+    if ( aMaxSize <= 0 )
+    {
+      throw new IllegalArgumentException( "Max size should be positive!" );
+    }
+
+    this.maxSize = aMaxSize;
+    this.entries = new LinkedHashMap<K, V>( 16, 0.75f, true /* accessOrder */)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<K, V> aEldest )
+      {
+        return size() > LruCache.this.maxSize;
+      }
+    };
+  }
+
+  // METHODS
+
+  /**
+   * Removes all cached entries.
+   */
+  public synchronized void clear()
+  {
+    this.entries.clear();
+  }
+
+  /**
+   * Returns the value cached for the given key, marking it as most recently
+   * used.
+   * 
+   * @param aKey
+   *          the key to return the value for, cannot be <code>null</code>.
+   * @return the cached value, or <code>null</code> if no value is cached for
+   *         the given key.
+   */
+  public synchronized V get( final K aKey )
+  {
+    return this.entries.get( aKey );
+  }
+
+  /**
+   * Returns the number of cached entries.
+   * 
+   * @return the cache size, >= 0.
+   */
+  public synchronized int getSize()
+  {
+    return this.entries.size();
+  }
+
+  /**
+   * Caches the given value for the given key, unless a value is already cached
+   * for it.
+   * 
+   * @param aKey
+   *          the key to cache the value for, cannot be <code>null</code>;
+   * @param aValue
+   *          the value to cache, cannot be <code>null</code>.
+   * @return the value that is cached for the given key after this call, which
+   *         is the earlier cached value if there was one, never
+   *         <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   */
+  public synchronized V putIfAbsent( final K aKey, final V aValue )
+  {
+    if ( ( aKey == null ) || ( aValue == null ) )
+    {
+      throw new IllegalArgumentException( "Key and value cannot be null!" );
+    }
+
+    final V result = this.entries.get( aKey );
+    if ( result != null )
+    {
+      return result;
+    }
+    this.entries.put( aKey, aValue );
+    return aValue;
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static nl.lxtreme.ols.lib.demoncore.TriggerTermType.*;
+
+import java.util.*;
+
+
+/**
+ * Provides the storage of a trigger sum as a few primitive arrays.
+ * <p>
+ * The final, mid and pair terms, as well as the input terms, of a
+ * {@link TriggerSum} are merely views on an instance of this class, denoting
+ * their operation or input by an index. Copying a sum therefore only takes a
+ * few array clones, and comparing two sums a few array compares.
+ * </p>
+ * <p>
+ * The operations are stored as ordinals in the order: final term, mid terms A
+ * and B, pair terms A through H. The input states are stored as ordinals per
+ * input, and each input has three parameter words:
+ * </p>
+ * <ul>
+ * <li>bit-value terms: value, mask;</li>
+ * <li>range detectors: mask, lower target, upper target;</li>
+ * <li>edge detectors: rising, falling and no-edge mask;</li>
+ * <li>timers: the lower and upper 32 bits of the value.</li>
+ * </ul>
+ */
+final class PackedTriggerSum
+{
+  // CONSTANTS
+
+  /** The order in which the terms are inputted. */
+  static final TriggerTermType[] INPUTS = { TERM_A, TERM_B, TERM_C, TERM_RANGE1, TERM_D, TERM_EDGE1, TERM_E,
+      TERM_TIMER1, TERM_F, TERM_G, TERM_H, TERM_RANGE2, TERM_I, TERM_EDGE2, TERM_J, TERM_TIMER2 };
+
+  static final int FINAL_OP = 0;
+  static final int MID_OPS = 1;
+  static final int PAIR_OPS = 3;
+  static final int OP_COUNT = 11;
+
+  /** The number of parameter words per input. */
+  static final int PARAMS = 3;
+
+  private static final TriggerOperation[] OPERATIONS = TriggerOperation.values();
+  private static final TriggerInputState[] STATES = TriggerInputState.values();
+
+  /** Maps the ordinal of a term type to its input index. */
+  private static final int[] INPUT_INDEX = new int[TriggerTermType.values().length];
+
+  static
+  {
+    for ( int i = 0; i < INPUTS.length; i++ )
+    {
+      INPUT_INDEX[INPUTS[i].ordinal()] = i;
+    }
+  }
+
+  // VARIABLES
+
+  private final byte[] operations;
+  private final byte[] states;
+  private final int[] parameters;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new, reset, {@link PackedTriggerSum} instance.
+   */
+  PackedTriggerSum()
+  {
+    this( OP_COUNT, INPUTS.length );
+  }
+
+  /**
+   * Creates a new {@link PackedTriggerSum} instance as an exact copy of the
+   * given instance.
+   * 
+   * @param aSum
+   *          the packed sum to copy, cannot be <code>null</code>.
+   */
+  PackedTriggerSum( final PackedTriggerSum aSum )
+  {
+    this.operations = aSum.operations.clone();
+    this.states = aSum.states.clone();
+    this.parameters = aSum.parameters.clone();
+  }
+
+  /**
+   * Creates a new, reset, {@link PackedTriggerSum} instance.
+   * 
+   * @param aOperationCount
+   *          the number of operations to store;
+   * @param aInputCount
+   *          the number of inputs to store.
+   */
+  private PackedTriggerSum( final int aOperationCount, final int aInputCount )
+  {
+    this.operations = new byte[aOperationCount];
+    this.states = new byte[aInputCount];
+    this.parameters = new int[aInputCount * PARAMS];
+
+    reset();
+  }
+
+  // METHODS
+
+  /**
+   * Creates a new, reset, {@link PackedTriggerSum} instance that only stores a
+   * single input, at index 0, and no operations. Used by terms that are not
+   * part of a {@link TriggerSum}.
+   * 
+   * @return a new single-input packed sum, never <code>null</code>.
+   */
+  static PackedTriggerSum createInput()
+  {
+    return new PackedTriggerSum( 0, 1 );
+  }
+
+  /**
+   * Creates a new, reset, {@link PackedTriggerSum} instance that only stores a
+   * single operation, at index 0, and no inputs. Used by operation terms that
+   * are composed of separately created terms.
+   * 
+   * @return a new single-operation packed sum, never <code>null</code>.
+   */
+  static PackedTriggerSum createOperation()
+  {
+    return new PackedTriggerSum( 1, 0 );
+  }
+
+  /**
+   * Returns the input index of the given term type.
+   * 
+   * @param aType
+   *          the term type, cannot be <code>null</code>.
+   * @return the input index, 0..15.
+   */
+  static int getInputIndex( final TriggerTermType aType )
+  {
+    return INPUT_INDEX[aType.ordinal()];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals( final Object aObject )
+  {
+    if ( this == aObject )
+    {
+      return true;
+    }
+    if ( !( aObject instanceof PackedTriggerSum ) )
+    {
+      return false;
+    }
+
+    final PackedTriggerSum other = ( PackedTriggerSum )aObject;
+    return Arrays.equals( this.operations, other.operations ) && Arrays.equals( this.states, other.states )
+        && Arrays.equals( this.parameters, other.parameters );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    int result = Arrays.hashCode( this.operations );
+    result = ( 31 * result ) + Arrays.hashCode( this.states );
+    return ( 31 * result ) + Arrays.hashCode( this.parameters );
+  }
+
+  /**
+   * Copies the state and parameters of a single input of a given packed sum.
+   * 
+   * @param aSum
+   *          the packed sum to copy from, cannot be <code>null</code>;
+   * @param aSource
+   *          the index of the input to copy in the given sum;
+   * @param aTarget
+   *          the index of the input to copy to in this sum.
+   */
+  void copyInput( final PackedTriggerSum aSum, final int aSource, final int aTarget )
+  {
+    this.states[aTarget] = aSum.states[aSource];
+    System.arraycopy( aSum.parameters, aSource * PARAMS, this.parameters, aTarget * PARAMS, PARAMS );
+  }
+
+  /**
+   * Returns the operation at the given index.
+   * 
+   * @param aIndex
+   *          the operation index, 0..10.
+   * @return the operation, never <code>null</code>.
+   */
+  TriggerOperation getOperation( final int aIndex )
+  {
+    return OPERATIONS[this.operations[aIndex]];
+  }
+
+  /**
+   * Returns a parameter word of the given input.
+   * 
+   * @param aInput
+   *          the input index, 0..15;
+   * @param aParam
+   *          the parameter index, 0..2.
+   * @return the parameter word.
+   */
+  int getParameter( final int aInput, final int aParam )
+  {
+    return this.parameters[( aInput * PARAMS ) + aParam];
+  }
+
+  /**
+   * Returns the state of the given input.
+   * 
+   * @param aInput
+   *          the input index, 0..15.
+   * @return the input state, never <code>null</code>.
+   */
+  TriggerInputState getState( final int aInput )
+  {
+    return STATES[this.states[aInput]];
+  }
+
+  /**
+   * Resets all operations to {@link TriggerOperation#OR}, all inputs to
+   * {@link TriggerInputState#DISABLED} and all parameters to zero.
+   */
+  void reset()
+  {
+    Arrays.fill( this.operations, ( byte )TriggerOperation.OR.ordinal() );
+    Arrays.fill( this.states, ( byte )TriggerInputState.DISABLED.ordinal() );
+    Arrays.fill( this.parameters, 0 );
+  }
+
+  /**
+   * Resets the state and parameters of a single input.
+   * 
+   * @param aInput
+   *          the input index, 0..15.
+   */
+  void resetInput( final int aInput )
+  {
+    this.states[aInput] = ( byte )TriggerInputState.DISABLED.ordinal();
+    Arrays.fill( this.parameters, aInput * PARAMS, ( aInput + 1 ) * PARAMS, 0 );
+  }
+
+  /**
+   * Sets the operation at the given index.
+   * 
+   * @param aIndex
+   *          the operation index, 0..10;
+   * @param aOperation
+   *          the operation to set, cannot be <code>null</code>.
+   */
+  void setOperation( final int aIndex, final TriggerOperation aOperation )
+  {
+    this.operations[aIndex] = ( byte )aOperation.ordinal();
+  }
+
+  /**
+   * Sets a parameter word of the given input.
+   * 
+   * @param aInput
+   *          the input index, 0..15;
+   * @param aParam
+   *          the parameter index, 0..2;
+   * @param aValue
+   *          the parameter word to set.
+   */
+  void setParameter( final int aInput, final int aParam, final int aValue )
+  {
+    this.parameters[( aInput * PARAMS ) + aParam] = aValue;
+  }
+
+  /**
+   * Sets the state of the given input.
+   * 
+   * @param aInput
+   *          the input index, 0..15;
+   * @param aState
+   *          the input state to set, cannot be <code>null</code>.
+   */
+  void setState( final int aInput, final TriggerInputState aState )
+  {
+    this.states[aInput] = ( byte )aState.ordinal();
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.concurrent.*;
+
+
+/**
+ * Provides a software emulation of the "Demon Core" trigger state machine
+ * that spreads the work over multiple cores.
+ * <p>
+ * The samples are divided into blocks, and each block is summarized in
+ * parallel as a function from entry state to exit state, capture count and
+ * trigger position, see {@link TriggerBlockSummary}. Rather than running a
+ * block from every possible state, the occurrence counters and timers are
+ * tracked symbolically, so the size of the summary does not depend on the
+ * occurrence counts or timer values of the program. The summaries are then
+ * applied one after the other, starting from the known state of the state
+ * machine. Only if a timer expires within a block for the actual entry state,
+ * which is not summarized, that block is emulated sequentially. The same goes
+ * for a block in which too many distinct states stay alive to summarize it
+ * cheaply, after which all remaining samples are emulated sequentially.
+ * Blocks are summarized a few at a time, starting with small blocks, so little
+ * work is wasted once the trigger is raised.
+ * </p>
+ * <p>
+ * The outcome is always identical to that of {@link TriggerEmulator}. This
+ * class is not thread-safe.
+ * </p>
+ */
+public final class ParallelTriggerEmulator
+{
+  // INNER TYPES
+
+  /**
+   * Summarizes a range of blocks, splitting the work recursively.
+   */
+  private final class SummarizeTask extends RecursiveAction
+  {
+    // CONSTANTS
+
+    private static final long serialVersionUID = 1L;
+
+    // VARIABLES
+
+    private final int[] samples;
+    private final int offset;
+    private final int blockSize;
+    private final int from;
+    private final int to;
+    private final int maxWork;
+    private final TriggerBlockSummary[] result;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link SummarizeTask} instance.
+     */
+    SummarizeTask( final int[] aSamples, final int aOffset, final int aBlockSize, final int aFrom, final int aTo,
+        final int aMaxWork, final TriggerBlockSummary[] aResult )
+    {
+      this.samples = aSamples;
+      this.offset = aOffset;
+      this.blockSize = aBlockSize;
+      this.from = aFrom;
+      this.to = aTo;
+      this.maxWork = aMaxWork;
+      this.result = aResult;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute()
+    {
+      if ( ( this.to - this.from ) == 1 )
+      {
+        final int start = this.offset + ( this.from * this.blockSize );
+        final int end = ( int )Math.min( this.samples.length, ( long )start + this.blockSize );
+
+        this.result[this.from] = new TriggerBlockSummary( ParallelTriggerEmulator.this.program, this.samples, start,
+            end, this.maxWork );
+        return;
+      }
+
+      final int mid = ( this.from + this.to ) >>> 1;
+      invokeAll( new SummarizeTask( this.samples, this.offset, this.blockSize, this.from, mid, this.maxWork,
+          this.result ), new SummarizeTask( this.samples, this.offset, this.blockSize, mid, this.to, this.maxWork,
+          this.result ) );
+    }
+  }
+
+  // CONSTANTS
+
+  /** The minimal number of samples per block. */
+  private static final int MIN_BLOCK_SIZE = 4096;
+  /** The maximal number of samples per block. */
+  private static final int MAX_BLOCK_SIZE = 1 << 20;
+  /** The minimal work per sample a summary may take, see {@link TriggerBlockSummary}. */
+  private static final int MIN_WORK = 2;
+
+  // VARIABLES
+
+  private final ForkJoinPool pool;
+  private final TriggerEmulator program;
+
+  private long captureCount;
+  private int level;
+  private boolean triggered;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link ParallelTriggerEmulator} instance using the default,
+   * shared, pool.
+   * 
+   * @param aStates
+   *          the trigger sequence states to emulate, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given states were <code>null</code>.
+   * @see TriggerEmulator#TriggerEmulator(TriggerSequenceState...)
+   * @see DemonCorePool#getDefault()
+   */
+  public ParallelTriggerEmulator( final TriggerSequenceState... aStates )
+  {
+    this( DemonCorePool.getDefault(), aStates );
+  }
+
+  /**
+   * Creates a new {@link ParallelTriggerEmulator} instance.
+   * 
+   * @param aPool
+   *          the pool to run the emulation in, cannot be <code>null</code>;
+   * @param aStates
+   *          the trigger sequence states to emulate, cannot be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   * @see TriggerEmulator#TriggerEmulator(TriggerSequenceState...)
+   */
+  public ParallelTriggerEmulator( final ForkJoinPool aPool, final TriggerSequenceState... aStates )
+  {
+    if ( aPool == null )
+    {
+      throw new IllegalArgumentException( "Pool cannot be null!" );
+    }
+
+    this.pool = aPool;
+    this.program = new TriggerEmulator( aStates );
+  }
+
+  // METHODS
+
+  /**
+   * Returns the number of samples that were captured by the last run.
+   * 
+   * @return the capture count, >= 0.
+   * @see TriggerEmulator#getCaptureCount()
+   */
+  public long getCaptureCount()
+  {
+    return this.captureCount;
+  }
+
+  /**
+   * Returns the sequence level the state machine was in after the last run.
+   * 
+   * @return the level, 0..15.
+   */
+  public int getLevel()
+  {
+    return this.level;
+  }
+
+  /**
+   * Returns whether the trigger was raised during the last run.
+   * 
+   * @return <code>true</code> if the trigger was raised, <code>false</code>
+   *         otherwise.
+   */
+  public boolean isTriggered()
+  {
+    return this.triggered;
+  }
+
+  /**
+   * Processes all given samples until the trigger is raised.
+   * 
+   * @param aSamples
+   *          the samples to process, cannot be <code>null</code>.
+   * @return the index of the sample that raised the trigger, or <tt>-1</tt>
+   *         if the trigger was not raised.
+   * @see TriggerEmulator#run(int[])
+   */
+  public long run( final int[] aSamples )
+  {
+    final int parallelism = this.pool.getParallelism();
+    if ( parallelism < 2 )
+    {
+      // Summarizing does not pay off without a second worker...
+      final int length = Math.max( 1, aSamples.length );
+      return run( aSamples, length, length );
+    }
+
+    final int blockSize = ( aSamples.length + ( parallelism * 4 ) - 1 ) / ( parallelism * 4 );
+    return run( aSamples, MIN_BLOCK_SIZE, Math.min( MAX_BLOCK_SIZE, Math.max( MIN_BLOCK_SIZE, blockSize ) ) );
+  }
+
+  /**
+   * Processes all given samples until the trigger is raised. The samples are
+   * summarized in windows of blocks; the block size starts at a given minimum
+   * and doubles with each window until it reaches a given maximum.
+   * 
+   * @param aSamples
+   *          the samples to process, cannot be <code>null</code>;
+   * @param aMinBlockSize
+   *          the number of samples per block in the first window, > 0;
+   * @param aMaxBlockSize
+   *          the maximum number of samples per block, >= aMinBlockSize.
+   * @return the index of the sample that raised the trigger, or <tt>-1</tt>
+   *         if the trigger was not raised.
+   */
+  long run( final int[] aSamples, final int aMinBlockSize, final int aMaxBlockSize )
+  {
+    final TriggerEmulator current = new TriggerEmulator( this.program );
+    current.reset();
+
+    // Summarize a limited number of blocks at a time, to avoid wasting work
+    // on the remainder of the capture once the trigger is raised...
+    final int window = Math.max( 2, this.pool.getParallelism() * 2 );
+    // Summarizing a block must not take more time than the workers save...
+    final int maxWork = Math.max( MIN_WORK, this.pool.getParallelism() / 2 );
+
+    boolean summarize = true;
+    long result = -1L;
+    int blockSize = aMinBlockSize;
+    int start = 0;
+    while ( ( start < aSamples.length ) && ( result < 0L ) )
+    {
+      final long remaining = ( long )aSamples.length - start;
+      final int blockCount = ( int )Math.min( window, ( remaining + blockSize - 1 ) / blockSize );
+      final int end = ( int )Math.min( aSamples.length, start + ( ( long )blockCount * blockSize ) );
+
+      if ( summarize && ( blockCount > 1 ) )
+      {
+        final TriggerBlockSummary[] summaries = new TriggerBlockSummary[blockCount];
+        this.pool.invoke( new SummarizeTask( aSamples, start, blockSize, 0, blockCount, maxWork, summaries ) );
+
+        for ( int i = 0; ( i < blockCount ) && ( result < 0L ); i++ )
+        {
+          // The next blocks are not likely to be any cheaper...
+          summarize &= summaries[i].isComplete();
+
+          if ( summaries[i].apply( current ) )
+          {
+            result = current.isTriggered() ? ( current.getSampleIndex() - 1L ) : -1L;
+          }
+          else
+          {
+            // A timer expires within the block, or the block is not
+            // summarized at all; emulate it as is...
+            final int blockStart = start + ( i * blockSize );
+            result = current.process( aSamples, blockStart, Math.min( blockSize, end - blockStart ) );
+          }
+        }
+      }
+      else
+      {
+        result = current.process( aSamples, start, end - start );
+      }
+
+      start = end;
+      blockSize = ( int )Math.min( aMaxBlockSize, 2L * blockSize );
+    }
+
+    this.captureCount = current.getCaptureCount();
+    this.level = current.getLevel();
+    this.triggered = ( result >= 0L );
+
+    return result;
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.*;
+
+
+/**
+ * Evaluates a {@link TriggerSum} over a complete capture at once, yielding a
+ * bitmap with one bit per sample that tells whether the sum is true for that
+ * sample.
+ * <p>
+ * A hit bitmap is built for each input the sum depends on, after which the
+ * pair, mid and final terms are folded with word-wide operations, handling 64
+ * samples at a time. Each operation is folded with the word-wide equivalent of
+ * the LUT value that is programmed into the device, so the outcome is the same
+ * as that of {@link TriggerSumTable}.
+ * </p>
+ * <p>
+ * As there is no trigger state involved, timers are considered to be stopped
+ * at zero. The first sample is used as its own predecessor for edge detection.
+ * </p>
+ */
+public final class TriggerBitmapEvaluator
+{
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerBitmapEvaluator} instance.
+   */
+  private TriggerBitmapEvaluator()
+  {
+    // Not used
+  }
+
+  // METHODS
+
+  /**
+   * Evaluates the given trigger sum for all given samples.
+   * 
+   * @param aSum
+   *          the trigger sum to evaluate, cannot be <code>null</code>;
+   * @param aSamples
+   *          the samples to evaluate the sum for, cannot be <code>null</code>.
+   * @return a bitmap in which bit <tt>n % 64</tt> of word <tt>n / 64</tt> is
+   *         set if the sum is true for sample <tt>n</tt>, never
+   *         <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   */
+  public static long[] evaluate( final TriggerSum aSum, final int[] aSamples )
+  {
+    if ( aSum == null )
+    {
+      throw new IllegalArgumentException( "Sum cannot be null!" );
+    }
+    if ( aSamples == null )
+    {
+      throw new IllegalArgumentException( "Samples cannot be null!" );
+    }
+
+    final TriggerSumEvaluator evaluator = new TriggerSumEvaluator( aSum );
+    final int words = ( aSamples.length + 63 ) >>> 6;
+
+    final long[][] inputs = getInputBitmaps( evaluator, aSamples, words );
+
+    final long[][] midInputs = new long[4][];
+    final long[][] finalInputs = new long[2][];
+    final long[][] pairInputs = new long[2][];
+
+    for ( int m = 0; m < 2; m++ )
+    {
+      for ( int p = 0; p < 4; p++ )
+      {
+        final int pairIdx = ( m * 4 ) + p;
+        pairInputs[0] = inputs[2 * pairIdx];
+        pairInputs[1] = inputs[( 2 * pairIdx ) + 1];
+
+        midInputs[p] = fold( evaluator.getPairOperation( pairIdx ), false, pairInputs, words );
+      }
+      finalInputs[m] = fold( evaluator.getMidOperation( m ), false, midInputs, words );
+    }
+
+    // Only the final term yields A (or B) if the other one is not hit...
+    final long[] result = fold( evaluator.getFinalOperation(), true, finalInputs, words );
+
+    // Clear the bits beyond the last sample...
+    if ( ( aSamples.length & 63 ) != 0 )
+    {
+      result[words - 1] &= ( 1L << aSamples.length ) - 1L;
+    }
+
+    return result;
+  }
+
+  /**
+   * Counts the number of samples for which the sum is true.
+   * 
+   * @param aBitmap
+   *          the bitmap, as returned by {@link #evaluate(TriggerSum, int[])},
+   *          cannot be <code>null</code>.
+   * @return the number of set bits in the given bitmap, >= 0.
+   */
+  public static int count( final long[] aBitmap )
+  {
+    int result = 0;
+    for ( long word : aBitmap )
+    {
+      result += Long.bitCount( word );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the index of the first sample, starting at the given index, for
+   * which the sum is true.
+   * 
+   * @param aBitmap
+   *          the bitmap, as returned by {@link #evaluate(TriggerSum, int[])},
+   *          cannot be <code>null</code>;
+   * @param aFromIndex
+   *          the sample index to start searching at, >= 0.
+   * @return the index of the next sample for which the sum is true, or
+   *         <tt>-1</tt> if there is no such sample.
+   */
+  public static int nextHit( final long[] aBitmap, final int aFromIndex )
+  {
+    int wordIdx = aFromIndex >>> 6;
+    if ( wordIdx >= aBitmap.length )
+    {
+      return -1;
+    }
+
+    long word = aBitmap[wordIdx] & ( -1L << aFromIndex );
+    while ( true )
+    {
+      if ( word != 0L )
+      {
+        return ( wordIdx << 6 ) + Long.numberOfTrailingZeros( word );
+      }
+      if ( ++wordIdx >= aBitmap.length )
+      {
+        return -1;
+      }
+      word = aBitmap[wordIdx];
+    }
+  }
+
+  /**
+   * Folds the given input bitmaps using the given operation.
+   * <p>
+   * The LUT value that is programmed into the device for the operation comes
+   * down to one of a few word-wide expressions: all, any or exactly one of the
+   * inputs being hit (or the inverse thereof), or any input of either half
+   * being hit.
+   * </p>
+   *
+   * @param aOperation
+   *          the operation to apply;
+   * @param aExclusive
+   *          <code>true</code> if the "A only" and "B only" operations
+   *          require the other half not to be hit, <code>false</code>
+   *          otherwise;
+   * @param aInputs
+   *          the input bitmaps, either two (pair and final terms) or four (mid
+   *          terms);
+   * @param aWords
+   *          the number of words in each bitmap.
+   * @return the resulting bitmap, never <code>null</code>.
+   */
+  private static long[] fold( final TriggerOperation aOperation, final boolean aExclusive, final long[][] aInputs,
+      final int aWords )
+  {
+    final long[] result = new long[aWords];
+    final long inverse = aOperation.isInverted() ? -1L : 0L;
+    final int count = aInputs.length;
+    final int half = count / 2;
+
+    switch ( aOperation )
+    {
+      case ANY:
+        Arrays.fill( result, -1L );
+        break;
+
+      case AND:
+      case NAND:
+        for ( int i = 0; i < aWords; i++ )
+        {
+          long all = -1L;
+          for ( int j = 0; j < count; j++ )
+          {
+            all &= aInputs[j][i];
+          }
+          result[i] = all ^ inverse;
+        }
+        break;
+
+      case OR:
+      case NOR:
+        for ( int i = 0; i < aWords; i++ )
+        {
+          result[i] = any( aInputs, 0, count, i ) ^ inverse;
+        }
+        break;
+
+      case XOR:
+      case NXOR:
+        for ( int i = 0; i < aWords; i++ )
+        {
+          long any = 0L;
+          long one = 0L;
+          for ( int j = 0; j < count; j++ )
+          {
+            final long value = aInputs[j][i];
+            one = ( one & ~value ) | ( value & ~any );
+            any |= value;
+          }
+          result[i] = one ^ inverse;
+        }
+        break;
+
+      case A_ONLY:
+      case B_ONLY:
+        final int from = ( aOperation == TriggerOperation.A_ONLY ) ? 0 : half;
+        final int other = half - from;
+        for ( int i = 0; i < aWords; i++ )
+        {
+          final long value = any( aInputs, from, from + half, i );
+          result[i] = aExclusive ? ( value & ~any( aInputs, other, other + half, i ) ) : value;
+        }
+        break;
+
+      default:
+        // NOP is never hit...
+        break;
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates the hit bitmaps for all inputs of a sum.
+   * 
+   * @param aEvaluator
+   *          the sum evaluator to use;
+   * @param aSamples
+   *          the samples to create the bitmaps for;
+   * @param aWords
+   *          the number of words in each bitmap.
+   * @return an array with sixteen bitmaps, one per input. Inputs the sum does
+   *         not depend on share a single, empty, bitmap.
+   */
+  private static long[][] getInputBitmaps( final TriggerSumEvaluator aEvaluator, final int[] aSamples,
+      final int aWords )
+  {
+    final int used = aEvaluator.getUsedInputs();
+    final long[] unused = new long[aWords];
+    final int first = ( aSamples.length > 0 ) ? aSamples[0] : 0;
+
+    final long[][] result = new long[TriggerSumEvaluator.INPUT_COUNT][];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      if ( ( used & ( 1 << i ) ) != 0 )
+      {
+        result[i] = new long[aWords];
+        aEvaluator.getInputBitmap( i, aSamples, first, 0L, 0L, result[i] );
+      }
+      else
+      {
+        result[i] = unused;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether any of a range of input bitmaps is hit, for one word.
+   */
+  private static long any( final long[][] aInputs, final int aFrom, final int aTo, final int aWord )
+  {
+    long result = 0L;
+    for ( int j = aFrom; j < aTo; j++ )
+    {
+      result |= aInputs[j][aWord];
+    }
+    return result;
+  }
+}
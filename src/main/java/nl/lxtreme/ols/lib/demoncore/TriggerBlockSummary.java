@@ -0,0 +1,1193 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.*;
+
+
+/**
+ * Provides the outcome of a block of samples for every state in which the
+ * trigger state machine can enter it, without knowing that state up front.
+ * <p>
+ * The block is run once for all entry states at the same time, by tracking
+ * the entry states symbolically:
+ * </p>
+ * <ul>
+ * <li>the occurrence counter of a run is its entry count (if it has not left
+ * its entry level yet) plus the hits counted in its level. All runs in the
+ * same level share a single hit counter, and leave the level once their count
+ * reaches the occurrence count of the level. A run that is entered with any
+ * count simply hands off its highest count each time that is reached;</li>
+ * <li>a timer of a run is either relative to its entry value (as long as it
+ * has not been cleared), or absolute, and is either running or stopped. The
+ * start, stop and clear controls act on this representation as they would on
+ * a concrete timer. Runs are only split on their entry timer values when they
+ * enter a level whose sums use the timer, into the values for which the timer
+ * has expired and those for which it has not.</li>
+ * </ul>
+ * <p>
+ * Runs whose sums see the same inputs are evaluated once per sample; runs that
+ * end up in the same state are merged, as they behave identically from there
+ * on. Entry timer values for which a relative timer would expire (or wrap)
+ * within the block are not summarized; the block has to be emulated
+ * sequentially for those few states.
+ * </p>
+ * <p>
+ * The work this takes grows with the number of distinct states that stay
+ * alive, for example when many occurrence counts of a level are reachable at
+ * the same time. As the summary is only useful if it is cheaper than running
+ * the block a few times, it is given up once the work exceeds a given budget,
+ * in which case no state is summarized at all.
+ * </p>
+ */
+final class TriggerBlockSummary
+{
+  // INNER TYPES
+
+  /**
+   * Provides a set of entry states that lead to the same run; its occurrence
+   * count and timer values lie within given ranges.
+   */
+  private static final class Box
+  {
+    // VARIABLES
+
+    final int level;
+    final int running;
+    int countLo;
+    int countHi;
+    final long[] timerLo;
+    final long[] timerHi;
+    /** The captures made by this box in addition to those of its run. */
+    long captureOffset;
+    Run run;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Box} instance for all timer values.
+     */
+    Box( final int aLevel, final int aRunning, final int aCountLo, final int aCountHi )
+    {
+      this.level = aLevel;
+      this.running = aRunning;
+      this.countLo = aCountLo;
+      this.countHi = aCountHi;
+      this.timerLo = new long[] { 0L, 0L };
+      this.timerHi = new long[] { TIMER_MASK, TIMER_MASK };
+    }
+
+    /**
+     * Creates a new {@link Box} instance as copy of a given box.
+     */
+    Box( final Box aBox )
+    {
+      this.level = aBox.level;
+      this.running = aBox.running;
+      this.countLo = aBox.countLo;
+      this.countHi = aBox.countHi;
+      this.timerLo = aBox.timerLo.clone();
+      this.timerHi = aBox.timerHi.clone();
+      this.captureOffset = aBox.captureOffset;
+    }
+
+    // METHODS
+
+    /**
+     * Returns whether this box contains the (entry) state of a given emulator.
+     */
+    boolean contains( final TriggerEmulator aEmulator, final int aUsedTimers )
+    {
+      final int occurrences = aEmulator.getOccurrences();
+      if ( ( occurrences < this.countLo ) || ( occurrences > this.countHi ) )
+      {
+        return false;
+      }
+      for ( int t = 0; t < 2; t++ )
+      {
+        if ( ( aUsedTimers & ( 1 << t ) ) != 0 )
+        {
+          final long value = aEmulator.getTimer( t );
+          if ( ( aEmulator.isTimerRunning( t ) != ( ( this.running & ( 1 << t ) ) != 0 ) )
+              || ( value < this.timerLo[t] ) || ( value > this.timerHi[t] ) )
+          {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Provides the symbolic state of a run, shared by all entry states of its
+   * boxes.
+   */
+  private static final class Run
+  {
+    // VARIABLES
+
+    final List<Box> boxes;
+    /** Whether the occurrence count is relative to the entry count. */
+    boolean range;
+    /** The occurrence count (relative to the entry count), if detached. */
+    long count;
+    /** The hit count of the group at which the occurrence count was zero. */
+    long countBase;
+    /** The captures made, relative to those of the group if attached. */
+    long captures;
+    Group group;
+    int version;
+    int level;
+    long trigger;
+    /** Whether the timer still holds its entry value plus its offset. */
+    final boolean[] relative;
+    final boolean[] running;
+    /** The timer value is its offset plus the step index, if running. */
+    final long[] offset;
+    final boolean[] expired;
+    /** Whether the expiry of a relative timer is known for the block. */
+    final boolean[] resolved;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Run} instance.
+     */
+    Run( final int aLevel, final int aRunning, final boolean aRange )
+    {
+      this.boxes = new ArrayList<Box>();
+      this.range = aRange;
+      this.level = aLevel;
+      this.trigger = -1L;
+      this.relative = new boolean[] { true, true };
+      this.running = new boolean[] { ( aRunning & 1 ) != 0, ( aRunning & 2 ) != 0 };
+      this.offset = new long[2];
+      this.expired = new boolean[2];
+      this.resolved = new boolean[2];
+    }
+
+    /**
+     * Creates a new, detached, {@link Run} instance in the same state as a
+     * given run, without any boxes.
+     */
+    Run( final Run aRun )
+    {
+      this.boxes = new ArrayList<Box>();
+      this.range = aRun.range;
+      this.count = aRun.count;
+      this.countBase = aRun.countBase;
+      this.captures = aRun.captures;
+      this.level = aRun.level;
+      this.trigger = aRun.trigger;
+      this.relative = aRun.relative.clone();
+      this.running = aRun.running.clone();
+      this.offset = aRun.offset.clone();
+      this.expired = aRun.expired.clone();
+      this.resolved = aRun.resolved.clone();
+    }
+
+    // METHODS
+
+    /**
+     * Returns whether this run behaves identically to a given run in the same
+     * group from now on.
+     */
+    boolean isSameState( final Run aRun, final int aUsedTimers )
+    {
+      if ( this.range || aRun.range || ( this.countBase != aRun.countBase ) )
+      {
+        return false;
+      }
+      for ( int t = 0; t < 2; t++ )
+      {
+        if ( ( ( aUsedTimers & ( 1 << t ) ) != 0 )
+            && ( ( this.relative[t] != aRun.relative[t] ) || ( this.running[t] != aRun.running[t] )
+                || ( this.offset[t] != aRun.offset[t] ) ) )
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Provides the runs that are in the same level, and for which the timers
+   * used by that level are in the same expiry state.
+   */
+  private static final class Group
+  {
+    // VARIABLES
+
+    final int level;
+    /** The inputs fed by the timers that are expired. */
+    final int timerInputs;
+    long hits;
+    long captures;
+    int size;
+    boolean active;
+    /** The runs with an absolute occurrence count, by their count base. */
+    final Map<Long, List<Run>> points;
+    final List<Run> ranges;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Group} instance.
+     */
+    Group( final int aKey )
+    {
+      this.level = aKey & 0x0F;
+      this.timerInputs = ( ( ( aKey & 0x10 ) != 0 ) ? TriggerEmulator.TIMER_INPUTS[0] : 0 )
+          | ( ( ( aKey & 0x20 ) != 0 ) ? TriggerEmulator.TIMER_INPUTS[1] : 0 );
+      this.points = new HashMap<Long, List<Run>>();
+      this.ranges = new ArrayList<Run>();
+    }
+  }
+
+  /**
+   * Provides the step at which a concrete running timer flips its expiry
+   * state.
+   */
+  private static final class Flip implements Comparable<Flip>
+  {
+    // VARIABLES
+
+    final long step;
+    final Run run;
+    final int version;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Flip} instance.
+     */
+    Flip( final long aStep, final Run aRun )
+    {
+      this.step = aStep;
+      this.run = aRun;
+      this.version = aRun.version;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo( final Flip aFlip )
+    {
+      return Long.compare( this.step, aFlip.step );
+    }
+  }
+
+  /**
+   * Runs a block for all entry states at once.
+   */
+  private static final class Summarizer
+  {
+    // VARIABLES
+
+    private final TriggerEmulator program;
+    private final int[] samples;
+    private final int start;
+    private final int length;
+    private final int usedTimers;
+    private final int[] occurrenceCounts;
+    private final int[] levelTimers;
+    private final int[] outcomes;
+    private final int[] inputs;
+    private final int[] inputSteps;
+    private final long[] timerValues;
+    private final long[][] crossings;
+
+    private final Group[] groups;
+    private final List<Group> active;
+    private final List<Run> pending;
+    private final List<Run> done;
+    private final PriorityQueue<Flip> flips;
+
+    private final long maxWork;
+    private long work;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Summarizer} instance.
+     */
+    Summarizer( final TriggerEmulator aProgram, final int[] aSamples, final int aStart, final int aEnd,
+        final int aUsedTimers, final int aMaxWork )
+    {
+      this.maxWork = ( long )aMaxWork * ( ( aEnd - aStart ) + SETUP_WORK );
+      this.program = aProgram;
+      this.samples = aSamples;
+      this.start = aStart;
+      this.length = aEnd - aStart;
+      this.usedTimers = aUsedTimers;
+
+      this.occurrenceCounts = new int[LEVEL_COUNT];
+      this.levelTimers = new int[LEVEL_COUNT];
+      this.outcomes = new int[LEVEL_COUNT];
+      this.inputs = new int[LEVEL_COUNT];
+      this.inputSteps = new int[LEVEL_COUNT];
+      for ( int i = 0; i < LEVEL_COUNT; i++ )
+      {
+        // The outcome of levels that do not depend on any input is known...
+        this.outcomes[i] = ( aProgram.getUsedInputs( i ) == 0 ) ? aProgram.evaluate( i, 0 ) : -1;
+        this.inputSteps[i] = -1;
+
+        this.occurrenceCounts[i] = Math.max( 1, aProgram.getSequenceState( i ).getOccurrenceCount()
+            & OCCURRENCE_MASK );
+        for ( int t = 0; t < 2; t++ )
+        {
+          if ( aProgram.usesTimer( i, t ) )
+          {
+            this.levelTimers[i] |= ( 1 << t );
+          }
+        }
+      }
+      this.timerValues = new long[] { aProgram.getTimerValue( 0 ), aProgram.getTimerValue( 1 ) };
+      this.crossings = new long[][] { getCrossings( this.timerValues[0] ), getCrossings( this.timerValues[1] ) };
+
+      this.groups = new Group[LEVEL_COUNT * 4];
+      this.active = new ArrayList<Group>();
+      this.pending = new ArrayList<Run>();
+      this.done = new ArrayList<Run>();
+      this.flips = new PriorityQueue<Flip>();
+    }
+
+    // METHODS
+
+    /**
+     * Runs the block for all entry states.
+     * 
+     * @return all runs, in their final state, or <code>null</code> if that
+     *         takes more work than allowed.
+     */
+    List<Run> run()
+    {
+      for ( int level = 0; level < LEVEL_COUNT; level++ )
+      {
+        final int count = this.occurrenceCounts[level];
+        for ( int running = 0; running < 4; running++ )
+        {
+          if ( ( running & ~this.usedTimers ) == 0 )
+          {
+            final Run run = new Run( level, running, count > 1 );
+            run.boxes.add( new Box( level, running, 0, count - 1 ) );
+            attach( run, level, -1 );
+          }
+        }
+      }
+
+      for ( int step = 0; step < this.length; step++ )
+      {
+        while ( !this.flips.isEmpty() && ( this.flips.peek().step <= step ) )
+        {
+          // Flips scheduled before the run last moved are stale...
+          final Flip flip = this.flips.poll();
+          final Run run = flip.run;
+          if ( ( run.group != null ) && ( run.version == flip.version ) )
+          {
+            detach( run );
+            place( run, run.level, step - 1 );
+          }
+        }
+
+        final int index = this.start + step;
+        final int sample = this.samples[index];
+        final int prev = ( index > 0 ) ? this.samples[index - 1] : sample;
+
+        final int count = this.active.size();
+        this.work += count;
+        for ( int i = 0; i < count; i++ )
+        {
+          final Group group = this.active.get( i );
+          if ( group.size > 0 )
+          {
+            final int level = group.level;
+            int outcome = this.outcomes[level];
+            if ( outcome < 0 )
+            {
+              // The groups of a level only differ in their timer inputs...
+              if ( this.inputSteps[level] != step )
+              {
+                this.inputs[level] = this.program.getInputs( level, sample, prev, -1L, -1L );
+                this.inputSteps[level] = step;
+              }
+              outcome = this.program.evaluate( level, this.inputs[level] | group.timerInputs );
+            }
+            if ( ( outcome & TriggerEmulator.CAPTURE ) != 0 )
+            {
+              group.captures++;
+            }
+            if ( ( outcome & TriggerEmulator.HIT ) != 0 )
+            {
+              group.hits++;
+              hit( group, step );
+            }
+            else if ( ( outcome & TriggerEmulator.ELSE ) != 0 )
+            {
+              otherwise( group );
+            }
+          }
+        }
+
+        for ( Run run : this.pending )
+        {
+          attach( run, run.level, step );
+        }
+        this.pending.clear();
+
+        if ( this.work > this.maxWork )
+        {
+          return null;
+        }
+
+        for ( int i = this.active.size() - 1; i >= 0; i-- )
+        {
+          final Group group = this.active.get( i );
+          if ( group.size == 0 )
+          {
+            group.active = false;
+            this.active.remove( i );
+          }
+        }
+      }
+
+      for ( Group group : this.active )
+      {
+        final List<Run> runs = new ArrayList<Run>( group.ranges );
+        for ( List<Run> points : group.points.values() )
+        {
+          runs.addAll( points );
+        }
+        for ( Run run : runs )
+        {
+          detach( run );
+          finish( run, this.length - 1 );
+        }
+      }
+      return this.done;
+    }
+
+    /**
+     * Adds a run to the group of a given level, splitting it on its relative
+     * timers first.
+     * 
+     * @param aRun
+     *          the (detached) run to add;
+     * @param aLevel
+     *          the level to add the run to;
+     * @param aStep
+     *          the step after which the run is in the level.
+     */
+    private void attach( final Run aRun, final int aLevel, final int aStep )
+    {
+      final int relative = ( aRun.relative[0] ? 1 : 0 ) | ( aRun.relative[1] ? 2 : 0 );
+      if ( ( this.levelTimers[aLevel] & relative ) == 0 )
+      {
+        place( aRun, aLevel, aStep );
+        return;
+      }
+
+      List<Run> pieces = Collections.singletonList( aRun );
+
+      final int remaining = this.length - aStep - 2;
+      for ( int t = 0; ( t < 2 ) && ( remaining >= 0 ); t++ )
+      {
+        if ( ( ( this.levelTimers[aLevel] & ( 1 << t ) ) != 0 ) && aRun.relative[t] )
+        {
+          final List<Run> split = new ArrayList<Run>();
+          for ( Run piece : pieces )
+          {
+            split( piece, t, aStep, remaining, split );
+          }
+          pieces = split;
+        }
+      }
+
+      for ( Run piece : pieces )
+      {
+        place( piece, aLevel, aStep );
+      }
+    }
+
+    /**
+     * Removes a run from its group.
+     * 
+     * @param aRun
+     *          the (attached) run to remove.
+     */
+    private void detach( final Run aRun )
+    {
+      final Group group = aRun.group;
+      if ( aRun.range )
+      {
+        group.ranges.remove( aRun );
+      }
+      else
+      {
+        final Long key = Long.valueOf( aRun.countBase );
+        final List<Run> runs = group.points.get( key );
+        if ( runs != null )
+        {
+          runs.remove( aRun );
+          if ( runs.isEmpty() )
+          {
+            group.points.remove( key );
+          }
+        }
+      }
+
+      aRun.count = group.hits - aRun.countBase;
+      aRun.captures += group.captures;
+      aRun.group = null;
+      aRun.version++;
+      group.size--;
+    }
+
+    /**
+     * Freezes the state of a (detached) run at the end of a given step.
+     * 
+     * @param aRun
+     *          the run to freeze;
+     * @param aStep
+     *          the last step of the run.
+     */
+    private void finish( final Run aRun, final int aStep )
+    {
+      for ( int t = 0; t < 2; t++ )
+      {
+        aRun.offset[t] = getTimerBase( aRun, t, aStep );
+      }
+      this.done.add( aRun );
+    }
+
+    /**
+     * Returns the value of a timer of a run at the end of a given step, minus
+     * its entry value if it is relative.
+     */
+    private static long getTimerBase( final Run aRun, final int aTimer, final int aStep )
+    {
+      return aRun.offset[aTimer] + ( aRun.running[aTimer] ? ( aStep + 1L ) : 0L );
+    }
+
+    /**
+     * Lets the runs of a group that reach the occurrence count of its level
+     * move on, after a hit.
+     * 
+     * @param aGroup
+     *          the group that yielded a hit;
+     * @param aStep
+     *          the current step.
+     */
+    private void hit( final Group aGroup, final int aStep )
+    {
+      final int count = this.occurrenceCounts[aGroup.level];
+
+      final List<Run> points = aGroup.points.remove( Long.valueOf( aGroup.hits - count ) );
+      if ( points != null )
+      {
+        for ( Run run : points )
+        {
+          detach( run );
+          transition( run, aStep );
+        }
+      }
+
+      for ( int i = aGroup.ranges.size() - 1; i >= 0; i-- )
+      {
+        final Run run = aGroup.ranges.get( i );
+        final Box box = run.boxes.get( 0 );
+        if ( ( box.countHi + aGroup.hits - run.countBase ) >= count )
+        {
+          // Hand off the highest entry count as a run of its own...
+          final Run peeled = new Run( run );
+          peeled.range = false;
+          peeled.captures += aGroup.captures;
+
+          final Box peeledBox = new Box( box );
+          peeledBox.countLo = box.countHi;
+          peeled.boxes.add( peeledBox );
+
+          if ( --box.countHi < box.countLo )
+          {
+            detach( run );
+            run.boxes.clear();
+          }
+          transition( peeled, aStep );
+        }
+      }
+    }
+
+    /**
+     * Moves all runs of a group to the else level of its level.
+     * 
+     * @param aGroup
+     *          the group that yielded an else.
+     */
+    private void otherwise( final Group aGroup )
+    {
+      final int elseLevel = this.program.getSequenceState( aGroup.level ).getElseState();
+
+      for ( Run run : aGroup.ranges )
+      {
+        leave( run, aGroup, elseLevel );
+      }
+      for ( List<Run> points : aGroup.points.values() )
+      {
+        for ( Run run : points )
+        {
+          leave( run, aGroup, elseLevel );
+        }
+      }
+
+      // All runs leave at once...
+      aGroup.ranges.clear();
+      aGroup.points.clear();
+      aGroup.size = 0;
+    }
+
+    /**
+     * Lets a run leave its group for a given else level, without removing it
+     * from the group.
+     * 
+     * @param aRun
+     *          the run;
+     * @param aGroup
+     *          the group of the run;
+     * @param aLevel
+     *          the else level.
+     */
+    private void leave( final Run aRun, final Group aGroup, final int aLevel )
+    {
+      aRun.range = false;
+      aRun.count = 0L;
+      aRun.captures += aGroup.captures;
+      aRun.group = null;
+      aRun.version++;
+      aRun.level = aLevel;
+      this.pending.add( aRun );
+    }
+
+    /**
+     * Adds a (detached) run to the group of a given level, as is, merging it
+     * with an identical run of that group.
+     * 
+     * @param aRun
+     *          the run to add;
+     * @param aLevel
+     *          the level to add the run to;
+     * @param aStep
+     *          the step after which the run is in the level.
+     */
+    private void place( final Run aRun, final int aLevel, final int aStep )
+    {
+      this.work++;
+
+      final int outcome = this.outcomes[aLevel];
+      if ( ( outcome >= 0 ) && ( ( outcome & ( TriggerEmulator.HIT | TriggerEmulator.ELSE ) ) == 0 ) )
+      {
+        // The run never leaves this level; its outcome is known...
+        aRun.level = aLevel;
+        if ( ( outcome & TriggerEmulator.CAPTURE ) != 0 )
+        {
+          aRun.captures += this.length - 1 - aStep;
+        }
+        finish( aRun, this.length - 1 );
+        return;
+      }
+
+      int key = aLevel;
+      for ( int t = 0; t < 2; t++ )
+      {
+        if ( ( this.levelTimers[aLevel] & ( 1 << t ) ) != 0 )
+        {
+          if ( !aRun.relative[t] )
+          {
+            schedule( aRun, t, aStep );
+          }
+          if ( aRun.expired[t] )
+          {
+            key |= ( 0x10 << t );
+          }
+        }
+      }
+
+      Group group = this.groups[key];
+      if ( group == null )
+      {
+        group = this.groups[key] = new Group( key );
+      }
+
+      aRun.level = aLevel;
+      aRun.countBase = group.hits - aRun.count;
+      aRun.captures -= group.captures;
+
+      if ( aRun.range )
+      {
+        group.ranges.add( aRun );
+      }
+      else
+      {
+        final Long base = Long.valueOf( aRun.countBase );
+        List<Run> runs = group.points.get( base );
+        if ( runs == null )
+        {
+          runs = new ArrayList<Run>( 1 );
+          group.points.put( base, runs );
+        }
+
+        this.work += runs.size();
+        for ( Run run : runs )
+        {
+          if ( run.isSameState( aRun, this.usedTimers ) )
+          {
+            for ( Box box : aRun.boxes )
+            {
+              box.captureOffset += aRun.captures - run.captures;
+            }
+            run.boxes.addAll( aRun.boxes );
+            for ( int t = 0; t < 2; t++ )
+            {
+              // Boxes of either run may be expired in levels that do not use
+              // the timer...
+              run.resolved[t] &= aRun.resolved[t] && ( run.expired[t] == aRun.expired[t] );
+            }
+            aRun.version++;
+            return;
+          }
+        }
+        runs.add( aRun );
+      }
+
+      aRun.group = group;
+      group.size++;
+      if ( !group.active )
+      {
+        group.active = true;
+        this.active.add( group );
+      }
+    }
+
+    /**
+     * Determines the expiry state of an absolute timer of a run, and schedules
+     * the step at which it flips, if within the block.
+     * 
+     * @param aRun
+     *          the run;
+     * @param aTimer
+     *          the timer index, 0 or 1;
+     * @param aStep
+     *          the step after which the expiry state is needed.
+     */
+    private void schedule( final Run aRun, final int aTimer, final int aStep )
+    {
+      final boolean running = aRun.running[aTimer];
+      final long first = getTimerBase( aRun, aTimer, aStep + 1 );
+      final long target = this.timerValues[aTimer];
+
+      aRun.expired[aTimer] = isExpired( first, target );
+      if ( running )
+      {
+        final long flip = getNextCrossing( first, this.crossings[aTimer] );
+        if ( ( flip != Long.MAX_VALUE ) && ( ( aStep + 1L + flip - first ) < this.length ) )
+        {
+          this.flips.add( new Flip( aStep + 1L + flip - first, aRun ) );
+        }
+      }
+    }
+
+    /**
+     * Splits a run on the entry values of one of its relative timers, into
+     * runs for which the timer is either expired or not for the remainder of
+     * the block. Entry values for which the timer flips are dropped.
+     * 
+     * @param aRun
+     *          the run to split;
+     * @param aTimer
+     *          the timer index, 0 or 1;
+     * @param aStep
+     *          the step after which the run is split;
+     * @param aRemaining
+     *          the number of steps after the first step that is evaluated;
+     * @param aResult
+     *          the list to add the resulting runs to.
+     */
+    private void split( final Run aRun, final int aTimer, final int aStep, final int aRemaining,
+        final List<Run> aResult )
+    {
+      if ( aRun.resolved[aTimer] )
+      {
+        // The values only shrink towards the end of the block...
+        aResult.add( aRun );
+        return;
+      }
+
+      final boolean running = aRun.running[aTimer];
+      final long delta = getTimerBase( aRun, aTimer, aStep + 1 );
+      final long span = running ? aRemaining : 0L;
+      final long target = this.timerValues[aTimer];
+      final long[] crossings = this.crossings[aTimer];
+
+      this.work += aRun.boxes.size();
+
+      // Most runs need not be split at all...
+      int uniform = -1;
+      for ( Box box : aRun.boxes )
+      {
+        final int state = classify( box.timerLo[aTimer] + delta, box.timerHi[aTimer] + delta, span, target,
+            crossings );
+        uniform = ( ( state < 0 ) || ( ( uniform >= 0 ) && ( state != uniform ) ) ) ? -2 : state;
+        if ( uniform < 0 )
+        {
+          break;
+        }
+      }
+      if ( uniform >= 0 )
+      {
+        aRun.expired[aTimer] = ( uniform != 0 );
+        aRun.resolved[aTimer] = true;
+        aResult.add( aRun );
+        return;
+      }
+
+      final List<Box> expired = new ArrayList<Box>();
+      final List<Box> pending = new ArrayList<Box>();
+
+      for ( Box box : aRun.boxes )
+      {
+        final long lo = box.timerLo[aTimer] + delta;
+        final long hi = box.timerHi[aTimer] + delta;
+
+        // Cut the values of the first evaluated step where the expiry changes,
+        // or where it would change within the remainder of the block...
+        final TreeSet<Long> cuts = new TreeSet<Long>();
+        for ( long crossing : crossings )
+        {
+          for ( long cut : new long[] { crossing - span, crossing } )
+          {
+            if ( ( cut > lo ) && ( cut <= hi ) )
+            {
+              cuts.add( Long.valueOf( cut ) );
+            }
+          }
+        }
+        cuts.add( Long.valueOf( hi + 1L ) );
+
+        long from = lo;
+        Box last = null;
+        boolean lastExpired = false;
+        for ( Long cut : cuts )
+        {
+          boolean flips = false;
+          for ( long crossing : crossings )
+          {
+            flips |= ( from >= ( crossing - span ) ) && ( from < crossing );
+          }
+
+          final boolean isExpired = isExpired( from, target );
+          if ( flips )
+          {
+            last = null;
+          }
+          else if ( ( last != null ) && ( isExpired == lastExpired ) )
+          {
+            last.timerHi[aTimer] = cut.longValue() - 1L - delta;
+          }
+          else
+          {
+            last = new Box( box );
+            last.timerLo[aTimer] = from - delta;
+            last.timerHi[aTimer] = cut.longValue() - 1L - delta;
+            lastExpired = isExpired;
+            ( isExpired ? expired : pending ).add( last );
+          }
+          from = cut.longValue();
+        }
+      }
+
+      for ( int i = 0; i < 2; i++ )
+      {
+        final List<Box> boxes = ( i == 0 ) ? pending : expired;
+        if ( !boxes.isEmpty() )
+        {
+          final Run run = new Run( aRun );
+          run.expired[aTimer] = ( i != 0 );
+          run.resolved[aTimer] = true;
+          run.boxes.addAll( boxes );
+          aResult.add( run );
+        }
+      }
+    }
+
+    /**
+     * Lets a (detached) run leave its level after reaching its occurrence
+     * count, applying the timer controls of the level.
+     * 
+     * @param aRun
+     *          the run;
+     * @param aStep
+     *          the current step.
+     */
+    private void transition( final Run aRun, final int aStep )
+    {
+      final TriggerSequenceState state = this.program.getSequenceState( aRun.level );
+      for ( int t = 0; t < 2; t++ )
+      {
+        final int mask = 1 << t;
+        long base = getTimerBase( aRun, t, aStep );
+        if ( ( state.getClearTimer() & mask ) != 0 )
+        {
+          aRun.relative[t] = false;
+          base = 0L;
+        }
+        if ( ( state.getStopTimer() & mask ) != 0 )
+        {
+          aRun.running[t] = false;
+          aRun.resolved[t] = false;
+        }
+        if ( ( state.getStartTimer() & mask ) != 0 )
+        {
+          aRun.running[t] = true;
+          aRun.resolved[t] = false;
+        }
+        aRun.offset[t] = base - ( aRun.running[t] ? ( aStep + 1L ) : 0L );
+      }
+
+      aRun.range = false;
+      aRun.count = 0L;
+      if ( !state.isLastState() )
+      {
+        aRun.level = ( aRun.level + 1 ) % LEVEL_COUNT;
+      }
+
+      if ( state.isRaiseTrigger() )
+      {
+        aRun.trigger = this.start + aStep;
+        finish( aRun, aStep );
+      }
+      else
+      {
+        this.pending.add( aRun );
+      }
+    }
+
+    /**
+     * Determines whether a timer is expired for a range of values of the first
+     * evaluated step, and stays so for the remainder of the block.
+     * 
+     * @return 1 if the timer is expired, 0 if it is not, or -1 if that differs
+     *         within the range, or changes within the remainder of the block.
+     */
+    private static int classify( final long aLo, final long aHi, final long aSpan, final long aTarget,
+        final long[] aCrossings )
+    {
+      for ( long crossing : aCrossings )
+      {
+        final long flip = crossing - aSpan;
+        if ( ( ( crossing > aLo ) && ( crossing <= aHi ) ) || ( ( flip > aLo ) && ( flip <= aHi ) )
+            || ( ( aLo >= flip ) && ( aLo < crossing ) ) )
+        {
+          return -1;
+        }
+      }
+      return isExpired( aLo, aTarget ) ? 1 : 0;
+    }
+
+    /**
+     * Returns the timer values at which the expiry state of a timer changes.
+     */
+    private static long[] getCrossings( final long aTarget )
+    {
+      if ( aTarget == 0L )
+      {
+        return new long[0];
+      }
+
+      final long[] result = new long[8];
+      for ( int k = 0; k < 4; k++ )
+      {
+        result[2 * k] = ( TIMER_MASK + 1L ) * k;
+        result[( 2 * k ) + 1] = ( ( TIMER_MASK + 1L ) * k ) + aTarget;
+      }
+      return result;
+    }
+
+    /**
+     * Returns the lowest timer value, above a given value, at which the expiry
+     * state of a timer changes, or {@link Long#MAX_VALUE} if it never changes.
+     */
+    private static long getNextCrossing( final long aValue, final long[] aCrossings )
+    {
+      long result = Long.MAX_VALUE;
+      for ( long crossing : aCrossings )
+      {
+        if ( crossing > aValue )
+        {
+          result = Math.min( result, crossing );
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Returns whether a timer with a given (unmasked) value has expired.
+     */
+    private static boolean isExpired( final long aValue, final long aTarget )
+    {
+      return ( aValue & TIMER_MASK ) >= aTarget;
+    }
+  }
+
+  // CONSTANTS
+
+  /** The maximum number of sequence levels. */
+  private static final int LEVEL_COUNT = 16;
+  /** The occurrence counter is 20 bits wide. */
+  private static final int OCCURRENCE_MASK = 0x000FFFFF;
+  /** The timers are 36 bits wide. */
+  private static final long TIMER_MASK = 0xFFFFFFFFFL;
+  /** The work allowed for setting up the runs, in samples. */
+  private static final int SETUP_WORK = 256;
+
+  // VARIABLES
+
+  private final int[] samples;
+  private final int end;
+  private final int usedTimers;
+  private final List<List<Box>> boxes;
+  private final boolean complete;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerBlockSummary} instance, summarizing a given
+   * block of samples.
+   * 
+   * @param aProgram
+   *          the emulator running the program to summarize the block for,
+   *          cannot be <code>null</code>. Its state is not used;
+   * @param aSamples
+   *          the samples, cannot be <code>null</code>;
+   * @param aStart
+   *          the index of the first sample of the block;
+   * @param aEnd
+   *          the index directly after the last sample of the block;
+   * @param aMaxWork
+   *          the maximum amount of work per sample, in evaluations of a level
+   *          or moves of a run, after which the block is not summarized.
+   */
+  TriggerBlockSummary( final TriggerEmulator aProgram, final int[] aSamples, final int aStart, final int aEnd,
+      final int aMaxWork )
+  {
+    this.samples = aSamples;
+    this.end = aEnd;
+
+    int used = 0;
+    for ( int i = 0; i < LEVEL_COUNT; i++ )
+    {
+      for ( int t = 0; t < 2; t++ )
+      {
+        if ( aProgram.usesTimer( i, t ) )
+        {
+          used |= ( 1 << t );
+        }
+      }
+    }
+    this.usedTimers = used;
+
+    this.boxes = new ArrayList<List<Box>>();
+    for ( int i = 0; i < LEVEL_COUNT; i++ )
+    {
+      this.boxes.add( new ArrayList<Box>() );
+    }
+
+    final List<Run> runs = new Summarizer( aProgram, aSamples, aStart, aEnd, used, aMaxWork ).run();
+    if ( runs != null )
+    {
+      for ( Run run : runs )
+      {
+        for ( Box box : run.boxes )
+        {
+          box.run = run;
+          this.boxes.get( box.level ).add( box );
+        }
+      }
+    }
+    this.complete = ( runs != null );
+  }
+
+  // METHODS
+
+  /**
+   * Moves a given emulator, which is about to process the block, to the state
+   * it is in after processing the block (or after raising the trigger).
+   * 
+   * @param aEmulator
+   *          the emulator to update, cannot be <code>null</code>.
+   * @return <code>true</code> if the emulator is updated, <code>false</code>
+   *         if the outcome of the block is not known for the state of the
+   *         emulator, in which case it is left untouched.
+   */
+  boolean apply( final TriggerEmulator aEmulator )
+  {
+    for ( Box box : this.boxes.get( aEmulator.getLevel() ) )
+    {
+      if ( box.contains( aEmulator, this.usedTimers ) )
+      {
+        final Run run = box.run;
+        for ( int t = 0; t < 2; t++ )
+        {
+          if ( ( this.usedTimers & ( 1 << t ) ) != 0 )
+          {
+            final long entry = run.relative[t] ? aEmulator.getTimer( t ) : 0L;
+            aEmulator.setTimer( t, entry + run.offset[t], run.running[t] );
+          }
+        }
+
+        final boolean triggered = ( run.trigger >= 0L );
+        final long index = triggered ? ( run.trigger + 1L ) : this.end;
+        final long occurrences = ( run.range ? aEmulator.getOccurrences() : 0L ) + run.count;
+
+        aEmulator.moveTo( run.level, ( int )occurrences, index, this.samples[( int )index - 1],
+            aEmulator.getCaptureCount() + box.captureOffset + run.captures, triggered );
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether the block is summarized for all states but those for
+   * which a timer expires within the block.
+   * 
+   * @return <code>true</code> if the block is summarized, <code>false</code>
+   *         if summarizing it took too much work.
+   */
+  boolean isComplete()
+  {
+    return this.complete;
+  }
+}
@@ -26,12 +26,6 @@ package nl.lxtreme.ols.lib.demoncore;
  */
 public class TriggerEdgeDetector extends AbstractTriggerTerm
 {
-  // VARIABLES
-
-  private int risingEdgeMask;
-  private int fallingEdgeMask;
-  private int noEdgeMask;
-
   // CONSTRUCTORS
 
   /**
@@ -42,9 +36,6 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
   public TriggerEdgeDetector( final TriggerEdgeDetector aTerm )
   {
     super( aTerm );
-    this.risingEdgeMask = aTerm.risingEdgeMask;
-    this.fallingEdgeMask = aTerm.fallingEdgeMask;
-    this.noEdgeMask = aTerm.noEdgeMask;
   }
 
   /**
@@ -57,6 +48,19 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
     super( aType );
   }
 
+  /**
+   * Creates a new TriggerEdgeDetector instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aType
+   *          the term type, denoting the input to view.
+   */
+  TriggerEdgeDetector( final PackedTriggerSum aStore, final TriggerTermType aType )
+  {
+    super( aStore, aType );
+  }
+
   // METHODS
 
   /**
@@ -66,7 +70,7 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
    */
   public int getFallingEdgeMask()
   {
-    return this.fallingEdgeMask;
+    return this.store.getParameter( this.input, 1 );
   }
 
   /**
@@ -76,7 +80,7 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
    */
   public int getNoEdgeMask()
   {
-    return this.noEdgeMask;
+    return this.store.getParameter( this.input, 2 );
   }
 
   /**
@@ -86,7 +90,7 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
    */
   public int getRisingEdgeMask()
   {
-    return this.risingEdgeMask;
+    return this.store.getParameter( this.input, 0 );
   }
 
   /**
@@ -97,7 +101,7 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
    */
   public void setFallingEdgeMask( final int aFallingEdgeMask )
   {
-    this.fallingEdgeMask = aFallingEdgeMask;
+    this.store.setParameter( this.input, 1, aFallingEdgeMask );
   }
 
   /**
@@ -108,7 +112,7 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
    */
   public void setNoEdgeMask( final int aNoEdgeMask )
   {
-    this.noEdgeMask = aNoEdgeMask;
+    this.store.setParameter( this.input, 2, aNoEdgeMask );
   }
 
   /**
@@ -119,18 +123,6 @@ public class TriggerEdgeDetector extends AbstractTriggerTerm
    */
   public void setRisingEdgeMask( final int aRisingEdgeMask )
   {
-    this.risingEdgeMask = aRisingEdgeMask;
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  protected void reset()
-  {
-    super.reset();
-    this.fallingEdgeMask = 0;
-    this.noEdgeMask = 0;
-    this.risingEdgeMask = 0;
+    this.store.setParameter( this.input, 0, aRisingEdgeMask );
   }
 }
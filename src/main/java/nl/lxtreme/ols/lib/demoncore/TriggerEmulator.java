@@ -0,0 +1,650 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.nio.*;
+
+
+/**
+ * Provides a software emulation of the "Demon Core" trigger state machine,
+ * allowing a set of trigger sequence states to be validated against captured
+ * sample data without having to arm a real device.
+ * <p>
+ * The emulator runs the program as it is programmed into the device, that is,
+ * the LUT chains written by the {@link DemonCoreCommandWriter}. As a result,
+ * the input states of the trigger sums are ignored (they are never written),
+ * and all sums share a single set of input terms: as each sum writes all of
+ * its input terms, the device is left with the input terms of the last sum
+ * written, which is the else sum of the last given state.
+ * </p>
+ * <p>
+ * For each sample, the capture, hit and else sums of the current sequence
+ * level are evaluated. A hit increments the occurrence counter of the level;
+ * once the hit occurred as often as the occurrence count of the level (with a
+ * minimum of once), the timer control bits are applied, the trigger is raised
+ * (if requested) and the state machine continues with the next level (unless
+ * the level is the last state). Otherwise, if the else sum yields true, the
+ * state machine jumps to the else level. Running timers are incremented once
+ * per sample.
+ * </p>
+ * <p>
+ * Samples can be fed in multiple consecutive chunks; all state (including
+ * the previous sample for edge detection) is retained between them. This
+ * class is not thread-safe.
+ * </p>
+ */
+public final class TriggerEmulator
+{
+  // CONSTANTS
+
+  /** The maximum number of sequence levels. */
+  private static final int LEVEL_COUNT = 16;
+  /** The occurrence counter is 20 bits wide. */
+  private static final int OCCURRENCE_MASK = 0x000FFFFF;
+  /** The timers are 36 bits wide. */
+  private static final long TIMER_MASK = 0xFFFFFFFFFL;
+  /** The sum inputs that are fed by the timers. */
+  static final int[] TIMER_INPUTS = { 1 << 7, 1 << 15 };
+
+  /** Denotes that the capture sum of a level yields true. */
+  static final int CAPTURE = 1;
+  /** Denotes that the hit sum of a level yields true. */
+  static final int HIT = 2;
+  /** Denotes that the hit sum of a level yields false, and its else sum true. */
+  static final int ELSE = 4;
+
+  // VARIABLES
+
+  private final TriggerSequenceState[] levels;
+  private final TriggerSumEvaluator[] captureSums;
+  private final TriggerSumEvaluator[] hitSums;
+  private final TriggerSumEvaluator[] elseSums;
+  private final long[] timerValues;
+
+  private int level;
+  private int occurrences;
+  private final long[] timers;
+  private final boolean[] timerRunning;
+  private int prevSample;
+  private boolean havePrevSample;
+  private long sampleIndex;
+  private long captureCount;
+  private boolean triggered;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerEmulator} instance.
+   * 
+   * @param aStates
+   *          the trigger sequence states to emulate, cannot be
+   *          <code>null</code>. Levels not defined by any of the given states
+   *          are considered to be empty, i.e., they never yield a hit.
+   * @throws IllegalArgumentException
+   *           in case the given states were <code>null</code>.
+   * @see DemonCoreCommandWriter#compile(TriggerSequenceState...)
+   */
+  public TriggerEmulator( final TriggerSequenceState... aStates )
+  {
+    this( DemonCoreCommandWriter.compile( aStates ) );
+  }
+
+  /**
+   * Creates a new {@link TriggerEmulator} instance for a compiled program.
+   * 
+   * @param aProgram
+   *          the program to emulate, cannot be <code>null</code>. Levels whose
+   *          chains are not part of the program are considered to be empty,
+   *          i.e., they never yield a hit.
+   * @throws IllegalArgumentException
+   *           in case the given program was <code>null</code>, or contained
+   *           chains that cannot be represented by the trigger model.
+   */
+  public TriggerEmulator( final DemonCoreProgram aProgram )
+  {
+    final DemonCoreDecompiler decompiler = new DemonCoreDecompiler( aProgram );
+    if ( !decompiler.isRepresentable() )
+    {
+      throw new IllegalArgumentException( "Program cannot be emulated!" );
+    }
+
+    this.levels = new TriggerSequenceState[LEVEL_COUNT];
+    this.captureSums = new TriggerSumEvaluator[LEVEL_COUNT];
+    this.hitSums = new TriggerSumEvaluator[LEVEL_COUNT];
+    this.elseSums = new TriggerSumEvaluator[LEVEL_COUNT];
+
+    for ( int i = 0; i < LEVEL_COUNT; i++ )
+    {
+      this.levels[i] = decompiler.getState( i );
+      if ( this.levels[i] == null )
+      {
+        this.levels[i] = new TriggerSequenceState();
+        this.levels[i].setStateNumber( i );
+      }
+
+      this.captureSums[i] = createEvaluator( decompiler, i, TriggerStateTerm.CAPTURE );
+      this.hitSums[i] = createEvaluator( decompiler, i, TriggerStateTerm.HIT );
+      this.elseSums[i] = createEvaluator( decompiler, i, TriggerStateTerm.ELSE );
+    }
+
+    // All sums share the same input terms, and thus the same timer values...
+    this.timerValues = new long[2];
+    final TriggerTermType[] timerTypes = { TriggerTermType.TERM_TIMER1, TriggerTermType.TERM_TIMER2 };
+    for ( int t = 0; t < timerTypes.length; t++ )
+    {
+      final TriggerTimer timer = ( TriggerTimer )decompiler.getTerm( timerTypes[t] );
+      this.timerValues[t] = ( timer == null ) ? 0L : timer.getValue();
+    }
+
+    this.timers = new long[2];
+    this.timerRunning = new boolean[2];
+
+    reset();
+  }
+
+  /**
+   * Creates a new {@link TriggerEmulator} instance that shares its (immutable)
+   * program with, and starts in the same state as, a given emulator.
+   * 
+   * @param aEmulator
+   *          the emulator to copy, cannot be <code>null</code>.
+   */
+  TriggerEmulator( final TriggerEmulator aEmulator )
+  {
+    this.levels = aEmulator.levels;
+    this.captureSums = aEmulator.captureSums;
+    this.hitSums = aEmulator.hitSums;
+    this.elseSums = aEmulator.elseSums;
+    this.timerValues = aEmulator.timerValues;
+
+    this.timers = new long[2];
+    this.timerRunning = new boolean[2];
+
+    copyStateFrom( aEmulator );
+  }
+
+  // METHODS
+
+  /**
+   * Copies the complete state of a given emulator, which must run the same
+   * program, into this emulator.
+   * 
+   * @param aEmulator
+   *          the emulator to copy the state from, cannot be <code>null</code>.
+   */
+  void copyStateFrom( final TriggerEmulator aEmulator )
+  {
+    this.level = aEmulator.level;
+    this.occurrences = aEmulator.occurrences;
+    this.timers[0] = aEmulator.timers[0];
+    this.timers[1] = aEmulator.timers[1];
+    this.timerRunning[0] = aEmulator.timerRunning[0];
+    this.timerRunning[1] = aEmulator.timerRunning[1];
+    this.prevSample = aEmulator.prevSample;
+    this.havePrevSample = aEmulator.havePrevSample;
+    this.sampleIndex = aEmulator.sampleIndex;
+    this.captureCount = aEmulator.captureCount;
+    this.triggered = aEmulator.triggered;
+  }
+
+  /**
+   * Returns the number of samples that were captured, that is, for which the
+   * capture sum of the then current level yielded true.
+   * 
+   * @return the capture count, >= 0.
+   */
+  public long getCaptureCount()
+  {
+    return this.captureCount;
+  }
+
+  /**
+   * Returns the current sequence level of the state machine.
+   * 
+   * @return the current level, 0..15.
+   */
+  public int getLevel()
+  {
+    return this.level;
+  }
+
+  /**
+   * Returns the number of hits counted in the current level.
+   * 
+   * @return the occurrence counter, >= 0.
+   */
+  int getOccurrences()
+  {
+    return this.occurrences;
+  }
+
+  /**
+   * Returns the sequence state of a given level of the emulated program.
+   * 
+   * @param aLevel
+   *          the level, 0..15.
+   * @return the sequence state, as decompiled from the program, never
+   *         <code>null</code>. Should not be modified.
+   */
+  TriggerSequenceState getSequenceState( final int aLevel )
+  {
+    return this.levels[aLevel];
+  }
+
+  /**
+   * Returns the current value of one of the timers.
+   * 
+   * @param aTimer
+   *          the timer index, 0 or 1.
+   * @return the timer value, 36 bits.
+   */
+  long getTimer( final int aTimer )
+  {
+    return this.timers[aTimer];
+  }
+
+  /**
+   * Returns the inputs the sums of a given level depend on.
+   * 
+   * @param aLevel
+   *          the level, 0..15.
+   * @return a bitmask where bit <tt>n</tt> is set if the outcome of the
+   *         capture, hit or else sum of the level depends on input <tt>n</tt>.
+   */
+  int getUsedInputs( final int aLevel )
+  {
+    return this.captureSums[aLevel].getUsedInputs() | this.hitSums[aLevel].getUsedInputs()
+        | this.elseSums[aLevel].getUsedInputs();
+  }
+
+  /**
+   * Returns the value one of the timers is compared against.
+   * 
+   * @param aTimer
+   *          the timer index, 0 or 1.
+   * @return the timer value as programmed into the device, 36 bits.
+   */
+  long getTimerValue( final int aTimer )
+  {
+    return this.timerValues[aTimer];
+  }
+
+  /**
+   * Returns the index of the next sample to be processed.
+   * 
+   * @return the number of processed samples, >= 0.
+   */
+  public long getSampleIndex()
+  {
+    return this.sampleIndex;
+  }
+
+  /**
+   * Returns whether one of the timers is currently running.
+   * 
+   * @param aTimer
+   *          the timer index, 0 or 1.
+   * @return <code>true</code> if the timer is running, <code>false</code>
+   *         otherwise.
+   */
+  boolean isTimerRunning( final int aTimer )
+  {
+    return this.timerRunning[aTimer];
+  }
+
+  /**
+   * Returns whether the trigger has been raised.
+   * 
+   * @return <code>true</code> if the trigger is raised, <code>false</code>
+   *         otherwise.
+   */
+  public boolean isTriggered()
+  {
+    return this.triggered;
+  }
+
+  /**
+   * Processes the given samples until the trigger is raised.
+   * 
+   * @param aSamples
+   *          the samples to process, cannot be <code>null</code>;
+   * @param aOffset
+   *          the offset in the given array of the first sample to process;
+   * @param aLength
+   *          the number of samples to process.
+   * @return the (absolute) index of the sample that raised the trigger, or
+   *         <tt>-1</tt> if the trigger was not raised (or was already raised
+   *         before).
+   */
+  public long process( final int[] aSamples, final int aOffset, final int aLength )
+  {
+    if ( this.triggered )
+    {
+      return -1L;
+    }
+
+    final int end = aOffset + aLength;
+    for ( int i = aOffset; i < end; i++ )
+    {
+      if ( step( aSamples[i] ) )
+      {
+        return this.sampleIndex - 1L;
+      }
+    }
+    return -1L;
+  }
+
+  /**
+   * Processes the remaining samples of the given buffer until the trigger is
+   * raised. Upon return, the buffer is positioned directly after the last
+   * processed sample.
+   * 
+   * @param aSamples
+   *          the samples to process, cannot be <code>null</code>.
+   * @return the (absolute) index of the sample that raised the trigger, or
+   *         <tt>-1</tt> if the trigger was not raised (or was already raised
+   *         before).
+   */
+  public long process( final IntBuffer aSamples )
+  {
+    if ( this.triggered )
+    {
+      return -1L;
+    }
+
+    while ( aSamples.hasRemaining() )
+    {
+      if ( step( aSamples.get() ) )
+      {
+        return this.sampleIndex - 1L;
+      }
+    }
+    return -1L;
+  }
+
+  /**
+   * Places this emulator in the state it would be in after processing the
+   * samples up to a given position, leaving its timers untouched.
+   * 
+   * @param aLevel
+   *          the current level, 0..15;
+   * @param aOccurrences
+   *          the number of hits counted in the given level;
+   * @param aSampleIndex
+   *          the (absolute) index of the next sample to process, > 0;
+   * @param aPrevSample
+   *          the sample preceding the next sample;
+   * @param aCaptureCount
+   *          the number of samples captured;
+   * @param aTriggered
+   *          <code>true</code> if the trigger has been raised,
+   *          <code>false</code> otherwise.
+   */
+  void moveTo( final int aLevel, final int aOccurrences, final long aSampleIndex, final int aPrevSample,
+      final long aCaptureCount, final boolean aTriggered )
+  {
+    this.level = aLevel;
+    this.occurrences = aOccurrences;
+    this.sampleIndex = aSampleIndex;
+    this.havePrevSample = true;
+    this.prevSample = aPrevSample;
+    this.captureCount = aCaptureCount;
+    this.triggered = aTriggered;
+  }
+
+  /**
+   * Resets the state machine to its initial level, but retains the current
+   * sample index and previous sample, allowing the trigger to be searched for
+   * again in the remainder of the sample data.
+   */
+  public void rearm()
+  {
+    this.level = 0;
+    this.occurrences = 0;
+    this.timers[0] = this.timers[1] = 0L;
+    this.timerRunning[0] = this.timerRunning[1] = false;
+    this.triggered = false;
+  }
+
+  /**
+   * Completely resets this emulator to its initial state.
+   */
+  public void reset()
+  {
+    rearm();
+
+    this.prevSample = 0;
+    this.havePrevSample = false;
+    this.sampleIndex = 0L;
+    this.captureCount = 0L;
+  }
+
+  /**
+   * Resets this emulator and processes all given samples until the trigger is
+   * raised.
+   * 
+   * @param aSamples
+   *          the samples to process, cannot be <code>null</code>.
+   * @return the index of the sample that raised the trigger, or <tt>-1</tt>
+   *         if the trigger was not raised.
+   */
+  public long run( final int[] aSamples )
+  {
+    reset();
+    return process( aSamples, 0, aSamples.length );
+  }
+
+  /**
+   * Sets the state of one of the timers.
+   * 
+   * @param aTimer
+   *          the timer index, 0 or 1;
+   * @param aValue
+   *          the new timer value, only the lower 36 bits are used;
+   * @param aRunning
+   *          <code>true</code> if the timer is running, <code>false</code> if
+   *          it is stopped.
+   */
+  void setTimer( final int aTimer, final long aValue, final boolean aRunning )
+  {
+    this.timers[aTimer] = aValue & TIMER_MASK;
+    this.timerRunning[aTimer] = aRunning;
+  }
+
+  /**
+   * Returns whether the outcome of the sums of a given level depends on one of
+   * the timers.
+   * 
+   * @param aLevel
+   *          the level, 0..15;
+   * @param aTimer
+   *          the timer index, 0 or 1.
+   * @return <code>true</code> if the outcome of the capture, hit or else sum
+   *         of the level depends on the timer input, <code>false</code>
+   *         otherwise.
+   */
+  boolean usesTimer( final int aLevel, final int aTimer )
+  {
+    return ( getUsedInputs( aLevel ) & TIMER_INPUTS[aTimer] ) != 0;
+  }
+
+  /**
+   * Applies the given timer control bits to the given timer.
+   * 
+   * @param aTimer
+   *          the timer index, 0 or 1;
+   * @param aMask
+   *          the timer mask (bit 0 = timer 1, bit 1 = timer 2);
+   * @param aState
+   *          the sequence state to take the timer control bits from.
+   */
+  private void controlTimer( final int aTimer, final int aMask, final TriggerSequenceState aState )
+  {
+    if ( ( aState.getClearTimer() & aMask ) != 0 )
+    {
+      this.timers[aTimer] = 0L;
+    }
+    if ( ( aState.getStopTimer() & aMask ) != 0 )
+    {
+      this.timerRunning[aTimer] = false;
+    }
+    if ( ( aState.getStartTimer() & aMask ) != 0 )
+    {
+      this.timerRunning[aTimer] = true;
+    }
+  }
+
+  /**
+   * Creates an evaluator for the decompiled sum of a given level.
+   * 
+   * @return the evaluator of the sum, or of a sum that never yields true if
+   *         its chain is not part of the program.
+   */
+  private static TriggerSumEvaluator createEvaluator( final DemonCoreDecompiler aDecompiler, final int aLevel,
+      final TriggerStateTerm aStateTerm )
+  {
+    TriggerSum sum = aDecompiler.getTriggerSum( aLevel, aStateTerm );
+    if ( sum == null )
+    {
+      sum = new TriggerSum( aStateTerm );
+      sum.getFinalTerm().setOperation( TriggerOperation.NOP );
+    }
+    return new TriggerSumEvaluator( sum );
+  }
+
+  /**
+   * Evaluates the sums of a given level for the given input hits.
+   * 
+   * @param aLevel
+   *          the level, 0..15;
+   * @param aInputs
+   *          the hits of the inputs of the sums, as determined by
+   *          {@link #getInputs(int, int, int, long, long)}.
+   * @return the outcome, a combination of {@link #CAPTURE} and either
+   *         {@link #HIT} or {@link #ELSE}.
+   */
+  int evaluate( final int aLevel, final int aInputs )
+  {
+    int result = 0;
+    if ( this.captureSums[aLevel].evaluate( aInputs ) )
+    {
+      result |= CAPTURE;
+    }
+    if ( this.hitSums[aLevel].evaluate( aInputs ) )
+    {
+      result |= HIT;
+    }
+    else if ( this.elseSums[aLevel].evaluate( aInputs ) )
+    {
+      result |= ELSE;
+    }
+    return result;
+  }
+
+  /**
+   * Determines the hits of the inputs the sums of a given level depend on, for
+   * a single sample. As all sums share the same input terms, the hits do not
+   * depend on the level otherwise.
+   * 
+   * @param aLevel
+   *          the level, 0..15;
+   * @param aSample
+   *          the sample to evaluate;
+   * @param aPrevSample
+   *          the previous sample, used for edge detection;
+   * @param aTimer1
+   *          the (incremented) value of the first timer;
+   * @param aTimer2
+   *          the (incremented) value of the second timer.
+   * @return the input hits, where bit <tt>n</tt> denotes the hit of input
+   *         <tt>n</tt>.
+   */
+  int getInputs( final int aLevel, final int aSample, final int aPrevSample, final long aTimer1, final long aTimer2 )
+  {
+    return this.captureSums[aLevel].getInputs( aSample, aPrevSample, aTimer1, aTimer2 )
+        | this.hitSums[aLevel].getInputs( aSample, aPrevSample, aTimer1, aTimer2 )
+        | this.elseSums[aLevel].getInputs( aSample, aPrevSample, aTimer1, aTimer2 );
+  }
+
+  /**
+   * Processes a single sample.
+   * 
+   * @param aSample
+   *          the sample to process.
+   * @return <code>true</code> if the trigger is raised by this sample,
+   *         <code>false</code> otherwise.
+   */
+  boolean step( final int aSample )
+  {
+    final int prev = this.havePrevSample ? this.prevSample : aSample;
+    final int lvl = this.level;
+
+    for ( int t = 0; t < 2; t++ )
+    {
+      if ( this.timerRunning[t] )
+      {
+        this.timers[t] = ( this.timers[t] + 1L ) & TIMER_MASK;
+      }
+    }
+
+    final int outcome = evaluate( lvl, getInputs( lvl, aSample, prev, this.timers[0], this.timers[1] ) );
+    if ( ( outcome & CAPTURE ) != 0 )
+    {
+      this.captureCount++;
+    }
+
+    this.prevSample = aSample;
+    this.havePrevSample = true;
+    this.sampleIndex++;
+
+    final TriggerSequenceState state = this.levels[lvl];
+
+    if ( ( outcome & HIT ) != 0 )
+    {
+      this.occurrences = ( this.occurrences + 1 ) & OCCURRENCE_MASK;
+      if ( this.occurrences >= Math.max( 1, state.getOccurrenceCount() & OCCURRENCE_MASK ) )
+      {
+        this.occurrences = 0;
+
+        controlTimer( 0, 1, state );
+        controlTimer( 1, 2, state );
+
+        if ( !state.isLastState() )
+        {
+          this.level = ( lvl + 1 ) % LEVEL_COUNT;
+        }
+        if ( state.isRaiseTrigger() )
+        {
+          this.triggered = true;
+          return true;
+        }
+      }
+    }
+    else if ( ( outcome & ELSE ) != 0 )
+    {
+      this.occurrences = 0;
+      this.level = state.getElseState();
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,880 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static nl.lxtreme.ols.lib.demoncore.DemonCoreCommandWriter.*;
+
+import java.text.*;
+import java.util.*;
+
+
+/**
+ * Compiles boolean expressions over the inputs of a trigger sum into the
+ * operations that make the sum implement that expression.
+ * <p>
+ * Expressions refer to the inputs by their name: <tt>A</tt> through
+ * <tt>J</tt>, <tt>Range1</tt>, <tt>Range2</tt>, <tt>Edge1</tt>,
+ * <tt>Edge2</tt>, <tt>Timer1</tt> and <tt>Timer2</tt> (case-insensitive).
+ * Next to parentheses and the constants <tt>0</tt> and <tt>1</tt>, the
+ * operators <tt>!</tt> (or <tt>~</tt>), <tt>&amp;</tt>, <tt>^</tt> and
+ * <tt>|</tt> can be used, in that order of precedence. For example:
+ * <tt>(A &amp; C) | !(F ^ G)</tt>.
+ * </p>
+ * <p>
+ * As each input has a fixed position in the pair, mid and final terms of a
+ * sum, not every expression can be implemented. The compiler works on the
+ * truth table of the expression, and splits it top-down along the tree: each
+ * term must be a single operation on the outcomes of its child terms, with
+ * each child computing a function of its own inputs only. These subproblems
+ * are memoized, and so are the results per expression.
+ * </p>
+ * <p>
+ * The device only knows the operations of a sum: the input states are never
+ * programmed, and the raw hit of every input is fed into its pair term.
+ * Negations and inputs that do not matter are therefore expressed through the
+ * operations only, and all inputs are left enabled. As a consequence, an
+ * expression like <tt>A &amp; !B</tt> cannot be implemented, as no pair term
+ * operation yields that function of its two inputs.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public final class TriggerExpressionCompiler
+{
+  // INNER TYPES
+
+  /**
+   * Provides the operations that implement an expression.
+   */
+  public static final class Assignment
+  {
+    // VARIABLES
+
+    private final TriggerOperation[] operations;
+    private final TriggerInputState[] inputStates;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Assignment} instance.
+     * 
+     * @param aRoot
+     *          the solution of the final term, cannot be <code>null</code>.
+     */
+    Assignment( final Node aRoot )
+    {
+      this.operations = new TriggerOperation[PackedTriggerSum.OP_COUNT];
+      this.inputStates = new TriggerInputState[PackedTriggerSum.INPUTS.length];
+
+      this.operations[PackedTriggerSum.FINAL_OP] = aRoot.operation;
+      for ( int m = 0; m < 2; m++ )
+      {
+        final Node mid = aRoot.children[m];
+        this.operations[PackedTriggerSum.MID_OPS + m] = mid.operation;
+
+        for ( int p = 0; p < 4; p++ )
+        {
+          final Node pair = mid.children[p];
+          final int pairIdx = ( m * 4 ) + p;
+          this.operations[PackedTriggerSum.PAIR_OPS + pairIdx] = pair.operation;
+          this.inputStates[2 * pairIdx] = pair.children[0].inputState;
+          this.inputStates[( 2 * pairIdx ) + 1] = pair.children[1].inputState;
+        }
+      }
+    }
+
+    // METHODS
+
+    /**
+     * Applies this assignment to the given trigger sum. Only the operations
+     * are changed, and all inputs are enabled; the parameters of the inputs
+     * are retained.
+     * 
+     * @param aSum
+     *          the trigger sum to apply this assignment to, cannot be
+     *          <code>null</code>.
+     */
+    public void applyTo( final TriggerSum aSum )
+    {
+      if ( aSum == null )
+      {
+        throw new IllegalArgumentException( "Sum cannot be null!" );
+      }
+
+      final PackedTriggerSum store = aSum.getStore();
+      for ( int i = 0; i < this.operations.length; i++ )
+      {
+        store.setOperation( i, this.operations[i] );
+      }
+      for ( int i = 0; i < this.inputStates.length; i++ )
+      {
+        store.setState( i, this.inputStates[i] );
+      }
+    }
+
+    /**
+     * Applies this assignment to the given trigger sum snapshot. The
+     * parameters of the inputs are retained.
+     * 
+     * @param aSnapshot
+     *          the trigger sum snapshot to apply this assignment to, cannot be
+     *          <code>null</code>.
+     * @return a snapshot with the operations of this assignment, and all
+     *         inputs enabled, never <code>null</code>.
+     */
+    public TriggerSumSnapshot applyTo( final TriggerSumSnapshot aSnapshot )
+    {
+      if ( aSnapshot == null )
+      {
+        throw new IllegalArgumentException( "Snapshot cannot be null!" );
+      }
+
+      TriggerSumSnapshot result = aSnapshot.withFinalOperation( this.operations[PackedTriggerSum.FINAL_OP] );
+      for ( int m = 0; m < 2; m++ )
+      {
+        result = result.withMidOperation( m, this.operations[PackedTriggerSum.MID_OPS + m] );
+      }
+      for ( int p = 0; p < 8; p++ )
+      {
+        result = result.withPairOperation( p, this.operations[PackedTriggerSum.PAIR_OPS + p] );
+      }
+      for ( int i = 0; i < this.inputStates.length; i++ )
+      {
+        result = result.withInput( i, result.getInput( i ).withState( this.inputStates[i] ) );
+      }
+      return result;
+    }
+
+    /**
+     * Returns the operation of the final term.
+     * 
+     * @return the final operation, never <code>null</code>.
+     */
+    public TriggerOperation getFinalOperation()
+    {
+      return this.operations[PackedTriggerSum.FINAL_OP];
+    }
+
+    /**
+     * Returns the state of the given input.
+     * 
+     * @param aType
+     *          the type of the input, cannot be <code>null</code>.
+     * @return the input state, always {@link TriggerInputState#ENABLED}.
+     */
+    public TriggerInputState getInputState( final TriggerTermType aType )
+    {
+      return this.inputStates[PackedTriggerSum.getInputIndex( aType )];
+    }
+
+    /**
+     * Returns the operation of one of the mid terms.
+     * 
+     * @param aIndex
+     *          the index of the mid term, 0..1.
+     * @return the mid operation, never <code>null</code>.
+     */
+    public TriggerOperation getMidOperation( final int aIndex )
+    {
+      return this.operations[PackedTriggerSum.MID_OPS + aIndex];
+    }
+
+    /**
+     * Returns the operation of one of the pair terms.
+     * 
+     * @param aIndex
+     *          the index of the pair term, 0..7.
+     * @return the pair operation, never <code>null</code>.
+     */
+    public TriggerOperation getPairOperation( final int aIndex )
+    {
+      return this.operations[PackedTriggerSum.PAIR_OPS + aIndex];
+    }
+  }
+
+  /**
+   * Denotes the solution for a single term (or input) of the tree.
+   */
+  static final class Node
+  {
+    // VARIABLES
+
+    final TriggerOperation operation;
+    final Node[] children;
+    final TriggerInputState inputState;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Node} instance for a term.
+     */
+    Node( final TriggerOperation aOperation, final Node[] aChildren )
+    {
+      this.operation = aOperation;
+      this.children = aChildren;
+      this.inputState = null;
+    }
+
+    /**
+     * Creates a new {@link Node} instance for an input.
+     */
+    Node( final TriggerInputState aInputState )
+    {
+      this.operation = null;
+      this.children = null;
+      this.inputState = aInputState;
+    }
+  }
+
+  /**
+   * Parses an expression directly into its truth table.
+   */
+  static final class Parser
+  {
+    // VARIABLES
+
+    private final String text;
+    private int pos;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Parser} instance.
+     */
+    Parser( final String aText )
+    {
+      this.text = aText;
+      this.pos = 0;
+    }
+
+    // METHODS
+
+    /**
+     * Parses the complete expression.
+     * 
+     * @return the truth table of the expression, as 1024 words.
+     * @throws ParseException
+     *           in case the expression is invalid.
+     */
+    long[] parse() throws ParseException
+    {
+      final long[] result = parseOr();
+      if ( peek() >= 0 )
+      {
+        throw new ParseException( "Unexpected '" + ( char )peek() + "'!", this.pos );
+      }
+      return result;
+    }
+
+    /**
+     * Consumes the given character if it is the next one.
+     */
+    private boolean accept( final char aChar )
+    {
+      if ( peek() == aChar )
+      {
+        this.pos++;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Parses a conjunction: <tt>unary ('&amp;' unary)*</tt>.
+     */
+    private long[] parseAnd() throws ParseException
+    {
+      final long[] result = parseUnary();
+      while ( accept( '&' ) )
+      {
+        final long[] operand = parseUnary();
+        for ( int i = 0; i < result.length; i++ )
+        {
+          result[i] &= operand[i];
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Parses a disjunction: <tt>xor ('|' xor)*</tt>.
+     */
+    private long[] parseOr() throws ParseException
+    {
+      final long[] result = parseXor();
+      while ( accept( '|' ) )
+      {
+        final long[] operand = parseXor();
+        for ( int i = 0; i < result.length; i++ )
+        {
+          result[i] |= operand[i];
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Parses a negation, parenthesized expression, constant or input name.
+     */
+    private long[] parseUnary() throws ParseException
+    {
+      if ( accept( '!' ) || accept( '~' ) )
+      {
+        final long[] result = parseUnary();
+        for ( int i = 0; i < result.length; i++ )
+        {
+          result[i] = ~result[i];
+        }
+        return result;
+      }
+
+      if ( accept( '(' ) )
+      {
+        final long[] result = parseOr();
+        if ( !accept( ')' ) )
+        {
+          throw new ParseException( "Missing ')'!", this.pos );
+        }
+        return result;
+      }
+
+      final int start = this.pos;
+      while ( ( this.pos < this.text.length() ) && Character.isLetterOrDigit( this.text.charAt( this.pos ) ) )
+      {
+        this.pos++;
+      }
+      if ( start == this.pos )
+      {
+        throw new ParseException( ( peek() < 0 ) ? "Unexpected end of expression!" : "Unexpected '"
+            + ( char )peek() + "'!", this.pos );
+      }
+
+      final String name = this.text.substring( start, this.pos ).toUpperCase( Locale.ENGLISH );
+      if ( "0".equals( name ) || "1".equals( name ) )
+      {
+        final long[] result = new long[WORDS];
+        Arrays.fill( result, "1".equals( name ) ? -1L : 0L );
+        return result;
+      }
+
+      final Integer input = INPUT_NAMES.get( name );
+      if ( input == null )
+      {
+        throw new ParseException( "Unknown input: " + this.text.substring( start, this.pos ) + "!", start );
+      }
+      return createInputTable( input.intValue() );
+    }
+
+    /**
+     * Parses an exclusive disjunction: <tt>and ('^' and)*</tt>.
+     */
+    private long[] parseXor() throws ParseException
+    {
+      final long[] result = parseAnd();
+      while ( accept( '^' ) )
+      {
+        final long[] operand = parseAnd();
+        for ( int i = 0; i < result.length; i++ )
+        {
+          result[i] ^= operand[i];
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Returns the next non-whitespace character, or -1 at the end.
+     */
+    private int peek()
+    {
+      while ( ( this.pos < this.text.length() ) && Character.isWhitespace( this.text.charAt( this.pos ) ) )
+      {
+        this.pos++;
+      }
+      return ( this.pos < this.text.length() ) ? this.text.charAt( this.pos ) : -1;
+    }
+  }
+
+  /**
+   * Provides the key of a memoized subproblem.
+   */
+  static final class TableKey
+  {
+    // VARIABLES
+
+    private final int level;
+    private final long[] table;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link TableKey} instance.
+     */
+    TableKey( final int aLevel, final long[] aTable )
+    {
+      this.level = aLevel;
+      this.table = aTable;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( final Object aObject )
+    {
+      if ( this == aObject )
+      {
+        return true;
+      }
+      if ( !( aObject instanceof TableKey ) )
+      {
+        return false;
+      }
+      final TableKey other = ( TableKey )aObject;
+      return ( this.level == other.level ) && Arrays.equals( this.table, other.table );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+      return ( 31 * this.level ) + Arrays.hashCode( this.table );
+    }
+  }
+
+  // CONSTANTS
+
+  /** The levels of the tree: inputs, pair, mid and final terms. */
+  private static final int LEVEL_INPUT = 0;
+  private static final int LEVEL_PAIR = 1;
+  private static final int LEVEL_MID = 2;
+  private static final int LEVEL_FINAL = 3;
+
+  /** The number of inputs covered by a term on each level. */
+  private static final int[] INPUTS = { 1, 2, 8, 16 };
+  /** The number of child terms of a term on each level. */
+  private static final int[] FAN_IN = { 0, 2, 4, 2 };
+  private static final int[][] LUTS = { null, PAIR_VALUE, MID_VALUE, FINAL_VALUE };
+
+  /** The number of words in the truth table of a complete sum. */
+  private static final int WORDS = TriggerSumTable.SIZE / 64;
+
+  /** The operations to try, in order of preference. */
+  private static final TriggerOperation[] OPERATIONS = { TriggerOperation.OR, TriggerOperation.AND,
+      TriggerOperation.XOR, TriggerOperation.NOR, TriggerOperation.NAND, TriggerOperation.NXOR,
+      TriggerOperation.A_ONLY, TriggerOperation.B_ONLY };
+
+  /** The truth table patterns of the first six inputs within a single word. */
+  private static final long[] PATTERNS = { 0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+      0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L };
+
+  private static final Map<String, Integer> INPUT_NAMES = new HashMap<String, Integer>();
+
+  private static final int CACHE_SIZE = 256;
+
+  static
+  {
+    for ( int i = 0; i < PackedTriggerSum.INPUTS.length; i++ )
+    {
+      // TERM_A => A, TERM_RANGE1 => RANGE1, ...
+      INPUT_NAMES.put( PackedTriggerSum.INPUTS[i].name().substring( 5 ), Integer.valueOf( i ) );
+    }
+  }
+
+  // VARIABLES
+
+  private final Map<String, Assignment> cache;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerExpressionCompiler} instance.
+   */
+  public TriggerExpressionCompiler()
+  {
+    this.cache = new LinkedHashMap<String, Assignment>( 16, 0.75f, true )
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<String, Assignment> aEldest )
+      {
+        return size() > CACHE_SIZE;
+      }
+    };
+  }
+
+  // METHODS
+
+  /**
+   * Returns the truth table of a single input.
+   */
+  static long[] createInputTable( final int aInput )
+  {
+    final long[] result = new long[WORDS];
+    for ( int i = 0; i < WORDS; i++ )
+    {
+      if ( aInput < 6 )
+      {
+        result[i] = PATTERNS[aInput];
+      }
+      else
+      {
+        result[i] = ( ( ( i >>> ( aInput - 6 ) ) & 1 ) != 0 ) ? -1L : 0L;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a single bit of a truth table.
+   */
+  private static int bit( final long[] aTable, final int aIndex )
+  {
+    return ( int )( aTable[aIndex >>> 6] >>> aIndex ) & 1;
+  }
+
+  /**
+   * Creates the solution for a term with a constant outcome.
+   */
+  private static Node createConstantNode( final int aLevel, final int aValue )
+  {
+    return new Node( ( aValue != 0 ) ? TriggerOperation.ANY : TriggerOperation.NOP, createUnusedNodes( aLevel ) );
+  }
+
+  /**
+   * Creates an empty truth table for the given number of inputs.
+   */
+  private static long[] createTable( final int aInputs )
+  {
+    return new long[Math.max( 1, ( 1 << aInputs ) >>> 6 )];
+  }
+
+  /**
+   * Creates the solutions for the children of a term whose outcome does not
+   * depend on them.
+   */
+  private static Node[] createUnusedNodes( final int aLevel )
+  {
+    final Node[] result = new Node[FAN_IN[aLevel]];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      if ( aLevel == LEVEL_PAIR )
+      {
+        result[i] = new Node( TriggerInputState.ENABLED );
+      }
+      else
+      {
+        result[i] = new Node( TriggerOperation.OR, createUnusedNodes( aLevel - 1 ) );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Determines how the outcome of a term depends on one of its child terms.
+   * <p>
+   * The values of the inputs of the child are divided into classes that lead
+   * to the same outcome for all values of the other inputs. As a child term
+   * only has a single output, there can be at most two of them.
+   * </p>
+   * 
+   * @return the class of each value of the inputs of the child, or
+   *         <code>null</code> if there are more than two classes.
+   */
+  private static int[] classify( final long[] aTable, final int aInputs, final int aChild, final int aWidth )
+  {
+    final int shift = aChild * aWidth;
+    final int values = 1 << aWidth;
+    final int rest = 1 << ( aInputs - aWidth );
+
+    final long[][] signatures = new long[values][];
+    for ( int v = 0; v < values; v++ )
+    {
+      signatures[v] = createTable( aInputs - aWidth );
+      for ( int r = 0; r < rest; r++ )
+      {
+        final int low = r & ( ( 1 << shift ) - 1 );
+        final int high = ( r >>> shift ) << ( shift + aWidth );
+        if ( bit( aTable, low | ( v << shift ) | high ) != 0 )
+        {
+          signatures[v][r >>> 6] |= ( 1L << r );
+        }
+      }
+    }
+
+    final int[] result = new int[values];
+    long[] other = null;
+    for ( int v = 1; v < values; v++ )
+    {
+      if ( Arrays.equals( signatures[v], signatures[0] ) )
+      {
+        result[v] = 0;
+      }
+      else if ( ( other == null ) || Arrays.equals( signatures[v], other ) )
+      {
+        other = signatures[v];
+        result[v] = 1;
+      }
+      else
+      {
+        return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether the given operation, with the given flipped children and
+   * constant outcomes of the independent children, yields the reduced truth
+   * table.
+   * <p>
+   * The independent children of a pair term are inputs, which cannot be made
+   * constant; the operation must yield the same outcome for both of their
+   * values.
+   * </p>
+   */
+  private static boolean matches( final TriggerOperation aOperation, final int aLevel, final int aDependent,
+      final int aFlips, final int aConstants, final int[] aReduced )
+  {
+    final int fanIn = FAN_IN[aLevel];
+    final int independent = ( ( 1 << fanIn ) - 1 ) & ~aDependent;
+    final int free = ( aLevel == LEVEL_PAIR ) ? independent : 0;
+    final int lut = LUTS[aLevel][aOperation.getOffset()];
+
+    for ( int y = 0; y < ( 1 << fanIn ); y++ )
+    {
+      if ( ( y & independent & ~free ) != 0 )
+      {
+        continue;
+      }
+
+      final int values = ( ( y ^ aFlips ) & aDependent ) | ( y & free ) | ( aConstants & independent & ~free );
+
+      int index = values;
+      if ( aLevel == LEVEL_PAIR )
+      {
+        // Each pair input occupies two LUT inputs...
+        index = ( ( values & 1 ) * 0x03 ) | ( ( values >>> 1 ) * 0x0C );
+      }
+
+      if ( ( ( lut >>> index ) & 1 ) != aReduced[y & aDependent] )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compiles the given expression.
+   * 
+   * @param aExpression
+   *          the expression to compile, cannot be <code>null</code>.
+   * @return the assignment implementing the expression, or <code>null</code>
+   *         if no assignment of operations can implement the expression.
+   * @throws ParseException
+   *           in case the expression is invalid.
+   */
+  public Assignment compile( final String aExpression ) throws ParseException
+  {
+    if ( aExpression == null )
+    {
+      throw new IllegalArgumentException( "Expression cannot be null!" );
+    }
+
+    synchronized ( this.cache )
+    {
+      if ( this.cache.containsKey( aExpression ) )
+      {
+        return this.cache.get( aExpression );
+      }
+    }
+
+    final long[] table = new Parser( aExpression ).parse();
+    final Node root = solve( LEVEL_FINAL, table, new HashMap<TableKey, Node>() );
+    final Assignment result = ( root == null ) ? null : new Assignment( root );
+
+    synchronized ( this.cache )
+    {
+      this.cache.put( aExpression, result );
+    }
+    return result;
+  }
+
+  /**
+   * Solves a single subproblem: finds the solution for a term on the given
+   * level that implements the given truth table over its inputs.
+   * 
+   * @return the solution, or <code>null</code> if there is none.
+   */
+  private Node solve( final int aLevel, final long[] aTable, final Map<TableKey, Node> aMemo )
+  {
+    final TableKey key = new TableKey( aLevel, aTable );
+    if ( aMemo.containsKey( key ) )
+    {
+      return aMemo.get( key );
+    }
+
+    final Node result = solveTerm( aLevel, aTable, aMemo );
+    aMemo.put( key, result );
+    return result;
+  }
+
+  /**
+   * Finds the solution for a term, without looking at the memoized ones.
+   */
+  private Node solveTerm( final int aLevel, final long[] aTable, final Map<TableKey, Node> aMemo )
+  {
+    final int inputs = INPUTS[aLevel];
+    final int fanIn = FAN_IN[aLevel];
+    final int width = INPUTS[aLevel - 1];
+
+    int ones = 0;
+    for ( int i = 0; i < ( 1 << inputs ); i++ )
+    {
+      ones += bit( aTable, i );
+    }
+    if ( ( ones == 0 ) || ( ones == ( 1 << inputs ) ) )
+    {
+      return createConstantNode( aLevel, ones );
+    }
+
+    // Determine which children matter, and how...
+    final int[][] classes = new int[fanIn][];
+    final int[] representatives = new int[fanIn];
+    int dependent = 0;
+    for ( int c = 0; c < fanIn; c++ )
+    {
+      classes[c] = classify( aTable, inputs, c, width );
+      if ( classes[c] == null )
+      {
+        return null;
+      }
+      for ( int v = 0; v < classes[c].length; v++ )
+      {
+        if ( classes[c][v] != 0 )
+        {
+          representatives[c] = v;
+          dependent |= ( 1 << c );
+          break;
+        }
+      }
+    }
+
+    // The outcome of this term in terms of the classes of its children...
+    final int[] reduced = new int[1 << fanIn];
+    for ( int y = 0; y < reduced.length; y++ )
+    {
+      int index = 0;
+      for ( int c = 0; c < fanIn; c++ )
+      {
+        if ( ( ( y >>> c ) & 1 ) != 0 )
+        {
+          index |= representatives[c] << ( c * width );
+        }
+      }
+      reduced[y] = bit( aTable, index );
+    }
+
+    // Inputs can neither be negated nor be made constant...
+    final int independent = ( ( 1 << fanIn ) - 1 ) & ~dependent;
+    final int flippable = ( aLevel == LEVEL_PAIR ) ? 0 : dependent;
+    final int constants = ( aLevel == LEVEL_PAIR ) ? 0 : independent;
+
+    for ( TriggerOperation operation : OPERATIONS )
+    {
+      int flips = 0;
+      do
+      {
+        int constantOnes = 0;
+        do
+        {
+          if ( matches( operation, aLevel, dependent, flips, constantOnes, reduced ) )
+          {
+            final Node[] children = solveChildren( aLevel, classes, dependent, flips, constantOnes, aMemo );
+            if ( children != null )
+            {
+              return new Node( operation, children );
+            }
+          }
+
+          constantOnes = ( constantOnes - constants ) & constants;
+        }
+        while ( constantOnes != 0 );
+
+        flips = ( flips - flippable ) & flippable;
+      }
+      while ( flips != 0 );
+    }
+
+    return null;
+  }
+
+  /**
+   * Finds the solutions for all children of a term.
+   * 
+   * @return the solutions, or <code>null</code> if a dependent child cannot
+   *         be solved.
+   */
+  private Node[] solveChildren( final int aLevel, final int[][] aClasses, final int aDependent, final int aFlips,
+      final int aConstants, final Map<TableKey, Node> aMemo )
+  {
+    final Node[] result = new Node[aClasses.length];
+    for ( int c = 0; c < result.length; c++ )
+    {
+      final int flip = ( aFlips >>> c ) & 1;
+
+      if ( aLevel == LEVEL_PAIR )
+      {
+        result[c] = new Node( TriggerInputState.ENABLED );
+      }
+      else if ( ( ( aDependent >>> c ) & 1 ) == 0 )
+      {
+        result[c] = createConstantNode( aLevel - 1, ( aConstants >>> c ) & 1 );
+      }
+      else
+      {
+        final long[] table = createTable( INPUTS[aLevel - 1] );
+        for ( int v = 0; v < aClasses[c].length; v++ )
+        {
+          if ( ( aClasses[c][v] ^ flip ) != 0 )
+          {
+            table[v >>> 6] |= ( 1L << v );
+          }
+        }
+
+        result[c] = solve( aLevel - 1, table, aMemo );
+        if ( result[c] == null )
+        {
+          return null;
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -31,8 +31,8 @@ public class TriggerFinalTerm extends AbstractTriggerOperationTerm
 {
   // VARIABLES
 
-  private final TriggerMidTerm termA;
-  private final TriggerMidTerm termB;
+  private TriggerMidTerm termA;
+  private TriggerMidTerm termB;
 
   // CONSTRUCTORS
 
@@ -43,8 +43,11 @@ public class TriggerFinalTerm extends AbstractTriggerOperationTerm
   public TriggerFinalTerm( final TriggerFinalTerm aFinalTerm )
   {
     super( aFinalTerm );
-    this.termA = new TriggerMidTerm( aFinalTerm.termA );
-    this.termB = new TriggerMidTerm( aFinalTerm.termB );
+    if ( !this.packed )
+    {
+      this.termA = new TriggerMidTerm( aFinalTerm.termA );
+      this.termB = new TriggerMidTerm( aFinalTerm.termB );
+    }
   }
 
   /**
@@ -61,6 +64,17 @@ public class TriggerFinalTerm extends AbstractTriggerOperationTerm
     reset();
   }
 
+  /**
+   * Creates a new TriggerFinalTerm instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>.
+   */
+  TriggerFinalTerm( final PackedTriggerSum aStore )
+  {
+    super( aStore, PackedTriggerSum.FINAL_OP );
+  }
+
   // METHODS
 
   /**
@@ -68,8 +82,8 @@ public class TriggerFinalTerm extends AbstractTriggerOperationTerm
    */
   public void accept( final ITriggerVisitor aVisitor ) throws IOException
   {
-    this.termB.accept( aVisitor );
-    this.termA.accept( aVisitor );
+    getTermB().accept( aVisitor );
+    getTermA().accept( aVisitor );
 
     aVisitor.visit( this );
   }
@@ -81,6 +95,10 @@ public class TriggerFinalTerm extends AbstractTriggerOperationTerm
    */
   public TriggerMidTerm getTermA()
   {
+    if ( this.termA == null )
+    {
+      this.termA = new TriggerMidTerm( this.store, 0 );
+    }
     return this.termA;
   }
 
@@ -91,6 +109,10 @@ public class TriggerFinalTerm extends AbstractTriggerOperationTerm
    */
   public TriggerMidTerm getTermB()
   {
+    if ( this.termB == null )
+    {
+      this.termB = new TriggerMidTerm( this.store, 1 );
+    }
     return this.termB;
   }
 
@@ -101,7 +123,14 @@ public class TriggerFinalTerm extends AbstractTriggerOperationTerm
   protected void reset()
   {
     super.reset();
-    this.termA.reset();
-    this.termB.reset();
+    if ( this.packed )
+    {
+      this.store.reset();
+    }
+    else
+    {
+      this.termA.reset();
+      this.termB.reset();
+    }
   }
 }
@@ -31,10 +31,10 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
 {
   // VARIABLES
 
-  private final TriggerPairTerm termA;
-  private final TriggerPairTerm termB;
-  private final TriggerPairTerm termC;
-  private final TriggerPairTerm termD;
+  private TriggerPairTerm termA;
+  private TriggerPairTerm termB;
+  private TriggerPairTerm termC;
+  private TriggerPairTerm termD;
 
   // CONSTRUCTORS
 
@@ -48,10 +48,13 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
   public TriggerMidTerm( final TriggerMidTerm aMidTerm )
   {
     super( aMidTerm );
-    this.termA = new TriggerPairTerm( aMidTerm.termA );
-    this.termB = new TriggerPairTerm( aMidTerm.termB );
-    this.termC = new TriggerPairTerm( aMidTerm.termC );
-    this.termD = new TriggerPairTerm( aMidTerm.termD );
+    if ( !this.packed )
+    {
+      this.termA = new TriggerPairTerm( aMidTerm.termA );
+      this.termB = new TriggerPairTerm( aMidTerm.termB );
+      this.termC = new TriggerPairTerm( aMidTerm.termC );
+      this.termD = new TriggerPairTerm( aMidTerm.termD );
+    }
   }
 
   /**
@@ -71,6 +74,19 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
     reset();
   }
 
+  /**
+   * Creates a new TriggerMidTerm instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aMid
+   *          the index of the mid term to view, 0..1.
+   */
+  TriggerMidTerm( final PackedTriggerSum aStore, final int aMid )
+  {
+    super( aStore, PackedTriggerSum.MID_OPS + aMid );
+  }
+
   // METHODS
 
   /**
@@ -78,10 +94,10 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
    */
   public void accept( final ITriggerVisitor aVisitor ) throws IOException
   {
-    this.termD.accept( aVisitor );
-    this.termC.accept( aVisitor );
-    this.termB.accept( aVisitor );
-    this.termA.accept( aVisitor );
+    getTermD().accept( aVisitor );
+    getTermC().accept( aVisitor );
+    getTermB().accept( aVisitor );
+    getTermA().accept( aVisitor );
 
     aVisitor.visit( this );
   }
@@ -93,6 +109,10 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
    */
   public TriggerPairTerm getTermA()
   {
+    if ( this.termA == null )
+    {
+      this.termA = new TriggerPairTerm( this.store, getPair( 0 ) );
+    }
     return this.termA;
   }
 
@@ -103,6 +123,10 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
    */
   public TriggerPairTerm getTermB()
   {
+    if ( this.termB == null )
+    {
+      this.termB = new TriggerPairTerm( this.store, getPair( 1 ) );
+    }
     return this.termB;
   }
 
@@ -113,6 +137,10 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
    */
   public TriggerPairTerm getTermC()
   {
+    if ( this.termC == null )
+    {
+      this.termC = new TriggerPairTerm( this.store, getPair( 2 ) );
+    }
     return this.termC;
   }
 
@@ -123,6 +151,10 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
    */
   public TriggerPairTerm getTermD()
   {
+    if ( this.termD == null )
+    {
+      this.termD = new TriggerPairTerm( this.store, getPair( 3 ) );
+    }
     return this.termD;
   }
 
@@ -133,9 +165,34 @@ public class TriggerMidTerm extends AbstractTriggerOperationTerm
   protected void reset()
   {
     super.reset();
-    this.termA.reset();
-    this.termB.reset();
-    this.termC.reset();
-    this.termD.reset();
+    if ( this.packed )
+    {
+      for ( int i = 0; i < 4; i++ )
+      {
+        final int pair = getPair( i );
+        this.store.setOperation( PackedTriggerSum.PAIR_OPS + pair, TriggerOperation.OR );
+        this.store.resetInput( 2 * pair );
+        this.store.resetInput( ( 2 * pair ) + 1 );
+      }
+    }
+    else
+    {
+      this.termA.reset();
+      this.termB.reset();
+      this.termC.reset();
+      this.termD.reset();
+    }
+  }
+
+  /**
+   * Returns the index of a pair term of this mid term in its packed sum.
+   * 
+   * @param aTerm
+   *          0 for term A, up to 3 for term D.
+   * @return the pair index, 0..7.
+   */
+  private int getPair( final int aTerm )
+  {
+    return ( 4 * ( this.index - PackedTriggerSum.MID_OPS ) ) + aTerm;
   }
 }
@@ -31,8 +31,8 @@ public class TriggerPairTerm extends AbstractTriggerOperationTerm
 {
   // VARIABLES
 
-  private final AbstractTriggerTerm termA;
-  private final AbstractTriggerTerm termB;
+  private AbstractTriggerTerm termA;
+  private AbstractTriggerTerm termB;
 
   // CONSTRUCTORS
 
@@ -57,8 +57,24 @@ public class TriggerPairTerm extends AbstractTriggerOperationTerm
   public TriggerPairTerm( final TriggerPairTerm aInput )
   {
     super( aInput );
-    this.termA = AbstractTriggerTerm.create( aInput.termA );
-    this.termB = AbstractTriggerTerm.create( aInput.termB );
+    if ( !this.packed )
+    {
+      this.termA = AbstractTriggerTerm.create( aInput.termA );
+      this.termB = AbstractTriggerTerm.create( aInput.termB );
+    }
+  }
+
+  /**
+   * Creates a new TriggerPairTerm instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aPair
+   *          the index of the pair term to view, 0..7.
+   */
+  TriggerPairTerm( final PackedTriggerSum aStore, final int aPair )
+  {
+    super( aStore, PackedTriggerSum.PAIR_OPS + aPair );
   }
 
   // METHODS
@@ -69,8 +85,8 @@ public class TriggerPairTerm extends AbstractTriggerOperationTerm
   @Override
   public void accept( final ITriggerVisitor aVisitor ) throws IOException
   {
-    this.termB.accept( aVisitor );
-    this.termA.accept( aVisitor );
+    getTermB().accept( aVisitor );
+    getTermA().accept( aVisitor );
 
     aVisitor.visit( this );
   }
@@ -82,6 +98,10 @@ public class TriggerPairTerm extends AbstractTriggerOperationTerm
    */
   public AbstractTriggerTerm getTermA()
   {
+    if ( this.termA == null )
+    {
+      this.termA = AbstractTriggerTerm.create( this.store, PackedTriggerSum.INPUTS[getInput( 0 )] );
+    }
     return this.termA;
   }
 
@@ -92,6 +112,10 @@ public class TriggerPairTerm extends AbstractTriggerOperationTerm
    */
   public AbstractTriggerTerm getTermB()
   {
+    if ( this.termB == null )
+    {
+      this.termB = AbstractTriggerTerm.create( this.store, PackedTriggerSum.INPUTS[getInput( 1 )] );
+    }
     return this.termB;
   }
 
@@ -103,7 +127,27 @@ public class TriggerPairTerm extends AbstractTriggerOperationTerm
   {
     super.reset();
 
-    this.termA.reset();
-    this.termB.reset();
+    if ( this.packed )
+    {
+      this.store.resetInput( getInput( 0 ) );
+      this.store.resetInput( getInput( 1 ) );
+    }
+    else
+    {
+      this.termA.reset();
+      this.termB.reset();
+    }
+  }
+
+  /**
+   * Returns the index of an input of this pair term in its packed sum.
+   * 
+   * @param aTerm
+   *          0 for term A, 1 for term B.
+   * @return the input index, 0..15.
+   */
+  private int getInput( final int aTerm )
+  {
+    return ( 2 * ( this.index - PackedTriggerSum.PAIR_OPS ) ) + aTerm;
   }
 }
@@ -26,12 +26,6 @@ package nl.lxtreme.ols.lib.demoncore;
  */
 public class TriggerRangeDetector extends AbstractTriggerTerm
 {
-  // VARIABLES
-
-  private int mask;
-  private int lowerTarget;
-  private int upperTarget;
-
   // CONSTRUCTORS
 
   /**
@@ -42,9 +36,6 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
   public TriggerRangeDetector( final TriggerRangeDetector aTerm )
   {
     super( aTerm );
-    this.mask = aTerm.mask;
-    this.lowerTarget = aTerm.lowerTarget;
-    this.upperTarget = aTerm.upperTarget;
   }
 
   /**
@@ -57,6 +48,19 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
     super( aType );
   }
 
+  /**
+   * Creates a new TriggerRangeDetector instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aType
+   *          the term type, denoting the input to view.
+   */
+  TriggerRangeDetector( final PackedTriggerSum aStore, final TriggerTermType aType )
+  {
+    super( aStore, aType );
+  }
+
   // METHODS
 
   /**
@@ -66,7 +70,7 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
    */
   public int getLowerTarget()
   {
-    return this.lowerTarget;
+    return this.store.getParameter( this.input, 1 );
   }
 
   /**
@@ -76,7 +80,7 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
    */
   public int getMask()
   {
-    return this.mask;
+    return this.store.getParameter( this.input, 0 );
   }
 
   /**
@@ -86,7 +90,7 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
    */
   public int getUpperTarget()
   {
-    return this.upperTarget;
+    return this.store.getParameter( this.input, 2 );
   }
 
   /**
@@ -97,7 +101,7 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
    */
   public void setLowerTarget( final int aLowerTarget )
   {
-    this.lowerTarget = aLowerTarget;
+    this.store.setParameter( this.input, 1, aLowerTarget );
   }
 
   /**
@@ -108,7 +112,7 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
    */
   public void setMask( final int aMask )
   {
-    this.mask = aMask;
+    this.store.setParameter( this.input, 0, aMask );
   }
 
   /**
@@ -119,18 +123,6 @@ public class TriggerRangeDetector extends AbstractTriggerTerm
    */
   public void setUpperTarget( final int aUpperTarget )
   {
-    this.upperTarget = aUpperTarget;
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  protected void reset()
-  {
-    super.reset();
-    this.lowerTarget = 0;
-    this.upperTarget = 0;
-    this.mask = 0;
+    this.store.setParameter( this.input, 2, aUpperTarget );
   }
 }
@@ -0,0 +1,155 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+ * Searches raw capture files for the positions at which a trigger program
+ * raises its trigger.
+ * <p>
+ * A capture file is a raw dump of little-endian 32-bit samples. The file is
+ * memory-mapped in windows and fed straight into a {@link TriggerEmulator},
+ * so captures larger than the heap can be searched without copying them. As
+ * the emulator retains its state between windows, edge detectors and timers
+ * behave as if the capture was processed in one go. After each hit, the state
+ * machine is rearmed and the search continues with the next sample.
+ * </p>
+ */
+public final class TriggerSearch
+{
+  // CONSTANTS
+
+  /** The default number of bytes mapped at once; a multiple of 4. */
+  private static final long DEFAULT_WINDOW_SIZE = 64L * 1024L * 1024L;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSearch} instance.
+   */
+  private TriggerSearch()
+  {
+    // Not used
+  }
+
+  // METHODS
+
+  /**
+   * Searches the given capture file for all positions at which the given
+   * trigger program raises its trigger.
+   * 
+   * @param aFile
+   *          the raw capture file to search, cannot be <code>null</code>;
+   * @param aStates
+   *          the trigger sequence states to search with, cannot be
+   *          <code>null</code>.
+   * @return the indexes of the samples that raised the trigger, in ascending
+   *         order, never <code>null</code>. Trailing bytes that do not form a
+   *         complete sample are ignored.
+   * @throws IOException
+   *           in case of I/O problems reading the given file.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was <code>null</code>.
+   */
+  public static long[] search( final Path aFile, final TriggerSequenceState... aStates ) throws IOException
+  {
+    return search( aFile, DEFAULT_WINDOW_SIZE, aStates );
+  }
+
+  /**
+   * Searches the given capture file for all positions at which the given
+   * trigger program raises its trigger, mapping the file in windows of a
+   * given size.
+   * 
+   * @param aFile
+   *          the raw capture file to search, cannot be <code>null</code>;
+   * @param aWindowSize
+   *          the number of bytes to map at once, a positive multiple of 4;
+   * @param aStates
+   *          the trigger sequence states to search with, cannot be
+   *          <code>null</code>.
+   * @return the indexes of the samples that raised the trigger, in ascending
+   *         order, never <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems reading the given file.
+   */
+  static long[] search( final Path aFile, final long aWindowSize, final TriggerSequenceState... aStates )
+      throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+    if ( ( aWindowSize <= 0L ) || ( ( aWindowSize & 3L ) != 0L ) )
+    {
+      throw new IllegalArgumentException( "Window size must be a positive multiple of 4!" );
+    }
+
+    final TriggerEmulator emulator = new TriggerEmulator( aStates );
+
+    long[] result = new long[16];
+    int count = 0;
+
+    final FileChannel channel = FileChannel.open( aFile, StandardOpenOption.READ );
+    try
+    {
+      // Only complete samples are considered...
+      final long size = channel.size() & ~3L;
+
+      for ( long position = 0L; position < size; position += aWindowSize )
+      {
+        final long length = Math.min( aWindowSize, size - position );
+
+        final MappedByteBuffer window = channel.map( MapMode.READ_ONLY, position, length );
+        final IntBuffer samples = window.order( ByteOrder.LITTLE_ENDIAN ).asIntBuffer();
+
+        while ( samples.hasRemaining() )
+        {
+          final long hit = emulator.process( samples );
+          if ( hit >= 0L )
+          {
+            if ( count == result.length )
+            {
+              result = Arrays.copyOf( result, count * 2 );
+            }
+            result[count++] = hit;
+
+            emulator.rearm();
+          }
+        }
+      }
+    }
+    finally
+    {
+      channel.close();
+    }
+
+    return Arrays.copyOf( result, count );
+  }
+}
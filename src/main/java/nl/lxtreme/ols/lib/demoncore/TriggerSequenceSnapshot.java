@@ -0,0 +1,439 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.*;
+
+
+/**
+ * Provides an immutable snapshot of a {@link TriggerSequenceState}.
+ * <p>
+ * The trigger sums of a snapshot are {@link TriggerSumSnapshot}s, so changing
+ * a single field, sum or term yields a new snapshot that shares everything
+ * else with the original. This makes it cheap to keep snapshots around for
+ * undo, or to hand them to another thread for encoding.
+ * </p>
+ */
+public final class TriggerSequenceSnapshot
+{
+  // VARIABLES
+
+  /** Never modified after construction. */
+  private final TriggerSumSnapshot[] sums;
+  private final int stateNumber;
+  private final boolean lastState;
+  private final boolean raiseTrigger;
+  private final int startTimer;
+  private final int stopTimer;
+  private final int clearTimer;
+  private final int elseState;
+  private final int occurrenceCount;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSequenceSnapshot} instance.
+   */
+  private TriggerSequenceSnapshot( final TriggerSumSnapshot[] aSums, final int aStateNumber,
+      final boolean aLastState, final boolean aRaiseTrigger, final int aStartTimer, final int aStopTimer,
+      final int aClearTimer, final int aElseState, final int aOccurrenceCount )
+  {
+    this.sums = aSums;
+    this.stateNumber = aStateNumber;
+    this.lastState = aLastState;
+    this.raiseTrigger = aRaiseTrigger;
+    this.startTimer = aStartTimer;
+    this.stopTimer = aStopTimer;
+    this.clearTimer = aClearTimer;
+    this.elseState = aElseState;
+    this.occurrenceCount = aOccurrenceCount;
+  }
+
+  // METHODS
+
+  /**
+   * Creates a snapshot of the given trigger sequence state.
+   * 
+   * @param aState
+   *          the sequence state to take a snapshot of, cannot be
+   *          <code>null</code>.
+   * @return a snapshot, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given state was <code>null</code>.
+   */
+  public static TriggerSequenceSnapshot of( final TriggerSequenceState aState )
+  {
+    return of( aState, null );
+  }
+
+  /**
+   * Creates a snapshot of the given trigger sequence state, sharing all parts
+   * that did not change with a given, earlier, snapshot.
+   * 
+   * @param aState
+   *          the sequence state to take a snapshot of, cannot be
+   *          <code>null</code>;
+   * @param aPrevious
+   *          the earlier snapshot to share parts with, can be
+   *          <code>null</code>.
+   * @return a snapshot, never <code>null</code>. If nothing changed, the
+   *         given earlier snapshot is returned.
+   * @throws IllegalArgumentException
+   *           in case the given state was <code>null</code>.
+   */
+  public static TriggerSequenceSnapshot of( final TriggerSequenceState aState,
+      final TriggerSequenceSnapshot aPrevious )
+  {
+    if ( aState == null )
+    {
+      throw new IllegalArgumentException( "State cannot be null!" );
+    }
+
+    final TriggerStateTerm[] stateTerms = TriggerStateTerm.values();
+
+    final TriggerSumSnapshot[] sums = new TriggerSumSnapshot[stateTerms.length];
+    boolean same = ( aPrevious != null );
+    for ( int i = 0; i < sums.length; i++ )
+    {
+      final TriggerSumSnapshot prevSum = ( aPrevious == null ) ? null : aPrevious.sums[i];
+      sums[i] = TriggerSumSnapshot.of( aState.getTriggerSum( stateTerms[i] ), prevSum );
+      same &= ( sums[i] == prevSum );
+    }
+
+    if ( same && ( aPrevious.stateNumber == aState.getStateNumber() )
+        && ( aPrevious.lastState == aState.isLastState() ) && ( aPrevious.raiseTrigger == aState.isRaiseTrigger() )
+        && ( aPrevious.startTimer == aState.getStartTimer() ) && ( aPrevious.stopTimer == aState.getStopTimer() )
+        && ( aPrevious.clearTimer == aState.getClearTimer() ) && ( aPrevious.elseState == aState.getElseState() )
+        && ( aPrevious.occurrenceCount == aState.getOccurrenceCount() ) )
+    {
+      return aPrevious;
+    }
+
+    return new TriggerSequenceSnapshot( sums, aState.getStateNumber(), aState.isLastState(),
+        aState.isRaiseTrigger(), aState.getStartTimer(), aState.getStopTimer(), aState.getClearTimer(),
+        aState.getElseState(), aState.getOccurrenceCount() );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals( final Object aObject )
+  {
+    if ( this == aObject )
+    {
+      return true;
+    }
+    if ( !( aObject instanceof TriggerSequenceSnapshot ) )
+    {
+      return false;
+    }
+    final TriggerSequenceSnapshot other = ( TriggerSequenceSnapshot )aObject;
+    return ( this.stateNumber == other.stateNumber ) && ( this.lastState == other.lastState )
+        && ( this.raiseTrigger == other.raiseTrigger ) && ( this.startTimer == other.startTimer )
+        && ( this.stopTimer == other.stopTimer ) && ( this.clearTimer == other.clearTimer )
+        && ( this.elseState == other.elseState ) && ( this.occurrenceCount == other.occurrenceCount )
+        && Arrays.equals( this.sums, other.sums );
+  }
+
+  /**
+   * Returns the current value of clearTimer.
+   * 
+   * @return the clearTimer
+   */
+  public int getClearTimer()
+  {
+    return this.clearTimer;
+  }
+
+  /**
+   * Returns the current value of elseState.
+   * 
+   * @return the elseState
+   */
+  public int getElseState()
+  {
+    return this.elseState;
+  }
+
+  /**
+   * Returns the current value of occurrenceCount.
+   * 
+   * @return the occurrenceCount
+   */
+  public int getOccurrenceCount()
+  {
+    return this.occurrenceCount;
+  }
+
+  /**
+   * Returns the current value of startTimer.
+   * 
+   * @return the startTimer
+   */
+  public int getStartTimer()
+  {
+    return this.startTimer;
+  }
+
+  /**
+   * Returns the current value of stateNumber.
+   * 
+   * @return the stateNumber
+   */
+  public int getStateNumber()
+  {
+    return this.stateNumber;
+  }
+
+  /**
+   * Returns the current value of stopTimer.
+   * 
+   * @return the stopTimer
+   */
+  public int getStopTimer()
+  {
+    return this.stopTimer;
+  }
+
+  /**
+   * Returns the trigger sum for the given state term.
+   * 
+   * @param aTermType
+   *          the state term, cannot be <code>null</code>.
+   * @return the trigger sum snapshot, never <code>null</code>.
+   */
+  public TriggerSumSnapshot getTriggerSum( final TriggerStateTerm aTermType )
+  {
+    return this.sums[aTermType.ordinal()];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    int result = ( 31 * this.stateNumber ) + this.elseState;
+    result = ( 31 * result ) + ( this.lastState ? 1 : 0 ) + ( this.raiseTrigger ? 2 : 0 );
+    result = ( 31 * result ) + ( this.startTimer | ( this.stopTimer << 2 ) | ( this.clearTimer << 4 ) );
+    result = ( 31 * result ) + this.occurrenceCount;
+    return ( 31 * result ) + Arrays.hashCode( this.sums );
+  }
+
+  /**
+   * Returns the current value of lastState.
+   * 
+   * @return the lastState
+   */
+  public boolean isLastState()
+  {
+    return this.lastState;
+  }
+
+  /**
+   * Returns the current value of raiseTrigger.
+   * 
+   * @return the raiseTrigger
+   */
+  public boolean isRaiseTrigger()
+  {
+    return this.raiseTrigger;
+  }
+
+  /**
+   * Creates a new, mutable, trigger sequence state with the contents of this
+   * snapshot.
+   * 
+   * @return a new sequence state, never <code>null</code>.
+   */
+  public TriggerSequenceState toTriggerSequenceState()
+  {
+    final TriggerSequenceState result = new TriggerSequenceState();
+    result.setLastState( this.lastState );
+    result.setRaiseTrigger( this.raiseTrigger );
+    result.setStartTimer( this.startTimer );
+    result.setStopTimer( this.stopTimer );
+    result.setClearTimer( this.clearTimer );
+    result.setElseState( this.elseState );
+    result.setOccurrenceCount( this.occurrenceCount );
+    for ( TriggerSumSnapshot sum : this.sums )
+    {
+      result.setTriggerSum( sum.getStateTerm(), sum.toTriggerSum() );
+    }
+    result.setStateNumber( this.stateNumber );
+    return result;
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for clearTimer.
+   * 
+   * @param aClearTimer
+   *          the clearTimer to set.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withClearTimer( final int aClearTimer )
+  {
+    return new TriggerSequenceSnapshot( this.sums, this.stateNumber, this.lastState, this.raiseTrigger,
+        this.startTimer, this.stopTimer, aClearTimer, this.elseState, this.occurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for elseState.
+   * 
+   * @param aElseState
+   *          the elseState to set, 0..15.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withElseState( final int aElseState )
+  {
+    if ( ( aElseState < 0 ) || ( aElseState > 15 ) )
+    {
+      throw new IllegalArgumentException( "Invalid state number!" );
+    }
+
+    return new TriggerSequenceSnapshot( this.sums, this.stateNumber, this.lastState, this.raiseTrigger,
+        this.startTimer, this.stopTimer, this.clearTimer, aElseState, this.occurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for lastState.
+   * 
+   * @param aLastState
+   *          the lastState to set.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withLastState( final boolean aLastState )
+  {
+    return new TriggerSequenceSnapshot( this.sums, this.stateNumber, aLastState, this.raiseTrigger,
+        this.startTimer, this.stopTimer, this.clearTimer, this.elseState, this.occurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for occurrenceCount.
+   * 
+   * @param aOccurrenceCount
+   *          the occurrenceCount to set.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withOccurrenceCount( final int aOccurrenceCount )
+  {
+    return new TriggerSequenceSnapshot( this.sums, this.stateNumber, this.lastState, this.raiseTrigger,
+        this.startTimer, this.stopTimer, this.clearTimer, this.elseState, aOccurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for raiseTrigger.
+   * 
+   * @param aRaiseTrigger
+   *          <code>true</code> to raise the trigger in this state,
+   *          <code>false</code> to continue in the FSM.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withRaiseTrigger( final boolean aRaiseTrigger )
+  {
+    return new TriggerSequenceSnapshot( this.sums, this.stateNumber, this.lastState, aRaiseTrigger,
+        this.startTimer, this.stopTimer, this.clearTimer, this.elseState, this.occurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for startTimer.
+   * 
+   * @param aStartTimer
+   *          the startTimer to set.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withStartTimer( final int aStartTimer )
+  {
+    return new TriggerSequenceSnapshot( this.sums, this.stateNumber, this.lastState, this.raiseTrigger,
+        aStartTimer, this.stopTimer, this.clearTimer, this.elseState, this.occurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for stateNumber; the state
+   * number of all trigger sums is updated as well.
+   * 
+   * @param aStateNumber
+   *          the stateNumber to set, 0..15.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withStateNumber( final int aStateNumber )
+  {
+    if ( ( aStateNumber < 0 ) || ( aStateNumber > 15 ) )
+    {
+      throw new IllegalArgumentException( "Invalid state number!" );
+    }
+
+    final TriggerSumSnapshot[] newSums = new TriggerSumSnapshot[this.sums.length];
+    for ( int i = 0; i < newSums.length; i++ )
+    {
+      newSums[i] = this.sums[i].withStateNumber( aStateNumber );
+    }
+
+    return new TriggerSequenceSnapshot( newSums, aStateNumber, this.lastState, this.raiseTrigger,
+        this.startTimer, this.stopTimer, this.clearTimer, this.elseState, this.occurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for stopTimer.
+   * 
+   * @param aStopTimer
+   *          the stopTimer to set.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withStopTimer( final int aStopTimer )
+  {
+    return new TriggerSequenceSnapshot( this.sums, this.stateNumber, this.lastState, this.raiseTrigger,
+        this.startTimer, aStopTimer, this.clearTimer, this.elseState, this.occurrenceCount );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for the given trigger
+   * sum.
+   * 
+   * @param aSum
+   *          the trigger sum to set, cannot be <code>null</code>. Its state
+   *          term denotes which sum is replaced, and its state number is
+   *          aligned with the one of this snapshot.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot withTriggerSum( final TriggerSumSnapshot aSum )
+  {
+    if ( aSum == null )
+    {
+      throw new IllegalArgumentException( "Sum cannot be null!" );
+    }
+
+    final int idx = aSum.getStateTerm().ordinal();
+    final TriggerSumSnapshot sum = aSum.withStateNumber( this.stateNumber );
+    if ( this.sums[idx] == sum )
+    {
+      return this;
+    }
+
+    final TriggerSumSnapshot[] newSums = this.sums.clone();
+    newSums[idx] = sum;
+
+    return new TriggerSequenceSnapshot( newSums, this.stateNumber, this.lastState, this.raiseTrigger,
+        this.startTimer, this.stopTimer, this.clearTimer, this.elseState, this.occurrenceCount );
+  }
+}
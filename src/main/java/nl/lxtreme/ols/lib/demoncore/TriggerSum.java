@@ -21,27 +21,29 @@
 package nl.lxtreme.ols.lib.demoncore;
 
 
-import static nl.lxtreme.ols.lib.demoncore.TriggerTermType.*;
-
 import java.io.*;
 
 
 /**
  * Denotes a trigger sum that combines several inputs to a logical trigger sum.
+ * <p>
+ * The terms of a sum are stored in a {@link PackedTriggerSum}; its final, mid,
+ * pair and input terms are views on it that are only created when asked for.
+ * </p>
+ * <p>
+ * Trigger sums are mutable, yet compare by value: a sum must not be modified
+ * while it is used as key in a hash-based collection. Use an immutable
+ * {@link TriggerSumSnapshot} or {@link TriggerSumFingerprint} as key instead.
+ * </p>
  */
 public final class TriggerSum implements ITriggerVisitable
 {
-  // CONSTANTS
-
-  /** The order in which the terms are inputted. */
-  private static final TriggerTermType[] TERMS = { TERM_A, TERM_B, TERM_C, TERM_RANGE1, TERM_D, TERM_EDGE1, TERM_E,
-      TERM_TIMER1, TERM_F, TERM_G, TERM_H, TERM_RANGE2, TERM_I, TERM_EDGE2, TERM_J, TERM_TIMER2 };
-
   // VARIABLES
 
   private int stateNumber;
   private final TriggerStateTerm stateTerm;
-  private final TriggerFinalTerm finalTerm;
+  private final PackedTriggerSum store;
+  private TriggerFinalTerm finalTerm;
 
   // CONSTRUCTORS
 
@@ -54,30 +56,7 @@ public final class TriggerSum implements ITriggerVisitable
   public TriggerSum( final TriggerStateTerm aStateTerm )
   {
     this.stateTerm = aStateTerm;
-
-    // The input terms...
-    AbstractTriggerTerm[] inputTerms = new AbstractTriggerTerm[TERMS.length];
-    for ( int i = 0; i < inputTerms.length; i++ )
-    {
-      inputTerms[i] = AbstractTriggerTerm.create( TERMS[i] );
-    }
-
-    // Create the terms structure...
-    TriggerPairTerm[] pairTerms = new TriggerPairTerm[TERMS.length / 2];
-    for ( int i = 0, j = 0; i < TERMS.length; i += 2, j++ )
-    {
-      final AbstractTriggerTerm termA = inputTerms[i];
-      final AbstractTriggerTerm termB = inputTerms[i + 1];
-      pairTerms[j] = new TriggerPairTerm( termA, termB );
-    }
-
-    TriggerMidTerm[] midTerms = new TriggerMidTerm[2];
-    for ( int i = 0, j = 0; i < ( TERMS.length / 2 ); i += 4, j++ )
-    {
-      midTerms[j] = new TriggerMidTerm( pairTerms[i], pairTerms[i + 1], pairTerms[i + 2], pairTerms[i + 3] );
-    }
-
-    this.finalTerm = new TriggerFinalTerm( midTerms[0], midTerms[1] );
+    this.store = new PackedTriggerSum();
 
     reset();
   }
@@ -94,8 +73,8 @@ public final class TriggerSum implements ITriggerVisitable
     this.stateTerm = aSum.stateTerm;
     this.stateNumber = aSum.stateNumber;
 
-    // Recursively copies all other (mid/pair/input) terms as well!
-    this.finalTerm = new TriggerFinalTerm( aSum.finalTerm );
+    // Copies all other (mid/pair/input) terms as well!
+    this.store = new PackedTriggerSum( aSum.store );
   }
 
   // METHODS
@@ -106,11 +85,36 @@ public final class TriggerSum implements ITriggerVisitable
   @Override
   public void accept( final ITriggerVisitor aVisitor ) throws IOException
   {
-    this.finalTerm.accept( aVisitor );
+    getFinalTerm().accept( aVisitor );
 
     aVisitor.visit( this );
   }
 
+  /**
+   * Compares this sum by value, that is, by its state number, state term and
+   * all of its operations, input states and parameters.
+   * <p>
+   * As this outcome changes whenever this sum is modified, a sum must not be
+   * modified while it is used as key in a hash-based collection.
+   * </p>
+   */
+  @Override
+  public boolean equals( final Object aObject )
+  {
+    if ( this == aObject )
+    {
+      return true;
+    }
+    if ( !( aObject instanceof TriggerSum ) )
+    {
+      return false;
+    }
+
+    final TriggerSum other = ( TriggerSum )aObject;
+    return ( this.stateNumber == other.stateNumber ) && ( this.stateTerm == other.stateTerm )
+        && this.store.equals( other.store );
+  }
+
   /**
    * Returns the current value of finalTerm.
    * 
@@ -118,6 +122,10 @@ public final class TriggerSum implements ITriggerVisitable
    */
   public TriggerFinalTerm getFinalTerm()
   {
+    if ( this.finalTerm == null )
+    {
+      this.finalTerm = new TriggerFinalTerm( this.store );
+    }
     return this.finalTerm;
   }
 
@@ -131,6 +139,16 @@ public final class TriggerSum implements ITriggerVisitable
     return this.stateNumber;
   }
 
+  /**
+   * Returns a hash code consistent with {@link #equals(Object)}, which changes
+   * whenever this sum is modified.
+   */
+  @Override
+  public int hashCode()
+  {
+    return ( 31 * ( ( 31 * this.stateNumber ) + this.stateTerm.ordinal() ) ) + this.store.hashCode();
+  }
+
   /**
    * @return
    */
@@ -139,13 +157,33 @@ public final class TriggerSum implements ITriggerVisitable
     return ( 0x40 + ( this.stateNumber * 4 ) + this.stateTerm.getOffset() );
   }
 
+  /**
+   * Returns the trigger state term this sum represents.
+   * 
+   * @return the state term.
+   */
+  final TriggerStateTerm getStateTerm()
+  {
+    return this.stateTerm;
+  }
+
+  /**
+   * Returns the packed representation of this sum.
+   * 
+   * @return the packed sum, never <code>null</code>.
+   */
+  final PackedTriggerSum getStore()
+  {
+    return this.store;
+  }
+
   /**
    * Resets this trigger sum to its initial state.
    */
   void reset()
   {
     this.stateNumber = 0;
-    this.finalTerm.reset();
+    this.store.reset();
   }
 
   /**
@@ -0,0 +1,463 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static nl.lxtreme.ols.lib.demoncore.DemonCoreCommandWriter.*;
+
+import java.util.*;
+
+
+/**
+ * Provides a flattened, read-only, copy of a {@link TriggerSum} that can be
+ * evaluated against sample data.
+ * <p>
+ * The sixteen inputs of a sum are numbered in the order in which they are fed
+ * into the pair terms, that is, input <tt>2n</tt> and <tt>2n + 1</tt> are the
+ * A- and B-term of the n-th pair term. The pair, mid and final terms are
+ * evaluated the way the device does: the raw hit of every input is fed into
+ * the LUT of its pair term, using the same LUT values as programmed by the
+ * {@link DemonCoreCommandWriter}.
+ * </p>
+ * <p>
+ * As the input states (enabled, inverted or disabled) are never programmed
+ * into the device, they are ignored; only the operations of the sum and the
+ * parameters of its input terms are used. Note that the device only has a
+ * single set of input terms for all sums, see {@link TriggerEmulator}.
+ * </p>
+ * <p>
+ * The outcome of the sum itself is looked up in its {@link TriggerSumTable}.
+ * </p>
+ */
+final class TriggerSumEvaluator
+{
+  // CONSTANTS
+
+  /** The number of inputs of a trigger sum. */
+  static final int INPUT_COUNT = 16;
+
+  private static final int FINAL_OP = PackedTriggerSum.FINAL_OP;
+  private static final int MID_OPS = PackedTriggerSum.MID_OPS;
+  private static final int PAIR_OPS = PackedTriggerSum.PAIR_OPS;
+  private static final int OP_COUNT = PackedTriggerSum.OP_COUNT;
+
+  private static final int KIND_TERM = 0;
+  private static final int KIND_RANGE = 1;
+  private static final int KIND_EDGE = 2;
+  private static final int KIND_TIMER1 = 3;
+  private static final int KIND_TIMER2 = 4;
+
+  // VARIABLES
+
+  private final TriggerOperation[] operations;
+  private final int[] kinds;
+  private final int[] param1;
+  private final int[] param2;
+  private final int[] param3;
+  private final long[] timerValues;
+  private final TriggerSumTable table;
+  private final int usedInputs;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSumEvaluator} instance.
+   * 
+   * @param aSum
+   *          the trigger sum to evaluate, cannot be <code>null</code>.
+   */
+  TriggerSumEvaluator( final TriggerSum aSum )
+  {
+    this.operations = new TriggerOperation[OP_COUNT];
+    this.kinds = new int[INPUT_COUNT];
+    this.param1 = new int[INPUT_COUNT];
+    this.param2 = new int[INPUT_COUNT];
+    this.param3 = new int[INPUT_COUNT];
+    this.timerValues = new long[INPUT_COUNT];
+
+    // Read the packed sum directly, to avoid creating views on its terms...
+    final PackedTriggerSum store = aSum.getStore();
+    for ( int i = 0; i < OP_COUNT; i++ )
+    {
+      this.operations[i] = store.getOperation( i );
+    }
+    for ( int i = 0; i < INPUT_COUNT; i++ )
+    {
+      setInput( i, store );
+    }
+
+    this.table = TriggerSumTable.of( this );
+    this.usedInputs = this.table.getDependencies();
+  }
+
+  // METHODS
+
+  /**
+   * Extracts the bits of a given value denoted by the given mask, and packs
+   * them into the lower bits of the result.
+   * 
+   * @param aValue
+   *          the value to extract the bits from;
+   * @param aMask
+   *          the mask denoting which bits to extract.
+   * @return the extracted bits.
+   */
+  static int extractBits( final int aValue, final int aMask )
+  {
+    int result = 0;
+    int mask = aMask;
+    int bit = 1;
+    while ( mask != 0 )
+    {
+      final int lowest = mask & -mask;
+      if ( ( aValue & lowest ) != 0 )
+      {
+        result |= bit;
+      }
+      bit <<= 1;
+      mask &= ~lowest;
+    }
+    return result;
+  }
+
+  /**
+   * Evaluates this sum for the given input values.
+   * 
+   * @param aInputs
+   *          the hits of all sixteen inputs, where bit <tt>n</tt> denotes the
+   *          hit of input <tt>n</tt>.
+   * @return <code>true</code> if this sum yields true for the given inputs,
+   *         <code>false</code> otherwise.
+   */
+  boolean evaluate( final int aInputs )
+  {
+    return this.table.evaluate( aInputs );
+  }
+
+  /**
+   * Evaluates this sum for the given input values by walking its pair, mid
+   * and final terms.
+   * 
+   * @param aInputs
+   *          the hits of all sixteen inputs, where bit <tt>n</tt> denotes the
+   *          hit of input <tt>n</tt>.
+   * @return <code>true</code> if this sum yields true for the given inputs,
+   *         <code>false</code> otherwise.
+   * @see #evaluate(int)
+   */
+  boolean evaluateTree( final int aInputs )
+  {
+    int finalIndex = 0;
+    for ( int m = 0; m < 2; m++ )
+    {
+      int midIndex = 0;
+      for ( int p = 0; p < 4; p++ )
+      {
+        final int pairIdx = ( m * 4 ) + p;
+        final int pair = ( aInputs >>> ( 2 * pairIdx ) ) & 3;
+
+        // Each pair input occupies two LUT inputs...
+        final int pairIndex = ( ( pair & 1 ) * 0x03 ) | ( ( pair >>> 1 ) * 0x0C );
+        midIndex |= lookup( this.operations[PAIR_OPS + pairIdx], PAIR_VALUE, pairIndex ) << p;
+      }
+
+      finalIndex |= lookup( this.operations[MID_OPS + m], MID_VALUE, midIndex ) << m;
+    }
+
+    return lookup( this.operations[FINAL_OP], FINAL_VALUE, finalIndex ) == 1;
+  }
+
+  /**
+   * Determines the hits of the inputs this sum depends on for a given sample.
+   * 
+   * @param aSample
+   *          the current sample value;
+   * @param aPrevSample
+   *          the previous sample value, used for edge detection;
+   * @param aTimer1
+   *          the current value of the first timer;
+   * @param aTimer2
+   *          the current value of the second timer.
+   * @return the input hits, where bit <tt>n</tt> denotes the hit of input
+   *         <tt>n</tt>. Inputs this sum does not depend on are reported as
+   *         zero.
+   */
+  int getInputs( final int aSample, final int aPrevSample, final long aTimer1, final long aTimer2 )
+  {
+    int result = 0;
+    int remaining = this.usedInputs;
+    while ( remaining != 0 )
+    {
+      final int i = Integer.numberOfTrailingZeros( remaining );
+      remaining &= remaining - 1;
+
+      final boolean hit;
+      switch ( this.kinds[i] )
+      {
+        case KIND_TERM:
+          hit = ( ( aSample ^ this.param1[i] ) & this.param2[i] ) == 0;
+          break;
+
+        case KIND_RANGE:
+          final int value = extractBits( aSample, this.param1[i] ) ^ Integer.MIN_VALUE;
+          hit = ( value >= ( this.param2[i] ^ Integer.MIN_VALUE ) )
+              && ( value <= ( this.param3[i] ^ Integer.MIN_VALUE ) );
+          break;
+
+        case KIND_EDGE:
+          if ( this.param3[i] != 0 )
+          {
+            // Like the rising/falling LUTs, the "no edge" LUTs are or-ed...
+            hit = ( ~( aSample ^ aPrevSample ) & this.param3[i] ) != 0;
+          }
+          else
+          {
+            hit = ( ( this.param1[i] & ~aPrevSample & aSample ) != 0 )
+                || ( ( this.param2[i] & aPrevSample & ~aSample ) != 0 );
+          }
+          break;
+
+        case KIND_TIMER1:
+          hit = aTimer1 >= this.timerValues[i];
+          break;
+
+        default:
+          hit = aTimer2 >= this.timerValues[i];
+          break;
+      }
+
+      if ( hit )
+      {
+        result |= ( 1 << i );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Determines the hits of a single input for all given samples at once,
+   * while the timers keep their given values.
+   *
+   * @param aInput
+   *          the index of the input, 0..15;
+   * @param aSamples
+   *          the samples to determine the hits for;
+   * @param aPrevSample
+   *          the sample preceding the first sample, used for edge detection;
+   * @param aTimer1
+   *          the value of the first timer;
+   * @param aTimer2
+   *          the value of the second timer;
+   * @param aResult
+   *          the (cleared) bitmap to store the hits in, where bit
+   *          <tt>n % 64</tt> of word <tt>n / 64</tt> denotes the hit for sample
+   *          <tt>n</tt>.
+   * @see #getInputs(int, int, long, long)
+   */
+  void getInputBitmap( final int aInput, final int[] aSamples, final int aPrevSample, final long aTimer1,
+      final long aTimer2, final long[] aResult )
+  {
+    final int p1 = this.param1[aInput];
+    final int p2 = this.param2[aInput];
+    final int p3 = this.param3[aInput];
+
+    // All loops below set the bits without branching on the sample values...
+    switch ( this.kinds[aInput] )
+    {
+      case KIND_TERM:
+        for ( int s = 0; s < aSamples.length; s++ )
+        {
+          final long mismatch = ( aSamples[s] ^ p1 ) & p2 & 0xFFFFFFFFL;
+          aResult[s >>> 6] |= ( ( mismatch - 1L ) >>> 63 ) << s;
+        }
+        break;
+
+      case KIND_RANGE:
+        final int shift = Integer.numberOfTrailingZeros( p1 );
+        final boolean contiguous = ( ( ( p1 >>> shift ) + 1 ) & ( p1 >>> shift ) ) == 0;
+        final long lower = p2 & 0xFFFFFFFFL;
+        final long upper = p3 & 0xFFFFFFFFL;
+        for ( int s = 0; s < aSamples.length; s++ )
+        {
+          final int bits = contiguous ? ( ( aSamples[s] & p1 ) >>> shift ) : extractBits( aSamples[s], p1 );
+          final long value = bits & 0xFFFFFFFFL;
+          aResult[s >>> 6] |= ( ~( ( value - lower ) | ( upper - value ) ) >>> 63 ) << s;
+        }
+        break;
+
+      case KIND_EDGE:
+        int prev = aPrevSample;
+        for ( int s = 0; s < aSamples.length; s++ )
+        {
+          final int sample = aSamples[s];
+          final int edges;
+          if ( p3 != 0 )
+          {
+            // Like the rising/falling LUTs, the "no edge" LUTs are or-ed...
+            edges = ~( sample ^ prev ) & p3;
+          }
+          else
+          {
+            edges = ( p1 & ~prev & sample ) | ( p2 & prev & ~sample );
+          }
+          aResult[s >>> 6] |= ( -( edges & 0xFFFFFFFFL ) >>> 63 ) << s;
+          prev = sample;
+        }
+        break;
+
+      default:
+        final long timer = ( this.kinds[aInput] == KIND_TIMER1 ) ? aTimer1 : aTimer2;
+        if ( timer >= this.timerValues[aInput] )
+        {
+          Arrays.fill( aResult, 0, ( aSamples.length + 63 ) >>> 6, -1L );
+        }
+        break;
+    }
+  }
+
+  /**
+   * Returns the operation of the final term.
+   * 
+   * @return the final operation, never <code>null</code>.
+   */
+  TriggerOperation getFinalOperation()
+  {
+    return this.operations[FINAL_OP];
+  }
+
+  /**
+   * Returns the operation of one of the mid terms.
+   * 
+   * @param aIndex
+   *          the index of the mid term, 0..1.
+   * @return the mid operation, never <code>null</code>.
+   */
+  TriggerOperation getMidOperation( final int aIndex )
+  {
+    return this.operations[MID_OPS + aIndex];
+  }
+
+  /**
+   * Returns the operation of one of the pair terms.
+   * 
+   * @param aIndex
+   *          the index of the pair term, 0..7.
+   * @return the pair operation, never <code>null</code>.
+   */
+  TriggerOperation getPairOperation( final int aIndex )
+  {
+    return this.operations[PAIR_OPS + aIndex];
+  }
+
+  /**
+   * Returns the operations of this sum, which identify its truth table.
+   * 
+   * @return the packed operations, 4 bits per operation.
+   */
+  long getPackedOperations()
+  {
+    long result = 0L;
+    for ( int i = 0; i < OP_COUNT; i++ )
+    {
+      result |= ( ( long )this.operations[i].getOffset() << ( 4 * i ) );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the truth table of this sum.
+   * 
+   * @return the truth table, never <code>null</code>.
+   */
+  TriggerSumTable getTable()
+  {
+    return this.table;
+  }
+
+  /**
+   * Returns the inputs the outcome of this sum depends on.
+   * 
+   * @return a bitmask where bit <tt>n</tt> is set if the outcome of this sum
+   *         depends on the hit of input <tt>n</tt>.
+   */
+  int getUsedInputs()
+  {
+    return this.usedInputs;
+  }
+
+  /**
+   * Looks up the outcome of a term in the LUT value of its operation.
+   * 
+   * @param aOperation
+   *          the operation of the term;
+   * @param aLut
+   *          the LUT values of the term;
+   * @param aIndex
+   *          the LUT index, made up of the values of all LUT inputs.
+   * @return the resulting value, either 0 or 1.
+   */
+  private static int lookup( final TriggerOperation aOperation, final int[] aLut, final int aIndex )
+  {
+    return ( aLut[aOperation.getOffset()] >>> aIndex ) & 1;
+  }
+
+  /**
+   * Copies the definition of an input of the given packed sum into the given
+   * input slot.
+   * 
+   * @param aIndex
+   *          the input slot, 0..15;
+   * @param aStore
+   *          the packed sum to copy the input from, cannot be <code>null</code>.
+   */
+  private void setInput( final int aIndex, final PackedTriggerSum aStore )
+  {
+    final TriggerTermType type = PackedTriggerSum.INPUTS[aIndex];
+    switch ( type )
+    {
+      case TERM_EDGE1:
+      case TERM_EDGE2:
+        this.kinds[aIndex] = KIND_EDGE;
+        break;
+
+      case TERM_RANGE1:
+      case TERM_RANGE2:
+        this.kinds[aIndex] = KIND_RANGE;
+        break;
+
+      case TERM_TIMER1:
+      case TERM_TIMER2:
+        this.kinds[aIndex] = ( type == TriggerTermType.TERM_TIMER1 ) ? KIND_TIMER1 : KIND_TIMER2;
+        this.timerValues[aIndex] = ( ( aStore.getParameter( aIndex, 1 ) & 0xFFFFFFFFL ) << 32 )
+            | ( aStore.getParameter( aIndex, 0 ) & 0xFFFFFFFFL );
+        return;
+
+      default:
+        this.kinds[aIndex] = KIND_TERM;
+        break;
+    }
+
+    // The parameters are stored in the same order as we use them...
+    this.param1[aIndex] = aStore.getParameter( aIndex, 0 );
+    this.param2[aIndex] = aStore.getParameter( aIndex, 1 );
+    this.param3[aIndex] = aStore.getParameter( aIndex, 2 );
+  }
+}
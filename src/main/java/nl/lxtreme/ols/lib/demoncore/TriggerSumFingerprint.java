@@ -0,0 +1,256 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.*;
+
+
+/**
+ * Provides a fingerprint of what a {@link TriggerSum} programs into the
+ * device.
+ * <p>
+ * The device is only told about the LUT words of a sum and the parameters of
+ * its input terms; the states of the inputs (enabled, inverted or disabled)
+ * are never programmed. Whereas {@link TriggerSum#equals(Object)} compares
+ * sums structurally, two fingerprints are equal if and only if their sums
+ * encode to the same LUT words, and the parameters of all inputs the outcome
+ * of those words depends on are equal as well. For example, <tt>A AND B</tt>
+ * with both inputs enabled and <tt>A AND B</tt> with both inputs inverted have
+ * the same fingerprint. Parameters of other inputs, as well as the state
+ * number and state term of the sum, are not taken into account.
+ * </p>
+ * <p>
+ * Fingerprints can be used as keys to collapse equivalent sums, for example,
+ * to reuse their encoded LUT words. Instances of this class are immutable.
+ * </p>
+ */
+public final class TriggerSumFingerprint
+{
+  // CONSTANTS
+
+  private static final long SEED = 0x9E3779B97F4A7C15L;
+
+  // VARIABLES
+
+  private final int[] chain;
+  private final TriggerSumTable table;
+  private final int[] parameters;
+  private final long value;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSumFingerprint} instance.
+   */
+  private TriggerSumFingerprint( final int[] aChain, final TriggerSumTable aTable, final int[] aParameters,
+      final long aValue )
+  {
+    this.chain = aChain;
+    this.table = aTable;
+    this.parameters = aParameters;
+    this.value = aValue;
+  }
+
+  // METHODS
+
+  /**
+   * Returns whether the given sums program the same LUT words, and depend on
+   * inputs with the same parameters.
+   * 
+   * @param aSum1
+   *          the first sum to compare, cannot be <code>null</code>;
+   * @param aSum2
+   *          the second sum to compare, cannot be <code>null</code>.
+   * @return <code>true</code> if both sums are equivalent, <code>false</code>
+   *         otherwise.
+   */
+  public static boolean isEquivalent( final TriggerSum aSum1, final TriggerSum aSum2 )
+  {
+    if ( ( aSum1 == null ) || ( aSum2 == null ) )
+    {
+      throw new IllegalArgumentException( "Sum cannot be null!" );
+    }
+    // Structurally equal sums are equivalent by definition...
+    if ( aSum1.getStore().equals( aSum2.getStore() ) )
+    {
+      return true;
+    }
+    return of( aSum1 ).equals( of( aSum2 ) );
+  }
+
+  /**
+   * Returns the fingerprint of the given sum.
+   * 
+   * @param aSum
+   *          the sum to return the fingerprint for, cannot be
+   *          <code>null</code>.
+   * @return the fingerprint, never <code>null</code>.
+   */
+  public static TriggerSumFingerprint of( final TriggerSum aSum )
+  {
+    if ( aSum == null )
+    {
+      throw new IllegalArgumentException( "Sum cannot be null!" );
+    }
+
+    final int[] chain = DemonCoreCommandWriter.getSumChain( aSum );
+    final TriggerSumTable table = TriggerSumTable.of( aSum );
+    final PackedTriggerSum store = aSum.getStore();
+    final int dependencies = table.getDependencies();
+
+    long value = SEED;
+    for ( int word : chain )
+    {
+      value = mix( value, word );
+    }
+
+    final int[] parameters = new int[PackedTriggerSum.INPUTS.length * PackedTriggerSum.PARAMS];
+    for ( int i = 0; i < PackedTriggerSum.INPUTS.length; i++ )
+    {
+      if ( ( ( dependencies >>> i ) & 1 ) == 0 )
+      {
+        continue;
+      }
+      for ( int j = 0; j < PackedTriggerSum.PARAMS; j++ )
+      {
+        final int param = store.getParameter( i, j );
+        parameters[( i * PackedTriggerSum.PARAMS ) + j] = param;
+        value = mix( value, param );
+      }
+    }
+
+    return new TriggerSumFingerprint( chain, table, parameters, value );
+  }
+
+  /**
+   * Returns a cheap, structural, hash of the given sum. Unlike
+   * {@link #of(TriggerSum)}, this does not need the truth table of the sum,
+   * but only structurally equal sums are guaranteed to have equal hashes.
+   * 
+   * @param aSum
+   *          the sum to return the structural hash for, cannot be
+   *          <code>null</code>.
+   * @return the structural hash.
+   */
+  public static long structuralHash( final TriggerSum aSum )
+  {
+    if ( aSum == null )
+    {
+      throw new IllegalArgumentException( "Sum cannot be null!" );
+    }
+
+    final PackedTriggerSum store = aSum.getStore();
+
+    long result = SEED;
+    for ( int i = 0; i < PackedTriggerSum.OP_COUNT; i++ )
+    {
+      result = mix( result, store.getOperation( i ).ordinal() );
+    }
+    for ( int i = 0; i < PackedTriggerSum.INPUTS.length; i++ )
+    {
+      result = mix( result, store.getState( i ).ordinal() );
+      for ( int j = 0; j < PackedTriggerSum.PARAMS; j++ )
+      {
+        result = mix( result, store.getParameter( i, j ) );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Mixes a value into a hash.
+   */
+  private static long mix( final long aHash, final long aValue )
+  {
+    long result = ( aHash ^ aValue ) * 0xC6A4A7935BD1E995L;
+    return result ^ ( result >>> 47 );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals( final Object aObject )
+  {
+    if ( this == aObject )
+    {
+      return true;
+    }
+    if ( !( aObject instanceof TriggerSumFingerprint ) )
+    {
+      return false;
+    }
+
+    final TriggerSumFingerprint other = ( TriggerSumFingerprint )aObject;
+    return ( this.value == other.value ) && Arrays.equals( this.chain, other.chain )
+        && Arrays.equals( this.parameters, other.parameters );
+  }
+
+  /**
+   * Returns the LUT chain words of the sum, as written to the device.
+   * 
+   * @return a copy of the six chain words, never <code>null</code>.
+   */
+  public int[] getChain()
+  {
+    return this.chain.clone();
+  }
+
+  /**
+   * Returns the truth table of the sum.
+   * 
+   * @return the truth table, never <code>null</code>.
+   */
+  public TriggerSumTable getTable()
+  {
+    return this.table;
+  }
+
+  /**
+   * Returns the 64-bit value of this fingerprint. Equivalent sums always have
+   * the same value; different values imply different sums.
+   * 
+   * @return the fingerprint value.
+   */
+  public long getValue()
+  {
+    return this.value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    return ( int )( this.value ^ ( this.value >>> 32 ) );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return String.format( "%016x", Long.valueOf( this.value ) );
+  }
+}
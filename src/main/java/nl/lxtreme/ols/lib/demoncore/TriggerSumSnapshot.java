@@ -0,0 +1,761 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.*;
+
+
+/**
+ * Provides an immutable snapshot of a {@link TriggerSum}.
+ * <p>
+ * A snapshot is a small tree of immutable nodes: the root holds the final
+ * operation and two mid terms, each mid term holds four pair terms, and each
+ * pair term holds two {@link Input}s. Changing a single operation or input
+ * yields a new snapshot that shares all unchanged nodes with the original, so
+ * it only takes a handful of allocations. Snapshots can safely be handed to
+ * other threads.
+ * </p>
+ */
+public final class TriggerSumSnapshot
+{
+  // INNER TYPES
+
+  /**
+   * Provides an immutable input of a trigger sum.
+   * <p>
+   * The meaning of the parameters depends on the type of the input:
+   * </p>
+   * <ul>
+   * <li>bit-value terms: value, mask;</li>
+   * <li>range detectors: mask, lower target, upper target;</li>
+   * <li>edge detectors: rising, falling and no-edge mask;</li>
+   * <li>timers: the lower and upper 32 bits of the value.</li>
+   * </ul>
+   */
+  public static final class Input
+  {
+    // VARIABLES
+
+    private final TriggerTermType type;
+    private final TriggerInputState state;
+    private final int param0;
+    private final int param1;
+    private final int param2;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Input} instance.
+     */
+    Input( final TriggerTermType aType, final TriggerInputState aState, final int aParam0, final int aParam1,
+        final int aParam2 )
+    {
+      if ( aState == null )
+      {
+        throw new IllegalArgumentException( "State cannot be null!" );
+      }
+      this.type = aType;
+      this.state = aState;
+      this.param0 = aParam0;
+      this.param1 = aParam1;
+      this.param2 = aParam2;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( final Object aObject )
+    {
+      if ( this == aObject )
+      {
+        return true;
+      }
+      if ( !( aObject instanceof Input ) )
+      {
+        return false;
+      }
+      final Input other = ( Input )aObject;
+      return matches( other.type, other.state, other.param0, other.param1, other.param2 );
+    }
+
+    /**
+     * Returns the given parameter of this input.
+     * 
+     * @param aIndex
+     *          the parameter index, 0..2.
+     * @return the parameter value.
+     */
+    public int getParameter( final int aIndex )
+    {
+      switch ( aIndex )
+      {
+        case 0:
+          return this.param0;
+        case 1:
+          return this.param1;
+        case 2:
+          return this.param2;
+        default:
+          throw new IllegalArgumentException( "Invalid parameter index!" );
+      }
+    }
+
+    /**
+     * Returns the state of this input.
+     * 
+     * @return the input state, never <code>null</code>.
+     */
+    public TriggerInputState getState()
+    {
+      return this.state;
+    }
+
+    /**
+     * Returns the value of this input as timer value.
+     * 
+     * @return the timer value, as composed from the first two parameters.
+     */
+    public long getTimerValue()
+    {
+      return ( ( this.param1 & 0xFFFFFFFFL ) << 32 ) | ( this.param0 & 0xFFFFFFFFL );
+    }
+
+    /**
+     * Returns the type of this input.
+     * 
+     * @return the term type, never <code>null</code>.
+     */
+    public TriggerTermType getType()
+    {
+      return this.type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+      int result = ( 31 * this.type.ordinal() ) + this.state.ordinal();
+      result = ( 31 * result ) + this.param0;
+      result = ( 31 * result ) + this.param1;
+      return ( 31 * result ) + this.param2;
+    }
+
+    /**
+     * Returns an input that equals this input, except for the given parameter.
+     * 
+     * @param aIndex
+     *          the parameter index, 0..2;
+     * @param aValue
+     *          the new parameter value.
+     * @return an input, never <code>null</code>.
+     */
+    public Input withParameter( final int aIndex, final int aValue )
+    {
+      if ( getParameter( aIndex ) == aValue )
+      {
+        return this;
+      }
+      return new Input( this.type, this.state, ( aIndex == 0 ) ? aValue : this.param0, ( aIndex == 1 ) ? aValue
+          : this.param1, ( aIndex == 2 ) ? aValue : this.param2 );
+    }
+
+    /**
+     * Returns an input that equals this input, except for its state.
+     * 
+     * @param aState
+     *          the new input state, cannot be <code>null</code>.
+     * @return an input, never <code>null</code>.
+     */
+    public Input withState( final TriggerInputState aState )
+    {
+      if ( this.state == aState )
+      {
+        return this;
+      }
+      return new Input( this.type, aState, this.param0, this.param1, this.param2 );
+    }
+
+    /**
+     * Returns an input that equals this input, except for its timer value.
+     * 
+     * @param aValue
+     *          the new timer value.
+     * @return an input, never <code>null</code>.
+     */
+    public Input withTimerValue( final long aValue )
+    {
+      return withParameter( 0, ( int )aValue ).withParameter( 1, ( int )( aValue >>> 32 ) );
+    }
+
+    /**
+     * Returns whether this input has the given contents.
+     */
+    boolean matches( final TriggerTermType aType, final TriggerInputState aState, final int aParam0,
+        final int aParam1, final int aParam2 )
+    {
+      return ( this.type == aType ) && ( this.state == aState ) && ( this.param0 == aParam0 )
+          && ( this.param1 == aParam1 ) && ( this.param2 == aParam2 );
+    }
+  }
+
+  /**
+   * Provides an immutable pair term.
+   */
+  private static final class Pair
+  {
+    // VARIABLES
+
+    final TriggerOperation operation;
+    final Input termA;
+    final Input termB;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Pair} instance.
+     */
+    Pair( final TriggerOperation aOperation, final Input aTermA, final Input aTermB )
+    {
+      this.operation = aOperation;
+      this.termA = aTermA;
+      this.termB = aTermB;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( final Object aObject )
+    {
+      if ( this == aObject )
+      {
+        return true;
+      }
+      if ( !( aObject instanceof Pair ) )
+      {
+        return false;
+      }
+      final Pair other = ( Pair )aObject;
+      return ( this.operation == other.operation ) && this.termA.equals( other.termA )
+          && this.termB.equals( other.termB );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+      return ( 31 * ( ( 31 * this.operation.ordinal() ) + this.termA.hashCode() ) ) + this.termB.hashCode();
+    }
+  }
+
+  /**
+   * Provides an immutable mid term.
+   */
+  private static final class Mid
+  {
+    // VARIABLES
+
+    final TriggerOperation operation;
+    /** Never modified after construction. */
+    final Pair[] pairs;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Mid} instance.
+     */
+    Mid( final TriggerOperation aOperation, final Pair[] aPairs )
+    {
+      this.operation = aOperation;
+      this.pairs = aPairs;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( final Object aObject )
+    {
+      if ( this == aObject )
+      {
+        return true;
+      }
+      if ( !( aObject instanceof Mid ) )
+      {
+        return false;
+      }
+      final Mid other = ( Mid )aObject;
+      return ( this.operation == other.operation ) && Arrays.equals( this.pairs, other.pairs );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+      return ( 31 * this.operation.ordinal() ) + Arrays.hashCode( this.pairs );
+    }
+
+    /**
+     * Returns a mid term that equals this one, except for the given pair.
+     */
+    Mid withPair( final int aIndex, final Pair aPair )
+    {
+      final Pair[] newPairs = this.pairs.clone();
+      newPairs[aIndex] = aPair;
+      return new Mid( this.operation, newPairs );
+    }
+  }
+
+  // CONSTANTS
+
+  private static final int PAIRS_PER_MID = 4;
+
+  // VARIABLES
+
+  private final TriggerStateTerm stateTerm;
+  private final int stateNumber;
+  private final TriggerOperation operation;
+  private final Mid midA;
+  private final Mid midB;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSumSnapshot} instance.
+   */
+  private TriggerSumSnapshot( final TriggerStateTerm aStateTerm, final int aStateNumber,
+      final TriggerOperation aOperation, final Mid aMidA, final Mid aMidB )
+  {
+    this.stateTerm = aStateTerm;
+    this.stateNumber = aStateNumber;
+    this.operation = aOperation;
+    this.midA = aMidA;
+    this.midB = aMidB;
+  }
+
+  // METHODS
+
+  /**
+   * Creates a snapshot of the given trigger sum.
+   * 
+   * @param aSum
+   *          the trigger sum to take a snapshot of, cannot be
+   *          <code>null</code>.
+   * @return a snapshot, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given sum was <code>null</code>.
+   */
+  public static TriggerSumSnapshot of( final TriggerSum aSum )
+  {
+    return of( aSum, null );
+  }
+
+  /**
+   * Creates a snapshot of the given trigger sum, sharing all nodes that did
+   * not change with a given, earlier, snapshot.
+   * 
+   * @param aSum
+   *          the trigger sum to take a snapshot of, cannot be
+   *          <code>null</code>;
+   * @param aPrevious
+   *          the earlier snapshot to share nodes with, can be
+   *          <code>null</code>.
+   * @return a snapshot, never <code>null</code>. If nothing changed, the
+   *         given earlier snapshot is returned.
+   * @throws IllegalArgumentException
+   *           in case the given sum was <code>null</code>.
+   */
+  public static TriggerSumSnapshot of( final TriggerSum aSum, final TriggerSumSnapshot aPrevious )
+  {
+    if ( aSum == null )
+    {
+      throw new IllegalArgumentException( "Sum cannot be null!" );
+    }
+
+    final PackedTriggerSum store = aSum.getStore();
+
+    final Mid[] mids = new Mid[2];
+    for ( int m = 0; m < mids.length; m++ )
+    {
+      final Mid prevMid = ( aPrevious == null ) ? null : aPrevious.getMid( m );
+
+      final Pair[] pairs = new Pair[PAIRS_PER_MID];
+      boolean same = ( prevMid != null );
+      for ( int p = 0; p < pairs.length; p++ )
+      {
+        final int pairIdx = ( m * PAIRS_PER_MID ) + p;
+        final Pair prevPair = ( prevMid == null ) ? null : prevMid.pairs[p];
+
+        final Input termA = createInput( store, 2 * pairIdx, ( prevPair == null ) ? null : prevPair.termA );
+        final Input termB = createInput( store, ( 2 * pairIdx ) + 1, ( prevPair == null ) ? null : prevPair.termB );
+        final TriggerOperation op = store.getOperation( PackedTriggerSum.PAIR_OPS + pairIdx );
+
+        if ( ( prevPair != null ) && ( prevPair.operation == op ) && ( prevPair.termA == termA )
+            && ( prevPair.termB == termB ) )
+        {
+          pairs[p] = prevPair;
+        }
+        else
+        {
+          pairs[p] = new Pair( op, termA, termB );
+          same = false;
+        }
+      }
+
+      final TriggerOperation op = store.getOperation( PackedTriggerSum.MID_OPS + m );
+      mids[m] = ( same && ( prevMid.operation == op ) ) ? prevMid : new Mid( op, pairs );
+    }
+
+    final TriggerOperation op = store.getOperation( PackedTriggerSum.FINAL_OP );
+    if ( ( aPrevious != null ) && ( aPrevious.stateTerm == aSum.getStateTerm() ) && ( aPrevious.midA == mids[0] )
+        && ( aPrevious.midB == mids[1] ) && ( aPrevious.operation == op )
+        && ( aPrevious.stateNumber == aSum.getStateNumber() ) )
+    {
+      return aPrevious;
+    }
+
+    return new TriggerSumSnapshot( aSum.getStateTerm(), aSum.getStateNumber(), op, mids[0], mids[1] );
+  }
+
+  /**
+   * Creates an input node for the given input of a packed sum, reusing the
+   * given earlier input if it did not change.
+   */
+  private static Input createInput( final PackedTriggerSum aStore, final int aInput, final Input aPrevious )
+  {
+    final TriggerTermType type = PackedTriggerSum.INPUTS[aInput];
+    final TriggerInputState state = aStore.getState( aInput );
+    final int param0 = aStore.getParameter( aInput, 0 );
+    final int param1 = aStore.getParameter( aInput, 1 );
+    final int param2 = aStore.getParameter( aInput, 2 );
+
+    if ( ( aPrevious != null ) && aPrevious.matches( type, state, param0, param1, param2 ) )
+    {
+      return aPrevious;
+    }
+    return new Input( type, state, param0, param1, param2 );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals( final Object aObject )
+  {
+    if ( this == aObject )
+    {
+      return true;
+    }
+    if ( !( aObject instanceof TriggerSumSnapshot ) )
+    {
+      return false;
+    }
+    final TriggerSumSnapshot other = ( TriggerSumSnapshot )aObject;
+    return ( this.stateTerm == other.stateTerm ) && ( this.stateNumber == other.stateNumber )
+        && ( this.operation == other.operation ) && this.midA.equals( other.midA ) && this.midB.equals( other.midB );
+  }
+
+  /**
+   * Returns the operation of the final term.
+   * 
+   * @return the final operation, never <code>null</code>.
+   */
+  public TriggerOperation getFinalOperation()
+  {
+    return this.operation;
+  }
+
+  /**
+   * Returns the given input.
+   * 
+   * @param aIndex
+   *          the input index, 0..15, in the order in which the inputs are fed
+   *          into the pair terms.
+   * @return the input, never <code>null</code>.
+   */
+  public Input getInput( final int aIndex )
+  {
+    final Pair pair = getPair( aIndex >> 1 );
+    return ( ( aIndex & 1 ) == 0 ) ? pair.termA : pair.termB;
+  }
+
+  /**
+   * Returns the operation of the given mid term.
+   * 
+   * @param aIndex
+   *          the mid term index, 0..1.
+   * @return the mid operation, never <code>null</code>.
+   */
+  public TriggerOperation getMidOperation( final int aIndex )
+  {
+    return getMid( aIndex ).operation;
+  }
+
+  /**
+   * Returns the operation of the given pair term.
+   * 
+   * @param aIndex
+   *          the pair term index, 0..7.
+   * @return the pair operation, never <code>null</code>.
+   */
+  public TriggerOperation getPairOperation( final int aIndex )
+  {
+    return getPair( aIndex ).operation;
+  }
+
+  /**
+   * Returns the state number of this sum.
+   * 
+   * @return the state number, 0..15.
+   */
+  public int getStateNumber()
+  {
+    return this.stateNumber;
+  }
+
+  /**
+   * Returns the state term of this sum.
+   * 
+   * @return the state term.
+   */
+  public TriggerStateTerm getStateTerm()
+  {
+    return this.stateTerm;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    int result = ( 31 * this.stateNumber ) + this.operation.ordinal();
+    result = ( 31 * result ) + this.midA.hashCode();
+    return ( 31 * result ) + this.midB.hashCode();
+  }
+
+  /**
+   * Creates a new, mutable, trigger sum with the contents of this snapshot.
+   * 
+   * @return a new trigger sum, never <code>null</code>.
+   */
+  public TriggerSum toTriggerSum()
+  {
+    final TriggerSum result = new TriggerSum( this.stateTerm );
+    result.setStateNumber( this.stateNumber );
+
+    final PackedTriggerSum store = result.getStore();
+    store.setOperation( PackedTriggerSum.FINAL_OP, this.operation );
+    for ( int m = 0; m < 2; m++ )
+    {
+      store.setOperation( PackedTriggerSum.MID_OPS + m, getMid( m ).operation );
+    }
+    for ( int p = 0; p < ( 2 * PAIRS_PER_MID ); p++ )
+    {
+      store.setOperation( PackedTriggerSum.PAIR_OPS + p, getPair( p ).operation );
+    }
+    for ( int i = 0; i < PackedTriggerSum.INPUTS.length; i++ )
+    {
+      final Input input = getInput( i );
+      store.setState( i, input.state );
+      store.setParameter( i, 0, input.param0 );
+      store.setParameter( i, 1, input.param1 );
+      store.setParameter( i, 2, input.param2 );
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for the final operation.
+   * 
+   * @param aOperation
+   *          the new final operation, cannot be <code>null</code>.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSumSnapshot withFinalOperation( final TriggerOperation aOperation )
+  {
+    if ( aOperation == null )
+    {
+      throw new IllegalArgumentException( "Operation cannot be null!" );
+    }
+    if ( this.operation == aOperation )
+    {
+      return this;
+    }
+    return new TriggerSumSnapshot( this.stateTerm, this.stateNumber, aOperation, this.midA, this.midB );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for the given input.
+   * 
+   * @param aIndex
+   *          the input index, 0..15;
+   * @param aInput
+   *          the new input, cannot be <code>null</code> and should be of the
+   *          same type as the current input.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSumSnapshot withInput( final int aIndex, final Input aInput )
+  {
+    final Pair pair = getPair( aIndex >> 1 );
+    if ( ( aInput == null ) || ( aInput.type != PackedTriggerSum.INPUTS[aIndex] ) )
+    {
+      throw new IllegalArgumentException( "Invalid input!" );
+    }
+
+    final Input current = ( ( aIndex & 1 ) == 0 ) ? pair.termA : pair.termB;
+    if ( current.equals( aInput ) )
+    {
+      return this;
+    }
+
+    final Pair newPair = ( ( aIndex & 1 ) == 0 ) ? new Pair( pair.operation, aInput, pair.termB ) : new Pair(
+        pair.operation, pair.termA, aInput );
+    return withPair( aIndex >> 1, newPair );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for the operation of the
+   * given mid term.
+   * 
+   * @param aIndex
+   *          the mid term index, 0..1;
+   * @param aOperation
+   *          the new mid operation, cannot be <code>null</code>.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSumSnapshot withMidOperation( final int aIndex, final TriggerOperation aOperation )
+  {
+    if ( aOperation == null )
+    {
+      throw new IllegalArgumentException( "Operation cannot be null!" );
+    }
+
+    final Mid mid = getMid( aIndex );
+    if ( mid.operation == aOperation )
+    {
+      return this;
+    }
+    return withMid( aIndex, new Mid( aOperation, mid.pairs ) );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for the operation of the
+   * given pair term.
+   * 
+   * @param aIndex
+   *          the pair term index, 0..7;
+   * @param aOperation
+   *          the new pair operation, cannot be <code>null</code>.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSumSnapshot withPairOperation( final int aIndex, final TriggerOperation aOperation )
+  {
+    if ( aOperation == null )
+    {
+      throw new IllegalArgumentException( "Operation cannot be null!" );
+    }
+
+    final Pair pair = getPair( aIndex );
+    if ( pair.operation == aOperation )
+    {
+      return this;
+    }
+    return withPair( aIndex, new Pair( aOperation, pair.termA, pair.termB ) );
+  }
+
+  /**
+   * Returns a snapshot that equals this one, except for its state number.
+   * 
+   * @param aStateNumber
+   *          the new state number, 0..15.
+   * @return a snapshot, never <code>null</code>.
+   */
+  public TriggerSumSnapshot withStateNumber( final int aStateNumber )
+  {
+    if ( ( aStateNumber < 0 ) || ( aStateNumber > 15 ) )
+    {
+      throw new IllegalArgumentException( "Invalid state number!" );
+    }
+    if ( this.stateNumber == aStateNumber )
+    {
+      return this;
+    }
+    return new TriggerSumSnapshot( this.stateTerm, aStateNumber, this.operation, this.midA, this.midB );
+  }
+
+  /**
+   * Returns the mid term with the given index.
+   */
+  private Mid getMid( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex > 1 ) )
+    {
+      throw new IllegalArgumentException( "Invalid mid term index!" );
+    }
+    return ( aIndex == 0 ) ? this.midA : this.midB;
+  }
+
+  /**
+   * Returns the pair term with the given index.
+   */
+  private Pair getPair( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= ( 2 * PAIRS_PER_MID ) ) )
+    {
+      throw new IllegalArgumentException( "Invalid pair term index!" );
+    }
+    return getMid( aIndex / PAIRS_PER_MID ).pairs[aIndex % PAIRS_PER_MID];
+  }
+
+  /**
+   * Returns a snapshot with the given mid term replaced.
+   */
+  private TriggerSumSnapshot withMid( final int aIndex, final Mid aMid )
+  {
+    return new TriggerSumSnapshot( this.stateTerm, this.stateNumber, this.operation, ( aIndex == 0 ) ? aMid
+        : this.midA, ( aIndex == 1 ) ? aMid : this.midB );
+  }
+
+  /**
+   * Returns a snapshot with the given pair term replaced.
+   */
+  private TriggerSumSnapshot withPair( final int aIndex, final Pair aPair )
+  {
+    final int midIdx = aIndex / PAIRS_PER_MID;
+    return withMid( midIdx, getMid( midIdx ).withPair( aIndex % PAIRS_PER_MID, aPair ) );
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import java.util.*;
+
+
+/**
+ * Provides the complete truth table of a {@link TriggerSum}.
+ * <p>
+ * As a trigger sum is a fixed tree of sixteen inputs, its logic is a function
+ * of a 16-bit input vector, where bit <tt>n</tt> denotes the hit of input
+ * <tt>n</tt> (in the order in which the inputs are fed into the pair terms).
+ * This class stores that function as a table of 65,536 bits, allowing a sum to
+ * be evaluated with a single lookup.
+ * </p>
+ * <p>
+ * Tables only depend on the operations of a sum, as the input states of a sum
+ * are never programmed into the device, and are cached on that basis;
+ * instances of this class are immutable.
+ * </p>
+ */
+public final class TriggerSumTable
+{
+  // CONSTANTS
+
+  /** The number of entries in a truth table. */
+  public static final int SIZE = 1 << TriggerSumEvaluator.INPUT_COUNT;
+
+  private static final int CACHE_SIZE = 128;
+
+  /** Masks the lower half of each group of 2^n bits, for the first six inputs. */
+  private static final long[] LOWER_HALVES = { 0x5555555555555555L, 0x3333333333333333L, 0x0F0F0F0F0F0F0F0FL,
+      0x00FF00FF00FF00FFL, 0x0000FFFF0000FFFFL, 0x00000000FFFFFFFFL };
+
+  private static final LruCache<Long, TriggerSumTable> CACHE = new LruCache<Long, TriggerSumTable>( CACHE_SIZE );
+
+  // VARIABLES
+
+  private final long[] table;
+  private final int dependencies;
+  private final long hash;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSumTable} instance.
+   * 
+   * @param aEvaluator
+   *          the evaluator to create the truth table for, cannot be
+   *          <code>null</code>.
+   */
+  private TriggerSumTable( final TriggerSumEvaluator aEvaluator )
+  {
+    this.table = new long[SIZE / 64];
+    for ( int i = 0; i < SIZE; i++ )
+    {
+      if ( aEvaluator.evaluateTree( i ) )
+      {
+        this.table[i >>> 6] |= ( 1L << i );
+      }
+    }
+
+    this.dependencies = determineDependencies( this.table );
+
+    long h = SIZE;
+    for ( long word : this.table )
+    {
+      h = ( h ^ word ) * 0x9E3779B97F4A7C15L;
+      h ^= ( h >>> 29 );
+    }
+    this.hash = h;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the truth table for the given trigger sum.
+   * 
+   * @param aSum
+   *          the trigger sum to return the truth table for, cannot be
+   *          <code>null</code>.
+   * @return the truth table, never <code>null</code>.
+   */
+  public static TriggerSumTable of( final TriggerSum aSum )
+  {
+    if ( aSum == null )
+    {
+      throw new IllegalArgumentException( "Sum cannot be null!" );
+    }
+    return new TriggerSumEvaluator( aSum ).getTable();
+  }
+
+  /**
+   * Returns the (possibly cached) truth table for the given evaluator.
+   * 
+   * @param aEvaluator
+   *          the evaluator to return the truth table for, cannot be
+   *          <code>null</code>.
+   * @return the truth table, never <code>null</code>.
+   */
+  static TriggerSumTable of( final TriggerSumEvaluator aEvaluator )
+  {
+    final Long key = Long.valueOf( aEvaluator.getPackedOperations() );
+
+    final TriggerSumTable result = CACHE.get( key );
+    if ( result != null )
+    {
+      return result;
+    }
+    // Compute it outside the lock; at worst it is computed twice...
+    return CACHE.putIfAbsent( key, new TriggerSumTable( aEvaluator ) );
+  }
+
+  /**
+   * Determines on which inputs the given truth table depends.
+   */
+  private static int determineDependencies( final long[] aTable )
+  {
+    int result = 0;
+    for ( int i = 0; i < TriggerSumEvaluator.INPUT_COUNT; i++ )
+    {
+      boolean depends = false;
+      for ( int w = 0; !depends && ( w < aTable.length ); w++ )
+      {
+        if ( i < 6 )
+        {
+          // Compare the outcomes with and without input i within a word...
+          final long word = aTable[w];
+          depends = ( ( word ^ ( word >>> ( 1 << i ) ) ) & LOWER_HALVES[i] ) != 0L;
+        }
+        else
+        {
+          // ...or between words, for the higher inputs...
+          depends = aTable[w] != aTable[w ^ ( 1 << ( i - 6 ) )];
+        }
+      }
+      if ( depends )
+      {
+        result |= ( 1 << i );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals( final Object aObject )
+  {
+    if ( this == aObject )
+    {
+      return true;
+    }
+    if ( !( aObject instanceof TriggerSumTable ) )
+    {
+      return false;
+    }
+
+    final TriggerSumTable other = ( TriggerSumTable )aObject;
+    return ( this.hash == other.hash ) && Arrays.equals( this.table, other.table );
+  }
+
+  /**
+   * Evaluates the trigger sum for the given input values.
+   * 
+   * @param aInputs
+   *          the hits of all sixteen inputs, where bit <tt>n</tt> denotes the
+   *          hit of input <tt>n</tt>.
+   * @return <code>true</code> if the sum yields true for the given inputs,
+   *         <code>false</code> otherwise.
+   */
+  public boolean evaluate( final int aInputs )
+  {
+    final int index = aInputs & ( SIZE - 1 );
+    return ( ( this.table[index >>> 6] >>> index ) & 1L ) != 0L;
+  }
+
+  /**
+   * Returns the inputs the outcome of the sum actually depends on. Inputs
+   * whose hit never changes the outcome are left out.
+   * 
+   * @return the bitmask of inputs, where bit <tt>n</tt> denotes input
+   *         <tt>n</tt>.
+   */
+  public int getDependencies()
+  {
+    return this.dependencies;
+  }
+
+  /**
+   * Returns a 64-bit hash of this truth table. Equal tables always have equal
+   * hashes, regardless of the sums they are created for.
+   * 
+   * @return the hash of this table.
+   */
+  public long getHash()
+  {
+    return this.hash;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    return ( int )( this.hash ^ ( this.hash >>> 32 ) );
+  }
+
+  /**
+   * Returns a copy of the packed truth table, in which bit <tt>n % 64</tt> of
+   * word <tt>n / 64</tt> denotes the outcome of the sum for input vector
+   * <tt>n</tt>.
+   * 
+   * @return a new array of 1024 words, never <code>null</code>.
+   */
+  public long[] toLongArray()
+  {
+    return this.table.clone();
+  }
+}
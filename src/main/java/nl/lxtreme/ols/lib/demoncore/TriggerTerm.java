@@ -26,11 +26,6 @@ package nl.lxtreme.ols.lib.demoncore;
  */
 public class TriggerTerm extends AbstractTriggerTerm
 {
-  // VARIABLES
-
-  private int value;
-  private int mask;
-
   // CONSTRUCTORS
 
   /**
@@ -42,8 +37,6 @@ public class TriggerTerm extends AbstractTriggerTerm
   public TriggerTerm( final TriggerTerm aTerm )
   {
     super( aTerm );
-    this.value = aTerm.value;
-    this.mask = aTerm.mask;
   }
 
   /**
@@ -58,6 +51,19 @@ public class TriggerTerm extends AbstractTriggerTerm
     reset();
   }
 
+  /**
+   * Creates a new TriggerTerm instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aType
+   *          the term type, denoting the input to view.
+   */
+  TriggerTerm( final PackedTriggerSum aStore, final TriggerTermType aType )
+  {
+    super( aStore, aType );
+  }
+
   // METHODS
 
   /**
@@ -67,7 +73,7 @@ public class TriggerTerm extends AbstractTriggerTerm
    */
   public int getMask()
   {
-    return this.mask;
+    return this.store.getParameter( this.input, 1 );
   }
 
   /**
@@ -77,7 +83,7 @@ public class TriggerTerm extends AbstractTriggerTerm
    */
   public int getValue()
   {
-    return this.value;
+    return this.store.getParameter( this.input, 0 );
   }
 
   /**
@@ -88,7 +94,7 @@ public class TriggerTerm extends AbstractTriggerTerm
    */
   public void setMask( final int aMask )
   {
-    this.mask = aMask;
+    this.store.setParameter( this.input, 1, aMask );
   }
 
   /**
@@ -99,17 +105,6 @@ public class TriggerTerm extends AbstractTriggerTerm
    */
   public void setValue( final int aValue )
   {
-    this.value = aValue;
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  protected void reset()
-  {
-    super.reset();
-    this.mask = 0;
-    this.value = 0;
+    this.store.setParameter( this.input, 0, aValue );
   }
 }
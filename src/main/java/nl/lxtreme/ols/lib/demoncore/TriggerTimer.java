@@ -26,10 +26,6 @@ package nl.lxtreme.ols.lib.demoncore;
  */
 public class TriggerTimer extends AbstractTriggerTerm
 {
-  // VARIABLES
-
-  private long value;
-
   // CONSTRUCTORS
 
   /**
@@ -52,7 +48,19 @@ public class TriggerTimer extends AbstractTriggerTerm
   public TriggerTimer( final TriggerTimer aTerm )
   {
     super( aTerm );
-    this.value = aTerm.value;
+  }
+
+  /**
+   * Creates a new TriggerTimer instance as view on the given packed sum.
+   * 
+   * @param aStore
+   *          the packed sum to view, cannot be <code>null</code>;
+   * @param aType
+   *          the term type, denoting the input to view.
+   */
+  TriggerTimer( final PackedTriggerSum aStore, final TriggerTermType aType )
+  {
+    super( aStore, aType );
   }
 
   // METHODS
@@ -64,7 +72,9 @@ public class TriggerTimer extends AbstractTriggerTerm
    */
   public long getValue()
   {
-    return this.value;
+    final long low = this.store.getParameter( this.input, 0 ) & 0xFFFFFFFFL;
+    final long high = this.store.getParameter( this.input, 1 ) & 0xFFFFFFFFL;
+    return ( high << 32 ) | low;
   }
 
   /**
@@ -75,16 +85,7 @@ public class TriggerTimer extends AbstractTriggerTerm
    */
   public void setValue( final long aValue )
   {
-    this.value = aValue;
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  protected void reset()
-  {
-    super.reset();
-    this.value = 0L;
+    this.store.setParameter( this.input, 0, ( int )aValue );
+    this.store.setParameter( this.input, 1, ( int )( aValue >>> 32 ) );
   }
 }
@@ -0,0 +1,197 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore.ui;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.ols.lib.demoncore.*;
+
+
+/**
+ * Renders trigger sequence states in a human readable form, as done by
+ * {@link TriggerStringifier}, but in a thread-safe manner and spreading the
+ * work over multiple cores.
+ * <p>
+ * Instances of this class hold no rendering state, so a single instance can be
+ * shared by all callers. Batches of states are split recursively and rendered
+ * on a fork-join pool, each task rendering a few states with its own
+ * {@link TriggerStringifier}; the results are always returned in the order of
+ * the given states.
+ * </p>
+ * <p>
+ * The states should not be modified while they are rendered.
+ * </p>
+ */
+public final class TriggerBatchRenderer
+{
+  // INNER TYPES
+
+  /**
+   * Renders a range of states, splitting the work recursively.
+   */
+  private static final class RenderTask extends RecursiveAction
+  {
+    // CONSTANTS
+
+    private static final long serialVersionUID = 1L;
+
+    // VARIABLES
+
+    private final TriggerSequenceState[] states;
+    private final String[] results;
+    private final int from;
+    private final int to;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link RenderTask} instance.
+     */
+    RenderTask( final TriggerSequenceState[] aStates, final String[] aResults, final int aFrom, final int aTo )
+    {
+      this.states = aStates;
+      this.results = aResults;
+      this.from = aFrom;
+      this.to = aTo;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute()
+    {
+      if ( ( this.to - this.from ) <= BATCH_SIZE )
+      {
+        final TriggerStringifier stringifier = new TriggerStringifier();
+        for ( int i = this.from; i < this.to; i++ )
+        {
+          this.results[i] = stringifier.toString( this.states[i] );
+        }
+      }
+      else
+      {
+        final int mid = ( this.from + this.to ) >>> 1;
+        invokeAll( new RenderTask( this.states, this.results, this.from, mid ), new RenderTask( this.states,
+            this.results, mid, this.to ) );
+      }
+    }
+  }
+
+  // CONSTANTS
+
+  /** The maximal number of states rendered by a single task. */
+  private static final int BATCH_SIZE = 16;
+
+  // VARIABLES
+
+  private final ForkJoinPool pool;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerBatchRenderer} instance using the default,
+   * shared, pool.
+   * 
+   * @see DemonCorePool#getDefault()
+   */
+  public TriggerBatchRenderer()
+  {
+    this( DemonCorePool.getDefault() );
+  }
+
+  /**
+   * Creates a new {@link TriggerBatchRenderer} instance.
+   * 
+   * @param aPool
+   *          the pool to render in, cannot be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given pool was <code>null</code>.
+   */
+  public TriggerBatchRenderer( final ForkJoinPool aPool )
+  {
+    if ( aPool == null )
+    {
+      throw new IllegalArgumentException( "Pool cannot be null!" );
+    }
+
+    this.pool = aPool;
+  }
+
+  // METHODS
+
+  /**
+   * Renders a single trigger sum, sequence state or part thereof in the
+   * calling thread.
+   * 
+   * @param aTriggerVisitable
+   *          the visitable to render, cannot be <code>null</code>.
+   * @return the rendered visitable, as returned by
+   *         {@link TriggerStringifier#toString(ITriggerVisitable)}, never
+   *         <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given visitable was <code>null</code>.
+   */
+  public String render( final ITriggerVisitable aTriggerVisitable )
+  {
+    return new TriggerStringifier().toString( aTriggerVisitable );
+  }
+
+  /**
+   * Renders all given trigger sequence states in parallel.
+   * 
+   * @param aStates
+   *          the trigger sequence states to render, cannot be
+   *          <code>null</code> or contain <code>null</code> elements.
+   * @return an unmodifiable list with the rendered states, in the iteration
+   *         order of the given states, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given states were <code>null</code> or contained
+   *           <code>null</code> elements.
+   */
+  public List<String> renderAll( final Collection<? extends TriggerSequenceState> aStates )
+  {
+    if ( aStates == null )
+    {
+      throw new IllegalArgumentException( "States cannot be null!" );
+    }
+
+    final TriggerSequenceState[] states = aStates.toArray( new TriggerSequenceState[aStates.size()] );
+    for ( TriggerSequenceState state : states )
+    {
+      if ( state == null )
+      {
+        throw new IllegalArgumentException( "State cannot be null!" );
+      }
+    }
+
+    final String[] results = new String[states.length];
+    if ( states.length > 0 )
+    {
+      this.pool.invoke( new RenderTask( states, results, 0, states.length ) );
+    }
+    return Collections.unmodifiableList( Arrays.asList( results ) );
+  }
+}
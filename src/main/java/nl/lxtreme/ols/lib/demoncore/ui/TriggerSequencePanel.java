@@ -49,11 +49,13 @@ public class TriggerSequencePanel extends JPanel
 
     // VARIABLES
 
-    private final TriggerStringifier triggerStringifier;
     private final TriggerStateTerm stateTermType;
     private final TriggerSequenceState triggerSequence;
     private final TriggerMode mode;
 
+    /** The snapshot of the sum as last set by this action. */
+    private TriggerSumSnapshot snapshot;
+
     // CONSTRUCTORS
 
     /**
@@ -66,7 +68,7 @@ public class TriggerSequencePanel extends JPanel
       this.mode = aMode;
       this.triggerSequence = aTriggerSequenceState;
 
-      this.triggerStringifier = new TriggerStringifier();
+      this.snapshot = TriggerSumSnapshot.of( getTriggerSum() );
 
       updateName();
     }
@@ -79,10 +81,23 @@ public class TriggerSequencePanel extends JPanel
     @Override
     public void actionPerformed( final ActionEvent aEvent )
     {
-      final TriggerSumEditor editor = new TriggerSumEditor( this.mode, getTriggerSum() );
+      // The sum can be changed through the sequence state itself, so refresh
+      // the snapshot; unchanged parts are shared with the previous one...
+      this.snapshot = TriggerSumSnapshot.of( getTriggerSum(), this.snapshot );
+
+      // The editor works on the (immutable) snapshot, so it needs no copy...
+      final TriggerSumEditor editor = new TriggerSumEditor( this.mode, this.snapshot );
       if ( editor.showDialog() )
       {
-        setTriggerSum( editor.getTriggerSum() );
+        final TriggerSumSnapshot newSnapshot = editor.getTriggerSumSnapshot();
+
+        // Only replace the sum when the editor actually changed something...
+        if ( !newSnapshot.equals( this.snapshot ) )
+        {
+          setTriggerSum( newSnapshot.toTriggerSum() );
+
+          this.snapshot = newSnapshot;
+        }
       }
 
       updateName();
@@ -111,11 +126,12 @@ public class TriggerSequencePanel extends JPanel
 
     /**
      * Updates the name of this action according to the human-readable
-     * representation of the contained trigger sum.
+     * representation of the contained trigger sum. Sums that have been
+     * rendered before are not rendered again.
      */
     private void updateName()
     {
-      putValue( NAME, this.triggerStringifier.toString( getTriggerSum() ) );
+      putValue( NAME, TriggerSumLabelCache.getShared().getLabel( getTriggerSum() ) );
     }
   }
 
@@ -130,6 +146,8 @@ public class TriggerSequencePanel extends JPanel
   private final TriggerSequenceState model;
   private final TriggerMode mode;
 
+  private TriggerSequenceSnapshot snapshot;
+
   private JLabel title;
   private JButton captureTerm;
   private JButton hitTerm;
@@ -175,6 +193,21 @@ public class TriggerSequencePanel extends JPanel
     return this.model;
   }
 
+  /**
+   * Returns an immutable snapshot of the current trigger sequence state.
+   * <p>
+   * Consecutive snapshots share everything that was not changed in between,
+   * so taking a snapshot after each edit is cheap.
+   * </p>
+   * 
+   * @return a snapshot of the trigger sequence state, never <code>null</code>.
+   */
+  public TriggerSequenceSnapshot getTriggerSequenceSnapshot()
+  {
+    this.snapshot = TriggerSequenceSnapshot.of( this.model, this.snapshot );
+    return this.snapshot;
+  }
+
   /**
    * Builds this panel by placing all components on it.
    */
@@ -23,6 +23,7 @@ package nl.lxtreme.ols.lib.demoncore.ui;
 
 import static nl.lxtreme.ols.lib.demoncore.ui.DemonCore.*;
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 import nl.lxtreme.ols.lib.demoncore.*;
@@ -47,11 +48,25 @@ public class TriggerStringifier implements ITriggerVisitor
   private static final int MID_TERM_SIZE = 4;
   private static final int PAIR_TERM_SIZE = 2;
 
+  /** Denotes the end offset of an absent entry on the symbol stack. */
+  private static final int NULL_ENTRY = -1;
+
   private static final ResourceBundle RB = ResourceBundle.getBundle( DemonCore.class.getName() );
 
   // VARIABLES
 
-  private final Stack<String> symStack = new Stack<String>();
+  /**
+   * The rendered entries of the symbol stack, laid out contiguously in the
+   * order in which they are pushed; absent entries take no space. The area
+   * behind the last entry is used as scratch space while combining entries.
+   */
+  private char[] chars = new char[256];
+  private int length;
+
+  /** The start and end offsets of the entries of the symbol stack. */
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int depth;
 
   // METHODS
 
@@ -64,9 +79,23 @@ public class TriggerStringifier implements ITriggerVisitor
    * @return a string representation of the given term, never <code>null</code>.
    */
   public static String asString( final AbstractTriggerTerm aTerm )
+  {
+    return asString( aTerm.getType() );
+  }
+
+  /**
+   * Converts the given term type to a string representation.
+   * 
+   * @param aType
+   *          the type of the trigger term to convert to string, cannot be
+   *          <code>null</code>.
+   * @return a string representation of the given term type, never
+   *         <code>null</code>.
+   */
+  public static String asString( final TriggerTermType aType )
   {
     final String resourceKey;
-    switch ( aTerm.getType() )
+    switch ( aType )
     {
       case TERM_A:
         resourceKey = rTERM_A;
@@ -117,7 +146,7 @@ public class TriggerStringifier implements ITriggerVisitor
         resourceKey = rTIMER2;
         break;
       default:
-        throw new IllegalArgumentException( "Unknown term type: " + aTerm.getType() );
+        throw new IllegalArgumentException( "Unknown term type: " + aType );
     }
     return RB.getString( resourceKey );
   }
@@ -162,46 +191,72 @@ public class TriggerStringifier implements ITriggerVisitor
   }
 
   /**
-   * Converts a given {@link TriggerSum} to a human readable string
-   * representation.
+   * Renders a given {@link ITriggerVisitable} in a human readable form to the
+   * given {@link Appendable}.
+   * <p>
+   * The rendering is done in a single pass over the visitable, using buffers
+   * that are reused between calls; as such, rendering many trigger sums with
+   * the same instance hardly allocates any memory.
+   * </p>
    * 
-   * @param aTriggerSum
-   *          the trigger sum to convert to a string representation, cannot be
-   *          <code>null</code>.
-   * @return a human readable string representation of the given trigger sum, or
-   *         an empty string if the given trigger sum did not provide any terms.
+   * @param aTriggerVisitable
+   *          the trigger sum (or part of it) to render, cannot be
+   *          <code>null</code>;
+   * @param aAppendable
+   *          the appendable to render to, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems while rendering or appending.
    * @throws IllegalArgumentException
-   *           in case the given argument was <code>null</code>.
+   *           in case one of the given arguments was <code>null</code>.
    */
-  public final String toString( final ITriggerVisitable aTriggerVisitable )
+  public final void render( final ITriggerVisitable aTriggerVisitable, final Appendable aAppendable )
+      throws IOException
   {
-    if ( aTriggerVisitable == null )
+    if ( aAppendable == null )
     {
-      throw new IllegalArgumentException( "TriggerVisitable cannot be null!" );
+      throw new IllegalArgumentException( "Appendable cannot be null!" );
     }
 
-    this.symStack.clear();
+    build( aTriggerVisitable );
 
-    try
+    if ( aAppendable instanceof StringBuilder )
     {
-      aTriggerVisitable.accept( this );
+      ( ( StringBuilder )aAppendable ).append( this.chars, 0, this.length );
     }
-    catch ( IOException exception )
+    else if ( aAppendable instanceof Writer )
     {
-      exception.printStackTrace();
+      ( ( Writer )aAppendable ).write( this.chars, 0, this.length );
     }
+    else
+    {
+      aAppendable.append( CharBuffer.wrap( this.chars, 0, this.length ) );
+    }
+  }
 
-    final StringBuilder sb = new StringBuilder();
-    while ( !this.symStack.isEmpty() )
+  /**
+   * Converts a given {@link ITriggerVisitable} to a human readable string
+   * representation.
+   * 
+   * @param aTriggerVisitable
+   *          the trigger sum (or part of it) to convert to a string
+   *          representation, cannot be <code>null</code>.
+   * @return a human readable string representation of the given visitable, or
+   *         an empty string if the given visitable did not provide any terms.
+   * @throws IllegalArgumentException
+   *           in case the given argument was <code>null</code>.
+   */
+  public final String toString( final ITriggerVisitable aTriggerVisitable )
+  {
+    try
     {
-      final String term = this.symStack.pop();
-      if ( term != null )
-      {
-        sb.insert( 0, term );
-      }
+      build( aTriggerVisitable );
+    }
+    catch ( IOException exception )
+    {
+      exception.printStackTrace();
     }
 
-    return sb.toString();
+    return new String( this.chars, 0, this.length );
   }
 
   /**
@@ -210,12 +265,24 @@ public class TriggerStringifier implements ITriggerVisitor
   @Override
   public void visit( final AbstractTriggerTerm aTerm ) throws IOException
   {
-    String termStr = null;
-    if ( !aTerm.isDisabled() )
+    final int start = this.length;
+    if ( aTerm.isDisabled() )
     {
-      termStr = asDecoratedString( aTerm );
+      push( start, NULL_ENTRY );
+      return;
     }
-    this.symStack.push( termStr );
+
+    final String name = asString( aTerm );
+    if ( aTerm.isInverted() && ( !USE_NEGATION_LINE || ( name.length() > 1 ) ) )
+    {
+      append( NOT_STR );
+    }
+    append( name );
+    if ( aTerm.isInverted() && USE_NEGATION_LINE && ( name.length() <= 1 ) )
+    {
+      append( NEGATE_STR );
+    }
+    push( start, this.length );
   }
 
   /**
@@ -224,8 +291,8 @@ public class TriggerStringifier implements ITriggerVisitor
   @Override
   public void visit( final TriggerFinalTerm aTerm ) throws IOException
   {
-    // Walk across the stack and simplify its entries...
-    walkSymbolStack( aTerm.getOperation(), FINAL_TERM_SIZE );
+    // Combine the topmost entries of the stack...
+    combineTerms( aTerm.getOperation(), FINAL_TERM_SIZE );
   }
 
   /**
@@ -234,8 +301,8 @@ public class TriggerStringifier implements ITriggerVisitor
   @Override
   public void visit( final TriggerMidTerm aTerm ) throws IOException
   {
-    // Walk across the stack and simplify its entries...
-    walkSymbolStack( aTerm.getOperation(), MID_TERM_SIZE );
+    // Combine the topmost entries of the stack...
+    combineTerms( aTerm.getOperation(), MID_TERM_SIZE );
   }
 
   /**
@@ -244,8 +311,8 @@ public class TriggerStringifier implements ITriggerVisitor
   @Override
   public void visit( final TriggerPairTerm aTerm ) throws IOException
   {
-    // Walk across the stack and simplify its entries...
-    walkSymbolStack( aTerm.getOperation(), PAIR_TERM_SIZE );
+    // Combine the topmost entries of the stack...
+    combineTerms( aTerm.getOperation(), PAIR_TERM_SIZE );
   }
 
   /**
@@ -254,37 +321,46 @@ public class TriggerStringifier implements ITriggerVisitor
   @Override
   public void visit( final TriggerSequenceState aTriggerSequenceState ) throws IOException
   {
-    StringBuilder result = new StringBuilder();
-    if ( !this.symStack.isEmpty() )
+    // The topmost entries are the else, hit and capture terms, in that order...
+    final int first = Math.max( 0, this.depth - 3 );
+    final int base = ( first < this.depth ) ? this.starts[first] : this.length;
+    final int scratch = this.length;
+
+    for ( int i = first; i < this.depth; i++ )
     {
-      String elseTerm = this.symStack.pop();
-      if ( elseTerm != null )
+      if ( this.ends[i] == NULL_ENTRY )
       {
-        Integer elseState = Integer.valueOf( aTriggerSequenceState.getElseState() );
-        result.insert( 0, String.format( "%s %s %s %d\n", RB.getString( "rElseOn" ), elseTerm,
-            RB.getString( "rGotoLevel" ), elseState ) );
+        continue;
       }
-    }
-    if ( !this.symStack.isEmpty() )
-    {
-      String hitTerm = this.symStack.pop();
-      if ( hitTerm != null )
+
+      final int term = this.depth - i;
+      if ( term == 3 )
       {
-        Integer occurrenceCount = Integer.valueOf( aTriggerSequenceState.getOccurrenceCount() );
-        result.insert( 0, String.format( "%s %s %s %d %s\n", RB.getString( "rIfTarget" ), hitTerm,
-            RB.getString( "rOccurs" ), occurrenceCount, RB.getString( "rSamples" ) ) );
+        append( RB.getString( "rWhileStoring" ) ).append( ' ' ).appendEntry( i );
       }
-    }
-    if ( !this.symStack.isEmpty() )
-    {
-      String captureTerm = this.symStack.pop();
-      if ( captureTerm != null )
+      else if ( term == 2 )
+      {
+        append( RB.getString( "rIfTarget" ) ).append( ' ' ).appendEntry( i ).append( ' ' );
+        append( RB.getString( "rOccurs" ) ).append( ' ' ).append( aTriggerSequenceState.getOccurrenceCount() );
+        append( ' ' ).append( RB.getString( "rSamples" ) );
+      }
+      else
       {
-        result.insert( 0, String.format( "%s %s\n", RB.getString( "rWhileStoring" ), captureTerm ) );
+        append( RB.getString( "rElseOn" ) ).append( ' ' ).appendEntry( i ).append( ' ' );
+        append( RB.getString( "rGotoLevel" ) ).append( ' ' ).append( aTriggerSequenceState.getElseState() );
       }
+      append( '\n' );
     }
 
-    this.symStack.push( result.toString().trim() );
+    this.depth = first;
+
+    final int start = trimStart( scratch, this.length );
+    final int end = trimEnd( start, this.length );
+    System.arraycopy( this.chars, start, this.chars, base, end - start );
+    this.length = base + ( end - start );
+
+    // Unlike the other terms, an empty state is never left out...
+    push( base, this.length );
   }
 
   /**
@@ -297,98 +373,222 @@ public class TriggerStringifier implements ITriggerVisitor
   }
 
   /**
-   * Converts the given term to a string representation.
-   * 
-   * @param aTerm
-   *          the trigger term to convert to a string representation, cannot be
-   *          <code>null</code>.
-   * @return a string representation of the given term, never <code>null</code>.
+   * Appends the given character to the buffer.
    */
-  private String asDecoratedString( final AbstractTriggerTerm aTerm )
+  private TriggerStringifier append( final char aChar )
   {
-    StringBuilder sb = new StringBuilder( asString( aTerm ) );
-    if ( aTerm.isInverted() )
+    ensureCapacity( 1 );
+    this.chars[this.length++] = aChar;
+    return this;
+  }
+
+  /**
+   * Appends the given number, in decimal notation, to the buffer.
+   */
+  private TriggerStringifier append( final int aValue )
+  {
+    if ( aValue < 0 )
     {
-      if ( !USE_NEGATION_LINE || ( sb.length() > 1 ) )
-      {
-        sb.insert( 0, NOT_STR );
-      }
-      else
-      {
-        sb.append( NEGATE_STR );
-      }
+      append( '-' );
+    }
+
+    // Use negative numbers to deal with Integer.MIN_VALUE as well...
+    int value = ( aValue < 0 ) ? aValue : -aValue;
+    int digits = 1;
+    for ( int v = value / 10; v != 0; v /= 10 )
+    {
+      digits++;
+    }
+
+    ensureCapacity( digits );
+    this.length += digits;
+    for ( int i = this.length - 1; i >= ( this.length - digits ); i-- )
+    {
+      this.chars[i] = ( char )( '0' - ( value % 10 ) );
+      value /= 10;
+    }
+    return this;
+  }
+
+  /**
+   * Appends the given string to the buffer.
+   */
+  private TriggerStringifier append( final String aString )
+  {
+    final int len = aString.length();
+    ensureCapacity( len );
+    aString.getChars( 0, len, this.chars, this.length );
+    this.length += len;
+    return this;
+  }
+
+  /**
+   * Appends (a copy of) the given stack entry to the buffer.
+   */
+  private TriggerStringifier appendEntry( final int aIndex )
+  {
+    final int len = this.ends[aIndex] - this.starts[aIndex];
+    ensureCapacity( len );
+    System.arraycopy( this.chars, this.starts[aIndex], this.chars, this.length, len );
+    this.length += len;
+    return this;
+  }
+
+  /**
+   * Renders the given visitable into the buffer, leaving the result in the
+   * first {@link #length} characters.
+   */
+  private void build( final ITriggerVisitable aTriggerVisitable ) throws IOException
+  {
+    if ( aTriggerVisitable == null )
+    {
+      throw new IllegalArgumentException( "TriggerVisitable cannot be null!" );
     }
-    return sb.toString();
+
+    this.length = 0;
+    this.depth = 0;
+
+    aTriggerVisitable.accept( this );
+    // As the stack entries are laid out contiguously, and absent entries are
+    // empty, the buffer now contains the concatenation of all entries...
   }
 
   /**
-   * Combines a given list of terms with the given trigger operation into a
-   * single string representation.
+   * Combines up to a given number (= arity) of the topmost stack entries with
+   * the given trigger operation into a single entry. Absent entries are left
+   * out, and if all entries are absent, the resulting entry is absent as well.
    * 
-   * @param aTermList
-   *          the list of terms, can be empty, but never <code>null</code>;
    * @param aOperation
-   *          the trigger operation to apply to each term, cannot be
-   *          <code>null</code>.
-   * @return a string representation, can be <code>null</code> if the given term
-   *         list is empty.
+   *          the operation to apply to the stack entries;
+   * @param aArity
+   *          the number of operands the operation takes, >= 0.
    */
-  private String combineTerms( final List<String> aTermList, final TriggerOperation aOperation )
+  private void combineTerms( final TriggerOperation aOperation, final int aArity )
   {
-    if ( aTermList.isEmpty() )
+    final int first = Math.max( 0, this.depth - aArity );
+    final int base = ( first < this.depth ) ? this.starts[first] : this.length;
+
+    int count = 0;
+    for ( int i = first; i < this.depth; i++ )
+    {
+      if ( this.ends[i] != NULL_ENTRY )
+      {
+        count++;
+      }
+    }
+
+    if ( count == 0 )
     {
-      return null;
+      this.depth = first;
+      this.length = base;
+      push( base, NULL_ENTRY );
+      return;
     }
 
+    // Join the entries, topmost first, behind the current contents...
     final String opName = asString( aOperation );
-
-    StringBuilder sb = new StringBuilder();
-    for ( String term : aTermList )
+    final int scratch = this.length;
+    for ( int i = this.depth - 1; i >= first; i-- )
     {
-      if ( sb.length() > 0 )
+      if ( this.ends[i] == NULL_ENTRY )
       {
-        sb.append( ' ' ).append( opName ).append( ' ' );
+        continue;
       }
-      sb.append( term );
+      if ( this.length > scratch )
+      {
+        append( ' ' ).append( opName ).append( ' ' );
+      }
+      appendEntry( i );
     }
 
-    String result = sb.toString().trim();
-    if ( ( aTermList.size() > 1 ) || aOperation.isInverted() )
+    final int start = trimStart( scratch, this.length );
+    final int end = trimEnd( start, this.length );
+    final boolean inverted = aOperation.isInverted();
+    final boolean parens = ( count > 1 ) || inverted;
+
+    // ...and move the result in place of the combined entries; the prefix is
+    // written last, as it might overlap the joined entries...
+    final int prefix = ( inverted ? NOT_STR.length() : 0 ) + ( parens ? 1 : 0 );
+    this.depth = first;
+    this.length = base;
+    ensureCapacity( prefix + ( end - start ) );
+    System.arraycopy( this.chars, start, this.chars, base + prefix, end - start );
+    if ( inverted )
+    {
+      append( NOT_STR );
+    }
+    if ( parens )
     {
-      result = "(".concat( result ).concat( ")" );
+      append( '(' );
     }
-    if ( aOperation.isInverted() )
+    this.length += ( end - start );
+    if ( parens )
     {
-      result = NOT_STR.concat( result );
+      append( ')' );
     }
 
-    return result;
+    push( base, this.length );
   }
 
   /**
-   * Walks across the top of the symbol stack and concatenates up to a given
-   * number of items (= arity) of the stack. The result of this operation is
-   * pushed onto the stack as replacement.
+   * Ensures the buffer can hold the given number of additional characters.
+   * The scratch area behind {@link #length} is retained.
+   */
+  private void ensureCapacity( final int aAdditional )
+  {
+    final int required = this.length + aAdditional;
+    if ( required > this.chars.length )
+    {
+      this.chars = Arrays.copyOf( this.chars, Math.max( required, this.chars.length * 2 ) );
+    }
+  }
+
+  /**
+   * Pushes a new entry on the stack.
    * 
-   * @param aOperation
-   *          the operation to apply to the stack items;
-   * @param aArity
-   *          the number of operators the operator takes, >= 0.
+   * @param aStart
+   *          the start offset of the entry in the buffer;
+   * @param aEnd
+   *          the end offset of the entry in the buffer, or
+   *          {@link #NULL_ENTRY} for an absent entry.
    */
-  private void walkSymbolStack( final TriggerOperation aOperation, final int aArity )
+  private void push( final int aStart, final int aEnd )
   {
-    final int depth = Math.max( 0, this.symStack.size() - aArity );
+    if ( this.depth == this.starts.length )
+    {
+      this.starts = Arrays.copyOf( this.starts, this.depth * 2 );
+      this.ends = Arrays.copyOf( this.ends, this.depth * 2 );
+    }
+    this.starts[this.depth] = aStart;
+    this.ends[this.depth] = aEnd;
+    this.depth++;
+  }
 
-    final List<String> terms = new ArrayList<String>();
-    while ( !this.symStack.isEmpty() && ( this.symStack.size() > depth ) )
+  /**
+   * Returns the offset of the last non-whitespace character plus one, as
+   * {@link String#trim()} does.
+   */
+  private int trimEnd( final int aStart, final int aEnd )
+  {
+    int result = aEnd;
+    while ( ( result > aStart ) && ( this.chars[result - 1] <= ' ' ) )
     {
-      final String term = this.symStack.pop();
-      if ( term != null )
-      {
-        terms.add( term );
-      }
+      result--;
     }
+    return result;
+  }
 
-    this.symStack.push( combineTerms( terms, aOperation ) );
+  /**
+   * Returns the offset of the first non-whitespace character, as
+   * {@link String#trim()} does.
+   */
+  private int trimStart( final int aStart, final int aEnd )
+  {
+    int result = aStart;
+    while ( ( result < aEnd ) && ( this.chars[result] <= ' ' ) )
+    {
+      result++;
+    }
+    return result;
   }
 }
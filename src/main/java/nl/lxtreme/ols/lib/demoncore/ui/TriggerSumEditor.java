@@ -23,6 +23,7 @@ package nl.lxtreme.ols.lib.demoncore.ui;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.text.*;
 
 import javax.swing.*;
 
@@ -38,26 +39,50 @@ public class TriggerSumEditor extends JDialog
 
   private static final long serialVersionUID = 1L;
 
+  private static final TriggerExpressionCompiler COMPILER = new TriggerExpressionCompiler();
+
   // VARIABLES
 
   private final TriggerMode mode;
-  private final TriggerSum model;
+  private final TriggerSumSnapshot initialSnapshot;
 
   private boolean dialogResult;
-  private TriggerSumPanel triggerSumPane;
+  private TriggerSumView triggerSumPane;
   private JPanel buttonPane;
 
   // CONSTRUCTORS
 
   /**
    * Creates a new TriggerSumEditor instance.
+   * 
+   * @param aMode
+   *          the trigger mode, whether we're displaying states or timing
+   *          values;
+   * @param aTriggerSum
+   *          the trigger sum to edit, cannot be <code>null</code>. The given
+   *          sum itself is not modified.
    */
   public TriggerSumEditor( final TriggerMode aMode, final TriggerSum aTriggerSum )
+  {
+    this( aMode, TriggerSumSnapshot.of( aTriggerSum ) );
+  }
+
+  /**
+   * Creates a new TriggerSumEditor instance.
+   * 
+   * @param aMode
+   *          the trigger mode, whether we're displaying states or timing
+   *          values;
+   * @param aSnapshot
+   *          the snapshot of the trigger sum to edit, cannot be
+   *          <code>null</code>.
+   */
+  public TriggerSumEditor( final TriggerMode aMode, final TriggerSumSnapshot aSnapshot )
   {
     super( null /* XXX */, DEFAULT_MODALITY_TYPE );
 
     this.mode = aMode;
-    this.model = new TriggerSum( aTriggerSum );
+    this.initialSnapshot = aSnapshot;
 
     initDialog();
     buildDialog();
@@ -66,13 +91,25 @@ public class TriggerSumEditor extends JDialog
   // METHODS
 
   /**
-   * Returns the current value of model.
+   * Returns the edited trigger sum.
    * 
-   * @return the model
+   * @return a new trigger sum, never <code>null</code>.
+   * @see #getTriggerSumSnapshot()
    */
   public final TriggerSum getTriggerSum()
   {
-    return this.model;
+    return getTriggerSumSnapshot().toTriggerSum();
+  }
+
+  /**
+   * Returns the snapshot of the edited trigger sum.
+   * 
+   * @return the trigger sum snapshot, never <code>null</code>. Equals the
+   *         snapshot given at construction if nothing was changed.
+   */
+  public final TriggerSumSnapshot getTriggerSumSnapshot()
+  {
+    return this.triggerSumPane.getTriggerSumSnapshot();
   }
 
   /**
@@ -86,6 +123,41 @@ public class TriggerSumEditor extends JDialog
     return this.dialogResult;
   }
 
+  /**
+   * Asks for a boolean expression and, if it can be implemented, applies it to
+   * the edited trigger sum.
+   */
+  final void applyExpression()
+  {
+    final String expression = JOptionPane.showInputDialog( this, "Expression (e.g. (A & C) | !Edge2):",
+        "Trigger expression", JOptionPane.QUESTION_MESSAGE );
+    if ( ( expression == null ) || expression.trim().isEmpty() )
+    {
+      return;
+    }
+
+    final TriggerExpressionCompiler.Assignment assignment;
+    try
+    {
+      assignment = COMPILER.compile( expression );
+    }
+    catch ( ParseException exception )
+    {
+      JOptionPane.showMessageDialog( this, "Invalid expression: " + exception.getMessage(), "Trigger expression",
+          JOptionPane.ERROR_MESSAGE );
+      return;
+    }
+
+    if ( assignment == null )
+    {
+      JOptionPane.showMessageDialog( this, "This expression cannot be implemented by a single trigger sum.",
+          "Trigger expression", JOptionPane.WARNING_MESSAGE );
+      return;
+    }
+
+    this.triggerSumPane.setTriggerSumSnapshot( assignment.applyTo( getTriggerSumSnapshot() ) );
+  }
+
   /**
    * Builds this dialog.
    */
@@ -106,7 +178,17 @@ public class TriggerSumEditor extends JDialog
    */
   private void initDialog()
   {
-    this.triggerSumPane = new TriggerSumPanel( this.mode, this.model );
+    this.triggerSumPane = new TriggerSumView( this.mode, this.initialSnapshot );
+
+    JButton expressionButton = new JButton( "Expression..." );
+    expressionButton.addActionListener( new ActionListener()
+    {
+      @Override
+      public void actionPerformed( final ActionEvent aEvent )
+      {
+        applyExpression();
+      }
+    } );
 
     JButton cancelButton = new JButton( "Cancel" );
     cancelButton.addActionListener( new ActionListener()
@@ -131,6 +213,7 @@ public class TriggerSumEditor extends JDialog
     } );
 
     this.buttonPane = new JPanel();
+    this.buttonPane.add( expressionButton, BorderLayout.LINE_START );
     this.buttonPane.add( cancelButton, BorderLayout.LINE_END );
     this.buttonPane.add( okButton, BorderLayout.LINE_END );
   }
@@ -0,0 +1,192 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore.ui;
+
+
+import nl.lxtreme.ols.lib.demoncore.*;
+
+
+/**
+ * Provides a bounded cache of the human readable labels of trigger sums, as
+ * rendered by {@link TriggerStringifier}.
+ * <p>
+ * A label only depends on the operations and input states of a sum, not on
+ * the parameters of its inputs. Labels are therefore cached by exactly those,
+ * so unchanged sums (and sums that only differ in their parameters) are never
+ * rendered twice. When the cache is full, the least recently used label is
+ * evicted.
+ * </p>
+ * <p>
+ * This class is thread-safe. Labels are rendered outside any lock, so callers
+ * never wait on each other's rendering.
+ * </p>
+ */
+public final class TriggerSumLabelCache
+{
+  // INNER TYPES
+
+  /**
+   * Provides the structural key of a trigger sum, that is, its operations and
+   * input states.
+   */
+  static final class Key
+  {
+    // VARIABLES
+
+    private final long operations;
+    private final long inputStates;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new {@link Key} instance for the given trigger sum.
+     */
+    Key( final TriggerSum aSum )
+    {
+      final TriggerFinalTerm finalTerm = aSum.getFinalTerm();
+
+      long ops = finalTerm.getOperation().ordinal();
+      long states = 0L;
+      for ( TriggerMidTerm mid : new TriggerMidTerm[] { finalTerm.getTermA(), finalTerm.getTermB() } )
+      {
+        ops = ( ops << 4 ) | mid.getOperation().ordinal();
+        for ( TriggerPairTerm pair : new TriggerPairTerm[] { mid.getTermA(), mid.getTermB(), mid.getTermC(),
+            mid.getTermD() } )
+        {
+          ops = ( ops << 4 ) | pair.getOperation().ordinal();
+          states = ( states << 4 ) | ( pair.getTermA().getState().ordinal() << 2 )
+              | pair.getTermB().getState().ordinal();
+        }
+      }
+
+      this.operations = ops;
+      this.inputStates = states;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( final Object aObject )
+    {
+      if ( this == aObject )
+      {
+        return true;
+      }
+      if ( !( aObject instanceof Key ) )
+      {
+        return false;
+      }
+      final Key other = ( Key )aObject;
+      return ( this.operations == other.operations ) && ( this.inputStates == other.inputStates );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+      final long hash = ( this.operations * 31 ) + this.inputStates;
+      return ( int )( hash ^ ( hash >>> 32 ) );
+    }
+  }
+
+  // CONSTANTS
+
+  /** The default maximum number of cached labels. */
+  public static final int DEFAULT_SIZE = 256;
+
+  private static final TriggerSumLabelCache SHARED = new TriggerSumLabelCache( DEFAULT_SIZE );
+
+  // VARIABLES
+
+  private final LruCache<Key, String> labels;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSumLabelCache} instance.
+   * 
+   * @param aMaxSize
+   *          the maximum number of labels to cache, > 0.
+   */
+  public TriggerSumLabelCache( final int aMaxSize )
+  {
+    this.labels = new LruCache<Key, String>( aMaxSize );
+  }
+
+  // METHODS
+
+  /**
+   * Returns the cache shared by all editor panels.
+   * 
+   * @return the shared cache, never <code>null</code>.
+   */
+  public static TriggerSumLabelCache getShared()
+  {
+    return SHARED;
+  }
+
+  /**
+   * Removes all cached labels.
+   */
+  public void clear()
+  {
+    this.labels.clear();
+  }
+
+  /**
+   * Returns the human readable label of the given trigger sum, rendering it
+   * only if no label is cached for it.
+   * 
+   * @param aSum
+   *          the trigger sum to return the label for, cannot be
+   *          <code>null</code>.
+   * @return the label, as returned by
+   *         {@link TriggerStringifier#toString(ITriggerVisitable)}, never
+   *         <code>null</code>.
+   */
+  public String getLabel( final TriggerSum aSum )
+  {
+    final Key key = new Key( aSum );
+
+    final String result = this.labels.get( key );
+    if ( result != null )
+    {
+      return result;
+    }
+    // Render it outside the lock; at worst it is rendered twice...
+    return this.labels.putIfAbsent( key, new TriggerStringifier().toString( aSum ) );
+  }
+
+  /**
+   * Returns the number of cached labels.
+   * 
+   * @return the cache size, >= 0.
+   */
+  public int getSize()
+  {
+    return this.labels.getSize();
+  }
+}
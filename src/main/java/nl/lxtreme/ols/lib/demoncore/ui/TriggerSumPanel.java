@@ -23,6 +23,7 @@ package nl.lxtreme.ols.lib.demoncore.ui;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.*;
 import java.util.*;
 
 import javax.swing.*;
@@ -234,6 +235,12 @@ public class TriggerSumPanel extends JPanel
   private UIElement[] midTerms;
   private UIElement finalTerm;
 
+  /**
+   * The cached lines between the various stages; <code>null</code> if they
+   * are to be recalculated after the components have been laid out.
+   */
+  private Path2D connectors;
+
   // CONSTRUCTORS
 
   /**
@@ -258,6 +265,19 @@ public class TriggerSumPanel extends JPanel
 
   // METHODS
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void doLayout()
+  {
+    super.doLayout();
+
+    // Resizing this panel, or changing the model (and thereby the size of one
+    // of the components), always causes a new layout...
+    this.connectors = null;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -279,12 +299,18 @@ public class TriggerSumPanel extends JPanel
   {
     super.paintComponent( aCanvas );
 
+    if ( this.connectors == null )
+    {
+      // Determine all the intermediary lines between the various stages (tail
+      // recursive); these only change when the components are laid out...
+      this.connectors = new Path2D.Float();
+      addTreeConnections( this.connectors, this.finalTerm );
+    }
+
     final Graphics2D canvas = ( Graphics2D )aCanvas.create();
     try
     {
-      // Draw all the intermediary lines between the various stages (tail
-      // recursive)...
-      drawTreeConnections( canvas, this.finalTerm );
+      canvas.draw( this.connectors );
     }
     finally
     {
@@ -338,19 +364,19 @@ public class TriggerSumPanel extends JPanel
   }
 
   /**
-   * Draws orthogonal lines between the given component and its "back linked"
-   * components.
+   * Adds orthogonal lines between the given component and its "back linked"
+   * components to the given path.
    * <p>
    * This method will (tail) recursively call itself to walk back through each
    * back linked component.
    * </p>
    * 
-   * @param aCanvas
-   *          the canvas to paint on, cannot be <code>null</code>;
+   * @param aPath
+   *          the path to add the lines to, cannot be <code>null</code>;
    * @param aUIElement
    *          the component to draw the lines from, cannot be <code>null</code>.
    */
-  private void drawTreeConnections( final Graphics2D aCanvas, final UIElement aUIElement )
+  private void addTreeConnections( final Path2D aPath, final UIElement aUIElement )
   {
     final UIElement[] backlinks = aUIElement.backLinks;
     final int iV = backlinks.length;
@@ -390,12 +416,13 @@ public class TriggerSumPanel extends JPanel
       final int y1 = ( int )fromBounds.getCenterY();
       final int y2 = y3 + offsetY;
 
-      aCanvas.drawLine( x1, y1, x2, y1 );
-      aCanvas.drawLine( x2, y1, x2, y2 );
-      aCanvas.drawLine( x2, y2, x3, y2 );
+      aPath.moveTo( x1, y1 );
+      aPath.lineTo( x2, y1 );
+      aPath.lineTo( x2, y2 );
+      aPath.lineTo( x3, y2 );
 
-      // Tail recursion: draw the connections to the backlinks...
-      drawTreeConnections( aCanvas, backlinkUIElement );
+      // Tail recursion: add the connections to the backlinks...
+      addTreeConnections( aPath, backlinkUIElement );
     }
   }
 
@@ -0,0 +1,573 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore.ui;
+
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.*;
+import java.util.*;
+
+import javax.swing.*;
+
+import nl.lxtreme.ols.lib.demoncore.*;
+
+
+/**
+ * Provides a lightweight, graphical representation of a single trigger sum.
+ * <p>
+ * Unlike {@link TriggerSumPanel}, which uses 27 child components, this
+ * component paints the entire tree of inputs, pair, mid and final terms by
+ * itself. Clicking the check box of an input enables or disables it, clicking
+ * its name toggles its inversion, and clicking an operation shows a popup menu
+ * to choose another operation.
+ * </p>
+ * <p>
+ * This view edits an immutable {@link TriggerSumSnapshot}: each change
+ * replaces the snapshot by a new one, which shares all unchanged parts with
+ * the previous one.
+ * </p>
+ * <p>
+ * The geometry of all cells and connectors is only recalculated when the font
+ * of this component changes.
+ * </p>
+ */
+public class TriggerSumView extends JComponent
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  /** Denotes that nothing is hit. */
+  static final int HIT_NONE = -1;
+  /** Denotes the check box of input n, as HIT_INPUT_STATE + n. */
+  static final int HIT_INPUT_STATE = 0;
+  /** Denotes the name of input n, as HIT_INPUT_NAME + n. */
+  static final int HIT_INPUT_NAME = 16;
+  /**
+   * Denotes operation n (pair terms 0..7, mid terms 8..9 and final term 10),
+   * as HIT_OPERATION + n.
+   */
+  static final int HIT_OPERATION = 32;
+
+  private static final int INPUT_COUNT = 16;
+  private static final int OPERATION_COUNT = 11;
+  private static final int FIRST_MID = 8;
+  private static final int FINAL = 10;
+
+  private static final int PAD = 8;
+  private static final int ROW_GAP = 4;
+  private static final int COLUMN_GAP = 40;
+  private static final int CELL_PAD = 6;
+
+  private static final String NOT_STR = "\u00AC";
+
+  /** The operations that can be chosen, like the operation combo boxes. */
+  private static final TriggerOperation[] OPERATIONS = EnumSet.range( TriggerOperation.AND, TriggerOperation.NXOR )
+      .toArray( new TriggerOperation[0] );
+
+  // VARIABLES
+
+  private final String[] inputNames;
+  /** The states of the inputs before they were disabled. */
+  private final TriggerInputState[] previousStates;
+
+  private final Rectangle[] inputBounds;
+  private final Rectangle[] operationBounds;
+  private TriggerSumSnapshot snapshot;
+  private Path2D connectors;
+  private int boxSize;
+  /** The font the geometry is calculated for, <code>null</code> if none. */
+  private Font layoutFont;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link TriggerSumView} instance.
+   * 
+   * @param aMode
+   *          the trigger mode, whether we're displaying states or timing
+   *          values, cannot be <code>null</code>;
+   * @param aSnapshot
+   *          the trigger sum snapshot to start editing with, cannot be
+   *          <code>null</code>.
+   */
+  public TriggerSumView( final TriggerMode aMode, final TriggerSumSnapshot aSnapshot )
+  {
+    if ( aSnapshot == null )
+    {
+      throw new IllegalArgumentException( "Snapshot cannot be null!" );
+    }
+
+    this.snapshot = aSnapshot;
+
+    this.inputNames = new String[INPUT_COUNT];
+    for ( int i = 0; i < INPUT_COUNT; i++ )
+    {
+      this.inputNames[i] = TriggerStringifier.asString( aSnapshot.getInput( i ).getType() );
+    }
+
+    this.previousStates = new TriggerInputState[INPUT_COUNT];
+    this.inputBounds = new Rectangle[INPUT_COUNT];
+    this.operationBounds = new Rectangle[OPERATION_COUNT];
+
+    // Plain components do not get any defaults from the look and feel...
+    setFont( UIManager.getFont( "Label.font" ) );
+    setForeground( UIManager.getColor( "Label.foreground" ) );
+    setBackground( UIManager.getColor( "Panel.background" ) );
+    setOpaque( true );
+
+    final MouseAdapter mouseHandler = new MouseAdapter()
+    {
+      @Override
+      public void mouseMoved( final MouseEvent aEvent )
+      {
+        final boolean hit = hitTest( aEvent.getX(), aEvent.getY() ) != HIT_NONE;
+        setCursor( hit ? Cursor.getPredefinedCursor( Cursor.HAND_CURSOR ) : null );
+      }
+
+      @Override
+      public void mousePressed( final MouseEvent aEvent )
+      {
+        if ( SwingUtilities.isLeftMouseButton( aEvent ) )
+        {
+          handleClick( hitTest( aEvent.getX(), aEvent.getY() ) );
+        }
+      }
+    };
+    addMouseListener( mouseHandler );
+    addMouseMotionListener( mouseHandler );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Dimension getMinimumSize()
+  {
+    if ( isMinimumSizeSet() )
+    {
+      return super.getMinimumSize();
+    }
+    return getPreferredSize();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Dimension getPreferredSize()
+  {
+    if ( isPreferredSizeSet() )
+    {
+      return super.getPreferredSize();
+    }
+
+    ensureLayout();
+
+    final Rectangle last = this.inputBounds[INPUT_COUNT - 1];
+    final Rectangle fin = this.operationBounds[FINAL];
+    return new Dimension( fin.x + fin.width + PAD, last.y + last.height + PAD );
+  }
+
+  /**
+   * Returns the current snapshot of the trigger sum edited by this view.
+   * 
+   * @return the trigger sum snapshot, never <code>null</code>.
+   */
+  public final TriggerSumSnapshot getTriggerSumSnapshot()
+  {
+    return this.snapshot;
+  }
+
+  /**
+   * Replaces the trigger sum edited by this view.
+   * 
+   * @param aSnapshot
+   *          the trigger sum snapshot to edit, cannot be <code>null</code> and
+   *          should have the same state term as the current snapshot.
+   */
+  public final void setTriggerSumSnapshot( final TriggerSumSnapshot aSnapshot )
+  {
+    if ( aSnapshot == null )
+    {
+      throw new IllegalArgumentException( "Snapshot cannot be null!" );
+    }
+
+    this.snapshot = aSnapshot;
+    repaint();
+  }
+
+  /**
+   * Handles a click on the given part of this view.
+   * 
+   * @param aHit
+   *          the part that was clicked, as returned by {@link #hitTest(int, int)}.
+   */
+  final void handleClick( final int aHit )
+  {
+    if ( aHit >= HIT_OPERATION )
+    {
+      showOperationPopup( aHit - HIT_OPERATION );
+    }
+    else if ( aHit >= HIT_INPUT_NAME )
+    {
+      final int input = aHit - HIT_INPUT_NAME;
+      final TriggerInputState state = this.snapshot.getInput( input ).getState();
+      if ( !state.isDisabled() )
+      {
+        // Toggle between inversion and not...
+        setInputState( input, state.isInverted() ? TriggerInputState.ENABLED : TriggerInputState.ENABLED_INVERTED );
+      }
+    }
+    else if ( aHit >= HIT_INPUT_STATE )
+    {
+      final int input = aHit - HIT_INPUT_STATE;
+      final TriggerInputState state = this.snapshot.getInput( input ).getState();
+      if ( state.isDisabled() )
+      {
+        // Restore previous state...
+        final TriggerInputState previous = this.previousStates[input];
+        setInputState( input, ( previous == null ) ? TriggerInputState.ENABLED : previous );
+      }
+      else
+      {
+        // Keep track of the previous state...
+        this.previousStates[input] = state;
+        setInputState( input, TriggerInputState.DISABLED );
+      }
+    }
+
+    repaint();
+  }
+
+  /**
+   * Determines which part of this view is at the given location.
+   * 
+   * @param aX
+   *          the X-coordinate;
+   * @param aY
+   *          the Y-coordinate.
+   * @return {@link #HIT_NONE}, or one of the HIT_* constants plus the index of
+   *         the input or operation that is hit.
+   */
+  final int hitTest( final int aX, final int aY )
+  {
+    ensureLayout();
+
+    for ( int i = 0; i < OPERATION_COUNT; i++ )
+    {
+      if ( this.operationBounds[i].contains( aX, aY ) )
+      {
+        return HIT_OPERATION + i;
+      }
+    }
+
+    final Rectangle first = this.inputBounds[0];
+    if ( ( aX < first.x ) || ( aX >= ( first.x + first.width ) ) )
+    {
+      return HIT_NONE;
+    }
+
+    // The inputs are laid out in equally sized rows...
+    final int row = ( aY - first.y ) / ( first.height + ROW_GAP );
+    if ( ( aY < first.y ) || ( row >= INPUT_COUNT ) || !this.inputBounds[row].contains( aX, aY ) )
+    {
+      return HIT_NONE;
+    }
+    return ( aX < ( first.x + CELL_PAD + this.boxSize ) ) ? HIT_INPUT_STATE + row : HIT_INPUT_NAME + row;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void paintComponent( final Graphics aCanvas )
+  {
+    ensureLayout();
+
+    final Graphics2D canvas = ( Graphics2D )aCanvas.create();
+    try
+    {
+      if ( isOpaque() )
+      {
+        canvas.setColor( getBackground() );
+        canvas.fillRect( 0, 0, getWidth(), getHeight() );
+      }
+
+      canvas.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+      canvas.setFont( getFont() );
+
+      final Color foreground = getForeground();
+      final Color disabled = UIManager.getColor( "Label.disabledForeground" );
+
+      canvas.setColor( foreground );
+      canvas.draw( this.connectors );
+
+      final FontMetrics fm = canvas.getFontMetrics();
+      for ( int i = 0; i < INPUT_COUNT; i++ )
+      {
+        paintInput( canvas, fm, i, foreground, ( disabled == null ) ? Color.GRAY : disabled );
+      }
+      for ( int i = 0; i < OPERATION_COUNT; i++ )
+      {
+        paintOperation( canvas, fm, i, foreground );
+      }
+    }
+    finally
+    {
+      canvas.dispose();
+    }
+  }
+
+  /**
+   * Calculates the geometry of all cells and connectors, unless it is already
+   * calculated for the current font.
+   */
+  private void ensureLayout()
+  {
+    final Font font = getFont();
+    if ( font.equals( this.layoutFont ) )
+    {
+      return;
+    }
+
+    final FontMetrics fm = getFontMetrics( font );
+    final int rowHeight = fm.getHeight() + CELL_PAD;
+    this.boxSize = fm.getAscent() - 2;
+
+    int nameWidth = 0;
+    for ( String name : this.inputNames )
+    {
+      nameWidth = Math.max( nameWidth, fm.stringWidth( NOT_STR.concat( name ) ) );
+    }
+    int opWidth = 0;
+    for ( TriggerOperation operation : TriggerOperation.values() )
+    {
+      opWidth = Math.max( opWidth, fm.stringWidth( operation.name() ) );
+    }
+
+    final int inputWidth = ( 3 * CELL_PAD ) + this.boxSize + nameWidth;
+    // Leave room for the popup arrow...
+    opWidth += ( 3 * CELL_PAD ) + this.boxSize;
+
+    for ( int i = 0; i < INPUT_COUNT; i++ )
+    {
+      this.inputBounds[i] = new Rectangle( PAD, PAD + ( i * ( rowHeight + ROW_GAP ) ), inputWidth, rowHeight );
+    }
+
+    // Each operation is centered on its inputs...
+    int x = PAD + inputWidth + COLUMN_GAP;
+    for ( int i = 0; i < OPERATION_COUNT; i++ )
+    {
+      final Rectangle[] inputs = getInputBounds( i );
+      final double centerY = ( inputs[0].getCenterY() + inputs[inputs.length - 1].getCenterY() ) / 2.0;
+      if ( ( i == FIRST_MID ) || ( i == FINAL ) )
+      {
+        x += opWidth + COLUMN_GAP;
+      }
+      this.operationBounds[i] = new Rectangle( x, ( int )( centerY - ( rowHeight / 2.0 ) ), opWidth, rowHeight );
+    }
+
+    this.connectors = new Path2D.Float();
+    for ( int i = 0; i < OPERATION_COUNT; i++ )
+    {
+      addConnectors( this.connectors, this.operationBounds[i], getInputBounds( i ) );
+    }
+
+    this.layoutFont = font;
+  }
+
+  /**
+   * Adds the orthogonal lines between the given inputs and the operation they
+   * feed into to the given path. The inputs farthest from the center of the
+   * operation bend farthest to the right, so the lines never cross.
+   */
+  private static void addConnectors( final Path2D aPath, final Rectangle aTarget, final Rectangle[] aInputs )
+  {
+    final int count = aInputs.length;
+    final double middle = ( count - 1 ) / 2.0;
+    final double steps = Math.floor( count / 2.0 ) + 1;
+
+    for ( int i = 0; i < count; i++ )
+    {
+      final Rectangle from = aInputs[i];
+
+      final double x1 = from.x + from.width;
+      final double x2 = x1 + ( COLUMN_GAP * ( Math.floor( Math.abs( i - middle ) + 0.5 ) / steps ) );
+      final double y1 = Math.floor( from.getCenterY() );
+      final double y2 = Math.floor( aTarget.y + ( ( aTarget.height * ( i + 1.0 ) ) / ( count + 1.0 ) ) );
+
+      aPath.moveTo( x1, y1 );
+      aPath.lineTo( x2, y1 );
+      aPath.lineTo( x2, y2 );
+      aPath.lineTo( aTarget.x, y2 );
+    }
+  }
+
+  /**
+   * Returns the bounds of the cells feeding into the given operation.
+   */
+  private Rectangle[] getInputBounds( final int aOperation )
+  {
+    if ( aOperation < FIRST_MID )
+    {
+      return new Rectangle[] { this.inputBounds[2 * aOperation], this.inputBounds[( 2 * aOperation ) + 1] };
+    }
+    if ( aOperation < FINAL )
+    {
+      final int first = ( aOperation - FIRST_MID ) * 4;
+      return Arrays.copyOfRange( this.operationBounds, first, first + 4 );
+    }
+    return Arrays.copyOfRange( this.operationBounds, FIRST_MID, FINAL );
+  }
+
+  /**
+   * Paints a single input: its check box and its (possibly negated) name.
+   */
+  private void paintInput( final Graphics2D aCanvas, final FontMetrics aFM, final int aIndex,
+      final Color aForeground, final Color aDisabled )
+  {
+    final TriggerInputState state = this.snapshot.getInput( aIndex ).getState();
+    final Rectangle bounds = this.inputBounds[aIndex];
+    final boolean enabled = state.isEnabled();
+
+    aCanvas.setColor( aForeground );
+    aCanvas.drawRoundRect( bounds.x, bounds.y, bounds.width - 1, bounds.height - 1, CELL_PAD, CELL_PAD );
+
+    final int boxX = bounds.x + CELL_PAD;
+    final int boxY = bounds.y + ( ( bounds.height - this.boxSize ) / 2 );
+    aCanvas.drawRect( boxX, boxY, this.boxSize - 1, this.boxSize - 1 );
+    if ( enabled )
+    {
+      aCanvas.fillRect( boxX + 3, boxY + 3, this.boxSize - 6, this.boxSize - 6 );
+    }
+
+    String name = this.inputNames[aIndex];
+    if ( state.isInverted() )
+    {
+      name = NOT_STR.concat( name );
+    }
+
+    aCanvas.setColor( enabled ? aForeground : aDisabled );
+    aCanvas.drawString( name, boxX + this.boxSize + CELL_PAD, getBaseline( aFM, bounds ) );
+  }
+
+  /**
+   * Paints a single operation, with an arrow denoting its popup menu.
+   */
+  private void paintOperation( final Graphics2D aCanvas, final FontMetrics aFM, final int aIndex,
+      final Color aForeground )
+  {
+    final Rectangle bounds = this.operationBounds[aIndex];
+
+    aCanvas.setColor( aForeground );
+    aCanvas.drawRoundRect( bounds.x, bounds.y, bounds.width - 1, bounds.height - 1, CELL_PAD, CELL_PAD );
+    aCanvas.drawString( getOperation( aIndex ).name(), bounds.x + CELL_PAD, getBaseline( aFM, bounds ) );
+
+    final int arrowX = ( bounds.x + bounds.width ) - CELL_PAD - this.boxSize;
+    final int arrowY = bounds.y + ( ( bounds.height - ( this.boxSize / 2 ) ) / 2 );
+    aCanvas.fillPolygon( new int[] { arrowX, arrowX + this.boxSize, arrowX + ( this.boxSize / 2 ) }, new int[] {
+        arrowY, arrowY, arrowY + ( this.boxSize / 2 ) }, 3 );
+  }
+
+  /**
+   * Returns the given operation of the edited snapshot.
+   */
+  private TriggerOperation getOperation( final int aIndex )
+  {
+    if ( aIndex < FIRST_MID )
+    {
+      return this.snapshot.getPairOperation( aIndex );
+    }
+    if ( aIndex < FINAL )
+    {
+      return this.snapshot.getMidOperation( aIndex - FIRST_MID );
+    }
+    return this.snapshot.getFinalOperation();
+  }
+
+  /**
+   * Replaces the edited snapshot by one with the given input state.
+   */
+  private void setInputState( final int aIndex, final TriggerInputState aState )
+  {
+    this.snapshot = this.snapshot.withInput( aIndex, this.snapshot.getInput( aIndex ).withState( aState ) );
+  }
+
+  /**
+   * Replaces the edited snapshot by one with the given operation.
+   */
+  private void setOperation( final int aIndex, final TriggerOperation aOperation )
+  {
+    if ( aIndex < FIRST_MID )
+    {
+      this.snapshot = this.snapshot.withPairOperation( aIndex, aOperation );
+    }
+    else if ( aIndex < FINAL )
+    {
+      this.snapshot = this.snapshot.withMidOperation( aIndex - FIRST_MID, aOperation );
+    }
+    else
+    {
+      this.snapshot = this.snapshot.withFinalOperation( aOperation );
+    }
+  }
+
+  /**
+   * Returns the baseline for text vertically centered in the given bounds.
+   */
+  private static int getBaseline( final FontMetrics aFM, final Rectangle aBounds )
+  {
+    return aBounds.y + ( ( aBounds.height - aFM.getHeight() ) / 2 ) + aFM.getAscent();
+  }
+
+  /**
+   * Shows the popup menu to choose the given operation.
+   */
+  private void showOperationPopup( final int aIndex )
+  {
+    final JPopupMenu popup = new JPopupMenu();
+    final ButtonGroup group = new ButtonGroup();
+
+    for ( final TriggerOperation operation : OPERATIONS )
+    {
+      final JRadioButtonMenuItem item = new JRadioButtonMenuItem( operation.name(),
+          operation == getOperation( aIndex ) );
+      item.addActionListener( new ActionListener()
+      {
+        @Override
+        public void actionPerformed( final ActionEvent aEvent )
+        {
+          setOperation( aIndex, operation );
+          repaint();
+        }
+      } );
+      group.add( item );
+      popup.add( item );
+    }
+
+    final Rectangle bounds = this.operationBounds[aIndex];
+    popup.show( this, bounds.x, bounds.y + bounds.height );
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link DemonCoreCommandReader}.
+ */
+public class DemonCoreCommandReaderTest
+{
+  // METHODS
+
+  /**
+   * Test method for {@link DemonCoreCommandReader#read(byte[], int, int)}.
+   */
+  @Test( expected = IOException.class )
+  public void testInvalidCommandFail() throws IOException
+  {
+    new DemonCoreCommandReader().read( new byte[] { ( byte )0x9E, 0, 0, 0, 1, 0x01, 0, 0, 0, 0 }, 0, 10 );
+  }
+
+  /**
+   * Test method for {@link DemonCoreCommandReader#read(byte[], int, int)}.
+   */
+  @Test
+  public void testReadInPiecesEqualsProgram() throws IOException
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( 2 );
+    state.setOccurrenceCount( 42 );
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( new TriggerSequenceState(), state );
+    final byte[] image = program.toByteArray();
+
+    final Random random = new Random( 16L );
+    final DemonCoreCommandReader reader = new DemonCoreCommandReader();
+
+    int offset = 0;
+    while ( offset < image.length )
+    {
+      final int length = Math.min( image.length - offset, random.nextInt( 13 ) );
+      reader.read( image, offset, length );
+      offset += length;
+    }
+
+    assertFalse( reader.hasPartialFrame() );
+    assertEquals( program.getFrameCount(), reader.getFrameCount() );
+    assertEquals( program.getChainAddresses(), reader.getChainAddresses() );
+
+    // Only the last write of each chain is kept, so the program is compacted...
+    final DemonCoreProgram compacted = reader.toProgram();
+    assertTrue( compacted.getSize() < program.getSize() );
+    for ( Integer address : program.getChainAddresses() )
+    {
+      final int[] expected = program.getChain( address.intValue() );
+      assertArrayEquals( expected, reader.getChain( address.intValue() ) );
+      assertArrayEquals( expected, compacted.getChain( address.intValue() ) );
+    }
+  }
+
+  /**
+   * Test method for {@link DemonCoreCommandReader#readFrom(InputStream)}.
+   */
+  @Test
+  public void testReselectRestartsChain() throws IOException
+  {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final DemonCoreCommandWriter writer = new DemonCoreCommandWriter( new DataOutputStream( baos ) );
+    writer.writeSelect( 0x20 );
+    writer.writeChain( 1 );
+    writer.writeChain( 2 );
+    writer.writeSelect( 0x21 );
+    writer.writeChain( 3 );
+    writer.writeSelect( 0x20 );
+    writer.writeChain( 4 );
+    baos.write( DemonCoreCommandWriter.CMD_CHAIN );
+
+    final DemonCoreCommandReader reader = new DemonCoreCommandReader();
+    reader.readFrom( new ByteArrayInputStream( baos.toByteArray() ) );
+
+    assertTrue( reader.hasPartialFrame() );
+    assertEquals( 7L, reader.getFrameCount() );
+    assertArrayEquals( new int[] { 4 }, reader.getChain( 0x20 ) );
+    assertArrayEquals( new int[] { 3 }, reader.getChain( 0x21 ) );
+    assertNull( reader.getChain( 0x22 ) );
+  }
+}
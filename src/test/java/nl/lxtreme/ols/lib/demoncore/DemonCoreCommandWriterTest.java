@@ -0,0 +1,409 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link DemonCoreCommandWriter}.
+ */
+public class DemonCoreCommandWriterTest
+{
+  // METHODS
+
+  /**
+   * Test method for
+   * {@link DemonCoreCommandWriter#compile(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testCompileProgramOk()
+  {
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( new TriggerSequenceState() );
+
+    assertTrue( program.getSize() > 0 );
+    assertEquals( 0, program.getSize() % DemonCoreCommandWriter.FRAME_SIZE );
+    assertEquals( program.getSize() / DemonCoreCommandWriter.FRAME_SIZE, program.getFrameCount() );
+    assertTrue( program.asByteBuffer().isReadOnly() );
+  }
+
+  /**
+   * Test method for {@link DemonCoreProgram#getChain(int)}.
+   */
+  @Test
+  public void testCompiledProgramContainsChainContents()
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( 1 );
+    state.setElseState( 4 );
+    state.setOccurrenceCount( 7 );
+
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( state );
+
+    assertArrayEquals( new int[] { ( 4 << 20 ) | 7 }, program.getChain( 1 ) );
+    assertEquals( 6, program.getChain( 0x40 + 4 + TriggerStateTerm.ELSE.getOffset() ).length );
+    assertEquals( 4, program.getChain( TriggerTermType.TERM_A.getLutChainAddress() ).length );
+    assertNull( program.getChain( 0 ) );
+  }
+
+  /**
+   * Test method for {@link DemonCoreProgram#createOccurrenceCountPatch(int, int)}.
+   */
+  @Test
+  public void testCreateOccurrenceCountPatchOk()
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( 5 );
+    state.setElseState( 2 );
+    state.setRaiseTrigger( true );
+    state.setStartTimer( 1 );
+
+    final DemonCoreProgram patch = DemonCoreCommandWriter.compile( state ).createOccurrenceCountPatch( 5, 1234 );
+
+    state.setOccurrenceCount( 1234 );
+
+    assertEquals( 2, patch.getFrameCount() );
+    assertArrayEquals( DemonCoreCommandWriter.compile( state ).getChain( 5 ), patch.getChain( 5 ) );
+  }
+
+  /**
+   * Test method for {@link DemonCoreProgram#createOccurrenceCountPatch(int, int)}.
+   */
+  @Test( expected = IllegalArgumentException.class )
+  public void testCreateOccurrenceCountPatchUnknownStateFail()
+  {
+    DemonCoreCommandWriter.compile( new TriggerSequenceState() ).createOccurrenceCountPatch( 3, 1 );
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreProgram#createTimerPatch(TriggerTermType, long)}.
+   */
+  @Test
+  public void testCreateTimerPatchOk()
+  {
+    final DemonCoreProgram patch = DemonCoreCommandWriter.compile( new TriggerSequenceState() ).createTimerPatch(
+        TriggerTermType.TERM_TIMER2, 0xABCDEF0123L );
+
+    assertEquals( 4, patch.getFrameCount() );
+    assertArrayEquals( new int[] { 0xCDEF0123 }, patch.getChain( 0x3A ) );
+    assertArrayEquals( new int[] { 0x0B }, patch.getChain( 0x3B ) );
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreCommandWriter#compile(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testCompileSelectsSumChainBeforeWritingIt()
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( 3 );
+
+    final ByteBuffer image = DemonCoreCommandWriter.compile( state ).asByteBuffer();
+    final int hitSumAddress = 0x40 + ( 3 * 4 ) + TriggerStateTerm.HIT.getOffset();
+
+    int selectPos = -1;
+    while ( image.hasRemaining() && ( selectPos < 0 ) )
+    {
+      final int pos = image.position();
+      if ( ( ( image.get() & 0xFF ) == 0x9E ) && ( image.getInt() == hitSumAddress ) )
+      {
+        selectPos = pos;
+      }
+      else
+      {
+        image.position( pos + DemonCoreCommandWriter.FRAME_SIZE );
+      }
+    }
+
+    assertTrue( "Sum chain not selected?!", selectPos >= 0 );
+    // All six sum LUT words should directly follow the select...
+    for ( int i = 0; i < 6; i++ )
+    {
+      assertEquals( 0x9F, image.get() & 0xFF );
+      image.getInt();
+    }
+  }
+
+  /**
+   * Test method for {@link DemonCoreCommandWriter#writeChanges(DemonCoreProgram)}.
+   */
+  @Test
+  public void testWriteChangesOnlyWritesModifiedChains() throws IOException
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( 2 );
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final DemonCoreCommandWriter writer = new DemonCoreCommandWriter( new DataOutputStream( baos ) );
+
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( state );
+    assertEquals( program.getChainAddresses().size(), writer.writeChanges( program ) );
+
+    baos.reset();
+    assertEquals( 0, writer.writeChanges( program ) );
+    assertEquals( 0, baos.size() );
+
+    state.setOccurrenceCount( 5 );
+
+    assertEquals( 1, writer.writeChanges( state ) );
+    assertEquals( 2 * DemonCoreCommandWriter.FRAME_SIZE, baos.size() );
+
+    writer.invalidateShadow();
+
+    assertEquals( program.getChainAddresses().size(), writer.writeChanges( state ) );
+  }
+
+  /**
+   * Test method for {@link DemonCoreCommandWriter#write(DemonCoreProgram)}.
+   */
+  @Test
+  public void testFailedWriteInvalidatesShadow() throws IOException
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( 3 );
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( state );
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final int[] budget = { Integer.MAX_VALUE };
+    final OutputStream failing = new FilterOutputStream( baos )
+    {
+      @Override
+      public void write( final int aByte ) throws IOException
+      {
+        if ( --budget[0] < 0 )
+        {
+          throw new IOException( "Device gone" );
+        }
+        super.write( aByte );
+      }
+    };
+    final DemonCoreCommandWriter writer = new DemonCoreCommandWriter( new DataOutputStream( failing ) );
+    writer.write( program );
+
+    // Fail halfway through the same program, but with one chain changed...
+    state.setOccurrenceCount( 5 );
+    budget[0] = DemonCoreCommandWriter.FRAME_SIZE;
+    try
+    {
+      writer.write( state );
+      fail( "IOException expected!" );
+    }
+    catch ( IOException exception )
+    {
+      // Ok; expected...
+    }
+
+    // The device is in an unknown state, so everything is written again...
+    budget[0] = Integer.MAX_VALUE;
+    baos.reset();
+    assertEquals( program.getChainAddresses().size(), writer.writeChanges( program ) );
+    assertTrue( baos.size() > 0 );
+  }
+
+  /**
+   * Test method for {@link DemonCoreCommandWriter#write(DemonCoreProgram)}.
+   */
+  @Test
+  public void testWriteProgramOk() throws IOException
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setOccurrenceCount( 10 );
+
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( state );
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new DemonCoreCommandWriter( new DataOutputStream( baos ) ).write( program );
+
+    assertArrayEquals( program.toByteArray(), baos.toByteArray() );
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreCommandWriter#write(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testWriteStatesEqualsCompiledProgram() throws IOException
+  {
+    final TriggerSequenceState state1 = new TriggerSequenceState();
+    final TriggerSequenceState state2 = new TriggerSequenceState();
+    state2.setStateNumber( 1 );
+    state2.setRaiseTrigger( true );
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new DemonCoreCommandWriter( new DataOutputStream( baos ) ).write( state1, state2 );
+
+    assertArrayEquals( DemonCoreCommandWriter.compile( state1, state2 ).toByteArray(), baos.toByteArray() );
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreCommandWriter#addListener(IDemonCoreCommandListener)}.
+   */
+  @Test
+  public void testListenerSeesEverythingWritten() throws IOException
+  {
+    final TriggerSequenceState state1 = new TriggerSequenceState();
+    final TriggerSequenceState state2 = new TriggerSequenceState();
+    state2.setStateNumber( 1 );
+    state2.setRaiseTrigger( true );
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final DemonCoreCommandWriter writer = new DemonCoreCommandWriter( new DataOutputStream( baos ) );
+
+    final DemonCoreStatistics statistics = new DemonCoreStatistics();
+    writer.addListener( statistics );
+    writer.write( state1, state2 );
+
+    // Listeners should not change what is written...
+    assertArrayEquals( DemonCoreCommandWriter.compile( state1, state2 ).toByteArray(), baos.toByteArray() );
+
+    assertEquals( baos.size(), statistics.getByteCount() );
+    assertEquals( 1L, statistics.getUploadCount() );
+    assertEquals( 1L, statistics.getChainFrameCounts()[1] );
+    assertEquals( 2L * 3L, statistics.getChainFrameCounts()[TriggerTermType.TERM_TIMER1.getLutChainAddress()] );
+    assertTrue( statistics.getLastUploadTime() > 0L );
+
+    writer.removeListener( statistics );
+    writer.write( state1 );
+    assertEquals( 1L, statistics.getUploadCount() );
+
+    statistics.reset();
+    assertEquals( 0L, statistics.getByteCount() );
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreCommandWriter#compile(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testSumLutsMatchEmulatorOk()
+  {
+    final Random rnd = new Random( 0x1D7 );
+    final TriggerOperation[] ops = TriggerOperation.values();
+    final TriggerInputState[] states = TriggerInputState.values();
+
+    for ( int n = 0; n < 10; n++ )
+    {
+      final TriggerSequenceState state = new TriggerSequenceState();
+      final PackedTriggerSum store = state.getTriggerSum( TriggerStateTerm.HIT ).getStore();
+      for ( int i = 0; i < PackedTriggerSum.OP_COUNT; i++ )
+      {
+        store.setOperation( i, ops[rnd.nextInt( ops.length )] );
+      }
+      for ( int i = 0; i < TriggerSumEvaluator.INPUT_COUNT; i++ )
+      {
+        store.setState( i, states[rnd.nextInt( states.length )] );
+      }
+
+      final int[] luts = getSumLuts( state );
+      final TriggerSumEvaluator evaluator = new TriggerSumEvaluator( state.getTriggerSum( TriggerStateTerm.HIT ) );
+
+      for ( int inputs = 0; inputs < TriggerSumTable.SIZE; inputs++ )
+      {
+        assertEquals( "Sum #" + n + ", inputs " + Integer.toHexString( inputs ), evaluateLuts( luts, inputs ),
+            evaluator.evaluate( inputs ) );
+      }
+    }
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreCommandWriter#compile(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testSumLutsMatchEmulatorForInputStatesOk()
+  {
+    final TriggerSequenceState enabled = new TriggerSequenceState();
+    final TriggerSum enabledSum = enabled.getTriggerSum( TriggerStateTerm.HIT );
+    enabledSum.getFinalTerm().getTermA().getTermA().setOperation( TriggerOperation.AND );
+    for ( int i = 0; i < TriggerSumEvaluator.INPUT_COUNT; i++ )
+    {
+      enabledSum.getStore().setState( i, TriggerInputState.ENABLED );
+    }
+
+    final TriggerSequenceState partial = new TriggerSequenceState();
+    final TriggerPairTerm pair = partial.getTriggerSum( TriggerStateTerm.HIT ).getFinalTerm().getTermA().getTermA();
+    pair.setOperation( TriggerOperation.AND );
+    pair.getTermA().setInverted();
+    pair.getTermB().setDisabled();
+
+    // Input states are never programmed...
+    assertArrayEquals( getSumLuts( enabled ), getSumLuts( partial ) );
+
+    // ...so the emulator ignores them as well, also for the default state...
+    for ( TriggerSequenceState state : new TriggerSequenceState[] { partial, new TriggerSequenceState() } )
+    {
+      final int[] luts = getSumLuts( state );
+      final TriggerSumEvaluator evaluator = new TriggerSumEvaluator( state.getTriggerSum( TriggerStateTerm.HIT ) );
+      for ( int inputs = 0; inputs < TriggerSumTable.SIZE; inputs++ )
+      {
+        assertEquals( "Inputs " + Integer.toHexString( inputs ), evaluateLuts( luts, inputs ),
+            evaluator.evaluate( inputs ) );
+      }
+    }
+  }
+
+  /**
+   * Evaluates the sum LUTs the way the device does, for the given raw input
+   * hits. Each input of a pair term occupies two of its LUT-inputs.
+   */
+  static boolean evaluateLuts( final int[] aLuts, final int aInputs )
+  {
+    int finalIndex = 0;
+    for ( int m = 0; m < 2; m++ )
+    {
+      // Mid term B is written before mid term A...
+      final int pairsAB = aLuts[( m == 0 ) ? 3 : 1];
+      final int pairsCD = aLuts[( m == 0 ) ? 2 : 0];
+
+      int midIndex = 0;
+      for ( int p = 0; p < 4; p++ )
+      {
+        final int lut = ( ( ( p < 2 ) ? pairsAB : pairsCD ) >>> ( 16 * ( p & 1 ) ) ) & 0xFFFF;
+        final int hits = ( aInputs >>> ( 2 * ( ( 4 * m ) + p ) ) ) & 3;
+        final int index = ( ( hits & 1 ) * 0x03 ) | ( ( hits >>> 1 ) * 0x0C );
+        midIndex |= ( ( lut >>> index ) & 1 ) << p;
+      }
+
+      final int lut = ( aLuts[5] >>> ( 16 * m ) ) & 0xFFFF;
+      finalIndex |= ( ( lut >>> midIndex ) & 1 ) << m;
+    }
+    return ( ( aLuts[4] >>> finalIndex ) & 1 ) != 0;
+  }
+
+  /**
+   * Returns the six LUT words programmed for the hit-sum of the given state.
+   */
+  private int[] getSumLuts( final TriggerSequenceState aState )
+  {
+    final int address = 0x40 + ( aState.getStateNumber() * 4 ) + TriggerStateTerm.HIT.getOffset();
+    return DemonCoreCommandWriter.compile( aState ).getChain( address );
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link DemonCoreDecompiler}.
+ */
+public class DemonCoreDecompilerTest
+{
+  // METHODS
+
+  /**
+   * Test method for {@link DemonCoreDecompiler#getStates()}.
+   */
+  @Test
+  public void testDecompiledStatesCompileToSameChains()
+  {
+    final TriggerSequenceState state1 = createState( 1 );
+    final TriggerSequenceState state2 = createState( 2 );
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( state1, state2 );
+
+    final DemonCoreDecompiler decompiler = new DemonCoreDecompiler( program );
+    assertTrue( decompiler.isRepresentable() );
+
+    final List<TriggerSequenceState> states = decompiler.getStates();
+    assertEquals( 2, states.size() );
+    assertEquals( 7, states.get( 1 ).getElseState() );
+    assertEquals( 0x12345, states.get( 1 ).getOccurrenceCount() );
+    assertEquals( 2, states.get( 1 ).getStartTimer() );
+    assertTrue( states.get( 1 ).isRaiseTrigger() );
+
+    final TriggerSum sum = states.get( 1 ).getTriggerSum( TriggerStateTerm.HIT );
+    assertEquals( TriggerOperation.XOR, sum.getFinalTerm().getOperation() );
+    assertEquals( TriggerOperation.NAND, sum.getFinalTerm().getTermB().getOperation() );
+    assertEquals( TriggerOperation.B_ONLY, sum.getFinalTerm().getTermA().getTermC().getOperation() );
+
+    final TriggerTerm term = ( TriggerTerm )decompiler.getTerm( TriggerTermType.TERM_C );
+    assertEquals( 0x00A50000, term.getValue() );
+    assertEquals( 0x00FF0000, term.getMask() );
+    assertEquals( 0x712345678L, ( ( TriggerTimer )decompiler.getTerm( TriggerTermType.TERM_TIMER2 ) ).getValue() );
+    final TriggerEdgeDetector edge = ( TriggerEdgeDetector )decompiler.getTerm( TriggerTermType.TERM_EDGE2 );
+    assertEquals( 0xFFFFFFFF, edge.getNoEdgeMask() );
+
+    final DemonCoreProgram recompiled = DemonCoreCommandWriter.compile( states.toArray( new TriggerSequenceState[2] ) );
+    assertEquals( program.getChainAddresses(), recompiled.getChainAddresses() );
+    for ( Integer address : program.getChainAddresses() )
+    {
+      assertArrayEquals( program.getChain( address.intValue() ), recompiled.getChain( address.intValue() ) );
+    }
+  }
+
+  /**
+   * Test method for {@link DemonCoreDecompiler#getUnrepresentableChains()}.
+   */
+  @Test
+  public void testReportsUnrepresentableChains()
+  {
+    final SortedMap<Integer, int[]> chains = DemonCoreCommandWriter.compile( createState( 0 ) ).getChains();
+    // Not a single value/mask term...
+    chains.put( Integer.valueOf( 0x20 ), new int[] { 0x00010002, 0, 0, 0 } );
+    // Not a valid pair operation...
+    chains.get( Integer.valueOf( 0x40 ) )[0] = 0x12345678;
+    // Timer value exceeds 36 bits...
+    chains.put( Integer.valueOf( 0x39 ), new int[] { 0x10 } );
+    // Unused chain address...
+    chains.put( Integer.valueOf( 0x43 ), new int[6] );
+
+    final DemonCoreDecompiler decompiler = new DemonCoreDecompiler( chains );
+    assertFalse( decompiler.isRepresentable() );
+    assertEquals( new TreeSet<Integer>( Arrays.asList( 0x20, 0x38, 0x39, 0x40, 0x43 ) ),
+        decompiler.getUnrepresentableChains() );
+    assertNull( decompiler.getTerm( TriggerTermType.TERM_A ) );
+    assertNull( decompiler.getTerm( TriggerTermType.TERM_TIMER1 ) );
+    assertNull( decompiler.getTriggerSum( 0, TriggerStateTerm.HIT ) );
+    assertNotNull( decompiler.getTriggerSum( 0, TriggerStateTerm.ELSE ) );
+    assertNotNull( decompiler.getTerm( TriggerTermType.TERM_RANGE1 ) );
+    assertNotNull( decompiler.getState( 0 ) );
+  }
+
+  /**
+   * Creates a sequence state with non-default values for all of its terms.
+   */
+  private TriggerSequenceState createState( final int aStateNumber )
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( aStateNumber );
+    state.setElseState( 7 );
+    state.setOccurrenceCount( 0x12345 );
+    state.setStartTimer( 2 );
+    state.setRaiseTrigger( true );
+
+    final TriggerFinalTerm finalTerm = state.getTriggerSum( TriggerStateTerm.HIT ).getFinalTerm();
+    finalTerm.setOperation( TriggerOperation.XOR );
+    finalTerm.getTermB().setOperation( TriggerOperation.NAND );
+    finalTerm.getTermA().getTermC().setOperation( TriggerOperation.B_ONLY );
+
+    // All sums write all input terms, so keep them equal...
+    for ( TriggerStateTerm stateTerm : TriggerStateTerm.values() )
+    {
+      final TriggerFinalTerm sum = state.getTriggerSum( stateTerm ).getFinalTerm();
+      for ( TriggerMidTerm mid : Arrays.asList( sum.getTermA(), sum.getTermB() ) )
+      {
+        for ( TriggerPairTerm pair : Arrays.asList( mid.getTermA(), mid.getTermB(), mid.getTermC(), mid.getTermD() ) )
+        {
+          setParameters( pair.getTermA() );
+          setParameters( pair.getTermB() );
+        }
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Sets a non-default value for the parameters of the given input term.
+   */
+  private void setParameters( final AbstractTriggerTerm aTerm )
+  {
+    switch ( aTerm.getType() )
+    {
+      case TERM_C:
+        ( ( TriggerTerm )aTerm ).setValue( 0x00A50000 );
+        ( ( TriggerTerm )aTerm ).setMask( 0x00FF0000 );
+        break;
+
+      case TERM_EDGE1:
+        ( ( TriggerEdgeDetector )aTerm ).setRisingEdgeMask( 0x80000003 );
+        ( ( TriggerEdgeDetector )aTerm ).setFallingEdgeMask( 0x00F00001 );
+        break;
+
+      case TERM_EDGE2:
+        ( ( TriggerEdgeDetector )aTerm ).setNoEdgeMask( 0xFFFFFFFF );
+        break;
+
+      case TERM_RANGE1:
+        ( ( TriggerRangeDetector )aTerm ).setMask( 0x0000FF00 );
+        ( ( TriggerRangeDetector )aTerm ).setLowerTarget( 0x10 );
+        ( ( TriggerRangeDetector )aTerm ).setUpperTarget( 0xE0 );
+        break;
+
+      case TERM_TIMER2:
+        ( ( TriggerTimer )aTerm ).setValue( 0x712345678L );
+        break;
+
+      default:
+        break;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.nio.file.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+
+/**
+ * Test cases for {@link DemonCoreProgramCache}.
+ */
+public class DemonCoreProgramCacheTest
+{
+  // VARIABLES
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // METHODS
+
+  /**
+   * Test method for {@link DemonCoreProgramCache#fingerprint(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testFingerprintCoversContents()
+  {
+    final TriggerSequenceState state = createState( 1 );
+    final long fingerprint = DemonCoreProgramCache.fingerprint( state );
+
+    assertEquals( fingerprint, DemonCoreProgramCache.fingerprint( new TriggerSequenceState( state ) ) );
+
+    state.getTriggerSum( TriggerStateTerm.ELSE ).getFinalTerm().getTermB().getTermD().getTermA().setInverted();
+    assertTrue( fingerprint != DemonCoreProgramCache.fingerprint( state ) );
+  }
+
+  /**
+   * Test method for {@link DemonCoreProgramCache#getOrCompile(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testWarmStartUsesCachedPrograms() throws Exception
+  {
+    final Path directory = this.folder.getRoot().toPath();
+    final TriggerSequenceState state = createState( 3 );
+    final byte[] expected = DemonCoreCommandWriter.compile( state ).toByteArray();
+
+    DemonCoreProgramCache cache = new DemonCoreProgramCache( directory, 1L << 20 );
+    assertArrayEquals( expected, cache.getOrCompile( state ).toByteArray() );
+    assertEquals( 1L, cache.getMissCount() );
+
+    // Pick up the stored program after a "restart"...
+    cache = new DemonCoreProgramCache( directory, 1L << 20 );
+    assertEquals( 1, cache.getEntryCount() );
+    assertArrayEquals( expected, cache.getOrCompile( state ).toByteArray() );
+    assertEquals( 1L, cache.getHitCount() );
+    assertEquals( 0L, cache.getMissCount() );
+
+    // Damaged files are treated as absent...
+    final Path file = directory.resolve( String.format( "%016x%s",
+        Long.valueOf( DemonCoreProgramCache.fingerprint( state ) ), DemonCoreProgramCache.FILE_EXTENSION ) );
+    Files.write( file, new byte[] { 1, 2, 3 } );
+    assertNull( cache.get( DemonCoreProgramCache.fingerprint( state ) ) );
+    assertEquals( 0, cache.getEntryCount() );
+    assertFalse( Files.exists( file ) );
+  }
+
+  /**
+   * Test method for {@link DemonCoreProgramCache#put(long, DemonCoreProgram)}.
+   */
+  @Test
+  public void testEvictsLeastRecentlyUsedPrograms() throws Exception
+  {
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( createState( 0 ) );
+    final DemonCoreProgramCache cache = new DemonCoreProgramCache( this.folder.getRoot().toPath(),
+        3L * ( program.getSize() + 64L ) );
+
+    cache.put( 1L, program );
+    cache.put( 2L, program );
+    cache.put( 3L, program );
+    assertNotNull( cache.get( 1L ) );
+    cache.put( 4L, program );
+
+    assertEquals( 3, cache.getEntryCount() );
+    assertNotNull( cache.get( 1L ) );
+    assertNull( cache.get( 2L ) );
+    assertNotNull( cache.get( 3L ) );
+    assertNotNull( cache.get( 4L ) );
+    assertTrue( cache.getSize() <= 3L * ( program.getSize() + 64L ) );
+
+    cache.clear();
+    assertEquals( 0L, cache.getSize() );
+    assertEquals( 0, this.folder.getRoot().list().length );
+  }
+
+  /**
+   * Creates a sequence state with the given state number.
+   */
+  private TriggerSequenceState createState( final int aStateNumber )
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setStateNumber( aStateNumber );
+    state.setOccurrenceCount( 10 );
+    return state;
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link DemonCoreUploader}.
+ */
+public class DemonCoreUploaderTest
+{
+  // VARIABLES
+
+  private ExecutorService executor;
+
+  // METHODS
+
+  /**
+   * Set up for each test case.
+   */
+  @Before
+  public void setUp()
+  {
+    this.executor = Executors.newFixedThreadPool( 2 );
+  }
+
+  /**
+   * Tear down for each test case.
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Test method for {@link DemonCoreUpload#cancel(boolean)}.
+   */
+  @Test( timeout = 10000 )
+  public void testCancelBlockedUploadOk() throws Exception
+  {
+    final Pipe pipe = Pipe.open();
+    try
+    {
+      // Nobody reads from the pipe, so the upload blocks once its buffer is full...
+      final DemonCoreUpload upload = new DemonCoreUploader( this.executor, 1 ).upload( pipe.sink(),
+          createStates( 64 ) );
+      while ( upload.getBytesWritten() == 0L )
+      {
+        Thread.sleep( 1L );
+      }
+
+      assertTrue( upload.cancel( true ) );
+      assertTrue( upload.isCancelled() );
+      assertTrue( upload.isDone() );
+
+      this.executor.shutdown();
+      assertTrue( this.executor.awaitTermination( 5L, TimeUnit.SECONDS ) );
+    }
+    finally
+    {
+      pipe.source().close();
+      pipe.sink().close();
+    }
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreUploader#upload(WritableByteChannel, DemonCoreProgram)}.
+   */
+  @Test( timeout = 10000 )
+  public void testRejectedUploadFailsOk() throws Exception
+  {
+    final DemonCoreProgram program = DemonCoreCommandWriter.compile( createStates( 2 ) );
+    final WritableByteChannel channel = Channels.newChannel( new ByteArrayOutputStream() );
+
+    // Neither the encoder nor the transmitter can be started...
+    assertRejected( new DemonCoreUploader( new Executor()
+    {
+      @Override
+      public void execute( final Runnable aCommand )
+      {
+        throw new RejectedExecutionException();
+      }
+    }, 1 ).upload( channel, program ) );
+
+    // Only the encoder can be started...
+    assertRejected( new DemonCoreUploader( new Executor()
+    {
+      private boolean started;
+
+      @Override
+      public void execute( final Runnable aCommand )
+      {
+        if ( this.started )
+        {
+          throw new RejectedExecutionException();
+        }
+        this.started = true;
+        DemonCoreUploaderTest.this.executor.execute( aCommand );
+      }
+    }, 1 ).upload( channel, program ) );
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreUploader#upload(WritableByteChannel, TriggerSequenceState...)}.
+   */
+  @Test( timeout = 10000 )
+  public void testUploadEqualsCompiledProgram() throws Exception
+  {
+    final TriggerSequenceState[] states = createStates( 5 );
+    final byte[] expected = DemonCoreCommandWriter.compile( states ).toByteArray();
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final DemonCoreUpload upload = new DemonCoreUploader( this.executor, 1 ).upload( Channels.newChannel( baos ),
+        states );
+
+    assertEquals( Long.valueOf( expected.length ), upload.get() );
+    assertTrue( upload.isEncodingDone() );
+    assertEquals( expected.length, upload.getBytesEncoded() );
+    assertEquals( expected.length, upload.getBytesWritten() );
+    assertArrayEquals( expected, baos.toByteArray() );
+  }
+
+  /**
+   * Test method for
+   * {@link DemonCoreUploader#uploadAll(List, long, TimeUnit, TriggerSequenceState...)}.
+   */
+  @Test( timeout = 10000 )
+  public void testUploadAllReportsSlowDevice() throws Exception
+  {
+    final TriggerSequenceState[] states = createStates( 64 );
+    final byte[] expected = DemonCoreCommandWriter.compile( states ).toByteArray();
+
+    final ByteArrayOutputStream baos1 = new ByteArrayOutputStream();
+    final ByteArrayOutputStream baos2 = new ByteArrayOutputStream();
+    final Pipe pipe = Pipe.open();
+    try
+    {
+      // Nobody reads from the pipe, so the second device never completes...
+      final List<WritableByteChannel> channels = Arrays.asList( Channels.newChannel( baos1 ), pipe.sink(),
+          Channels.newChannel( baos2 ) );
+
+      final DemonCoreUploadReport report = new DemonCoreUploader().uploadAll( channels, 200L,
+          TimeUnit.MILLISECONDS, states );
+
+      assertEquals( 3, report.getDeviceCount() );
+      assertFalse( report.isSuccessful() );
+      assertEquals( 1, report.getFailureCount() );
+      assertNull( report.getFailure( 0 ) );
+      assertTrue( report.getFailure( 1 ) instanceof TimeoutException );
+      assertNull( report.getFailure( 2 ) );
+
+      assertEquals( expected.length, report.getBytesWritten( 2 ) );
+      assertEquals( -1L, report.getTransmitTime( 1 ) );
+      assertTrue( report.getMaxTransmitTime() >= report.getTransmitTime( 0 ) );
+      assertTrue( report.getTotalTime() >= TimeUnit.MILLISECONDS.toNanos( 200L ) );
+      assertArrayEquals( expected, baos1.toByteArray() );
+      assertArrayEquals( expected, baos2.toByteArray() );
+    }
+    finally
+    {
+      pipe.source().close();
+      pipe.sink().close();
+    }
+  }
+
+  /**
+   * Asserts that the given upload failed as it could not be started.
+   */
+  private void assertRejected( final DemonCoreUpload aUpload ) throws Exception
+  {
+    try
+    {
+      aUpload.get( 5L, TimeUnit.SECONDS );
+      fail( "Expected the upload to fail!" );
+    }
+    catch ( ExecutionException exception )
+    {
+      assertTrue( exception.getCause() instanceof RejectedExecutionException );
+    }
+    assertTrue( aUpload.isDone() );
+    assertEquals( 0L, aUpload.getBytesWritten() );
+  }
+
+  /**
+   * Creates the given number of distinct sequence states.
+   */
+  private TriggerSequenceState[] createStates( final int aCount )
+  {
+    final TriggerSequenceState[] result = new TriggerSequenceState[aCount];
+    for ( int i = 0; i < aCount; i++ )
+    {
+      result[i] = new TriggerSequenceState();
+      result[i].setStateNumber( i & 0x0F );
+      result[i].setOccurrenceCount( i * 3 );
+    }
+    return result;
+  }
+}
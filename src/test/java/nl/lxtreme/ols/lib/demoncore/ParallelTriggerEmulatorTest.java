@@ -0,0 +1,240 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.text.*;
+import java.util.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link ParallelTriggerEmulator}.
+ */
+public class ParallelTriggerEmulatorTest
+{
+  // CONSTANTS
+
+  private static final TriggerExpressionCompiler COMPILER = new TriggerExpressionCompiler();
+
+  private static final String[] TERMS = { "A", "B", "C", "D", "E", "F", "G", "H", "I", "J" };
+  private static final int[] MASKS = { 0x03, 0x0F, 0x0C };
+
+  // METHODS
+
+  /**
+   * Test method for {@link ParallelTriggerEmulator#run(int[], int, int)}.
+   */
+  @Test
+  public void testMatchesSequentialEmulatorOk() throws Exception
+  {
+    final Random rnd = new Random( 0xDEC0DE );
+
+    for ( int n = 0; n < 50; n++ )
+    {
+      final TriggerSequenceState[] states = createProgram( rnd, 4 + rnd.nextInt( 12 ), false );
+      assertSameOutcome( states, createSamples( rnd, 5000 ) );
+    }
+  }
+
+  /**
+   * Test method for {@link ParallelTriggerEmulator#run(int[], int, int)}.
+   */
+  @Test
+  public void testMatchesSequentialEmulatorWithTimersOk() throws Exception
+  {
+    final Random rnd = new Random( 0x7173E5 );
+
+    for ( int n = 0; n < 50; n++ )
+    {
+      final TriggerSequenceState[] states = createProgram( rnd, 2 + rnd.nextInt( 6 ), true );
+      assertSameOutcome( states, createSamples( rnd, 5000 ) );
+    }
+  }
+
+  /**
+   * Test method for {@link ParallelTriggerEmulator#run(int[], int, int)}.
+   */
+  @Test
+  public void testSummarizesOccurrenceCountsOk() throws Exception
+  {
+    final Random rnd = new Random( 0x0CC );
+
+    for ( int n = 0; n < 20; n++ )
+    {
+      final TriggerSequenceState[] states = createProgram( rnd, 2 + rnd.nextInt( 4 ), false );
+      for ( TriggerSequenceState state : states )
+      {
+        // Ensures block boundaries regularly fall halfway a count...
+        state.setOccurrenceCount( 3 + rnd.nextInt( 8 ) );
+      }
+
+      assertSameOutcome( states, createSamples( rnd, 5000 ) );
+    }
+  }
+
+  /**
+   * Test method for {@link ParallelTriggerEmulator#run(int[], int, int)}.
+   */
+  @Test
+  public void testSummarizesLargeCountsAndTimersOk() throws Exception
+  {
+    final Random rnd = new Random( 0x5C1 );
+
+    final TriggerSequenceState[] states = createProgram( rnd, 4, false );
+    states[1].setOccurrenceCount( 1000 );
+    states[2].setOccurrenceCount( 0xFFFFF );
+    assertSameOutcome( states, createSamples( rnd, 5000 ) );
+
+    for ( int n = 0; n < 20; n++ )
+    {
+      final TriggerSequenceState[] timed = createProgram( rnd, 2 + rnd.nextInt( 4 ), true );
+      timed[0].setOccurrenceCount( 100 );
+
+      // Timers that expire long after they are started, and that run across
+      // many blocks...
+      final TriggerTimer timer = new TriggerTimer( TriggerTermType.TERM_TIMER1 );
+      timer.setValue( rnd.nextInt( 2000 ) );
+      TriggerEmulatorTest.setInputTerm( timer, timed );
+
+      assertSameOutcome( timed, createSamples( rnd, 5000 ) );
+    }
+  }
+
+  /**
+   * Test method for {@link ParallelTriggerEmulator#run(int[], int, int)}.
+   */
+  @Test
+  public void testFallsBackForCostlySummariesOk() throws Exception
+  {
+    final Random rnd = new Random( 0xC057 );
+
+    final TriggerSequenceState[] states = createProgram( rnd, 3, true );
+    states[0].setOccurrenceCount( 5000 );
+    final int[] samples = createSamples( rnd, 20000 );
+
+    final TriggerEmulator program = new TriggerEmulator( states );
+    program.reset();
+    final TriggerBlockSummary summary = new TriggerBlockSummary( program, samples, 0, samples.length, 0 );
+    assertFalse( summary.isComplete() );
+    assertFalse( summary.apply( program ) );
+    assertEquals( 0L, program.getSampleIndex() );
+
+    assertTrue( new TriggerBlockSummary( program, samples, 0, 100, Integer.MAX_VALUE ).isComplete() );
+
+    assertSameOutcome( states, samples );
+  }
+
+  /**
+   * Asserts that the parallel emulator yields the same outcome as the
+   * sequential emulator for various block sizes.
+   */
+  private void assertSameOutcome( final TriggerSequenceState[] aStates, final int[] aSamples )
+  {
+    final TriggerEmulator expected = new TriggerEmulator( aStates );
+    final long trigger = expected.run( aSamples );
+
+    final ParallelTriggerEmulator emulator = new ParallelTriggerEmulator( aStates );
+    for ( int blockSize : new int[] { 1, 7, 64, 1000, aSamples.length } )
+    {
+      assertEquals( "Block size " + blockSize, trigger, emulator.run( aSamples, blockSize, blockSize ) );
+      assertEquals( expected.getCaptureCount(), emulator.getCaptureCount() );
+      assertEquals( expected.getLevel(), emulator.getLevel() );
+      assertEquals( expected.isTriggered(), emulator.isTriggered() );
+    }
+    assertEquals( trigger, emulator.run( aSamples, 1, 256 ) );
+    assertEquals( expected.getCaptureCount(), emulator.getCaptureCount() );
+    assertEquals( trigger, emulator.run( aSamples ) );
+  }
+
+  /**
+   * Creates a random multi-level program, raising the trigger in its last
+   * level.
+   */
+  private TriggerSequenceState[] createProgram( final Random aRnd, final int aLevels, final boolean aUseTimers )
+      throws ParseException
+  {
+    final TriggerSequenceState[] result = new TriggerSequenceState[aLevels];
+    for ( int i = 0; i < aLevels; i++ )
+    {
+      final String hit = getRandomTerm( aRnd );
+      final TriggerSequenceState state = TriggerEmulatorTest.createState( i, aUseTimers ? ( hit + " | Timer1" ) : hit );
+      state.setOccurrenceCount( aRnd.nextInt( 3 ) );
+      state.setElseState( aRnd.nextInt( aLevels ) );
+      state.setRaiseTrigger( i == ( aLevels - 1 ) );
+
+      COMPILER.compile( getRandomTerm( aRnd ) ).applyTo( state.getTriggerSum( TriggerStateTerm.CAPTURE ) );
+      if ( aRnd.nextBoolean() )
+      {
+        COMPILER.compile( getRandomTerm( aRnd ) ).applyTo( state.getTriggerSum( TriggerStateTerm.ELSE ) );
+      }
+
+      if ( aUseTimers )
+      {
+        state.setStartTimer( aRnd.nextInt( 4 ) );
+        state.setStopTimer( aRnd.nextInt( 4 ) );
+        state.setClearTimer( aRnd.nextInt( 4 ) );
+      }
+
+      result[i] = state;
+    }
+
+    // All sums share a single set of input terms...
+    for ( String name : TERMS )
+    {
+      final TriggerTerm term = new TriggerTerm( TriggerTermType.valueOf( "TERM_" + name ) );
+      term.setValue( aRnd.nextInt( 16 ) );
+      term.setMask( MASKS[aRnd.nextInt( MASKS.length )] );
+      TriggerEmulatorTest.setInputTerm( term, result );
+    }
+    if ( aUseTimers )
+    {
+      final TriggerTimer timer = new TriggerTimer( TriggerTermType.TERM_TIMER1 );
+      timer.setValue( 1 + aRnd.nextInt( 50 ) );
+      TriggerEmulatorTest.setInputTerm( timer, result );
+    }
+    return result;
+  }
+
+  /**
+   * Creates random samples with a small alphabet, to ensure hits are frequent.
+   */
+  private int[] createSamples( final Random aRnd, final int aCount )
+  {
+    final int[] result = new int[aCount];
+    for ( int i = 0; i < aCount; i++ )
+    {
+      result[i] = aRnd.nextInt( 16 );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the name of a random value/mask term.
+   */
+  private String getRandomTerm( final Random aRnd )
+  {
+    return TERMS[aRnd.nextInt( TERMS.length )];
+  }
+}
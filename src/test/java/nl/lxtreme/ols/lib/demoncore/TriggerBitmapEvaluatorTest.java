@@ -0,0 +1,217 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerBitmapEvaluator}.
+ */
+public class TriggerBitmapEvaluatorTest
+{
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerBitmapEvaluator#evaluate(TriggerSum, int[])}.
+   */
+  @Test
+  public void testNopSumYieldsNoHits()
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    sum.getFinalTerm().setOperation( TriggerOperation.NOP );
+
+    final long[] bitmap = TriggerBitmapEvaluator.evaluate( sum, new int[100] );
+
+    assertEquals( 2, bitmap.length );
+    assertEquals( 0, TriggerBitmapEvaluator.count( bitmap ) );
+    assertEquals( -1, TriggerBitmapEvaluator.nextHit( bitmap, 0 ) );
+  }
+
+  /**
+   * Test method for {@link TriggerBitmapEvaluator#evaluate(TriggerSum, int[])}.
+   */
+  @Test
+  public void testNegatedTermOk() throws Exception
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    new TriggerExpressionCompiler().compile( "!A" ).applyTo( sum );
+
+    final TriggerTerm term = ( TriggerTerm )sum.getFinalTerm().getTermA().getTermA().getTermA();
+    term.setValue( 7 );
+    term.setMask( 0xFFFFFFFF );
+
+    final int[] samples = new int[70];
+    Arrays.fill( samples, 7 );
+    samples[3] = 6;
+    samples[69] = 0;
+
+    final long[] bitmap = TriggerBitmapEvaluator.evaluate( sum, samples );
+
+    assertEquals( 2, TriggerBitmapEvaluator.count( bitmap ) );
+    assertEquals( 3, TriggerBitmapEvaluator.nextHit( bitmap, 0 ) );
+    assertEquals( 69, TriggerBitmapEvaluator.nextHit( bitmap, 4 ) );
+    assertEquals( -1, TriggerBitmapEvaluator.nextHit( bitmap, 70 ) );
+  }
+
+  /**
+   * Test method for {@link TriggerBitmapEvaluator#evaluate(TriggerSum, int[])}.
+   */
+  @Test
+  public void testMatchesTruthTableForRandomSums()
+  {
+    final Random rnd = new Random( 0x5EED );
+    final TriggerOperation[] ops = TriggerOperation.values();
+    final TriggerInputState[] states = TriggerInputState.values();
+
+    final int[] samples = new int[1000];
+    for ( int i = 0; i < samples.length; i++ )
+    {
+      samples[i] = rnd.nextInt() & 0x0F;
+    }
+
+    for ( int n = 0; n < 200; n++ )
+    {
+      final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+      final TriggerFinalTerm finalTerm = sum.getFinalTerm();
+      finalTerm.setOperation( ops[rnd.nextInt( ops.length )] );
+
+      for ( TriggerMidTerm mid : new TriggerMidTerm[] { finalTerm.getTermA(), finalTerm.getTermB() } )
+      {
+        mid.setOperation( ops[rnd.nextInt( ops.length )] );
+        for ( TriggerPairTerm pair : new TriggerPairTerm[] { mid.getTermA(), mid.getTermB(), mid.getTermC(),
+            mid.getTermD() } )
+        {
+          pair.setOperation( ops[rnd.nextInt( ops.length )] );
+          randomize( rnd, pair.getTermA(), states );
+          randomize( rnd, pair.getTermB(), states );
+        }
+      }
+
+      assertMatchesEvaluator( "Sum #" + n, sum, samples );
+    }
+  }
+
+  /**
+   * Test method for {@link TriggerBitmapEvaluator#evaluate(TriggerSum, int[])}.
+   */
+  @Test
+  public void testMatchesTruthTableForAllOperationsOk()
+  {
+    final Random rnd = new Random( 0xB17 );
+    final TriggerOperation[] ops = TriggerOperation.values();
+    final TriggerInputState[] states = TriggerInputState.values();
+
+    final int[] samples = new int[300];
+    for ( int i = 0; i < samples.length; i++ )
+    {
+      samples[i] = rnd.nextInt() & 0xFF;
+    }
+
+    // Each of the eleven operations of a sum, set to each of the ten
+    // operations, with all kinds of inputs...
+    for ( int index = 0; index < PackedTriggerSum.OP_COUNT; index++ )
+    {
+      for ( TriggerOperation op : ops )
+      {
+        final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+        final PackedTriggerSum store = sum.getStore();
+        for ( int i = 0; i < PackedTriggerSum.OP_COUNT; i++ )
+        {
+          store.setOperation( i, ops[rnd.nextInt( ops.length )] );
+        }
+        store.setOperation( index, op );
+
+        final TriggerFinalTerm finalTerm = sum.getFinalTerm();
+        for ( TriggerMidTerm mid : new TriggerMidTerm[] { finalTerm.getTermA(), finalTerm.getTermB() } )
+        {
+          for ( TriggerPairTerm pair : new TriggerPairTerm[] { mid.getTermA(), mid.getTermB(), mid.getTermC(),
+              mid.getTermD() } )
+          {
+            randomize( rnd, pair.getTermA(), states );
+            randomize( rnd, pair.getTermB(), states );
+          }
+        }
+
+        assertMatchesEvaluator( "Operation #" + index + " = " + op, sum, samples );
+      }
+    }
+  }
+
+  /**
+   * Asserts that the bitmap of the given sum agrees with the (scalar) sum
+   * evaluator for each of the given samples.
+   */
+  private void assertMatchesEvaluator( final String aMessage, final TriggerSum aSum, final int[] aSamples )
+  {
+    final TriggerSumEvaluator evaluator = new TriggerSumEvaluator( aSum );
+    final long[] bitmap = TriggerBitmapEvaluator.evaluate( aSum, aSamples );
+
+    for ( int i = 0; i < aSamples.length; i++ )
+    {
+      final int prev = aSamples[Math.max( 0, i - 1 )];
+      final boolean expected = evaluator.evaluate( evaluator.getInputs( aSamples[i], prev, 0L, 0L ) );
+      final boolean actual = ( ( bitmap[i >>> 6] >>> i ) & 1L ) != 0L;
+
+      assertEquals( aMessage + ", sample #" + i, expected, actual );
+    }
+    assertEquals( 0L, bitmap[bitmap.length - 1] >>> ( aSamples.length & 63 ) );
+  }
+
+  /**
+   * Assigns a random state and configuration to the given input term.
+   */
+  private void randomize( final Random aRnd, final AbstractTriggerTerm aTerm, final TriggerInputState[] aStates )
+  {
+    aTerm.setState( aStates[aRnd.nextInt( aStates.length )] );
+    if ( aTerm instanceof TriggerTerm )
+    {
+      ( ( TriggerTerm )aTerm ).setValue( aRnd.nextInt() & 0x0F );
+      ( ( TriggerTerm )aTerm ).setMask( aRnd.nextInt() & 0x0F );
+    }
+    else if ( aTerm instanceof TriggerEdgeDetector )
+    {
+      ( ( TriggerEdgeDetector )aTerm ).setRisingEdgeMask( aRnd.nextInt() & 0x0F );
+      ( ( TriggerEdgeDetector )aTerm ).setFallingEdgeMask( aRnd.nextInt() & 0x0F );
+      if ( aRnd.nextInt( 4 ) == 0 )
+      {
+        ( ( TriggerEdgeDetector )aTerm ).setNoEdgeMask( aRnd.nextInt() & 0x0F );
+      }
+    }
+    else if ( aTerm instanceof TriggerRangeDetector )
+    {
+      // Both contiguous and scattered masks...
+      final int lower = aRnd.nextInt( 8 );
+      ( ( TriggerRangeDetector )aTerm ).setMask( aRnd.nextBoolean() ? 0x3C : ( aRnd.nextInt() & 0xFF ) );
+      ( ( TriggerRangeDetector )aTerm ).setLowerTarget( lower );
+      ( ( TriggerRangeDetector )aTerm ).setUpperTarget( lower + aRnd.nextInt( 8 ) );
+    }
+    else if ( aTerm instanceof TriggerTimer )
+    {
+      ( ( TriggerTimer )aTerm ).setValue( aRnd.nextInt( 2 ) );
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.text.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerEmulator}.
+ */
+public class TriggerEmulatorTest
+{
+  // CONSTANTS
+
+  private static final TriggerExpressionCompiler COMPILER = new TriggerExpressionCompiler();
+
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerEmulator#run(int[])}.
+   */
+  @Test
+  public void testEdgeDetectorOk() throws Exception
+  {
+    final TriggerSequenceState state = createState( 0, "Edge1" );
+    state.setRaiseTrigger( true );
+
+    final TriggerEdgeDetector edge = new TriggerEdgeDetector( TriggerTermType.TERM_EDGE1 );
+    edge.setRisingEdgeMask( 0x02 );
+    setInputTerm( edge, state );
+
+    assertEquals( 3L, new TriggerEmulator( state ).run( new int[] { 0x02, 0x02, 0x00, 0x03, 0x01 } ) );
+  }
+
+  /**
+   * Test method for {@link TriggerEmulator#run(int[])}.
+   */
+  @Test
+  public void testElseStateOk() throws Exception
+  {
+    final TriggerSequenceState state0 = createState( 0, "A" );
+
+    final TriggerSequenceState state1 = createState( 1, "B" );
+    state1.setRaiseTrigger( true );
+    state1.setElseState( 0 );
+    COMPILER.compile( "C" ).applyTo( state1.getTriggerSum( TriggerStateTerm.ELSE ) );
+
+    setInputTerm( createTerm( TriggerTermType.TERM_A, 1 ), state0, state1 );
+    setInputTerm( createTerm( TriggerTermType.TERM_B, 2 ), state0, state1 );
+    setInputTerm( createTerm( TriggerTermType.TERM_C, 3 ), state0, state1 );
+
+    final TriggerEmulator emulator = new TriggerEmulator( state0, state1 );
+
+    assertEquals( 4L, emulator.run( new int[] { 1, 3, 2, 1, 2 } ) );
+    assertTrue( emulator.isTriggered() );
+  }
+
+  /**
+   * Test method for {@link TriggerEmulator#run(int[])}.
+   */
+  @Test
+  public void testEmptyProgramNeverTriggers()
+  {
+    final TriggerEmulator emulator = new TriggerEmulator();
+
+    assertEquals( -1L, emulator.run( new int[] { 0, 1, 2, 3, 4, 5 } ) );
+    assertEquals( 6L, emulator.getSampleIndex() );
+    assertEquals( 0L, emulator.getCaptureCount() );
+  }
+
+  /**
+   * Test method for {@link TriggerEmulator#TriggerEmulator(TriggerSequenceState...)}.
+   */
+  @Test
+  public void testInputTermsAreSharedBySumsOk() throws Exception
+  {
+    final TriggerSequenceState state = createState( 0, "A" );
+    state.setRaiseTrigger( true );
+
+    // The else sum is written last, and its (default) term A always hits...
+    final TriggerTerm term = ( TriggerTerm )state.getTriggerSum( TriggerStateTerm.HIT ).getFinalTerm().getTermA()
+        .getTermA().getTermA();
+    term.setValue( 7 );
+    term.setMask( 0xFF );
+    assertEquals( 0L, new TriggerEmulator( state ).run( new int[] { 6, 7 } ) );
+
+    setInputTerm( term, state );
+    assertEquals( 1L, new TriggerEmulator( state ).run( new int[] { 6, 7 } ) );
+  }
+
+  /**
+   * Test method for {@link TriggerEmulator#run(int[])}.
+   */
+  @Test
+  public void testNegatedTermOk() throws Exception
+  {
+    final TriggerSequenceState state = createState( 0, "!A" );
+    state.setRaiseTrigger( true );
+    setInputTerm( createTerm( TriggerTermType.TERM_A, 7 ), state );
+
+    assertEquals( 2L, new TriggerEmulator( state ).run( new int[] { 7, 7, 6, 7 } ) );
+  }
+
+  /**
+   * Test method for {@link TriggerEmulator#run(int[])}.
+   */
+  @Test
+  public void testOccurrenceCountOk() throws Exception
+  {
+    final TriggerSequenceState state = createState( 0, "A" );
+    state.setRaiseTrigger( true );
+    state.setOccurrenceCount( 3 );
+    setInputTerm( createTerm( TriggerTermType.TERM_A, 5 ), state );
+
+    assertEquals( 5L, new TriggerEmulator( state ).run( new int[] { 5, 0, 5, 1, 2, 5, 5 } ) );
+  }
+
+  /**
+   * Test method for {@link TriggerEmulator#process(IntBuffer)}.
+   */
+  @Test
+  public void testProcessInChunksOk() throws Exception
+  {
+    final TriggerSequenceState state0 = createState( 0, "A" );
+
+    final TriggerSequenceState state1 = createState( 1, "B" );
+    state1.setRaiseTrigger( true );
+
+    setInputTerm( createTerm( TriggerTermType.TERM_A, 1 ), state0, state1 );
+    setInputTerm( createTerm( TriggerTermType.TERM_B, 2 ), state0, state1 );
+
+    final TriggerEmulator emulator = new TriggerEmulator( state0, state1 );
+
+    assertEquals( -1L, emulator.process( IntBuffer.wrap( new int[] { 0, 2, 1 } ) ) );
+    assertEquals( 1, emulator.getLevel() );
+
+    final IntBuffer buffer = IntBuffer.wrap( new int[] { 0, 2, 1, 2 } );
+    assertEquals( 4L, emulator.process( buffer ) );
+    assertEquals( 2, buffer.position() );
+  }
+
+  /**
+   * Test method for {@link TriggerEmulator#run(int[])}.
+   */
+  @Test
+  public void testTimerOk() throws Exception
+  {
+    final TriggerSequenceState state0 = createState( 0, "A" );
+    state0.setStartTimer( 1 );
+
+    final TriggerSequenceState state1 = createState( 1, "Timer1" );
+    state1.setRaiseTrigger( true );
+
+    final TriggerTimer timer = new TriggerTimer( TriggerTermType.TERM_TIMER1 );
+    timer.setValue( 3 );
+    setInputTerm( timer, state0, state1 );
+    setInputTerm( createTerm( TriggerTermType.TERM_A, 1 ), state0, state1 );
+
+    assertEquals( 4L, new TriggerEmulator( state0, state1 ).run( new int[] { 0, 1, 0, 0, 0, 0 } ) );
+  }
+
+  /**
+   * Creates a sequence state whose hit sum implements the given expression,
+   * and whose other sums never yield true.
+   */
+  static TriggerSequenceState createState( final int aStateNumber, final String aHitExpression )
+      throws ParseException
+  {
+    final TriggerSequenceState result = new TriggerSequenceState();
+    result.setStateNumber( aStateNumber );
+    COMPILER.compile( "0" ).applyTo( result.getTriggerSum( TriggerStateTerm.CAPTURE ) );
+    COMPILER.compile( aHitExpression ).applyTo( result.getTriggerSum( TriggerStateTerm.HIT ) );
+    COMPILER.compile( "0" ).applyTo( result.getTriggerSum( TriggerStateTerm.ELSE ) );
+    return result;
+  }
+
+  /**
+   * Sets the given input term in all sums of the given states. As the device
+   * only has a single set of input terms, programs must do the same.
+   */
+  static void setInputTerm( final AbstractTriggerTerm aTerm, final TriggerSequenceState... aStates )
+  {
+    final int index = PackedTriggerSum.getInputIndex( aTerm.getType() );
+    for ( TriggerSequenceState state : aStates )
+    {
+      for ( TriggerStateTerm stateTerm : TriggerStateTerm.values() )
+      {
+        state.getTriggerSum( stateTerm ).getStore().copyInput( aTerm.store, aTerm.input, index );
+      }
+    }
+  }
+
+  /**
+   * Creates a trigger term that matches a given value exactly.
+   */
+  private TriggerTerm createTerm( final TriggerTermType aType, final int aValue )
+  {
+    final TriggerTerm result = new TriggerTerm( aType );
+    result.setValue( aValue );
+    result.setMask( 0xFFFFFFFF );
+    return result;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.text.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerExpressionCompiler}.
+ */
+public class TriggerExpressionCompilerTest
+{
+  // CONSTANTS
+
+  private static final String[] EXPRESSIONS = { "A & B | C", "(A & C) | !F", "!(A ^ Range1) & (Edge2 | Timer2)",
+      "1", "(A | B) & (C ^ Range1) | (F & g) ^ h", "~J", "(A & C) | !Edge2" };
+
+  // VARIABLES
+
+  private TriggerExpressionCompiler compiler;
+
+  // METHODS
+
+  /**
+   * Set up for each test case.
+   */
+  @Before
+  public void setUp()
+  {
+    this.compiler = new TriggerExpressionCompiler();
+  }
+
+  /**
+   * Test method for {@link TriggerExpressionCompiler#compile(String)}.
+   */
+  @Test
+  public void testCompileImplementsExpressionOk() throws Exception
+  {
+    for ( String expression : EXPRESSIONS )
+    {
+      final TriggerExpressionCompiler.Assignment assignment = this.compiler.compile( expression );
+      assertNotNull( expression, assignment );
+
+      final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+      assignment.applyTo( sum );
+
+      final long[] expected = new TriggerExpressionCompiler.Parser( expression ).parse();
+      assertArrayEquals( expression, expected, TriggerSumTable.of( sum ).toLongArray() );
+
+      final TriggerSumSnapshot snapshot = TriggerSumSnapshot.of( new TriggerSum( TriggerStateTerm.HIT ) );
+      assertEquals( expression, TriggerSumSnapshot.of( sum ), assignment.applyTo( snapshot ) );
+    }
+  }
+
+  /**
+   * Test method for {@link TriggerExpressionCompiler#compile(String)}.
+   */
+  @Test
+  public void testCompiledLutsImplementExpressionOk() throws Exception
+  {
+    for ( String expression : EXPRESSIONS )
+    {
+      final TriggerSequenceState state = new TriggerSequenceState();
+      this.compiler.compile( expression ).applyTo( state.getTriggerSum( TriggerStateTerm.HIT ) );
+
+      // Evaluate the LUT words as they are programmed into the device...
+      final int address = 0x40 + TriggerStateTerm.HIT.getOffset();
+      final int[] luts = DemonCoreCommandWriter.compile( state ).getChain( address );
+
+      final long[] expected = new TriggerExpressionCompiler.Parser( expression ).parse();
+      for ( int inputs = 0; inputs < TriggerSumTable.SIZE; inputs++ )
+      {
+        final boolean hit = ( ( expected[inputs >>> 6] >>> inputs ) & 1L ) != 0L;
+        assertEquals( expression + ", inputs " + Integer.toHexString( inputs ), hit,
+            DemonCoreCommandWriterTest.evaluateLuts( luts, inputs ) );
+      }
+    }
+  }
+
+  /**
+   * Test method for {@link TriggerExpressionCompiler#compile(String)}.
+   */
+  @Test
+  public void testCompileMemoizesResultOk() throws Exception
+  {
+    final TriggerExpressionCompiler.Assignment first = this.compiler.compile( "A & Edge1" );
+    assertSame( first, this.compiler.compile( "A & Edge1" ) );
+
+    assertEquals( TriggerInputState.ENABLED, first.getInputState( TriggerTermType.TERM_A ) );
+    assertEquals( TriggerInputState.ENABLED, first.getInputState( TriggerTermType.TERM_EDGE1 ) );
+    assertEquals( TriggerInputState.ENABLED, first.getInputState( TriggerTermType.TERM_B ) );
+    // B is left out by the operation of its pair term...
+    assertEquals( TriggerOperation.A_ONLY, first.getPairOperation( 0 ) );
+  }
+
+  /**
+   * Test method for {@link TriggerExpressionCompiler#compile(String)}.
+   */
+  @Test
+  public void testCompileUnimplementableExpressionOk() throws Exception
+  {
+    // No pair term operation yields A and not B, and inputs cannot be inverted...
+    assertNull( this.compiler.compile( "A & !B" ) );
+    // Mid term A cannot OR its first and last pair with the XOR of the others...
+    assertNull( this.compiler.compile( "(A & !B) | (C ^ Edge1) | Timer1" ) );
+    // C and D belong to different pairs, and are combined before anything else...
+    assertNull( this.compiler.compile( "(A | B) & (C | D)" ) );
+  }
+
+  /**
+   * Test method for {@link TriggerExpressionCompiler#compile(String)}.
+   */
+  @Test
+  public void testInvalidExpressionFail()
+  {
+    final String[] expressions = { "", "A &", "(A | B", "A | Z", "A B", "A $ B" };
+    for ( String expression : expressions )
+    {
+      try
+      {
+        this.compiler.compile( expression );
+        fail( "Expected ParseException for: " + expression );
+      }
+      catch ( ParseException exception )
+      {
+        // Ok; expected...
+      }
+    }
+  }
+}
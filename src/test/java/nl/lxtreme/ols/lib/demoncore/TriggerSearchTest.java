@@ -0,0 +1,107 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.text.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+
+/**
+ * Test cases for {@link TriggerSearch}.
+ */
+public class TriggerSearchTest
+{
+  // VARIABLES
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerSearch#search(Path, TriggerSequenceState...)}.
+   */
+  @Test
+  public void testEmptyFileYieldsNoHits() throws Exception
+  {
+    final Path file = this.folder.newFile().toPath();
+
+    assertArrayEquals( new long[0], TriggerSearch.search( file, createEdgeProgram() ) );
+  }
+
+  /**
+   * Test method for {@link TriggerSearch#search(Path, long, TriggerSequenceState...)}.
+   */
+  @Test
+  public void testEdgeAcrossWindowsOk() throws Exception
+  {
+    // Rising edges at samples 3, 6 and 8; trailing bytes are to be ignored...
+    final Path file = writeSamples( new int[] { 0, 0, 0, 1, 1, 0, 1, 0, 1, 0 }, 3 );
+    final long[] expected = { 3L, 6L, 8L };
+
+    assertArrayEquals( expected, TriggerSearch.search( file, createEdgeProgram() ) );
+    for ( long windowSize = 4L; windowSize <= 44L; windowSize += 4L )
+    {
+      assertArrayEquals( "Window size " + windowSize, expected,
+          TriggerSearch.search( file, windowSize, createEdgeProgram() ) );
+    }
+  }
+
+  /**
+   * Creates a program that raises the trigger on a rising edge of bit 0.
+   */
+  private TriggerSequenceState createEdgeProgram() throws ParseException
+  {
+    final TriggerSequenceState state = TriggerEmulatorTest.createState( 0, "Edge1" );
+    state.setRaiseTrigger( true );
+
+    final TriggerEdgeDetector edge = new TriggerEdgeDetector( TriggerTermType.TERM_EDGE1 );
+    edge.setRisingEdgeMask( 0x01 );
+    TriggerEmulatorTest.setInputTerm( edge, state );
+
+    return state;
+  }
+
+  /**
+   * Writes the given samples as little-endian raw capture file.
+   */
+  private Path writeSamples( final int[] aSamples, final int aTrailingBytes ) throws IOException
+  {
+    final ByteBuffer buffer = ByteBuffer.allocate( ( aSamples.length * 4 ) + aTrailingBytes );
+    buffer.order( ByteOrder.LITTLE_ENDIAN ).asIntBuffer().put( aSamples );
+    for ( int i = aSamples.length * 4; i < buffer.capacity(); i++ )
+    {
+      buffer.put( i, ( byte )0xFF );
+    }
+
+    final Path result = this.folder.newFile().toPath();
+    Files.write( result, buffer.array() );
+    return result;
+  }
+}
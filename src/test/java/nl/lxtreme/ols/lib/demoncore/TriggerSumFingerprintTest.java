@@ -0,0 +1,122 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerSumFingerprint}.
+ */
+public class TriggerSumFingerprintTest
+{
+  // METHODS
+
+  /**
+   * Creates a sum that only depends on terms A and B, combined with the given
+   * operation.
+   */
+  private static TriggerSum createSum( final TriggerOperation aOperation, final boolean aInverted )
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    final TriggerMidTerm mid = sum.getFinalTerm().getTermA();
+    mid.getTermB().setOperation( TriggerOperation.NOP );
+    mid.getTermC().setOperation( TriggerOperation.NOP );
+    mid.getTermD().setOperation( TriggerOperation.NOP );
+    sum.getFinalTerm().getTermB().setOperation( TriggerOperation.NOP );
+
+    final TriggerPairTerm pair = mid.getTermA();
+    pair.setOperation( aOperation );
+
+    final TriggerTerm termA = ( TriggerTerm )pair.getTermA();
+    termA.setValue( 0x12 );
+    termA.setMask( 0xFF );
+    final TriggerTerm termB = ( TriggerTerm )pair.getTermB();
+    termB.setValue( 0x3400 );
+    termB.setMask( 0xFF00 );
+
+    if ( aInverted )
+    {
+      termA.setInverted();
+      termB.setInverted();
+    }
+    else
+    {
+      termA.setEnabled();
+      termB.setEnabled();
+    }
+    return sum;
+  }
+
+  /**
+   * Test method for {@link TriggerSumFingerprint#isEquivalent(TriggerSum, TriggerSum)}.
+   */
+  @Test
+  public void testEquivalentSumsHaveEqualFingerprintsOk()
+  {
+    // Input states are never programmed, so they do not make a difference...
+    final TriggerSum sum1 = createSum( TriggerOperation.AND, false );
+    final TriggerSum sum2 = createSum( TriggerOperation.AND, true );
+    assertFalse( sum1.equals( sum2 ) );
+    assertTrue( TriggerSumFingerprint.isEquivalent( sum1, sum2 ) );
+
+    final TriggerSumFingerprint fingerprint1 = TriggerSumFingerprint.of( sum1 );
+    final TriggerSumFingerprint fingerprint2 = TriggerSumFingerprint.of( sum2 );
+    assertEquals( fingerprint1, fingerprint2 );
+    assertEquals( fingerprint1.getValue(), fingerprint2.getValue() );
+    assertEquals( fingerprint1.hashCode(), fingerprint2.hashCode() );
+    assertEquals( 0x3, fingerprint1.getTable().getDependencies() );
+
+    // The fingerprint is based on the words written to the device...
+    final TriggerSequenceState state = new TriggerSequenceState();
+    state.setTriggerSum( TriggerStateTerm.HIT, sum2 );
+    final int address = 0x40 + TriggerStateTerm.HIT.getOffset();
+    assertArrayEquals( DemonCoreCommandWriter.compile( state ).getChain( address ), fingerprint1.getChain() );
+
+    // Parameters of inputs that do not matter are ignored...
+    ( ( TriggerTerm )sum2.getFinalTerm().getTermB().getTermA().getTermA() ).setValue( 0xFFFF );
+    assertEquals( fingerprint1, TriggerSumFingerprint.of( sum2 ) );
+  }
+
+  /**
+   * Test method for {@link TriggerSumFingerprint#of(TriggerSum)}.
+   */
+  @Test
+  public void testDifferentSumsHaveDifferentFingerprintsOk()
+  {
+    final TriggerSum sum1 = createSum( TriggerOperation.AND, false );
+    final TriggerSum sum2 = createSum( TriggerOperation.OR, false );
+    assertFalse( TriggerSumFingerprint.of( sum1 ).equals( TriggerSumFingerprint.of( sum2 ) ) );
+
+    // Same function, but a different value for term A...
+    final TriggerSum sum3 = createSum( TriggerOperation.AND, false );
+    ( ( TriggerTerm )sum3.getFinalTerm().getTermA().getTermA().getTermA() ).setValue( 0x13 );
+    assertEquals( TriggerSumTable.of( sum1 ), TriggerSumTable.of( sum3 ) );
+    assertFalse( TriggerSumFingerprint.isEquivalent( sum1, sum3 ) );
+
+    assertEquals( TriggerSumFingerprint.structuralHash( sum1 ),
+        TriggerSumFingerprint.structuralHash( new TriggerSum( sum1 ) ) );
+    assertFalse( TriggerSumFingerprint.structuralHash( sum1 ) == TriggerSumFingerprint.structuralHash( sum3 ) );
+  }
+}
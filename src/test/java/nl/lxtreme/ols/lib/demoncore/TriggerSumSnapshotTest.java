@@ -0,0 +1,128 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerSumSnapshot} and {@link TriggerSequenceSnapshot}.
+ */
+public class TriggerSumSnapshotTest
+{
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerSumSnapshot#of(TriggerSum, TriggerSumSnapshot)}.
+   */
+  @Test
+  public void testSnapshotSharesUnchangedNodesOk()
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    final TriggerSumSnapshot first = TriggerSumSnapshot.of( sum );
+    assertSame( first, TriggerSumSnapshot.of( sum, first ) );
+
+    final TriggerTerm term = ( TriggerTerm )sum.getFinalTerm().getTermB().getTermD().getTermA();
+    term.setValue( 0x1234 );
+    term.setEnabled();
+
+    final TriggerSumSnapshot second = TriggerSumSnapshot.of( sum, first );
+    assertNotSame( first, second );
+    assertFalse( first.equals( second ) );
+
+    // Only the path to input 14 (TERM_J) is renewed...
+    for ( int i = 0; i < 14; i++ )
+    {
+      assertSame( first.getInput( i ), second.getInput( i ) );
+    }
+    assertNotSame( first.getInput( 14 ), second.getInput( 14 ) );
+    assertSame( first.getInput( 15 ), second.getInput( 15 ) );
+
+    assertEquals( TriggerTermType.TERM_J, second.getInput( 14 ).getType() );
+    assertEquals( 0x1234, second.getInput( 14 ).getParameter( 0 ) );
+    assertEquals( sum, second.toTriggerSum() );
+  }
+
+  /**
+   * Test method for {@link TriggerSumSnapshot#of(TriggerSum, TriggerSumSnapshot)}.
+   */
+  @Test
+  public void testSnapshotOfOtherStateTermIsNotReusedOk()
+  {
+    final TriggerSumSnapshot capture = TriggerSumSnapshot.of( new TriggerSum( TriggerStateTerm.CAPTURE ) );
+
+    // Both sums have the same structure and contents...
+    final TriggerSumSnapshot hit = TriggerSumSnapshot.of( new TriggerSum( TriggerStateTerm.HIT ), capture );
+    assertNotSame( capture, hit );
+    assertFalse( capture.equals( hit ) );
+    assertEquals( TriggerStateTerm.HIT, hit.getStateTerm() );
+  }
+
+  /**
+   * Test method for {@link TriggerSumSnapshot#withInput(int, TriggerSumSnapshot.Input)}.
+   */
+  @Test
+  public void testWithersLeaveOriginalUntouchedOk()
+  {
+    final TriggerSumSnapshot original = TriggerSumSnapshot.of( new TriggerSum( TriggerStateTerm.ELSE ) );
+
+    final TriggerSumSnapshot.Input timer = original.getInput( 7 ).withTimerValue( 0xFFFFFFFFFL ).withState(
+        TriggerInputState.ENABLED );
+    final TriggerSumSnapshot edited = original.withInput( 7, timer ).withPairOperation( 3, TriggerOperation.XOR );
+
+    assertEquals( 0L, original.getInput( 7 ).getTimerValue() );
+    assertEquals( TriggerOperation.OR, original.getPairOperation( 3 ) );
+    assertEquals( 0xFFFFFFFFFL, edited.getInput( 7 ).getTimerValue() );
+    assertEquals( TriggerOperation.XOR, edited.getPairOperation( 3 ) );
+    assertSame( original.getInput( 8 ), edited.getInput( 8 ) );
+
+    final TriggerSum sum = edited.toTriggerSum();
+    final TriggerPairTerm pair = sum.getFinalTerm().getTermA().getTermD();
+    assertEquals( TriggerOperation.XOR, pair.getOperation() );
+    assertEquals( 0xFFFFFFFFFL, ( ( TriggerTimer )pair.getTermB() ).getValue() );
+    assertTrue( pair.getTermB().isEnabled() );
+  }
+
+  /**
+   * Test method for {@link TriggerSequenceSnapshot#of(TriggerSequenceState, TriggerSequenceSnapshot)}.
+   */
+  @Test
+  public void testSequenceSnapshotRoundTripOk()
+  {
+    final TriggerSequenceState state = new TriggerSequenceState();
+    final TriggerSequenceSnapshot first = TriggerSequenceSnapshot.of( state );
+
+    state.setStateNumber( 5 );
+    state.setRaiseTrigger( true );
+    state.setOccurrenceCount( 3 );
+
+    final TriggerSequenceSnapshot second = TriggerSequenceSnapshot.of( state, first );
+    assertEquals( 5, second.getTriggerSum( TriggerStateTerm.CAPTURE ).getStateNumber() );
+    assertEquals( 0, first.getStateNumber() );
+
+    final TriggerSequenceState copy = second.toTriggerSequenceState();
+    assertEquals( second, TriggerSequenceSnapshot.of( copy ) );
+    assertEquals( first, second.withStateNumber( 0 ).withRaiseTrigger( false ).withOccurrenceCount( 0 ) );
+  }
+}
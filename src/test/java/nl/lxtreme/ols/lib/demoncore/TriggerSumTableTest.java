@@ -0,0 +1,232 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerSumTable}.
+ */
+public class TriggerSumTableTest
+{
+  // CONSTANTS
+
+  private static final TriggerOperation[] OPERATIONS = TriggerOperation.values();
+  private static final TriggerInputState[] STATES = TriggerInputState.values();
+
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerSumTable#evaluate(int)}.
+   */
+  @Test
+  public void testInputStatesAreIgnoredOk()
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    final TriggerPairTerm pair = sum.getFinalTerm().getTermA().getTermA();
+    pair.setOperation( TriggerOperation.AND );
+
+    final TriggerSum changed = new TriggerSum( sum );
+    final TriggerPairTerm changedPair = changed.getFinalTerm().getTermA().getTermA();
+    changedPair.getTermA().setInverted();
+    changedPair.getTermB().setDisabled();
+
+    // The device is never told about input states...
+    final TriggerSumTable table = TriggerSumTable.of( changed );
+    assertEquals( TriggerSumTable.of( sum ), table );
+    assertTrue( table.evaluate( 0x3 ) );
+    assertFalse( table.evaluate( 0x1 ) );
+    assertEquals( 0xFFFF, table.getDependencies() );
+  }
+
+  /**
+   * Test method for {@link TriggerSumTable#evaluate(int)}.
+   */
+  @Test
+  public void testMatchesTreeEvaluationForAllOperationsOk()
+  {
+    final Random rnd = new Random( 0x7AB1E );
+
+    // Each of the eleven operations of a sum, set to each of the ten operations...
+    for ( int index = 0; index < PackedTriggerSum.OP_COUNT; index++ )
+    {
+      for ( TriggerOperation op : OPERATIONS )
+      {
+        final TriggerSum sum = createRandomSum( rnd );
+        sum.getStore().setOperation( index, op );
+
+        assertEquivalent( "Operation #" + index + " = " + op, sum );
+      }
+    }
+  }
+
+  /**
+   * Test method for {@link TriggerSumTable#evaluate(int)}.
+   */
+  @Test
+  public void testMatchesTreeEvaluationForRandomSumsOk()
+  {
+    final Random rnd = new Random( 0x5EED );
+
+    for ( int n = 0; n < 20; n++ )
+    {
+      assertEquivalent( "Sum #" + n, createRandomSum( rnd ) );
+    }
+  }
+
+  /**
+   * Evaluates a term the way its LUT is documented. A-only and B-only of a mid
+   * term look at its first and last two pair terms; the final term only
+   * yields A (or B) if the other one is not hit.
+   */
+  private static int combine( final TriggerOperation aOperation, final int[] aValues, final boolean aExclusive )
+  {
+    int ones = 0;
+    for ( int value : aValues )
+    {
+      ones += value;
+    }
+
+    final int half = aValues.length / 2;
+    switch ( aOperation )
+    {
+      case NOP:
+        return 0;
+      case ANY:
+        return 1;
+      case AND:
+        return ( ones == aValues.length ) ? 1 : 0;
+      case NAND:
+        return ( ones == aValues.length ) ? 0 : 1;
+      case OR:
+        return ( ones > 0 ) ? 1 : 0;
+      case NOR:
+        return ( ones > 0 ) ? 0 : 1;
+      case XOR:
+        return ( ones == 1 ) ? 1 : 0;
+      case NXOR:
+        return ( ones == 1 ) ? 0 : 1;
+      case A_ONLY:
+        return ( isHit( aValues, 0, half ) && !( aExclusive && isHit( aValues, half, aValues.length ) ) ) ? 1 : 0;
+      default:
+        return ( isHit( aValues, half, aValues.length ) && !( aExclusive && isHit( aValues, 0, half ) ) ) ? 1 : 0;
+    }
+  }
+
+  /**
+   * Returns whether any of the given values, in the given range, is a hit.
+   */
+  private static boolean isHit( final int[] aValues, final int aFrom, final int aTo )
+  {
+    for ( int i = aFrom; i < aTo; i++ )
+    {
+      if ( aValues[i] == 1 )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Asserts that the truth table of the given sum, as well as its evaluator,
+   * yield the same outcome as a plain tree evaluation for all input vectors.
+   */
+  private void assertEquivalent( final String aMessage, final TriggerSum aSum )
+  {
+    final TriggerSumEvaluator evaluator = new TriggerSumEvaluator( aSum );
+    final TriggerSumTable table = TriggerSumTable.of( aSum );
+
+    // Read the tree through its public views...
+    final TriggerFinalTerm finalTerm = aSum.getFinalTerm();
+    final TriggerOperation[] midOps = new TriggerOperation[2];
+    final TriggerOperation[] pairOps = new TriggerOperation[8];
+    for ( int m = 0; m < 2; m++ )
+    {
+      final TriggerMidTerm mid = ( m == 0 ) ? finalTerm.getTermA() : finalTerm.getTermB();
+      midOps[m] = mid.getOperation();
+
+      final TriggerPairTerm[] pairs = { mid.getTermA(), mid.getTermB(), mid.getTermC(), mid.getTermD() };
+      for ( int p = 0; p < 4; p++ )
+      {
+        pairOps[( 4 * m ) + p] = pairs[p].getOperation();
+      }
+    }
+
+    int dependencies = 0;
+    for ( int inputs = 0; inputs < TriggerSumTable.SIZE; inputs++ )
+    {
+      final int[] mids = new int[2];
+      for ( int m = 0; m < 2; m++ )
+      {
+        final int[] pairs = new int[4];
+        for ( int p = 0; p < 4; p++ )
+        {
+          final int input = 2 * ( ( 4 * m ) + p );
+          pairs[p] = combine( pairOps[( 4 * m ) + p], new int[] { ( inputs >>> input ) & 1,
+              ( inputs >>> ( input + 1 ) ) & 1 }, false );
+        }
+        mids[m] = combine( midOps[m], pairs, false );
+      }
+
+      final boolean expected = combine( finalTerm.getOperation(), mids, true ) == 1;
+
+      final String message = aMessage + ", inputs " + Integer.toHexString( inputs );
+      assertEquals( message, expected, table.evaluate( inputs ) );
+      assertEquals( message, expected, evaluator.evaluateTree( inputs ) );
+
+      for ( int i = 0; i < 16; i++ )
+      {
+        if ( expected != table.evaluate( inputs ^ ( 1 << i ) ) )
+        {
+          dependencies |= ( 1 << i );
+        }
+      }
+    }
+
+    assertEquals( aMessage, dependencies, table.getDependencies() );
+  }
+
+  /**
+   * Creates a sum with random operations and input states, the latter of
+   * which should not make a difference.
+   */
+  private TriggerSum createRandomSum( final Random aRnd )
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    final PackedTriggerSum store = sum.getStore();
+    for ( int i = 0; i < PackedTriggerSum.OP_COUNT; i++ )
+    {
+      store.setOperation( i, OPERATIONS[aRnd.nextInt( OPERATIONS.length )] );
+    }
+    for ( int i = 0; i < TriggerSumEvaluator.INPUT_COUNT; i++ )
+    {
+      store.setState( i, STATES[aRnd.nextInt( STATES.length )] );
+    }
+    return sum;
+  }
+}
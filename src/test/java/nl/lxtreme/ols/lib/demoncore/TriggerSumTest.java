@@ -0,0 +1,132 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerSum}.
+ */
+public class TriggerSumTest
+{
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerSum#TriggerSum(TriggerSum)}.
+   */
+  @Test
+  public void testCopyIsIndependentOk()
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    final TriggerTerm term = ( TriggerTerm )sum.getFinalTerm().getTermB().getTermD().getTermA();
+    term.setValue( 0x1234 );
+    term.setInverted();
+
+    final TriggerSum copy = new TriggerSum( sum );
+    assertEquals( sum, copy );
+    assertEquals( sum.hashCode(), copy.hashCode() );
+
+    final TriggerTerm copiedTerm = ( TriggerTerm )copy.getFinalTerm().getTermB().getTermD().getTermA();
+    assertEquals( 0x1234, copiedTerm.getValue() );
+    assertTrue( copiedTerm.isInverted() );
+
+    copiedTerm.setValue( 0x4321 );
+    assertEquals( 0x1234, term.getValue() );
+    assertFalse( sum.equals( copy ) );
+  }
+
+  /**
+   * Test method for {@link TriggerSum#getFinalTerm()}.
+   */
+  @Test
+  public void testViewsShareStateOk()
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.ELSE );
+    final TriggerMidTerm mid = sum.getFinalTerm().getTermA();
+    assertSame( mid, sum.getFinalTerm().getTermA() );
+
+    final TriggerTimer timer = ( TriggerTimer )mid.getTermD().getTermB();
+    assertEquals( TriggerTermType.TERM_TIMER1, timer.getType() );
+    timer.setValue( 0xFFFFFFFFFL );
+
+    mid.getTermD().setOperation( TriggerOperation.XOR );
+
+    final TriggerSum copy = new TriggerSum( sum );
+    final TriggerPairTerm pair = copy.getFinalTerm().getTermA().getTermD();
+    assertEquals( TriggerOperation.XOR, pair.getOperation() );
+    assertEquals( 0xFFFFFFFFFL, ( ( TriggerTimer )pair.getTermB() ).getValue() );
+
+    mid.reset();
+    assertEquals( TriggerOperation.OR, mid.getTermD().getOperation() );
+    assertEquals( 0L, timer.getValue() );
+  }
+
+  /**
+   * Test method for {@link TriggerPairTerm#TriggerPairTerm(TriggerPairTerm)}.
+   */
+  @Test
+  public void testCopyComposedPairOk()
+  {
+    final TriggerTerm termA = ( TriggerTerm )AbstractTriggerTerm.create( TriggerTermType.TERM_A );
+    final TriggerTerm termB = ( TriggerTerm )AbstractTriggerTerm.create( TriggerTermType.TERM_B );
+
+    final TriggerPairTerm pair = new TriggerPairTerm( termA, termB );
+    termB.setMask( 0xFF );
+    termB.setEnabled();
+    pair.setOperation( TriggerOperation.AND );
+    assertSame( termB, pair.getTermB() );
+
+    final TriggerPairTerm copy = new TriggerPairTerm( pair );
+    assertEquals( TriggerOperation.AND, copy.getOperation() );
+    assertEquals( 0xFF, ( ( TriggerTerm )copy.getTermB() ).getMask() );
+    assertTrue( copy.getTermB().isEnabled() );
+    assertNotSame( termB, copy.getTermB() );
+
+    copy.setOperation( TriggerOperation.XOR );
+    assertEquals( TriggerOperation.AND, pair.getOperation() );
+  }
+
+  /**
+   * Test method for {@link TriggerMidTerm#TriggerMidTerm(TriggerMidTerm)}.
+   */
+  @Test
+  public void testCopyViewedMidOk()
+  {
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    final TriggerMidTerm mid = sum.getFinalTerm().getTermB();
+    mid.setOperation( TriggerOperation.NAND );
+    mid.getTermC().setOperation( TriggerOperation.B_ONLY );
+    ( ( TriggerTerm )mid.getTermC().getTermA() ).setValue( 0x42 );
+
+    // The copy still views the inputs of the (copied) sum...
+    final TriggerMidTerm copy = new TriggerMidTerm( mid );
+    assertEquals( TriggerOperation.NAND, copy.getOperation() );
+    assertEquals( TriggerOperation.B_ONLY, copy.getTermC().getOperation() );
+    assertEquals( 0x42, ( ( TriggerTerm )copy.getTermC().getTermA() ).getValue() );
+
+    copy.getTermC().setOperation( TriggerOperation.OR );
+    assertEquals( TriggerOperation.B_ONLY, mid.getTermC().getOperation() );
+  }
+}
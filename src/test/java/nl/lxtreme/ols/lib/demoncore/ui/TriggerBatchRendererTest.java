@@ -0,0 +1,121 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore.ui;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.ols.lib.demoncore.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerBatchRenderer}.
+ */
+public class TriggerBatchRendererTest
+{
+  // VARIABLES
+
+  private ForkJoinPool pool;
+
+  // METHODS
+
+  /**
+   * Set up for each test case.
+   */
+  @Before
+  public void setUp()
+  {
+    this.pool = new ForkJoinPool( 4 );
+  }
+
+  /**
+   * Tear down for each test case.
+   */
+  @After
+  public void tearDown()
+  {
+    this.pool.shutdownNow();
+  }
+
+  /**
+   * Test method for {@link TriggerBatchRenderer#renderAll(Collection)}.
+   */
+  @Test
+  public void testRenderAllKeepsOrderOk()
+  {
+    final TriggerOperation[] operations = TriggerOperation.values();
+    final Random rnd = new Random( 7L );
+
+    final List<TriggerSequenceState> states = new ArrayList<TriggerSequenceState>();
+    for ( int i = 0; i < 500; i++ )
+    {
+      final TriggerSequenceState state = new TriggerSequenceState();
+      state.setOccurrenceCount( i );
+      state.setElseState( i % 16 );
+      for ( TriggerStateTerm stateTerm : TriggerStateTerm.values() )
+      {
+        final TriggerSum sum = state.getTriggerSum( stateTerm );
+        final TriggerMidTerm mid = rnd.nextBoolean() ? sum.getFinalTerm().getTermA() : sum.getFinalTerm().getTermB();
+        final TriggerPairTerm pair = mid.getTermC();
+        pair.setOperation( operations[rnd.nextInt( operations.length )] );
+        pair.getTermA().setEnabled();
+        if ( rnd.nextBoolean() )
+        {
+          pair.getTermB().setInverted();
+        }
+        sum.getFinalTerm().setOperation( operations[rnd.nextInt( operations.length )] );
+      }
+      states.add( state );
+    }
+
+    final List<String> result = new TriggerBatchRenderer( this.pool ).renderAll( states );
+    assertEquals( states.size(), result.size() );
+
+    final TriggerStringifier stringifier = new TriggerStringifier();
+    for ( int i = 0; i < states.size(); i++ )
+    {
+      assertEquals( stringifier.toString( states.get( i ) ), result.get( i ) );
+    }
+  }
+
+  /**
+   * Test method for {@link TriggerBatchRenderer#renderAll(Collection)}.
+   */
+  @Test
+  public void testRenderAllEmptyOk()
+  {
+    assertTrue( new TriggerBatchRenderer( this.pool ).renderAll( new ArrayList<TriggerSequenceState>() ).isEmpty() );
+  }
+
+  /**
+   * Test method for {@link TriggerBatchRenderer#renderAll(Collection)}.
+   */
+  @Test( expected = IllegalArgumentException.class )
+  public void testRenderAllNullStateFail()
+  {
+    new TriggerBatchRenderer( this.pool ).renderAll( Arrays.asList( new TriggerSequenceState(), null ) );
+  }
+}
@@ -24,6 +24,8 @@ package nl.lxtreme.ols.lib.demoncore.ui;
 import static org.junit.Assert.*;
 import static nl.lxtreme.ols.lib.demoncore.ui.TriggerStringifier.*;
 
+import java.io.*;
+
 import nl.lxtreme.ols.lib.demoncore.*;
 
 import org.junit.*;
@@ -185,6 +187,25 @@ public class TriggerStringifierTest
         COMPLEX_TRIGGER_SUM, "A", occurrenceCount, "A", Integer.valueOf( 3 ) ), this.stringifier.toString( seqState ) );
   }
 
+  /**
+   * Test method for {@link TriggerStringifier#render(ITriggerVisitable, Appendable)}.
+   */
+  @Test
+  public void testRenderAppendsToAppendableOk() throws Exception
+  {
+    TriggerSum sum = new TriggerSum( TriggerStateTerm.CAPTURE );
+    makeComplexTriggerSum( sum );
+
+    final StringBuilder sb = new StringBuilder( "> " );
+    this.stringifier.render( sum, sb );
+    this.stringifier.render( new TriggerSum( TriggerStateTerm.HIT ), sb );
+    sb.append( '\n' );
+    this.stringifier.render( sum, new StringWriter() );
+    this.stringifier.render( sum, sb );
+
+    assertEquals( "> ".concat( COMPLEX_TRIGGER_SUM ).concat( "\n" ).concat( COMPLEX_TRIGGER_SUM ), sb.toString() );
+  }
+
   /**
    * Test method for {@link TriggerStringifier#toString(ITriggerVisitable)}.
    */
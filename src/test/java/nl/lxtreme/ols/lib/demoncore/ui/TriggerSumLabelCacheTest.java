@@ -0,0 +1,96 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore.ui;
+
+
+import static org.junit.Assert.*;
+
+import nl.lxtreme.ols.lib.demoncore.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerSumLabelCache}.
+ */
+public class TriggerSumLabelCacheTest
+{
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerSumLabelCache#getLabel(TriggerSum)}.
+   */
+  @Test
+  public void testGetLabelReusesRenderedLabelOk()
+  {
+    final TriggerSumLabelCache cache = new TriggerSumLabelCache( 4 );
+
+    final TriggerSum sum = new TriggerSum( TriggerStateTerm.HIT );
+    final TriggerTerm termA = ( TriggerTerm )sum.getFinalTerm().getTermA().getTermA().getTermA();
+    termA.setEnabled();
+
+    final String label = cache.getLabel( sum );
+    assertEquals( new TriggerStringifier().toString( sum ), label );
+
+    // Unchanged and structurally equal sums are not rendered again...
+    assertSame( label, cache.getLabel( sum ) );
+    assertSame( label, cache.getLabel( new TriggerSum( sum ) ) );
+    assertEquals( 1, cache.getSize() );
+
+    // ...neither are sums that only differ in their parameters...
+    final TriggerSum other = new TriggerSum( sum );
+    ( ( TriggerTerm )other.getFinalTerm().getTermA().getTermA().getTermA() ).setValue( 0x1234 );
+    assertSame( label, cache.getLabel( other ) );
+
+    // ...but changed sums are...
+    termA.setInverted();
+    assertEquals( new TriggerStringifier().toString( sum ), cache.getLabel( sum ) );
+    assertFalse( label.equals( cache.getLabel( sum ) ) );
+    assertEquals( 2, cache.getSize() );
+  }
+
+  /**
+   * Test method for {@link TriggerSumLabelCache#getLabel(TriggerSum)}.
+   */
+  @Test
+  public void testGetLabelEvictsLeastRecentlyUsedOk()
+  {
+    final TriggerSumLabelCache cache = new TriggerSumLabelCache( 2 );
+
+    final TriggerSum sum1 = new TriggerSum( TriggerStateTerm.HIT );
+    final TriggerSum sum2 = new TriggerSum( sum1 );
+    sum2.getFinalTerm().getTermA().getTermA().getTermA().setEnabled();
+    final TriggerSum sum3 = new TriggerSum( sum1 );
+    sum3.getFinalTerm().getTermB().getTermA().getTermA().setEnabled();
+
+    final String label1 = cache.getLabel( sum1 );
+    cache.getLabel( sum2 );
+    assertSame( label1, cache.getLabel( sum1 ) );
+
+    // Evicts the label of sum2...
+    cache.getLabel( sum3 );
+    assertEquals( 2, cache.getSize() );
+    assertSame( label1, cache.getLabel( sum1 ) );
+
+    cache.clear();
+    assertEquals( 0, cache.getSize() );
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * OpenBench LogicSniffer / SUMP project 
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2006-2010 Michael Poppitz, www.sump.org
+ * Copyright (C) 2010 J.W. Janssen, www.lxtreme.nl
+ */
+package nl.lxtreme.ols.lib.demoncore.ui;
+
+
+import static org.junit.Assert.*;
+
+import java.awt.*;
+import java.util.*;
+
+import nl.lxtreme.ols.lib.demoncore.*;
+
+import org.junit.*;
+
+
+/**
+ * Test cases for {@link TriggerSumView}.
+ */
+public class TriggerSumViewTest
+{
+  // METHODS
+
+  /**
+   * Test method for {@link TriggerSumView#handleClick(int)}.
+   */
+  @Test
+  public void testHandleClickEditsInputsOk()
+  {
+    final TriggerSumSnapshot original = TriggerSumSnapshot.of( new TriggerSum( TriggerStateTerm.HIT ) );
+    final TriggerSumView view = new TriggerSumView( TriggerMode.STATE, original );
+
+    // Input 3 is the first range detector...
+    assertEquals( TriggerTermType.TERM_RANGE1, original.getInput( 3 ).getType() );
+    assertTrue( original.getInput( 3 ).getState().isDisabled() );
+
+    // Names of disabled inputs cannot be inverted...
+    view.handleClick( TriggerSumView.HIT_INPUT_NAME + 3 );
+    assertSame( original, view.getTriggerSumSnapshot() );
+
+    view.handleClick( TriggerSumView.HIT_INPUT_STATE + 3 );
+    assertEquals( TriggerInputState.ENABLED, view.getTriggerSumSnapshot().getInput( 3 ).getState() );
+    view.handleClick( TriggerSumView.HIT_INPUT_NAME + 3 );
+    assertEquals( TriggerInputState.ENABLED_INVERTED, view.getTriggerSumSnapshot().getInput( 3 ).getState() );
+
+    // Disabling and enabling restores the inversion...
+    view.handleClick( TriggerSumView.HIT_INPUT_STATE + 3 );
+    assertTrue( view.getTriggerSumSnapshot().getInput( 3 ).getState().isDisabled() );
+    view.handleClick( TriggerSumView.HIT_INPUT_STATE + 3 );
+    assertEquals( TriggerInputState.ENABLED_INVERTED, view.getTriggerSumSnapshot().getInput( 3 ).getState() );
+
+    // The original snapshot is never changed...
+    assertTrue( original.getInput( 3 ).getState().isDisabled() );
+    assertSame( original.getInput( 0 ), view.getTriggerSumSnapshot().getInput( 0 ) );
+  }
+
+  /**
+   * Test method for {@link TriggerSumView#hitTest(int, int)}.
+   */
+  @Test
+  public void testHitTestFindsAllPartsOk()
+  {
+    final TriggerSumView view = new TriggerSumView( TriggerMode.STATE, TriggerSumSnapshot.of( new TriggerSum(
+        TriggerStateTerm.HIT ) ) );
+    final Dimension size = view.getPreferredSize();
+
+    final Set<Integer> hits = new HashSet<Integer>();
+    for ( int y = 0; y < size.height; y++ )
+    {
+      for ( int x = 0; x < size.width; x++ )
+      {
+        hits.add( Integer.valueOf( view.hitTest( x, y ) ) );
+      }
+    }
+
+    assertTrue( hits.contains( Integer.valueOf( TriggerSumView.HIT_NONE ) ) );
+    for ( int i = 0; i < 16; i++ )
+    {
+      assertTrue( hits.contains( Integer.valueOf( TriggerSumView.HIT_INPUT_STATE + i ) ) );
+      assertTrue( hits.contains( Integer.valueOf( TriggerSumView.HIT_INPUT_NAME + i ) ) );
+    }
+    for ( int i = 0; i < 11; i++ )
+    {
+      assertTrue( hits.contains( Integer.valueOf( TriggerSumView.HIT_OPERATION + i ) ) );
+    }
+    assertEquals( 1 + 16 + 16 + 11, hits.size() );
+  }
+}